@@ -0,0 +1,397 @@
+/*
+ * Copyright 2009 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A concurrent map keyed by primitive longs.
+ * <p>
+ * Entries live in open addressing (linear probing) tables of primitive keys and values, so there is
+ * no boxed key and no node object per entry. The map is split in segments with a lock each, as
+ * {@link java.util.concurrent.ConcurrentHashMap} used to be, and operations on different segments
+ * don't contend.
+ * <p>
+ * Null values are not allowed. {@link #keys()} and {@link #values()} return copies, so the map can be
+ * changed while the result is being iterated.
+ */
+public class ConcurrentLongHashMap<V>
+{
+   private static final int DEFAULT_CONCURRENCY_LEVEL = 16;
+
+   private static final int DEFAULT_INITIAL_CAPACITY = 256;
+
+   private static final float FILL_FACTOR = 0.66f;
+
+   private final Segment<V>[] segments;
+
+   private final int segmentShift;
+
+   public ConcurrentLongHashMap()
+   {
+      this(DEFAULT_INITIAL_CAPACITY, DEFAULT_CONCURRENCY_LEVEL);
+   }
+
+   @SuppressWarnings("unchecked")
+   public ConcurrentLongHashMap(final int initialCapacity, final int concurrencyLevel)
+   {
+      if (initialCapacity < 0 || concurrencyLevel <= 0)
+      {
+         throw new IllegalArgumentException("initialCapacity=" + initialCapacity + ", concurrencyLevel=" + concurrencyLevel);
+      }
+
+      int numberOfSegments = powerOfTwo(concurrencyLevel);
+
+      segmentShift = 64 - Integer.numberOfTrailingZeros(numberOfSegments);
+
+      int segmentCapacity = powerOfTwo(Math.max(4, (int)(initialCapacity / numberOfSegments / FILL_FACTOR)));
+
+      segments = new Segment[numberOfSegments];
+      for (int i = 0; i < numberOfSegments; i++)
+      {
+         segments[i] = new Segment<V>(segmentCapacity);
+      }
+   }
+
+   public V get(final long key)
+   {
+      long hash = hash(key);
+      return segmentFor(hash).get(key, (int)hash);
+   }
+
+   public boolean containsKey(final long key)
+   {
+      return get(key) != null;
+   }
+
+   /**
+    * @return the previous value associated with the key, or {@code null}
+    */
+   public V put(final long key, final V value)
+   {
+      checkValue(value);
+      long hash = hash(key);
+      return segmentFor(hash).put(key, value, (int)hash, false);
+   }
+
+   /**
+    * @return the value already associated with the key, or {@code null} if the value was added
+    */
+   public V putIfAbsent(final long key, final V value)
+   {
+      checkValue(value);
+      long hash = hash(key);
+      return segmentFor(hash).put(key, value, (int)hash, true);
+   }
+
+   public void putAll(final ConcurrentLongHashMap<V> other)
+   {
+      for (Segment<V> segment : other.segments)
+      {
+         long[] keys;
+         Object[] values;
+
+         // copied so no two segment locks are held at once
+         synchronized (segment)
+         {
+            keys = segment.keys.clone();
+            values = segment.values.clone();
+         }
+
+         for (int i = 0; i < values.length; i++)
+         {
+            if (values[i] != null)
+            {
+               @SuppressWarnings("unchecked")
+               V value = (V)values[i];
+               put(keys[i], value);
+            }
+         }
+      }
+   }
+
+   /**
+    * @return the value that was associated with the key, or {@code null}
+    */
+   public V remove(final long key)
+   {
+      long hash = hash(key);
+      return segmentFor(hash).remove(key, (int)hash);
+   }
+
+   public int size()
+   {
+      int size = 0;
+      for (Segment<V> segment : segments)
+      {
+         synchronized (segment)
+         {
+            size += segment.size;
+         }
+      }
+      return size;
+   }
+
+   public boolean isEmpty()
+   {
+      return size() == 0;
+   }
+
+   public void clear()
+   {
+      for (Segment<V> segment : segments)
+      {
+         segment.clear();
+      }
+   }
+
+   /**
+    * @return a copy of the keys in the map
+    */
+   public long[] keys()
+   {
+      long[] keys = new long[size()];
+      int count = 0;
+      for (Segment<V> segment : segments)
+      {
+         synchronized (segment)
+         {
+            for (int i = 0; i < segment.values.length; i++)
+            {
+               if (segment.values[i] != null)
+               {
+                  if (count == keys.length)
+                  {
+                     keys = Arrays.copyOf(keys, keys.length * 2 + 1);
+                  }
+                  keys[count++] = segment.keys[i];
+               }
+            }
+         }
+      }
+      return count == keys.length ? keys : Arrays.copyOf(keys, count);
+   }
+
+   /**
+    * @return a copy of the values in the map
+    */
+   public List<V> values()
+   {
+      List<V> values = new ArrayList<V>(size());
+      for (Segment<V> segment : segments)
+      {
+         synchronized (segment)
+         {
+            for (int i = 0; i < segment.values.length; i++)
+            {
+               V value = segment.value(i);
+               if (value != null)
+               {
+                  values.add(value);
+               }
+            }
+         }
+      }
+      return values;
+   }
+
+   @Override
+   public String toString()
+   {
+      return "ConcurrentLongHashMap(size=" + size() + ")";
+   }
+
+   private Segment<V> segmentFor(final long hash)
+   {
+      // the high bits choose the segment and the low bits the bucket, so both are spread evenly
+      return segments.length == 1 ? segments[0] : segments[(int)(hash >>> segmentShift)];
+   }
+
+   private static void checkValue(final Object value)
+   {
+      if (value == null)
+      {
+         throw new NullPointerException("null values are not supported");
+      }
+   }
+
+   private static long hash(final long key)
+   {
+      // finalizer of MurmurHash3, as ids are usually sequential
+      long h = key;
+      h ^= h >>> 33;
+      h *= 0xff51afd7ed558ccdL;
+      h ^= h >>> 33;
+      h *= 0xc4ceb9fe1a85ec53L;
+      h ^= h >>> 33;
+      return h;
+   }
+
+   private static int powerOfTwo(final int value)
+   {
+      int result = Integer.highestOneBit(value);
+      return result == value ? result : result << 1;
+   }
+
+   private static final class Segment<V>
+   {
+      private final int initialCapacity;
+
+      private long[] keys;
+
+      // a null value marks a free bucket
+      private Object[] values;
+
+      private int size;
+
+      private int resizeThreshold;
+
+      Segment(final int capacity)
+      {
+         initialCapacity = capacity;
+         allocate(capacity);
+      }
+
+      synchronized V get(final long key, final int hash)
+      {
+         int mask = values.length - 1;
+         for (int i = hash & mask; values[i] != null; i = (i + 1) & mask)
+         {
+            if (keys[i] == key)
+            {
+               return value(i);
+            }
+         }
+         return null;
+      }
+
+      synchronized V put(final long key, final V value, final int hash, final boolean onlyIfAbsent)
+      {
+         int mask = values.length - 1;
+         int i = hash & mask;
+         for (; values[i] != null; i = (i + 1) & mask)
+         {
+            if (keys[i] == key)
+            {
+               V previous = value(i);
+               if (!onlyIfAbsent)
+               {
+                  values[i] = value;
+               }
+               return previous;
+            }
+         }
+
+         keys[i] = key;
+         values[i] = value;
+
+         if (++size > resizeThreshold)
+         {
+            rehash(values.length * 2);
+         }
+
+         return null;
+      }
+
+      synchronized V remove(final long key, final int hash)
+      {
+         int mask = values.length - 1;
+         for (int i = hash & mask; values[i] != null; i = (i + 1) & mask)
+         {
+            if (keys[i] == key)
+            {
+               V previous = value(i);
+               size--;
+               shiftBack(i);
+               return previous;
+            }
+         }
+         return null;
+      }
+
+      synchronized void clear()
+      {
+         size = 0;
+         allocate(initialCapacity);
+      }
+
+      @SuppressWarnings("unchecked")
+      V value(final int bucket)
+      {
+         return (V)values[bucket];
+      }
+
+      /**
+       * Frees a bucket, moving back the entries after it that would no longer be found through
+       * linear probing. This keeps the tables without tombstones.
+       */
+      private void shiftBack(int free)
+      {
+         int mask = values.length - 1;
+         int i = free;
+         while (true)
+         {
+            i = (i + 1) & mask;
+            if (values[i] == null)
+            {
+               break;
+            }
+
+            int home = (int)hash(keys[i]) & mask;
+
+            // the entry can move to the free bucket unless its home bucket is between the two
+            boolean stays = free <= i ? (free < home && home <= i) : (free < home || home <= i);
+            if (!stays)
+            {
+               keys[free] = keys[i];
+               values[free] = values[i];
+               free = i;
+            }
+         }
+         values[free] = null;
+      }
+
+      private void rehash(final int capacity)
+      {
+         long[] oldKeys = keys;
+         Object[] oldValues = values;
+
+         allocate(capacity);
+
+         int mask = capacity - 1;
+         for (int j = 0; j < oldValues.length; j++)
+         {
+            if (oldValues[j] != null)
+            {
+               int i = (int)hash(oldKeys[j]) & mask;
+               while (values[i] != null)
+               {
+                  i = (i + 1) & mask;
+               }
+               keys[i] = oldKeys[j];
+               values[i] = oldValues[j];
+            }
+         }
+      }
+
+      private void allocate(final int capacity)
+      {
+         keys = new long[capacity];
+         values = new Object[capacity];
+         resizeThreshold = (int)(capacity * FILL_FACTOR);
+      }
+   }
+}
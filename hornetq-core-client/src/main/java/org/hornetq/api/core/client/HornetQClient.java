@@ -66,6 +66,12 @@ public final class HornetQClient
 
    public static final int DEFAULT_ACK_BATCH_SIZE = 1024 * 1024;
 
+   public static final int DEFAULT_PRODUCER_BATCH_SIZE = -1;
+
+   public static final long DEFAULT_PRODUCER_BATCH_LINGER = 5;
+
+   public static final boolean DEFAULT_COMPRESS_PRODUCER_BATCHES = false;
+
    public static final boolean DEFAULT_PRE_ACKNOWLEDGE = false;
 
    public static final long DEFAULT_DISCOVERY_INITIAL_WAIT_TIMEOUT = 10000;
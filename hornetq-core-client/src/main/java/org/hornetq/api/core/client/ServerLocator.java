@@ -436,6 +436,70 @@ public interface ServerLocator extends AutoCloseable
     */
    void setAckBatchSize(int ackBatchSize);
 
+   /**
+    * Returns the producer batch size.
+    *
+    * Default value is {@link HornetQClient#DEFAULT_PRODUCER_BATCH_SIZE}.
+    *
+    * @return the producer batch size
+    */
+   int getProducerBatchSize();
+
+   /**
+    * Sets the producer batch size.
+    *
+    * The messages that producers send without blocking are sent to the server in batches of this
+    * size in bytes, and routed by the server one batch at a time. A batch is sent before it's full
+    * when the {@link #setProducerBatchLinger(long) linger} time is over, when the session is
+    * committed or rolled back and when the producer sends a message blocking or closes.
+    *
+    * Value is -1 to disable batching.
+    *
+    * @param producerBatchSize
+    *            producer batch size
+    */
+   void setProducerBatchSize(int producerBatchSize);
+
+   /**
+    * Returns how long a batch of messages waits for more messages before it's sent, in milliseconds.
+    *
+    * Default value is {@link HornetQClient#DEFAULT_PRODUCER_BATCH_LINGER}.
+    *
+    * @return the producer batch linger
+    */
+   long getProducerBatchLinger();
+
+   /**
+    * Sets how long a batch of messages waits for more messages before it's sent, in milliseconds.
+    *
+    * Value is -1 to only send the batches when they are full or flushed.
+    *
+    * @param producerBatchLinger
+    *            producer batch linger in milliseconds
+    */
+   void setProducerBatchLinger(long producerBatchLinger);
+
+   /**
+    * Returns whether the batches of messages sent by producers are compressed.
+    *
+    * Default value is {@link HornetQClient#DEFAULT_COMPRESS_PRODUCER_BATCHES}.
+    *
+    * @return whether the producer batches are compressed
+    */
+   boolean isCompressProducerBatches();
+
+   /**
+    * Sets whether the batches of messages sent by producers are compressed before they are sent
+    * to the server.
+    *
+    * Compressing a batch takes CPU time at both sides, it's worth it when the network is slower
+    * than the compression, e.g. for a bridge to a remote data center.
+    *
+    * @param compressProducerBatches
+    *            whether the producer batches are compressed
+    */
+   void setCompressProducerBatches(boolean compressProducerBatches);
+
    /**
     * Returns an array of TransportConfigurations representing the static list of live servers used
     * when creating this object
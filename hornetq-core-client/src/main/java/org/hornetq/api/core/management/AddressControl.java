@@ -60,6 +60,26 @@ public interface AddressControl
     */
    long getNumberOfBytesPerPage() throws Exception;
 
+   /**
+    * Returns the number of times the queues of this address found the page they were reading in the page cache.
+    */
+   long getPageCacheHits() throws Exception;
+
+   /**
+    * Returns the number of times the queues of this address had to read a page themselves.
+    */
+   long getPageCacheMisses() throws Exception;
+
+   /**
+    * Returns the number of pages of this address read in the background ahead of its queues.
+    */
+   long getPrefetchedPages() throws Exception;
+
+   /**
+    * Returns the time (in milliseconds) the queues of this address spent waiting for pages to be read.
+    */
+   long getPageReadStallTime() throws Exception;
+
    /**
     * Returns the names of all bindings (both queues and diverts) bound to this address
     */
@@ -99,7 +99,7 @@ public interface HornetQServerControl
    String getJournalDirectory();
 
    /**
-    * Returns the type of journal used by this server (either {@code NIO} or {@code ASYNCIO}).
+    * Returns the type of journal used by this server ({@code NIO}, {@code ASYNCIO} or {@code MAPPED}).
     */
    String getJournalType();
 
@@ -159,6 +159,26 @@ public interface HornetQServerControl
     */
    int getJournalCompactPercentage();
 
+   /**
+    * Returns the number of times the message journal was compacted since this server was started.
+    */
+   long getJournalCompactCount();
+
+   /**
+    * Returns the time (in milliseconds) appends were held off the message journal by the last compaction.
+    */
+   long getJournalLastCompactPauseTime();
+
+   /**
+    * Returns the longest time (in milliseconds) appends were held off the message journal by a compaction.
+    */
+   long getJournalMaxCompactPauseTime();
+
+   /**
+    * Returns the number of bytes reclaimed by compacting the message journal since this server was started.
+    */
+   long getJournalCompactBytesReclaimed();
+
    /**
     * Returns whether this server is using persistence and store data.
     */
@@ -215,11 +235,50 @@ public interface HornetQServerControl
     */
    boolean isSharedStore();
 
+   /**
+    * Returns the number of bytes of the files to send to the backup this live server is
+    * synchronizing, or 0 if it does not replicate to a backup.
+    */
+   long getReplicationSyncTotalBytes();
+
+   /**
+    * Returns the number of bytes of the files already sent to the backup this live server is
+    * synchronizing, or 0 if it does not replicate to a backup.
+    */
+   long getReplicationSyncSentBytes();
+
+   /**
+    * Returns the number of files to send to the backup this live server is synchronizing, or 0 if
+    * it does not replicate to a backup.
+    */
+   int getReplicationSyncTotalFiles();
+
+   /**
+    * Returns the number of files completely sent to the backup this live server is synchronizing,
+    * or 0 if it does not replicate to a backup.
+    */
+   int getReplicationSyncSentFiles();
+
    /**
     * Returns the file system directory used to store paging files.
     */
    String getPagingDirectory();
 
+   /**
+    * Returns the memory (in bytes) taken by the pages cached for all the addresses.
+    */
+   long getPageCacheSize();
+
+   /**
+    * Returns the share of the page lookups that found the page cached since this server was started.
+    */
+   double getPageCacheHitRatio();
+
+   /**
+    * Returns the number of pages evicted from the page caches since this server was started.
+    */
+   long getPageCacheEvictions();
+
    /**
     * Returns whether delivery count is persisted before messages are delivered to the consumers.
     */
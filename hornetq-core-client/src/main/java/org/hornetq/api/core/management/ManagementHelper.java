@@ -63,6 +63,10 @@ public final class ManagementHelper
 
    public static final SimpleString HDR_CONSUMER_COUNT = new SimpleString("_HQ_ConsumerCount");
 
+   public static final SimpleString HDR_MESSAGE_COUNT = new SimpleString("_HQ_MessageCount");
+
+   public static final SimpleString HDR_CONSUMER_RATE = new SimpleString("_HQ_ConsumerRate");
+
    public static final SimpleString HDR_USER = new SimpleString("_HQ_User");
 
    public static final SimpleString HDR_CHECK_TYPE = new SimpleString("_HQ_CheckType");
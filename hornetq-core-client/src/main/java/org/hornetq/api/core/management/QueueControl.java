@@ -82,6 +82,12 @@ public interface QueueControl
     */
    long getMessagesAdded();
 
+   /**
+    * Returns an estimate in bytes of the memory used by the message-id index of this queue,
+    * 0 when the queue is not indexed.
+    */
+   long getMessageIDIndexMemorySize();
+
    /**
     * Returns the expiry address associated to this queue.
     */
@@ -0,0 +1,32 @@
+/*
+ * Copyright 2009 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.hornetq.core.client.impl;
+
+import org.hornetq.api.core.Message;
+import org.hornetq.api.core.client.SendAcknowledgementHandler;
+
+/**
+ * A {@link SendAcknowledgementHandler} told once about all the messages of a batch sent by a
+ * producer, see {@link org.hornetq.api.core.client.ServerLocator#setProducerBatchSize(int)}.
+ * <p>
+ * Only used when it's the handler of the session and the messages were sent without their own
+ * handler.
+ */
+public interface BatchSendAcknowledgementHandler extends SendAcknowledgementHandler
+{
+   /**
+    * Notifies the client that the server has received all the messages of a batch.
+    * @param messages the messages of the batch, in the order they were sent
+    */
+   void sendAcknowledged(Message[] messages);
+}
@@ -16,6 +16,7 @@ package org.hornetq.core.client.impl;
 import java.io.File;
 import java.security.AccessController;
 import java.security.PrivilegedAction;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executor;
@@ -130,6 +131,14 @@ public final class ClientConsumerImpl implements ClientConsumerInternal
 
    private volatile ClientMessageInternal lastAckedMessage;
 
+   // the messages acknowledged individually and not sent yet, they are sent together once they
+   // reach the ackBatchSize, guarded by individualAckLock
+   private final Object individualAckLock = new Object();
+
+   private long[] individualAcks = new long[16];
+
+   private int individualAckCount;
+
    private boolean stopped = false;
 
    private long forceDeliveryCount;
@@ -532,6 +541,11 @@ public final class ClientConsumerImpl implements ClientConsumerInternal
 
       lastAckedMessage = null;
 
+      synchronized (individualAckLock)
+      {
+         individualAckCount = 0;
+      }
+
       creditsToSend = 0;
 
       failedOver = true;
@@ -826,6 +840,9 @@ public final class ClientConsumerImpl implements ClientConsumerInternal
       }
       else
       {
+         // this acknowledges every message delivered before, so they can't be acknowledged after it
+         flushIndividualAcks();
+
          ackBytes += message.getEncodeSize();
 
          if (ackBytes >= ackBatchSize)
@@ -846,11 +863,28 @@ public final class ClientConsumerImpl implements ClientConsumerInternal
          flushAcks();
       }
 
-      session.individualAcknowledge(id, message.getMessageID());
+      synchronized (individualAckLock)
+      {
+         if (individualAckCount == individualAcks.length)
+         {
+            individualAcks = Arrays.copyOf(individualAcks, individualAckCount * 2);
+         }
+
+         individualAcks[individualAckCount++] = message.getMessageID();
+
+         ackBytes += message.getEncodeSize();
+
+         if (ackBytes >= ackBatchSize)
+         {
+            doIndividualAcks();
+         }
+      }
    }
 
    public void flushAcks() throws HornetQException
    {
+      flushIndividualAcks();
+
       if (lastAckedMessage != null)
       {
          doAck(lastAckedMessage);
@@ -1231,6 +1265,35 @@ public final class ClientConsumerImpl implements ClientConsumerInternal
       buffer.clear();
    }
 
+   private void flushIndividualAcks() throws HornetQException
+   {
+      synchronized (individualAckLock)
+      {
+         if (individualAckCount > 0)
+         {
+            doIndividualAcks();
+         }
+      }
+   }
+
+   private void doIndividualAcks() throws HornetQException
+   {
+      ackBytes = 0;
+
+      int count = individualAckCount;
+
+      individualAckCount = 0;
+
+      if (count == 1)
+      {
+         session.individualAcknowledge(id, individualAcks[0]);
+      }
+      else
+      {
+         session.individualAcknowledge(id, Arrays.copyOf(individualAcks, count));
+      }
+   }
+
    private void doAck(final ClientMessageInternal message) throws HornetQException
    {
       ackBytes = 0;
@@ -15,6 +15,11 @@ package org.hornetq.core.client.impl;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 
 import org.hornetq.api.core.HornetQBuffer;
@@ -24,11 +29,13 @@ import org.hornetq.api.core.HornetQInterruptedException;
 import org.hornetq.api.core.Message;
 import org.hornetq.api.core.SimpleString;
 import org.hornetq.api.core.client.SendAcknowledgementHandler;
+import org.hornetq.core.client.HornetQClientLogger;
 import org.hornetq.core.client.HornetQClientMessageBundle;
 import org.hornetq.core.message.BodyEncoder;
 import org.hornetq.core.message.impl.MessageInternal;
 import org.hornetq.core.protocol.core.Channel;
 import org.hornetq.core.protocol.core.impl.PacketImpl;
+import org.hornetq.core.protocol.core.impl.wireformat.SessionSendBatchMessage;
 import org.hornetq.core.protocol.core.impl.wireformat.SessionSendContinuationMessage;
 import org.hornetq.core.protocol.core.impl.wireformat.SessionSendLargeMessage;
 import org.hornetq.core.protocol.core.impl.wireformat.SessionSendMessage;
@@ -67,6 +74,28 @@ public class ClientProducerImpl implements ClientProducerInternal
 
    private final ClientProducerCredits producerCredits;
 
+   // For batching the messages sent asynchronously, see ServerLocator#setProducerBatchSize
+
+   private final int batchSize;
+
+   private final long batchLinger;
+
+   private final boolean compressBatches;
+
+   private final ScheduledExecutorService scheduledExecutor;
+
+   private final Object batchLock = new Object();
+
+   // The messages waiting to be sent, all guarded by batchLock
+
+   private HornetQBuffer batchBuffer;
+
+   private final List<Message> batchMessages = new ArrayList<Message>();
+
+   private final List<SendAcknowledgementHandler> batchHandlers = new ArrayList<SendAcknowledgementHandler>();
+
+   private ScheduledFuture<?> batchLingerFuture;
+
    // Static ---------------------------------------------------------------------------------------
 
    // Constructors ---------------------------------------------------------------------------------
@@ -79,6 +108,10 @@ public class ClientProducerImpl implements ClientProducerInternal
                              final boolean autoGroup,
                              final SimpleString groupID,
                              final int minLargeMessageSize,
+                             final int batchSize,
+                             final long batchLinger,
+                             final boolean compressBatches,
+                             final ScheduledExecutorService scheduledExecutor,
                              final Channel channel)
    {
       this.channel = channel;
@@ -104,6 +137,14 @@ public class ClientProducerImpl implements ClientProducerInternal
 
       this.minLargeMessageSize = minLargeMessageSize;
 
+      this.batchSize = batchSize;
+
+      this.batchLinger = batchLinger;
+
+      this.compressBatches = compressBatches;
+
+      this.scheduledExecutor = scheduledExecutor;
+
       if (address != null)
       {
          producerCredits = session.getCredits(address, false);
@@ -171,6 +212,8 @@ public class ClientProducerImpl implements ClientProducerInternal
          return;
       }
 
+      flushBatch();
+
       doCleanup();
    }
 
@@ -181,9 +224,25 @@ public class ClientProducerImpl implements ClientProducerInternal
          return;
       }
 
+      synchronized (batchLock)
+      {
+         clearBatch();
+      }
+
       doCleanup();
    }
 
+   public void flushBatch() throws HornetQException
+   {
+      synchronized (batchLock)
+      {
+         if (batchBuffer != null)
+         {
+            sendBatch();
+         }
+      }
+   }
+
    public boolean isClosed()
    {
       return closed;
@@ -248,9 +307,22 @@ public class ClientProducerImpl implements ClientProducerInternal
             isLarge = false;
          }
 
+         final boolean sendBlockingConfig = msgI.isDurable() ? blockOnDurableSend : blockOnNonDurableSend;
+         final boolean forceAsyncOverride = handler != null;
+         final boolean sendBlocking = sendBlockingConfig && !forceAsyncOverride;
+
+         // only the messages sent asynchronously can wait in a batch
+         final boolean batched = batchSize > 0 && !isLarge && !sendBlocking;
+
          if (address1 != null)
          {
-            if (!isLarge)
+            if (batched)
+            {
+               // the address is always sent with a batched message, as the server may receive the
+               // messages sent directly by other producers of the session before the batch
+               msg.setAddress(address1);
+            }
+            else if (!isLarge)
             {
                session.setAddress(msg, address1);
             }
@@ -264,7 +336,11 @@ public class ClientProducerImpl implements ClientProducerInternal
          }
          else
          {
-            if (!isLarge)
+            if (batched)
+            {
+               msg.setAddress(this.address);
+            }
+            else if (!isLarge)
             {
                session.setAddress(msg, this.address);
             }
@@ -288,19 +364,28 @@ public class ClientProducerImpl implements ClientProducerInternal
             msgI.putStringProperty(Message.HDR_GROUP_ID, groupID);
          }
 
-         final boolean sendBlockingConfig = msgI.isDurable() ? blockOnDurableSend : blockOnNonDurableSend;
-         final boolean forceAsyncOverride = handler != null;
-         final boolean sendBlocking = sendBlockingConfig && !forceAsyncOverride;
-
          session.workDone();
 
-         if (isLarge)
+         if (batched)
          {
-            largeMessageSend(sendBlocking, msgI, theCredits, handler);
+            batchMessage(msgI, theCredits, handler);
          }
          else
          {
-            sendRegularMessage(msgI, sendBlocking, theCredits, handler);
+            if (batchSize > 0)
+            {
+               // the messages waiting in the batch are sent first, to keep the order
+               flushBatch();
+            }
+
+            if (isLarge)
+            {
+               largeMessageSend(sendBlocking, msgI, theCredits, handler);
+            }
+            else
+            {
+               sendRegularMessage(msgI, sendBlocking, theCredits, handler);
+            }
          }
       }
       finally
@@ -338,6 +423,82 @@ public class ClientProducerImpl implements ClientProducerInternal
       }
    }
 
+   /**
+    * Adds a message to the batch, sending the batch when it's full. The credits are taken before,
+    * so a batch is never blocked on flow control once it's complete.
+    */
+   private void batchMessage(final MessageInternal msgI,
+                             final ClientProducerCredits theCredits,
+                             final SendAcknowledgementHandler handler) throws HornetQException
+   {
+      try
+      {
+         // This will block if credits are not available
+         theCredits.acquireCredits(msgI.getEncodeSize());
+      }
+      catch (InterruptedException e)
+      {
+         throw new HornetQInterruptedException(e);
+      }
+
+      synchronized (batchLock)
+      {
+         if (batchBuffer == null)
+         {
+            batchBuffer = HornetQBuffers.dynamicBuffer(batchSize);
+
+            if (batchLinger > 0 && scheduledExecutor != null)
+            {
+               batchLingerFuture = scheduledExecutor.schedule(new BatchLingerRunner(),
+                                                              batchLinger,
+                                                              TimeUnit.MILLISECONDS);
+            }
+         }
+
+         // the message is encoded now, it may be changed and sent again before the batch is sent
+         msgI.encode(batchBuffer);
+         batchMessages.add(msgI);
+         batchHandlers.add(handler);
+
+         if (batchBuffer.writerIndex() >= batchSize)
+         {
+            sendBatch();
+         }
+      }
+   }
+
+   /**
+    * Must be called holding the batchLock.
+    */
+   private void sendBatch()
+   {
+      SessionSendBatchMessage packet = new SessionSendBatchMessage(batchMessages.size(),
+                                           batchBuffer,
+                                           compressBatches,
+                                           batchMessages.toArray(new Message[batchMessages.size()]),
+                                           batchHandlers.toArray(new SendAcknowledgementHandler[batchHandlers.size()]));
+
+      clearBatch();
+
+      channel.sendBatched(packet);
+   }
+
+   /**
+    * Must be called holding the batchLock.
+    */
+   private void clearBatch()
+   {
+      if (batchLingerFuture != null)
+      {
+         batchLingerFuture.cancel(false);
+         batchLingerFuture = null;
+      }
+
+      batchBuffer = null;
+      batchMessages.clear();
+      batchHandlers.clear();
+   }
+
    private void checkClosed() throws HornetQException
    {
       if (closed)
@@ -629,4 +790,24 @@ public class ClientProducerImpl implements ClientProducerInternal
          throw HornetQClientMessageBundle.BUNDLE.errorClosingLargeMessage(e);
       }
    }
+
+   // Inner classes ---------------------------------------------------------------------------------
+
+   /**
+    * Sends the batch if it's not full when the linger time is over.
+    */
+   private final class BatchLingerRunner implements Runnable
+   {
+      public void run()
+      {
+         try
+         {
+            flushBatch();
+         }
+         catch (Exception e)
+         {
+            HornetQClientLogger.LOGGER.warn(e.getMessage(), e);
+         }
+      }
+   }
 }
@@ -13,6 +13,7 @@
 
 package org.hornetq.core.client.impl;
 
+import org.hornetq.api.core.HornetQException;
 import org.hornetq.api.core.client.ClientProducer;
 
 /**
@@ -27,4 +28,9 @@ public interface ClientProducerInternal extends ClientProducer
    void cleanUp();
 
    ClientProducerCredits getProducerCredits();
+
+   /**
+    * Sends the messages waiting to be sent in a batch, if any.
+    */
+   void flushBatch() throws HornetQException;
 }
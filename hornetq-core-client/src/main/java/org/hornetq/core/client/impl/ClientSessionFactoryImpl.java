@@ -885,6 +885,9 @@ public class ClientSessionFactoryImpl implements ClientSessionFactoryInternal, C
                                                                      serverLocator.getConfirmationWindowSize(),
                                                                      serverLocator.getProducerWindowSize(),
                                                                      serverLocator.getProducerMaxRate(),
+                                                                     serverLocator.getProducerBatchSize(),
+                                                                     serverLocator.getProducerBatchLinger(),
+                                                                     serverLocator.isCompressProducerBatches(),
                                                                      serverLocator.isBlockOnNonDurableSend(),
                                                                      serverLocator.isBlockOnDurableSend(),
                                                                      serverLocator.isCacheLargeMessagesClient(),
@@ -896,7 +899,8 @@ public class ClientSessionFactoryImpl implements ClientSessionFactoryInternal, C
                                                                      response.getServerVersion(),
                                                                      sessionChannel,
                                                                      orderedExecutorFactory.getExecutor(),
-                                              orderedExecutorFactory.getExecutor());
+                                              orderedExecutorFactory.getExecutor(),
+                                              scheduledThreadPool);
 
                synchronized (sessions)
                {
@@ -22,6 +22,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.transaction.xa.XAException;
@@ -46,6 +47,7 @@ import org.hornetq.core.protocol.core.Channel;
 import org.hornetq.core.protocol.core.CommandConfirmationHandler;
 import org.hornetq.core.protocol.core.CoreRemotingConnection;
 import org.hornetq.core.protocol.core.Packet;
+import org.hornetq.core.protocol.core.impl.ChannelImpl;
 import org.hornetq.core.protocol.core.impl.PacketImpl;
 import org.hornetq.core.protocol.core.impl.wireformat.CreateQueueMessage;
 import org.hornetq.core.protocol.core.impl.wireformat.CreateSessionMessage;
@@ -63,6 +65,7 @@ import org.hornetq.core.protocol.core.impl.wireformat.SessionCreateConsumerMessa
 import org.hornetq.core.protocol.core.impl.wireformat.SessionDeleteQueueMessage;
 import org.hornetq.core.protocol.core.impl.wireformat.SessionExpireMessage;
 import org.hornetq.core.protocol.core.impl.wireformat.SessionForceConsumerDelivery;
+import org.hornetq.core.protocol.core.impl.wireformat.SessionIndividualAcknowledgeBatchMessage;
 import org.hornetq.core.protocol.core.impl.wireformat.SessionIndividualAcknowledgeMessage;
 import org.hornetq.core.protocol.core.impl.wireformat.SessionQueueQueryMessage;
 import org.hornetq.core.protocol.core.impl.wireformat.SessionQueueQueryResponseMessage;
@@ -70,6 +73,7 @@ import org.hornetq.core.protocol.core.impl.wireformat.SessionReceiveContinuation
 import org.hornetq.core.protocol.core.impl.wireformat.SessionReceiveLargeMessage;
 import org.hornetq.core.protocol.core.impl.wireformat.SessionReceiveMessage;
 import org.hornetq.core.protocol.core.impl.wireformat.SessionRequestProducerCreditsMessage;
+import org.hornetq.core.protocol.core.impl.wireformat.SessionSendBatchMessage;
 import org.hornetq.core.protocol.core.impl.wireformat.SessionSendContinuationMessage;
 import org.hornetq.core.protocol.core.impl.wireformat.SessionSendMessage;
 import org.hornetq.core.protocol.core.impl.wireformat.SessionUniqueAddMetaDataMessage;
@@ -152,6 +156,14 @@ final class ClientSessionImpl implements ClientSessionInternal, FailureListener,
 
    private final int producerMaxRate;
 
+   private final int producerBatchSize;
+
+   private final long producerBatchLinger;
+
+   private final boolean compressProducerBatches;
+
+   private final ScheduledExecutorService scheduledExecutor;
+
    private final boolean blockOnNonDurableSend;
 
    private final boolean blockOnDurableSend;
@@ -219,6 +231,9 @@ final class ClientSessionImpl implements ClientSessionInternal, FailureListener,
                             final int confirmationWindowSize,
                             final int producerWindowSize,
                             final int producerMaxRate,
+                            final int producerBatchSize,
+                            final long producerBatchLinger,
+                            final boolean compressProducerBatches,
                             final boolean blockOnNonDurableSend,
                             final boolean blockOnDurableSend,
                             final boolean cacheLargeMessageClient,
@@ -230,7 +245,8 @@ final class ClientSessionImpl implements ClientSessionInternal, FailureListener,
                             final int version,
                             final Channel channel,
                             final Executor executor,
-                            final Executor flowControlExecutor) throws HornetQException
+                            final Executor flowControlExecutor,
+                            final ScheduledExecutorService scheduledExecutor) throws HornetQException
    {
       this.sessionFactory = sessionFactory;
 
@@ -246,6 +262,8 @@ final class ClientSessionImpl implements ClientSessionInternal, FailureListener,
 
       this.flowControlExecutor = flowControlExecutor;
 
+      this.scheduledExecutor = scheduledExecutor;
+
       this.xa = xa;
 
       this.autoCommitAcks = autoCommitAcks;
@@ -272,6 +290,13 @@ final class ClientSessionImpl implements ClientSessionInternal, FailureListener,
 
       this.producerMaxRate = producerMaxRate;
 
+      // the server must understand the batches
+      this.producerBatchSize = ChannelImpl.supports(PacketImpl.SESS_SEND_BATCH, version) ? producerBatchSize : -1;
+
+      this.producerBatchLinger = producerBatchLinger;
+
+      this.compressProducerBatches = compressProducerBatches;
+
       this.blockOnNonDurableSend = blockOnNonDurableSend;
 
       this.blockOnDurableSend = blockOnDurableSend;
@@ -594,6 +619,8 @@ final class ClientSessionImpl implements ClientSessionInternal, FailureListener,
          rollbackOnFailover(true);
       }
 
+      flushProducers();
+
       flushAcks();
       /*
       * if we have failed over whilst flushing the acks then we should rollback and throw exception before attempting to
@@ -669,6 +696,8 @@ final class ClientSessionImpl implements ClientSessionInternal, FailureListener,
          consumer.clear(true);
       }
 
+      flushProducers();
+
       // Acks must be flushed here *after connection is stopped and all onmessages finished executing
       flushAcks();
 
@@ -891,6 +920,48 @@ final class ClientSessionImpl implements ClientSessionInternal, FailureListener,
       }
    }
 
+   public void individualAcknowledge(final long consumerID, final long[] messageIDs) throws HornetQException
+   {
+      // if we're pre-acknowledging then we don't need to do anything
+      if (preAcknowledge)
+      {
+         return;
+      }
+
+      if (!ChannelImpl.supports(PacketImpl.SESS_INDIVIDUAL_ACKNOWLEDGE_BATCH, version))
+      {
+         // an older server, the messages are acknowledged one by one
+         for (long messageID : messageIDs)
+         {
+            individualAcknowledge(consumerID, messageID);
+         }
+         return;
+      }
+
+      checkClosed();
+
+      SessionIndividualAcknowledgeBatchMessage message = new SessionIndividualAcknowledgeBatchMessage(consumerID,
+                                                                                                      messageIDs,
+                                                                                                      blockOnAcknowledge);
+
+      startCall();
+      try
+      {
+         if (blockOnAcknowledge)
+         {
+            channel.sendBlocking(message, PacketImpl.NULL_RESPONSE);
+         }
+         else
+         {
+            channel.sendBatched(message);
+         }
+      }
+      finally
+      {
+         endCall();
+      }
+   }
+
    public void expire(final long consumerID, final long messageID) throws HornetQException
    {
       checkClosed();
@@ -1384,6 +1455,23 @@ final class ClientSessionImpl implements ClientSessionInternal, FailureListener,
          SessionSendMessage ssm = (SessionSendMessage)packet;
          callSendAck(ssm.getHandler(), ssm.getMessage());
       }
+      else if (packet.getType() == PacketImpl.SESS_SEND_BATCH)
+      {
+         SessionSendBatchMessage sbm = (SessionSendBatchMessage)packet;
+         Message[] messages = sbm.getSentMessages();
+         SendAcknowledgementHandler[] handlers = sbm.getHandlers();
+         if (sendAckHandler instanceof BatchSendAcknowledgementHandler && !hasHandler(handlers))
+         {
+            ((BatchSendAcknowledgementHandler)sendAckHandler).sendAcknowledged(messages);
+         }
+         else
+         {
+            for (int i = 0; i < messages.length; i++)
+            {
+               callSendAck(handlers[i], messages[i]);
+            }
+         }
+      }
       else if (packet.getType() == PacketImpl.SESS_SEND_CONTINUATION)
       {
          SessionSendContinuationMessage scm = (SessionSendContinuationMessage) packet;
@@ -1394,6 +1482,18 @@ final class ClientSessionImpl implements ClientSessionInternal, FailureListener,
       }
    }
 
+   private static boolean hasHandler(final SendAcknowledgementHandler[] handlers)
+   {
+      for (SendAcknowledgementHandler handler : handlers)
+      {
+         if (handler != null)
+         {
+            return true;
+         }
+      }
+      return false;
+   }
+
    private void callSendAck(SendAcknowledgementHandler handler, final Message message)
    {
       if (handler != null)
@@ -1506,6 +1606,8 @@ final class ClientSessionImpl implements ClientSessionInternal, FailureListener,
                throw new XAException(XAException.XAER_INVAL);
             }
 
+            flushProducers();
+
             flushAcks();
 
             SessionXAResponseMessage response;
@@ -1730,6 +1832,8 @@ final class ClientSessionImpl implements ClientSessionInternal, FailureListener,
             consumer.clear(false);
          }
 
+         flushProducers();
+
          flushAcks();
 
          SessionXARollbackMessage packet = new SessionXARollbackMessage(xid);
@@ -2003,6 +2107,10 @@ final class ClientSessionImpl implements ClientSessionInternal, FailureListener,
                                                                autoGroup,
                                                                groupID == null ? null : new SimpleString(groupID),
                                                                minLargeMessageSize,
+                                                               producerBatchSize,
+                                                               producerBatchLinger,
+                                                               compressProducerBatches,
+                                                               scheduledExecutor,
                                                                channel);
 
       addProducer(producer);
@@ -2163,6 +2271,14 @@ final class ClientSessionImpl implements ClientSessionInternal, FailureListener,
       }
    }
 
+   private void flushProducers() throws HornetQException
+   {
+      for (ClientProducerInternal producer : cloneProducers())
+      {
+         producer.flushBatch();
+      }
+   }
+
    private void flushAcks() throws HornetQException
    {
       for (ClientConsumerInternal consumer : cloneConsumers())
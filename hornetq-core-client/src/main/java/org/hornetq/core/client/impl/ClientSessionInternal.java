@@ -38,6 +38,12 @@ public interface ClientSessionInternal extends ClientSession
 
    void individualAcknowledge(long consumerID, long messageID) throws HornetQException;
 
+   /**
+    * Acknowledges several messages of a consumer individually, in one packet if the server
+    * supports it.
+    */
+   void individualAcknowledge(long consumerID, long[] messageIDs) throws HornetQException;
+
    boolean isCacheLargeMessageClient();
 
    int getMinLargeMessageSize();
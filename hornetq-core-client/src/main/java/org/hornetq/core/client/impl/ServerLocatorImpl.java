@@ -160,6 +160,12 @@ public final class ServerLocatorImpl implements ServerLocatorInternal, Discovery
 
    private int ackBatchSize;
 
+   private int producerBatchSize;
+
+   private long producerBatchLinger;
+
+   private boolean compressProducerBatches;
+
    private boolean useGlobalPools;
 
    private int scheduledThreadPoolMaxSize;
@@ -452,6 +458,12 @@ public final class ServerLocatorImpl implements ServerLocatorInternal, Discovery
 
       ackBatchSize = HornetQClient.DEFAULT_ACK_BATCH_SIZE;
 
+      producerBatchSize = HornetQClient.DEFAULT_PRODUCER_BATCH_SIZE;
+
+      producerBatchLinger = HornetQClient.DEFAULT_PRODUCER_BATCH_LINGER;
+
+      compressProducerBatches = HornetQClient.DEFAULT_COMPRESS_PRODUCER_BATCHES;
+
       connectionLoadBalancingPolicyClassName = HornetQClient.DEFAULT_CONNECTION_LOAD_BALANCING_POLICY_CLASS_NAME;
 
       useGlobalPools = HornetQClient.DEFAULT_USE_GLOBAL_POOLS;
@@ -574,6 +586,9 @@ public final class ServerLocatorImpl implements ServerLocatorInternal, Discovery
       preAcknowledge = locator.preAcknowledge;
       connectionLoadBalancingPolicyClassName = locator.connectionLoadBalancingPolicyClassName;
       ackBatchSize = locator.ackBatchSize;
+      producerBatchSize = locator.producerBatchSize;
+      producerBatchLinger = locator.producerBatchLinger;
+      compressProducerBatches = locator.compressProducerBatches;
       useGlobalPools = locator.useGlobalPools;
       scheduledThreadPoolMaxSize = locator.scheduledThreadPoolMaxSize;
       threadPoolMaxSize = locator.threadPoolMaxSize;
@@ -1148,6 +1163,39 @@ public final class ServerLocatorImpl implements ServerLocatorInternal, Discovery
       this.ackBatchSize = ackBatchSize;
    }
 
+   public int getProducerBatchSize()
+   {
+      return producerBatchSize;
+   }
+
+   public void setProducerBatchSize(final int producerBatchSize)
+   {
+      checkWrite();
+      this.producerBatchSize = producerBatchSize;
+   }
+
+   public long getProducerBatchLinger()
+   {
+      return producerBatchLinger;
+   }
+
+   public void setProducerBatchLinger(final long producerBatchLinger)
+   {
+      checkWrite();
+      this.producerBatchLinger = producerBatchLinger;
+   }
+
+   public boolean isCompressProducerBatches()
+   {
+      return compressProducerBatches;
+   }
+
+   public void setCompressProducerBatches(final boolean compressProducerBatches)
+   {
+      checkWrite();
+      this.compressProducerBatches = compressProducerBatches;
+   }
+
    public boolean isUseGlobalPools()
    {
       return useGlobalPools;
@@ -146,6 +146,26 @@ public final class Operator
       oper3 = null;
    }
 
+   public int getOperation()
+   {
+      return operation;
+   }
+
+   public Object getOper1()
+   {
+      return oper1;
+   }
+
+   public Object getOper2()
+   {
+      return oper2;
+   }
+
+   public Object getOper3()
+   {
+      return oper3;
+   }
+
    // --- Print functions ---
 
    @Override
@@ -873,8 +893,15 @@ public final class Operator
 
       Object oper4 = oper2;
       oper2 = oper3;
-      res = le();
-      oper2 = oper4;
+      try
+      {
+         res = le();
+      }
+      finally
+      {
+         // keep the expression intact if the operand has the wrong type
+         oper2 = oper4;
+      }
       return res;
    }
 
@@ -893,8 +920,15 @@ public final class Operator
 
       Object oper4 = oper2;
       oper2 = oper3;
-      res = gt();
-      oper2 = oper4;
+      try
+      {
+         res = gt();
+      }
+      finally
+      {
+         // keep the expression intact if the operand has the wrong type
+         oper2 = oper4;
+      }
       return res;
    }
 
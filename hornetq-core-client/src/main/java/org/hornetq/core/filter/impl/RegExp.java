@@ -36,7 +36,7 @@ import java.util.regex.Pattern;
  * @author <a href="mailto:tim.fox@jboss.com">Tim Fox</a>
  *
  */
-final class RegExp
+public final class RegExp
 {
    private final Pattern re;
 
@@ -54,6 +54,15 @@ final class RegExp
       return re.matcher(str).matches();
    }
 
+   /**
+    * Matches the characters of the target in place, e.g. of a {@link org.hornetq.api.core.SimpleString}
+    * without converting it to a String first.
+    */
+   public boolean isMatch(final CharSequence target)
+   {
+      return re.matcher(target).matches();
+   }
+
    protected String adjustPattern(final String pattern, final Character escapeChar) throws Exception
    {
       int patternLen = pattern.length();
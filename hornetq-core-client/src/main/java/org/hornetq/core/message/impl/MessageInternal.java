@@ -49,6 +49,11 @@ public interface MessageInternal extends Message
 
    HornetQBuffer getEncodedBuffer();
 
+   /**
+    * Writes the message as it's stored on the journal, with its headers and properties.
+    */
+   void encode(HornetQBuffer buffer);
+
    int getHeadersAndPropertiesEncodeSize();
 
    HornetQBuffer getWholeBuffer();
@@ -35,6 +35,7 @@ import org.hornetq.core.protocol.core.CoreRemotingConnection;
 import org.hornetq.core.protocol.core.Packet;
 import org.hornetq.core.protocol.core.impl.wireformat.HornetQExceptionMessage;
 import org.hornetq.core.protocol.core.impl.wireformat.PacketsConfirmedMessage;
+import org.hornetq.core.protocol.core.impl.wireformat.SessionReceiveContinuationMessage;
 import org.hornetq.spi.core.protocol.RemotingConnection;
 
 /**
@@ -137,12 +138,22 @@ public final class ChannelImpl implements Channel
 
    public boolean supports(final byte packetType)
    {
-      int version = connection.getClientVersion();
+      return supports(packetType, connection.getClientVersion());
+   }
 
+   /**
+    * @param version the incrementing version of the other side of the connection
+    * @return whether the other side understands the packet type
+    */
+   public static boolean supports(final byte packetType, final int version)
+   {
       switch (packetType)
       {
          case PacketImpl.CLUSTER_TOPOLOGY_V2:
             return version >= 122;
+         case PacketImpl.SESS_INDIVIDUAL_ACKNOWLEDGE_BATCH:
+         case PacketImpl.SESS_SEND_BATCH:
+            return version >= 124;
          default:
             return true;
       }
@@ -221,7 +232,15 @@ public final class ChannelImpl implements Channel
             HornetQClientLogger.LOGGER.trace("Sending packet nonblocking " + packet + " on channeID=" + id);
          }
 
-         HornetQBuffer buffer = packet.encode(connection);
+         // a packet kept for resending can't refer to a file which is closed once it's sent
+         SessionReceiveContinuationMessage fileRegion = null;
+         if (resendCache == null && packet instanceof SessionReceiveContinuationMessage &&
+             ((SessionReceiveContinuationMessage)packet).isFileRegion())
+         {
+            fileRegion = (SessionReceiveContinuationMessage)packet;
+         }
+
+         HornetQBuffer buffer = fileRegion == null ? packet.encode(connection) : null;
 
          lock.lock();
 
@@ -264,6 +283,22 @@ public final class ChannelImpl implements Channel
 
          // The actual send must be outside the lock, or with OIO transport, the write can block if the tcp
          // buffer is full, preventing any incoming buffers being handled and blocking failover
+         if (fileRegion != null &&
+             connection.getTransportConnection().writeFileRegion(fileRegion.encodeFileRegionHeader(connection),
+                                                                 fileRegion.getFile(),
+                                                                 fileRegion.getFileReferences(),
+                                                                 fileRegion.getFilePosition(),
+                                                                 fileRegion.getFileCount(),
+                                                                 fileRegion.encodeFileRegionTrailer(connection)))
+         {
+            return true;
+         }
+
+         if (buffer == null)
+         {
+            buffer = packet.encode(connection);
+         }
+
          connection.getTransportConnection().write(buffer, flush, batch);
 
          return true;
@@ -41,6 +41,7 @@ import static org.hornetq.core.protocol.core.impl.PacketImpl.SESS_EXPIRED;
 import static org.hornetq.core.protocol.core.impl.PacketImpl.SESS_FLOWTOKEN;
 import static org.hornetq.core.protocol.core.impl.PacketImpl.SESS_FORCE_CONSUMER_DELIVERY;
 import static org.hornetq.core.protocol.core.impl.PacketImpl.SESS_INDIVIDUAL_ACKNOWLEDGE;
+import static org.hornetq.core.protocol.core.impl.PacketImpl.SESS_INDIVIDUAL_ACKNOWLEDGE_BATCH;
 import static org.hornetq.core.protocol.core.impl.PacketImpl.SESS_PRODUCER_CREDITS;
 import static org.hornetq.core.protocol.core.impl.PacketImpl.SESS_PRODUCER_FAIL_CREDITS;
 import static org.hornetq.core.protocol.core.impl.PacketImpl.SESS_PRODUCER_REQUEST_CREDITS;
@@ -48,6 +49,7 @@ import static org.hornetq.core.protocol.core.impl.PacketImpl.SESS_QUEUEQUERY;
 import static org.hornetq.core.protocol.core.impl.PacketImpl.SESS_QUEUEQUERY_RESP;
 import static org.hornetq.core.protocol.core.impl.PacketImpl.SESS_RECEIVE_CONTINUATION;
 import static org.hornetq.core.protocol.core.impl.PacketImpl.SESS_ROLLBACK;
+import static org.hornetq.core.protocol.core.impl.PacketImpl.SESS_SEND_BATCH;
 import static org.hornetq.core.protocol.core.impl.PacketImpl.SESS_SEND_CONTINUATION;
 import static org.hornetq.core.protocol.core.impl.PacketImpl.SESS_START;
 import static org.hornetq.core.protocol.core.impl.PacketImpl.SESS_STOP;
@@ -105,6 +107,7 @@ import org.hornetq.core.protocol.core.impl.wireformat.SessionCreateConsumerMessa
 import org.hornetq.core.protocol.core.impl.wireformat.SessionDeleteQueueMessage;
 import org.hornetq.core.protocol.core.impl.wireformat.SessionExpireMessage;
 import org.hornetq.core.protocol.core.impl.wireformat.SessionForceConsumerDelivery;
+import org.hornetq.core.protocol.core.impl.wireformat.SessionIndividualAcknowledgeBatchMessage;
 import org.hornetq.core.protocol.core.impl.wireformat.SessionIndividualAcknowledgeMessage;
 import org.hornetq.core.protocol.core.impl.wireformat.SessionProducerCreditsFailMessage;
 import org.hornetq.core.protocol.core.impl.wireformat.SessionProducerCreditsMessage;
@@ -112,6 +115,7 @@ import org.hornetq.core.protocol.core.impl.wireformat.SessionQueueQueryMessage;
 import org.hornetq.core.protocol.core.impl.wireformat.SessionQueueQueryResponseMessage;
 import org.hornetq.core.protocol.core.impl.wireformat.SessionReceiveContinuationMessage;
 import org.hornetq.core.protocol.core.impl.wireformat.SessionRequestProducerCreditsMessage;
+import org.hornetq.core.protocol.core.impl.wireformat.SessionSendBatchMessage;
 import org.hornetq.core.protocol.core.impl.wireformat.SessionSendContinuationMessage;
 import org.hornetq.core.protocol.core.impl.wireformat.SessionUniqueAddMetaDataMessage;
 import org.hornetq.core.protocol.core.impl.wireformat.SessionXAAfterFailedMessage;
@@ -361,6 +365,11 @@ public abstract class PacketDecoder implements Serializable
             packet = new SessionIndividualAcknowledgeMessage();
             break;
          }
+         case SESS_INDIVIDUAL_ACKNOWLEDGE_BATCH:
+         {
+            packet = new SessionIndividualAcknowledgeBatchMessage();
+            break;
+         }
          case NULL_RESPONSE:
          {
             packet = new NullResponseMessage();
@@ -376,6 +385,11 @@ public abstract class PacketDecoder implements Serializable
             packet = new SessionSendContinuationMessage();
             break;
          }
+         case SESS_SEND_BATCH:
+         {
+            packet = new SessionSendBatchMessage();
+            break;
+         }
          case SESS_PRODUCER_REQUEST_CREDITS:
          {
             packet = new SessionRequestProducerCreditsMessage();
@@ -154,6 +154,10 @@ public class PacketImpl implements Packet
 
    public static final byte SESS_PRODUCER_FAIL_CREDITS = 82;
 
+   public static final byte SESS_INDIVIDUAL_ACKNOWLEDGE_BATCH = 83;
+
+   public static final byte SESS_SEND_BATCH = 84;
+
    // Replication
 
    public static final byte REPLICATION_RESPONSE = 90;
@@ -214,6 +218,8 @@ public class PacketImpl implements Packet
 
    public static final byte REPLICATION_START_FINISH_SYNC = 120;
    public static final byte REPLICATION_SCHEDULED_FAILOVER = 121;
+   public static final byte REPLICATION_BATCH = 122;
+   public static final byte REPLICATION_SYNC_FILE_RANGE = 123;
 
    // Static --------------------------------------------------------
 
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2009 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.hornetq.core.protocol.core.impl.wireformat;
+
+import java.util.Arrays;
+
+import org.hornetq.api.core.HornetQBuffer;
+import org.hornetq.core.protocol.core.impl.PacketImpl;
+
+/**
+ * The individual acknowledgements of several messages of one consumer, in the order they were
+ * acknowledged.
+ * <p>
+ * Only sent to servers that support it, see {@link org.hornetq.core.protocol.core.impl.ChannelImpl#supports(byte, int)}.
+ */
+public class SessionIndividualAcknowledgeBatchMessage extends PacketImpl
+{
+   // Constants -----------------------------------------------------
+
+   // Attributes ----------------------------------------------------
+
+   private long consumerID;
+
+   private long[] messageIDs;
+
+   private boolean requiresResponse;
+
+   // Static --------------------------------------------------------
+
+   // Constructors --------------------------------------------------
+
+   public SessionIndividualAcknowledgeBatchMessage(final long consumerID,
+                                                   final long[] messageIDs,
+                                                   final boolean requiresResponse)
+   {
+      super(SESS_INDIVIDUAL_ACKNOWLEDGE_BATCH);
+
+      this.consumerID = consumerID;
+
+      this.messageIDs = messageIDs;
+
+      this.requiresResponse = requiresResponse;
+   }
+
+   public SessionIndividualAcknowledgeBatchMessage()
+   {
+      super(SESS_INDIVIDUAL_ACKNOWLEDGE_BATCH);
+   }
+
+   // Public --------------------------------------------------------
+
+   public long getConsumerID()
+   {
+      return consumerID;
+   }
+
+   public long[] getMessageIDs()
+   {
+      return messageIDs;
+   }
+
+   public boolean isRequiresResponse()
+   {
+      return requiresResponse;
+   }
+
+   @Override
+   public void encodeRest(final HornetQBuffer buffer)
+   {
+      buffer.writeLong(consumerID);
+
+      buffer.writeInt(messageIDs.length);
+
+      for (long messageID : messageIDs)
+      {
+         buffer.writeLong(messageID);
+      }
+
+      buffer.writeBoolean(requiresResponse);
+   }
+
+   @Override
+   public void decodeRest(final HornetQBuffer buffer)
+   {
+      consumerID = buffer.readLong();
+
+      messageIDs = new long[buffer.readInt()];
+
+      for (int i = 0; i < messageIDs.length; i++)
+      {
+         messageIDs[i] = buffer.readLong();
+      }
+
+      requiresResponse = buffer.readBoolean();
+   }
+
+   @Override
+   public String toString()
+   {
+      return getParentString() + ", consumerID=" + consumerID + ", messages=" + messageIDs.length + "]";
+   }
+
+   @Override
+   public int hashCode()
+   {
+      final int prime = 31;
+      int result = super.hashCode();
+      result = prime * result + (int)(consumerID ^ (consumerID >>> 32));
+      result = prime * result + Arrays.hashCode(messageIDs);
+      result = prime * result + (requiresResponse ? 1231 : 1237);
+      return result;
+   }
+
+   @Override
+   public boolean equals(Object obj)
+   {
+      if (this == obj)
+         return true;
+      if (!super.equals(obj))
+         return false;
+      if (!(obj instanceof SessionIndividualAcknowledgeBatchMessage))
+         return false;
+      SessionIndividualAcknowledgeBatchMessage other = (SessionIndividualAcknowledgeBatchMessage)obj;
+      if (consumerID != other.consumerID)
+         return false;
+      if (!Arrays.equals(messageIDs, other.messageIDs))
+         return false;
+      if (requiresResponse != other.requiresResponse)
+         return false;
+      return true;
+   }
+}
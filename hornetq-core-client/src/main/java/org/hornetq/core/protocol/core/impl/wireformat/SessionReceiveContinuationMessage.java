@@ -13,8 +13,15 @@
 
 package org.hornetq.core.protocol.core.impl.wireformat;
 
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
 import org.hornetq.api.core.HornetQBuffer;
+import org.hornetq.spi.core.protocol.RemotingConnection;
 import org.hornetq.utils.DataConstants;
+import org.hornetq.utils.ReferenceCounter;
 
 /**
  * A SessionSendContinuationMessage
@@ -36,6 +43,15 @@ public class SessionReceiveContinuationMessage extends SessionContinuationMessag
 
    private long consumerID;
 
+   /** The file holding the body, if it's still to be read */
+   private transient FileChannel file;
+
+   private transient ReferenceCounter fileReferences;
+
+   private long filePosition;
+
+   private int fileCount;
+
    // Static --------------------------------------------------------
 
    // Constructors --------------------------------------------------
@@ -70,6 +86,89 @@ public class SessionReceiveContinuationMessage extends SessionContinuationMessag
       this.size = packetSize;
    }
 
+   /**
+    * A continuation whose body is {@code count} bytes of the file from {@code position}, transferred
+    * from the file to the socket if the connection supports it.
+    * <p>
+    * The file must stay open until the packet is sent, the connection takes a reference to it in
+    * {@code fileReferences} as long as it transfers it.
+    * @see org.hornetq.spi.core.remoting.Connection#writeFileRegion(HornetQBuffer, FileChannel,
+    *      ReferenceCounter, long, int, HornetQBuffer)
+    */
+   public SessionReceiveContinuationMessage(final long consumerID,
+                                            final FileChannel file,
+                                            final ReferenceCounter fileReferences,
+                                            final long position,
+                                            final int count,
+                                            final boolean continues,
+                                            final boolean requiresResponse)
+   {
+      this(consumerID, (byte[])null, continues, requiresResponse);
+      this.file = file;
+      this.fileReferences = fileReferences;
+      this.filePosition = position;
+      this.fileCount = count;
+   }
+
+   /**
+    * @return whether the body is still in a file
+    */
+   public boolean isFileRegion()
+   {
+      return file != null && body == null;
+   }
+
+   public FileChannel getFile()
+   {
+      return file;
+   }
+
+   public ReferenceCounter getFileReferences()
+   {
+      return fileReferences;
+   }
+
+   public long getFilePosition()
+   {
+      return filePosition;
+   }
+
+   public int getFileCount()
+   {
+      return fileCount;
+   }
+
+   /**
+    * Encodes the bytes of the packet before those of the file, see {@link #isFileRegion()}.
+    */
+   public HornetQBuffer encodeFileRegionHeader(final RemotingConnection connection)
+   {
+      HornetQBuffer buffer = connection.createBuffer(PACKET_HEADERS_SIZE + DataConstants.SIZE_INT);
+
+      size = SESSION_RECEIVE_CONTINUATION_BASE_SIZE + fileCount;
+
+      // The length doesn't include the actual length byte
+      buffer.writeInt(size - DataConstants.SIZE_INT);
+      buffer.writeByte(getType());
+      buffer.writeLong(getChannelID());
+      buffer.writeInt(fileCount);
+
+      return buffer;
+   }
+
+   /**
+    * Encodes the bytes of the packet after those of the file, see {@link #isFileRegion()}.
+    */
+   public HornetQBuffer encodeFileRegionTrailer(final RemotingConnection connection)
+   {
+      HornetQBuffer buffer = connection.createBuffer(DataConstants.SIZE_BOOLEAN + DataConstants.SIZE_LONG);
+
+      buffer.writeBoolean(continues);
+      buffer.writeLong(consumerID);
+
+      return buffer;
+   }
+
    /**
     * @return the consumerID
     */
@@ -83,6 +182,11 @@ public class SessionReceiveContinuationMessage extends SessionContinuationMessag
    @Override
    public void encodeRest(final HornetQBuffer buffer)
    {
+      if (isFileRegion())
+      {
+         // the connection can't transfer the file
+         body = readFileRegion();
+      }
       super.encodeRest(buffer);
       buffer.writeLong(consumerID);
    }
@@ -109,6 +213,28 @@ public class SessionReceiveContinuationMessage extends SessionContinuationMessag
       consumerID = buffer.readLong();
    }
 
+   private byte[] readFileRegion()
+   {
+      ByteBuffer bytes = ByteBuffer.allocate(fileCount);
+
+      try
+      {
+         while (bytes.hasRemaining())
+         {
+            if (file.read(bytes, filePosition + bytes.position()) < 0)
+            {
+               throw new EOFException("Unexpected end of file at " + (filePosition + bytes.position()));
+            }
+         }
+      }
+      catch (IOException e)
+      {
+         throw new IllegalStateException(e.getMessage(), e);
+      }
+
+      return bytes.array();
+   }
+
    @Override
    public int hashCode()
    {
@@ -0,0 +1,280 @@
+/*
+ * Copyright 2009 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.hornetq.core.protocol.core.impl.wireformat;
+
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.hornetq.api.core.HornetQBuffer;
+import org.hornetq.api.core.HornetQBuffers;
+import org.hornetq.api.core.Message;
+import org.hornetq.api.core.client.SendAcknowledgementHandler;
+import org.hornetq.core.protocol.core.impl.PacketImpl;
+
+/**
+ * Several messages sent asynchronously by a producer, in the order they were sent.
+ * <p>
+ * The messages are written one after the other as they are encoded on the journal (see
+ * {@link org.hornetq.core.message.impl.MessageInternal#encode(HornetQBuffer)}), each one with its
+ * address. Only sent to servers that support it, see
+ * {@link org.hornetq.core.protocol.core.impl.ChannelImpl#supports(byte, int)}.
+ * <p>
+ * The messages may be deflated, see
+ * {@link org.hornetq.api.core.client.ServerLocator#setCompressProducerBatches(boolean)}. They are
+ * inflated when the packet is decoded.
+ */
+public class SessionSendBatchMessage extends PacketImpl
+{
+   // Constants -----------------------------------------------------
+
+   // Attributes ----------------------------------------------------
+
+   private int messageCount;
+
+   private HornetQBuffer messages;
+
+   private boolean compressed;
+
+   /**
+    * The deflated messages, kept as the packet may be encoded again if it's resent after a
+    * failover.
+    */
+   private transient byte[] deflated;
+
+   /**
+    * The messages of the batch and the handlers they were sent with, to confirm them once the
+    * packet is confirmed.
+    * <p>
+    * These fields are only used at the client side.
+    */
+   private transient final Message[] sentMessages;
+
+   private transient final SendAcknowledgementHandler[] handlers;
+
+   // Static --------------------------------------------------------
+
+   // Constructors --------------------------------------------------
+
+   public SessionSendBatchMessage(final int messageCount,
+                                  final HornetQBuffer messages,
+                                  final boolean compressed,
+                                  final Message[] sentMessages,
+                                  final SendAcknowledgementHandler[] handlers)
+   {
+      super(SESS_SEND_BATCH);
+
+      this.messageCount = messageCount;
+
+      this.messages = messages;
+
+      this.compressed = compressed;
+
+      this.sentMessages = sentMessages;
+
+      this.handlers = handlers;
+   }
+
+   public SessionSendBatchMessage()
+   {
+      super(SESS_SEND_BATCH);
+
+      this.sentMessages = null;
+
+      this.handlers = null;
+   }
+
+   // Public --------------------------------------------------------
+
+   public int getMessageCount()
+   {
+      return messageCount;
+   }
+
+   /**
+    * @return the encoded messages, positioned at the first one
+    */
+   public HornetQBuffer getMessages()
+   {
+      return messages;
+   }
+
+   public boolean isCompressed()
+   {
+      return compressed;
+   }
+
+   public Message[] getSentMessages()
+   {
+      return sentMessages;
+   }
+
+   public SendAcknowledgementHandler[] getHandlers()
+   {
+      return handlers;
+   }
+
+   @Override
+   public void encodeRest(final HornetQBuffer buffer)
+   {
+      buffer.writeInt(messageCount);
+
+      buffer.writeBoolean(compressed);
+
+      buffer.writeInt(messages.writerIndex());
+
+      if (compressed)
+      {
+         if (deflated == null)
+         {
+            deflated = deflate(messages);
+         }
+
+         buffer.writeInt(deflated.length);
+
+         buffer.writeBytes(deflated);
+      }
+      else
+      {
+         // the packet may be encoded again if it's resent after a failover
+         buffer.writeBytes(messages, 0, messages.writerIndex());
+      }
+   }
+
+   @Override
+   public void decodeRest(final HornetQBuffer buffer)
+   {
+      messageCount = buffer.readInt();
+
+      compressed = buffer.readBoolean();
+
+      int length = buffer.readInt();
+
+      if (compressed)
+      {
+         byte[] input = new byte[buffer.readInt()];
+
+         buffer.readBytes(input);
+
+         messages = HornetQBuffers.wrappedBuffer(inflate(input, length));
+      }
+      else
+      {
+         messages = buffer.copy(buffer.readerIndex(), length);
+
+         buffer.skipBytes(length);
+      }
+   }
+
+   @Override
+   public String toString()
+   {
+      return getParentString() + ", messages=" + messageCount + ", compressed=" + compressed + "]";
+   }
+
+   @Override
+   public int hashCode()
+   {
+      final int prime = 31;
+      int result = super.hashCode();
+      result = prime * result + messageCount;
+      result = prime * result + (compressed ? 1231 : 1237);
+      return result;
+   }
+
+   @Override
+   public boolean equals(Object obj)
+   {
+      if (this == obj)
+         return true;
+      if (!super.equals(obj))
+         return false;
+      if (!(obj instanceof SessionSendBatchMessage))
+         return false;
+      SessionSendBatchMessage other = (SessionSendBatchMessage)obj;
+      if (messageCount != other.messageCount)
+         return false;
+      if (compressed != other.compressed)
+         return false;
+      return true;
+   }
+
+   // Private -------------------------------------------------------
+
+   private static byte[] deflate(final HornetQBuffer messages)
+   {
+      byte[] input = new byte[messages.writerIndex()];
+      messages.getBytes(0, input);
+
+      Deflater deflater = new Deflater();
+      try
+      {
+         deflater.setInput(input);
+         deflater.finish();
+
+         byte[] output = new byte[Math.max(64, input.length / 2)];
+         int length = 0;
+         while (!deflater.finished())
+         {
+            if (length == output.length)
+            {
+               output = Arrays.copyOf(output, output.length * 2);
+            }
+            length += deflater.deflate(output, length, output.length - length);
+         }
+         return Arrays.copyOf(output, length);
+      }
+      finally
+      {
+         deflater.end();
+      }
+   }
+
+   private static byte[] inflate(final byte[] input, final int length)
+   {
+      Inflater inflater = new Inflater();
+      try
+      {
+         inflater.setInput(input);
+
+         byte[] output = new byte[length];
+         int read = 0;
+         while (read < length && !inflater.finished())
+         {
+            int inflated = inflater.inflate(output, read, length - read);
+            if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+            {
+               // the whole input was given, it would never inflate more
+               throw new IllegalStateException("Truncated compressed batch, " + read + " of " + length +
+                                               " bytes inflated");
+            }
+            read += inflated;
+         }
+         if (read != length)
+         {
+            throw new IllegalStateException("Invalid compressed batch, " + read + " bytes inflated instead of " +
+                                            length);
+         }
+         return output;
+      }
+      catch (DataFormatException e)
+      {
+         throw new IllegalStateException("Invalid compressed batch", e);
+      }
+      finally
+      {
+         inflater.end();
+      }
+   }
+}
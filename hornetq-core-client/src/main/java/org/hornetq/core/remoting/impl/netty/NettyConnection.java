@@ -13,6 +13,7 @@
 
 package org.hornetq.core.remoting.impl.netty;
 
+import java.nio.channels.FileChannel;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Semaphore;
@@ -28,9 +29,12 @@ import org.hornetq.spi.core.remoting.Connection;
 import org.hornetq.spi.core.remoting.ConnectionLifeCycleListener;
 import org.hornetq.spi.core.remoting.ReadyListener;
 import org.hornetq.utils.ConcurrentHashSet;
+import org.hornetq.utils.ReferenceCounter;
 import org.jboss.netty.buffer.ChannelBuffers;
 import org.jboss.netty.channel.Channel;
 import org.jboss.netty.channel.ChannelFuture;
+import org.jboss.netty.channel.ChannelFutureListener;
+import org.jboss.netty.channel.DefaultFileRegion;
 import org.jboss.netty.handler.ssl.SslHandler;
 
 /**
@@ -56,6 +60,8 @@ public class NettyConnection implements Connection
 
    private final boolean directDeliver;
 
+   private final boolean fileRegionEnabled;
+
    private volatile HornetQBuffer batchBuffer;
 
    private final Map<String, Object> configuration;
@@ -73,6 +79,21 @@ public class NettyConnection implements Connection
                            final ConnectionLifeCycleListener listener,
                            boolean batchingEnabled,
                            boolean directDeliver)
+   {
+      this(configuration, channel, listener, batchingEnabled, directDeliver, false);
+   }
+
+   /**
+    * @param fileRegionEnabled whether the files are transferred to the socket, only the
+    *           {@link org.jboss.netty.buffer.ChannelBuffer}s are written if the pipeline has a
+    *           handler encoding them, e.g. SSL or HTTP
+    */
+   public NettyConnection(final Map<String, Object> configuration,
+                           final Channel channel,
+                           final ConnectionLifeCycleListener listener,
+                           boolean batchingEnabled,
+                           boolean directDeliver,
+                           boolean fileRegionEnabled)
    {
       this.configuration = configuration;
 
@@ -83,6 +104,8 @@ public class NettyConnection implements Connection
       this.batchingEnabled = batchingEnabled;
 
       this.directDeliver = directDeliver;
+
+      this.fileRegionEnabled = fileRegionEnabled;
    }
 
    // Public --------------------------------------------------------
@@ -245,6 +268,62 @@ public class NettyConnection implements Connection
       }
    }
 
+   public boolean writeFileRegion(final HornetQBuffer header,
+                                  final FileChannel file,
+                                  final ReferenceCounter fileReferences,
+                                  final long position,
+                                  final int count,
+                                  final HornetQBuffer trailer)
+   {
+      if (!fileRegionEnabled)
+      {
+         return false;
+      }
+
+      try
+      {
+         writeLock.acquire();
+
+         try
+         {
+            // the packets batched so far go first
+            if (batchBuffer != null && batchBuffer.readable())
+            {
+               channel.write(batchBuffer.channelBuffer());
+
+               batchBuffer = HornetQBuffers.dynamicBuffer(BATCHING_BUFFER_SIZE);
+            }
+
+            channel.write(header.channelBuffer());
+
+            // the region is transferred to the socket with FileChannel.transferTo, once the writes
+            // queued before it are done. This isn't waited for, the caller may hold locks the IO
+            // thread needs: the file is referenced until the region is transferred or fails instead
+            fileReferences.increment();
+
+            channel.write(new DefaultFileRegion(file, position, count)).addListener(new ChannelFutureListener()
+            {
+               public void operationComplete(final ChannelFuture future)
+               {
+                  fileReferences.decrement();
+               }
+            });
+
+            channel.write(trailer.channelBuffer());
+         }
+         finally
+         {
+            writeLock.release();
+         }
+      }
+      catch (InterruptedException e)
+      {
+         throw new HornetQInterruptedException(e);
+      }
+
+      return true;
+   }
+
    public String getRemoteAddress()
    {
       return channel.getRemoteAddress().toString();
@@ -94,6 +94,8 @@ public class TransportConstants
 
    public static final String DIRECT_DELIVER = "direct-deliver";
 
+   public static final String FILE_REGION_ENABLED = "file-region-enabled";
+
    public static final String CLUSTER_CONNECTION = "cluster-connection";
 
    public static final String STOMP_CONSUMERS_CREDIT = "stomp-consumer-credits";
@@ -159,6 +161,8 @@ public class TransportConstants
 
    public static final boolean DEFAULT_DIRECT_DELIVER = true;
 
+   public static final boolean DEFAULT_FILE_REGION_ENABLED = true;
+
    public static final Set<String> ALLOWABLE_CONNECTOR_KEYS;
 
    public static final Set<String> ALLOWABLE_ACCEPTOR_KEYS;
@@ -196,6 +200,7 @@ public class TransportConstants
       allowableAcceptorKeys.add(TransportConstants.NIO_REMOTING_THREADS_PROPNAME);
       allowableAcceptorKeys.add(TransportConstants.BATCH_DELAY);
       allowableAcceptorKeys.add(TransportConstants.DIRECT_DELIVER);
+      allowableAcceptorKeys.add(TransportConstants.FILE_REGION_ENABLED);
       allowableAcceptorKeys.add(TransportConstants.CLUSTER_CONNECTION);
       allowableAcceptorKeys.add(TransportConstants.STOMP_CONSUMERS_CREDIT);
       allowableAcceptorKeys.add(TransportConstants.STOMP_MIN_LARGE_MESSAGE_SIZE);
@@ -13,9 +13,12 @@
 
 package org.hornetq.spi.core.remoting;
 
+import java.nio.channels.FileChannel;
+
 import org.hornetq.api.core.HornetQBuffer;
 import org.hornetq.api.core.TransportConfiguration;
 import org.hornetq.core.security.HornetQPrincipal;
+import org.hornetq.utils.ReferenceCounter;
 
 /**
  * The connection used by a channel to write data to.
@@ -55,6 +58,27 @@ public interface Connection
     */
    void write(HornetQBuffer buffer);
 
+   /**
+    * writes the header, {@code count} bytes of the file from {@code position} and the trailer to
+    * the connection, transferring the bytes of the file to the socket without copying them to the
+    * heap. It doesn't wait for them to be physically written: the file is referenced in
+    * {@code fileReferences} until then, or until the write fails, and must stay open meanwhile.
+    *
+    * @param header the bytes to write before those of the file
+    * @param file the file to transfer
+    * @param fileReferences the references to the file, one is held until the bytes are transferred
+    * @param position the position of the first byte to transfer in the file
+    * @param count the number of bytes to transfer
+    * @param trailer the bytes to write after those of the file
+    * @return {@code false} if the transport can't transfer files, nothing is written then
+    */
+   boolean writeFileRegion(HornetQBuffer header,
+                           FileChannel file,
+                           ReferenceCounter fileReferences,
+                           long position,
+                           int count,
+                           HornetQBuffer trailer);
+
    /**
     * Closes the connection.
     */
@@ -44,6 +44,14 @@ public class LinkedListImpl<E> implements LinkedList<E>
 
    private int nextIndex;
 
+   // set when the list is a level of an indexed PriorityLinkedListImpl, or indexes its own elements
+   private NodeIndex<E> index;
+
+   private int indexLevel;
+
+   // set when the list indexes its own elements through setIDSupplier
+   private IDSupplier<E> idSupplier;
+
    public LinkedListImpl()
    {
       iters = createIteratorArray(INITIAL_ITERATOR_ARRAY_SIZE);
@@ -70,6 +78,11 @@ public class LinkedListImpl<E> implements LinkedList<E>
       }
 
       size++;
+
+      if (index != null)
+      {
+         index.put(node, indexLevel);
+      }
    }
 
    public void addTail(E e)
@@ -89,6 +102,11 @@ public class LinkedListImpl<E> implements LinkedList<E>
          tail = node;
 
          size++;
+
+         if (index != null)
+         {
+            index.put(node, indexLevel);
+         }
       }
    }
 
@@ -113,6 +131,12 @@ public class LinkedListImpl<E> implements LinkedList<E>
       tail = head.next = null;
 
       size = 0;
+
+      // the index of a PriorityLinkedListImpl is cleared by it, as it's shared by its levels
+      if (idSupplier != null)
+      {
+         index.clear();
+      }
    }
 
    public int size()
@@ -151,6 +175,82 @@ public class LinkedListImpl<E> implements LinkedList<E>
       return numIters;
    }
 
+   /**
+    * Indexes the elements of the list by the id given by the supplier, so an element can be
+    * removed with {@link #removeWithID(long)} without walking the list. A null supplier stops it.
+    */
+   public void setIDSupplier(final IDSupplier<E> supplier)
+   {
+      idSupplier = supplier;
+
+      setIndex(supplier != null ? new NodeIndex<E>(supplier) : null, 0);
+   }
+
+   /**
+    * Removes an element with the id, found through the index. The list is only walked when
+    * the id was added more than once, as the index then misses some elements.
+    * @return the element removed, or null if there is none with the id
+    */
+   public E removeWithID(final long id)
+   {
+      if (idSupplier == null)
+      {
+         throw new IllegalStateException("The list is not indexed");
+      }
+
+      int bucket = index.find(id);
+
+      if (bucket >= 0)
+      {
+         Node<E> node = index.nodeAt(bucket);
+
+         removeNode(node);
+
+         return node.val;
+      }
+
+      if (!index.isComplete())
+      {
+         for (Node<E> node = head.next; node != null; node = node.next)
+         {
+            if (idSupplier.getID(node.val) == id)
+            {
+               removeNode(node);
+
+               return node.val;
+            }
+         }
+      }
+
+      return null;
+   }
+
+   /**
+    * Indexes every node of the list and keeps the index up to date from now on, a null index stops it.
+    */
+   void setIndex(final NodeIndex<E> index, final int level)
+   {
+      this.index = index;
+
+      indexLevel = level;
+
+      if (index != null)
+      {
+         for (Node<E> node = head.next; node != null; node = node.next)
+         {
+            index.put(node, level);
+         }
+      }
+   }
+
+   /**
+    * Unlinks a node found through the index, iterators on the node move as if it was removed by one of them.
+    */
+   void removeNode(final Node<E> node)
+   {
+      removeAfter(node.prev);
+   }
+
    private Iterator[] createIteratorArray(int size)
    {
       return (Iterator[])Array.newInstance(Iterator.class, size);
@@ -174,6 +274,11 @@ public class LinkedListImpl<E> implements LinkedList<E>
 
       size--;
 
+      if (index != null)
+      {
+         index.remove(toRemove);
+      }
+
       if (toRemove.iterCount != 0)
       {
          LinkedListImpl.this.nudgeIterators(toRemove);
@@ -248,7 +353,7 @@ public class LinkedListImpl<E> implements LinkedList<E>
       throw new IllegalStateException("Cannot find iter to remove");
    }
 
-   private static final class Node<E>
+   static final class Node<E>
    {
       Node<E> next;
 
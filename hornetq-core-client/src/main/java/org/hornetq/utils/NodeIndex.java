@@ -0,0 +1,226 @@
+/*
+ * Copyright 2010 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.utils;
+
+/**
+ * Maps the id of each element of a {@link PriorityLinkedListImpl} or an indexed {@link LinkedListImpl}
+ * to its node and priority level,
+ * so an element can be found and unlinked without walking the list.
+ * <p>
+ * An open addressing table with linear probing over parallel arrays, there is no object per entry.
+ * Only the first node added with a given id is indexed, once an id is seen twice the index is
+ * marked incomplete until the list is empty again.
+ * <p>
+ * This class is not thread safe, it is guarded by the owner of the list.
+ */
+final class NodeIndex<E>
+{
+   private static final int INITIAL_CAPACITY = 64;
+
+   private static final float FILL_FACTOR = 0.66f;
+
+   private static final int REFERENCE_SIZE = MemorySize.is64bitArch() ? 8 : 4;
+
+   private static final int ARRAY_HEADER_SIZE = 16;
+
+   private final IDSupplier<E> supplier;
+
+   private long[] keys;
+
+   private LinkedListImpl.Node<E>[] nodes;
+
+   private byte[] levels;
+
+   private int size;
+
+   private int resizeThreshold;
+
+   private boolean complete = true;
+
+   NodeIndex(final IDSupplier<E> supplier)
+   {
+      this.supplier = supplier;
+      allocate(INITIAL_CAPACITY);
+   }
+
+   void put(final LinkedListImpl.Node<E> node, final int level)
+   {
+      long key = supplier.getID(node.val);
+      int bucket = bucket(key);
+
+      while (nodes[bucket] != null)
+      {
+         if (keys[bucket] == key)
+         {
+            // the same id twice in the list, only the first one is indexed
+            complete = false;
+            return;
+         }
+         bucket = (bucket + 1) & (keys.length - 1);
+      }
+
+      keys[bucket] = key;
+      nodes[bucket] = node;
+      levels[bucket] = (byte)level;
+
+      if (++size > resizeThreshold)
+      {
+         rehash(keys.length * 2);
+      }
+   }
+
+   void remove(final LinkedListImpl.Node<E> node)
+   {
+      int bucket = find(supplier.getID(node.val));
+
+      // a duplicate that was never indexed, or another node with the same id
+      if (bucket < 0 || nodes[bucket] != node)
+      {
+         return;
+      }
+
+      removeAt(bucket);
+
+      if (size == 0)
+      {
+         complete = true;
+      }
+      else if (keys.length > INITIAL_CAPACITY && size < keys.length / 8)
+      {
+         rehash(keys.length / 2);
+      }
+   }
+
+   /**
+    * @return the bucket holding the id, or -1 when it is not indexed
+    */
+   int find(final long key)
+   {
+      int bucket = bucket(key);
+
+      while (nodes[bucket] != null)
+      {
+         if (keys[bucket] == key)
+         {
+            return bucket;
+         }
+         bucket = (bucket + 1) & (keys.length - 1);
+      }
+
+      return -1;
+   }
+
+   LinkedListImpl.Node<E> nodeAt(final int bucket)
+   {
+      return nodes[bucket];
+   }
+
+   int levelAt(final int bucket)
+   {
+      return levels[bucket];
+   }
+
+   /**
+    * @return false when some element of the list is not indexed because its id was already there
+    */
+   boolean isComplete()
+   {
+      return complete;
+   }
+
+   int size()
+   {
+      return size;
+   }
+
+   void clear()
+   {
+      allocate(INITIAL_CAPACITY);
+      size = 0;
+      complete = true;
+   }
+
+   /**
+    * @return an estimate of the bytes used by the index
+    */
+   long getMemorySize()
+   {
+      return 3L * ARRAY_HEADER_SIZE + (long)keys.length * (8 + REFERENCE_SIZE + 1);
+   }
+
+   private void removeAt(int bucket)
+   {
+      // shift back the entries that follow in the probe sequence, there are no tombstones
+      int mask = keys.length - 1;
+      int next = (bucket + 1) & mask;
+
+      while (nodes[next] != null)
+      {
+         int ideal = bucket(keys[next]);
+         if (((next - ideal) & mask) >= ((next - bucket) & mask))
+         {
+            keys[bucket] = keys[next];
+            nodes[bucket] = nodes[next];
+            levels[bucket] = levels[next];
+            bucket = next;
+         }
+         next = (next + 1) & mask;
+      }
+
+      nodes[bucket] = null;
+      size--;
+   }
+
+   private int bucket(final long key)
+   {
+      long h = key;
+      h ^= h >>> 33;
+      h *= 0xff51afd7ed558ccdL;
+      h ^= h >>> 33;
+      return (int)h & (keys.length - 1);
+   }
+
+   @SuppressWarnings("unchecked")
+   private void allocate(final int capacity)
+   {
+      keys = new long[capacity];
+      nodes = new LinkedListImpl.Node[capacity];
+      levels = new byte[capacity];
+      resizeThreshold = (int)(capacity * FILL_FACTOR);
+   }
+
+   private void rehash(final int capacity)
+   {
+      long[] oldKeys = keys;
+      LinkedListImpl.Node<E>[] oldNodes = nodes;
+      byte[] oldLevels = levels;
+
+      allocate(capacity);
+
+      for (int i = 0; i < oldNodes.length; i++)
+      {
+         if (oldNodes[i] != null)
+         {
+            int bucket = bucket(oldKeys[i]);
+            while (nodes[bucket] != null)
+            {
+               bucket = (bucket + 1) & (keys.length - 1);
+            }
+            keys[bucket] = oldKeys[i];
+            nodes[bucket] = oldNodes[i];
+            levels[bucket] = oldLevels[i];
+         }
+      }
+   }
+}
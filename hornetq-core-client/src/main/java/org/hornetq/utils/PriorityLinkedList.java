@@ -37,4 +37,31 @@ public interface PriorityLinkedList<T>
    LinkedListIterator<T> iterator();
 
    boolean isEmpty();
+
+   /**
+    * Indexes the elements by the id given by the supplier, null drops the index.
+    */
+   void setIDSupplier(IDSupplier<T> supplier);
+
+   /**
+    * @return true when {@link #getWithID(long)} and {@link #removeWithID(long)} can find any element,
+    *         false when there is no index or some ids are not unique
+    */
+   boolean isIndexedByID();
+
+   /**
+    * @return the element with this id, or null when it isn't indexed
+    */
+   T getWithID(long id);
+
+   /**
+    * Removes the element with this id, iterators positioned on it move on as if they had removed it.
+    * @return the removed element, or null when it isn't indexed
+    */
+   T removeWithID(long id);
+
+   /**
+    * @return an estimate in bytes of the memory used by the id index, 0 when there is none
+    */
+   long getIndexMemorySize();
 }
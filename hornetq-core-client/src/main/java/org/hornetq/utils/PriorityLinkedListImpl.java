@@ -30,7 +30,8 @@ public class PriorityLinkedListImpl<T> implements PriorityLinkedList<T>
 {
    protected LinkedListImpl<T>[] levels;
 
-   private int size;
+   // written under the owner's lock, volatile so the size can be read without it
+   private volatile int size;
 
    private int lastReset;
 
@@ -38,6 +39,8 @@ public class PriorityLinkedListImpl<T> implements PriorityLinkedList<T>
 
    private int lastPriority = -1;
 
+   private NodeIndex<T> index;
+
    public PriorityLinkedListImpl(final int priorities)
    {
       levels = (LinkedListImpl<T>[])Array.newInstance(LinkedListImpl.class, priorities);
@@ -133,6 +136,11 @@ public class PriorityLinkedListImpl<T> implements PriorityLinkedList<T>
       }
 
       size = 0;
+
+      if (index != null)
+      {
+         index.clear();
+      }
    }
 
    public int size()
@@ -150,6 +158,70 @@ public class PriorityLinkedListImpl<T> implements PriorityLinkedList<T>
       return new PriorityLinkedListIterator();
    }
 
+   public void setIDSupplier(final IDSupplier<T> supplier)
+   {
+      index = supplier != null ? new NodeIndex<T>(supplier) : null;
+
+      for (int i = 0; i < levels.length; i++)
+      {
+         levels[i].setIndex(index, i);
+      }
+   }
+
+   public boolean isIndexedByID()
+   {
+      return index != null && index.isComplete();
+   }
+
+   public T getWithID(final long id)
+   {
+      if (index == null)
+      {
+         return null;
+      }
+
+      int bucket = index.find(id);
+
+      return bucket < 0 ? null : index.nodeAt(bucket).val;
+   }
+
+   public T removeWithID(final long id)
+   {
+      if (index == null)
+      {
+         return null;
+      }
+
+      int bucket = index.find(id);
+
+      if (bucket < 0)
+      {
+         return null;
+      }
+
+      LinkedListImpl.Node<T> node = index.nodeAt(bucket);
+
+      int level = index.levelAt(bucket);
+
+      levels[level].removeNode(node);
+
+      size--;
+
+      while (highestPriority >= 0 && levels[highestPriority].size() == 0)
+      {
+         highestPriority--;
+      }
+
+      return node.val;
+   }
+
+   public long getIndexMemorySize()
+   {
+      NodeIndex<T> current = index;
+
+      return current != null ? current.getMemorySize() : 0;
+   }
+
    private class PriorityLinkedListIterator implements LinkedListIterator<T>
    {
       private int index;
@@ -203,6 +203,26 @@ public interface Journal extends HornetQComponent
 
    int getFileSize();
 
+   /**
+    * Returns the number of compactions completed since this journal was created.
+    */
+   long getCompactCount();
+
+   /**
+    * Returns the time in milliseconds the last compaction held appends off the journal.
+    */
+   long getLastCompactPauseTime();
+
+   /**
+    * Returns the longest time in milliseconds any compaction held appends off the journal.
+    */
+   long getMaxCompactPauseTime();
+
+   /**
+    * Returns the total number of bytes compaction has given back from data files.
+    */
+   long getCompactBytesReclaimed();
+
    /**
     * This method will start compact using the compactorExecutor and block up to timeout seconds
     * @param timeout the timeout in seconds or block forever if <= 0
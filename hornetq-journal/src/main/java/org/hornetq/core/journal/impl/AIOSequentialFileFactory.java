@@ -84,7 +84,21 @@ public final class AIOSequentialFileFactory extends AbstractSequentialFileFactor
                                    final boolean logRates,
                                    final IOCriticalErrorListener listener)
    {
-      super(journalDir, true, bufferSize, bufferTimeout, logRates, listener);
+      this(journalDir, bufferSize, bufferTimeout, logRates, false, listener);
+   }
+
+   /**
+    * @param lockFreeBuffer whether the records are appended to the buffer without locking it, see
+    *           {@link TimedBuffer#TimedBuffer(int, int, boolean, boolean)}
+    */
+   public AIOSequentialFileFactory(final String journalDir,
+                                   final int bufferSize,
+                                   final int bufferTimeout,
+                                   final boolean logRates,
+                                   final boolean lockFreeBuffer,
+                                   final IOCriticalErrorListener listener)
+   {
+      super(journalDir, true, bufferSize, bufferTimeout, logRates, lockFreeBuffer, listener);
    }
 
    public SequentialFile createSequentialFile(final String fileName, final int maxIO)
@@ -27,6 +27,7 @@ import org.hornetq.core.journal.impl.dataformat.ByteArrayEncoding;
 import org.hornetq.core.journal.impl.dataformat.JournalAddRecord;
 import org.hornetq.core.journal.impl.dataformat.JournalInternalRecord;
 import org.hornetq.utils.ConcurrentHashSet;
+import org.hornetq.utils.ConcurrentLongHashMap;
 
 /**
  *
@@ -58,7 +59,12 @@ public abstract class AbstractJournalUpdateTask implements JournalReaderCallback
 
    private HornetQBuffer writingChannel;
 
-   private final Set<Long> recordsSnapshot = new ConcurrentHashSet<Long>();
+   // the records that were live when the task started. This is not copied: the journal swaps its record map
+   // for a new one before creating the task, so the old map is no longer changed
+   private final ConcurrentLongHashMap<JournalRecord> recordsSnapshot;
+
+   // ids added to the snapshot while the task is running
+   private final Set<Long> recordsAdded = new ConcurrentHashSet<Long>();
 
    protected final List<JournalFile> newDataFiles = new ArrayList<JournalFile>();
 
@@ -69,7 +75,7 @@ public abstract class AbstractJournalUpdateTask implements JournalReaderCallback
    protected AbstractJournalUpdateTask(final SequentialFileFactory fileFactory,
                                        final JournalImpl journal,
                                        final JournalFilesRepository filesRepository,
-                                       final Set<Long> recordsSnapshot,
+                                       final ConcurrentLongHashMap<JournalRecord> recordsSnapshot,
                                        final long nextOrderingID)
    {
       super();
@@ -77,7 +83,7 @@ public abstract class AbstractJournalUpdateTask implements JournalReaderCallback
       this.filesRepository = filesRepository;
       this.fileFactory = fileFactory;
       this.nextOrderingID = nextOrderingID;
-      this.recordsSnapshot.addAll(recordsSnapshot);
+      this.recordsSnapshot = recordsSnapshot;
    }
 
    // Public --------------------------------------------------------
@@ -193,7 +199,7 @@ public abstract class AbstractJournalUpdateTask implements JournalReaderCallback
 
    public boolean lookupRecord(final long id)
    {
-      return recordsSnapshot.contains(id);
+      return recordsSnapshot.containsKey(id) || recordsAdded.contains(id);
    }
 
    // Package protected ---------------------------------------------
@@ -224,7 +230,7 @@ public abstract class AbstractJournalUpdateTask implements JournalReaderCallback
 
    protected void addToRecordsSnaptshot(final long id)
    {
-      recordsSnapshot.add(id);
+      recordsAdded.add(id);
    }
 
    /**
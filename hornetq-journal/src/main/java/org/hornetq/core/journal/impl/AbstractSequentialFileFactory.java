@@ -68,13 +68,14 @@ abstract class AbstractSequentialFileFactory implements SequentialFileFactory
                                         final int bufferSize,
                                         final int bufferTimeout,
                                         final boolean logRates,
+                                        final boolean lockFreeBuffer,
                                         final IOCriticalErrorListener criticalErrorListener)
    {
       this.journalDir = journalDir;
 
       if (buffered)
       {
-         timedBuffer = new TimedBuffer(bufferSize, bufferTimeout, logRates);
+         timedBuffer = new TimedBuffer(bufferSize, bufferTimeout, logRates, lockFreeBuffer);
       }
       else
       {
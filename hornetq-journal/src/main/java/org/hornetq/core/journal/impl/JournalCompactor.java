@@ -18,7 +18,6 @@ import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
 import org.hornetq.api.core.HornetQBuffer;
@@ -36,6 +35,7 @@ import org.hornetq.core.journal.impl.dataformat.JournalDeleteRecordTX;
 import org.hornetq.core.journal.impl.dataformat.JournalInternalRecord;
 import org.hornetq.core.journal.impl.dataformat.JournalRollbackRecordTX;
 import org.hornetq.journal.HornetQJournalLogger;
+import org.hornetq.utils.ConcurrentLongHashMap;
 
 /**
  * A JournalCompactor
@@ -54,7 +54,7 @@ public class JournalCompactor extends AbstractJournalUpdateTask implements Journ
    // Snapshot of transactions that were pending when the compactor started
    private final Map<Long, PendingTransaction> pendingTransactions = new ConcurrentHashMap<Long, PendingTransaction>();
 
-   private final Map<Long, JournalRecord> newRecords = new HashMap<Long, JournalRecord>();
+   private final ConcurrentLongHashMap<JournalRecord> newRecords = new ConcurrentLongHashMap<JournalRecord>();
 
    private final Map<Long, JournalTransaction> newTransactions = new HashMap<Long, JournalTransaction>();
 
@@ -130,7 +130,7 @@ public class JournalCompactor extends AbstractJournalUpdateTask implements Journ
       return newDataFiles;
    }
 
-   public Map<Long, JournalRecord> getNewRecords()
+   public ConcurrentLongHashMap<JournalRecord> getNewRecords()
    {
       return newRecords;
    }
@@ -143,7 +143,7 @@ public class JournalCompactor extends AbstractJournalUpdateTask implements Journ
    public JournalCompactor(final SequentialFileFactory fileFactory,
                            final JournalImpl journal,
                            final JournalFilesRepository filesRepository,
-                           final Set<Long> recordsSnapshot,
+                           final ConcurrentLongHashMap<JournalRecord> recordsSnapshot,
                            final long firstFileID)
    {
       super(fileFactory, journal, filesRepository, recordsSnapshot, firstFileID);
@@ -632,7 +632,7 @@ public class JournalCompactor extends AbstractJournalUpdateTask implements Journ
    }
 
    @Override
-   public Map<Long, JournalRecord> getRecords()
+   public ConcurrentLongHashMap<JournalRecord> getRecords()
    {
       return newRecords;
    }
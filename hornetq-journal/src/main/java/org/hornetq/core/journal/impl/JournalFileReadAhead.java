@@ -0,0 +1,293 @@
+/*
+ * Copyright 2009 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.core.journal.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.hornetq.core.journal.RecordInfo;
+import org.hornetq.core.journal.SequentialFileFactory;
+
+/**
+ * Reads and decodes journal files on a pool of threads ahead of the loader.
+ * <p>
+ * What is read from each file is kept and handed to the loader's {@link JournalReaderCallback} by
+ * {@link #replay(JournalFile, JournalReaderCallback)}, one file at a time and in file order, so
+ * updates, deletes and transactions are applied exactly as a sequential read would apply them. At
+ * most twice as many files as there are threads are read ahead of the one being replayed.
+ * <p>
+ * The threads are stopped once the last file was replayed or a read failed, and otherwise exit
+ * when they are idle, so a load that gives up half way doesn't leave them behind.
+ */
+final class JournalFileReadAhead
+{
+   private final SequentialFileFactory fileFactory;
+
+   private final List<JournalFile> files;
+
+   private static final long KEEP_ALIVE_SECONDS = 10;
+
+   private final ThreadPoolExecutor executor;
+
+   private final int window;
+
+   private final List<Future<RecordedFile>> reads;
+
+   // the index of the next file to replay
+   private int next;
+
+   public JournalFileReadAhead(final SequentialFileFactory fileFactory,
+                               final List<JournalFile> files,
+                               final int numberOfThreads)
+   {
+      this.fileFactory = fileFactory;
+      this.files = files;
+      this.window = numberOfThreads * 2;
+      this.reads = new ArrayList<Future<RecordedFile>>(files.size());
+
+      executor = new ThreadPoolExecutor(numberOfThreads,
+                                        numberOfThreads,
+                                        KEEP_ALIVE_SECONDS,
+                                        TimeUnit.SECONDS,
+                                        new LinkedBlockingQueue<Runnable>(),
+                                        new ThreadFactory()
+                                        {
+                                           public Thread newThread(final Runnable r)
+                                           {
+                                              Thread thread = new Thread(r, "JournalImpl::LoadReader");
+                                              thread.setDaemon(true);
+                                              return thread;
+                                           }
+                                        });
+      executor.allowCoreThreadTimeOut(true);
+   }
+
+   /**
+    * Replays the records of a file into the callback. Files must be replayed in order.
+    * @return the position after the last record of the file, as
+    *         {@link JournalImpl#readJournalFile(SequentialFileFactory, JournalFile, JournalReaderCallback)}
+    */
+   public int replay(final JournalFile file, final JournalReaderCallback reader) throws Exception
+   {
+      final int index = next;
+      if (index >= files.size() || files.get(index) != file)
+      {
+         executor.shutdownNow();
+         throw new IllegalStateException("File " + file.getFile().getFileName() + " replayed out of order");
+      }
+      next++;
+
+      while (reads.size() < files.size() && reads.size() <= index + window)
+      {
+         final JournalFile toRead = files.get(reads.size());
+         reads.add(executor.submit(new Callable<RecordedFile>()
+         {
+            public RecordedFile call() throws Exception
+            {
+               RecordedFile recorded = new RecordedFile();
+               recorded.lastDataPos = JournalImpl.readJournalFile(fileFactory, toRead, recorded);
+               return recorded;
+            }
+         }));
+      }
+
+      RecordedFile recorded;
+      try
+      {
+         recorded = reads.set(index, null).get();
+      }
+      catch (ExecutionException e)
+      {
+         executor.shutdownNow();
+         Throwable cause = e.getCause();
+         if (cause instanceof Exception)
+         {
+            throw (Exception)cause;
+         }
+         if (cause instanceof Error)
+         {
+            throw (Error)cause;
+         }
+         throw e;
+      }
+
+      if (next == files.size())
+      {
+         executor.shutdown();
+      }
+
+      recorded.replay(reader);
+
+      return recorded.lastDataPos;
+   }
+
+   /**
+    * Keeps the callbacks of a file in the order they were read.
+    */
+   private static final class RecordedFile implements JournalReaderCallback
+   {
+      private static final byte ADD = 0;
+
+      private static final byte UPDATE = 1;
+
+      private static final byte DELETE = 2;
+
+      private static final byte ADD_TX = 3;
+
+      private static final byte UPDATE_TX = 4;
+
+      private static final byte DELETE_TX = 5;
+
+      private static final byte PREPARE = 6;
+
+      private static final byte COMMIT = 7;
+
+      private static final byte ROLLBACK = 8;
+
+      private static final byte DATA_FILE = 9;
+
+      private final List<ReadRecord> records = new ArrayList<ReadRecord>();
+
+      private int lastDataPos;
+
+      void replay(final JournalReaderCallback reader) throws Exception
+      {
+         for (ReadRecord record : records)
+         {
+            switch (record.type)
+            {
+               case ADD:
+                  reader.onReadAddRecord(record.info);
+                  break;
+               case UPDATE:
+                  reader.onReadUpdateRecord(record.info);
+                  break;
+               case DELETE:
+                  reader.onReadDeleteRecord(record.id);
+                  break;
+               case ADD_TX:
+                  reader.onReadAddRecordTX(record.id, record.info);
+                  break;
+               case UPDATE_TX:
+                  reader.onReadUpdateRecordTX(record.id, record.info);
+                  break;
+               case DELETE_TX:
+                  reader.onReadDeleteRecordTX(record.id, record.info);
+                  break;
+               case PREPARE:
+                  reader.onReadPrepareRecord(record.id, record.extraData, record.numberOfRecords);
+                  break;
+               case COMMIT:
+                  reader.onReadCommitRecord(record.id, record.numberOfRecords);
+                  break;
+               case ROLLBACK:
+                  reader.onReadRollbackRecord(record.id);
+                  break;
+               case DATA_FILE:
+                  reader.markAsDataFile(record.file);
+                  break;
+               default:
+                  throw new IllegalStateException("Unknown record type " + record.type);
+            }
+         }
+      }
+
+      public void onReadAddRecord(final RecordInfo info)
+      {
+         records.add(new ReadRecord(ADD, 0, info));
+      }
+
+      public void onReadUpdateRecord(final RecordInfo info)
+      {
+         records.add(new ReadRecord(UPDATE, 0, info));
+      }
+
+      public void onReadDeleteRecord(final long recordID)
+      {
+         records.add(new ReadRecord(DELETE, recordID, null));
+      }
+
+      public void onReadAddRecordTX(final long transactionID, final RecordInfo info)
+      {
+         records.add(new ReadRecord(ADD_TX, transactionID, info));
+      }
+
+      public void onReadUpdateRecordTX(final long transactionID, final RecordInfo info)
+      {
+         records.add(new ReadRecord(UPDATE_TX, transactionID, info));
+      }
+
+      public void onReadDeleteRecordTX(final long transactionID, final RecordInfo info)
+      {
+         records.add(new ReadRecord(DELETE_TX, transactionID, info));
+      }
+
+      public void onReadPrepareRecord(final long transactionID, final byte[] extraData, final int numberOfRecords)
+      {
+         ReadRecord record = new ReadRecord(PREPARE, transactionID, null);
+         record.extraData = extraData;
+         record.numberOfRecords = numberOfRecords;
+         records.add(record);
+      }
+
+      public void onReadCommitRecord(final long transactionID, final int numberOfRecords)
+      {
+         ReadRecord record = new ReadRecord(COMMIT, transactionID, null);
+         record.numberOfRecords = numberOfRecords;
+         records.add(record);
+      }
+
+      public void onReadRollbackRecord(final long transactionID)
+      {
+         records.add(new ReadRecord(ROLLBACK, transactionID, null));
+      }
+
+      public void markAsDataFile(final JournalFile file)
+      {
+         ReadRecord record = new ReadRecord(DATA_FILE, 0, null);
+         record.file = file;
+         records.add(record);
+      }
+   }
+
+   private static final class ReadRecord
+   {
+      final byte type;
+
+      // the record id for deletes, the transaction id for transactional records
+      final long id;
+
+      final RecordInfo info;
+
+      byte[] extraData;
+
+      int numberOfRecords;
+
+      JournalFile file;
+
+      ReadRecord(final byte type, final long id, final RecordInfo info)
+      {
+         this.type = type;
+         this.id = id;
+         this.info = info;
+      }
+   }
+}
@@ -26,8 +26,6 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -66,6 +64,7 @@ import org.hornetq.core.journal.impl.dataformat.JournalRollbackRecordTX;
 import org.hornetq.journal.HornetQJournalBundle;
 import org.hornetq.journal.HornetQJournalLogger;
 import org.hornetq.utils.ConcurrentHashSet;
+import org.hornetq.utils.ConcurrentLongHashMap;
 import org.hornetq.utils.DataConstants;
 
 /**
@@ -179,17 +178,29 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
 
    private final JournalFilesRepository filesRepository;
 
-   // Compacting may replace this structure
-   private final ConcurrentMap<Long, JournalRecord> records = new ConcurrentHashMap<Long, JournalRecord>();
+   // Compacting replaces this structure
+   private volatile ConcurrentLongHashMap<JournalRecord> records = new ConcurrentLongHashMap<JournalRecord>();
 
    // Compacting may replace this structure
-   private final ConcurrentMap<Long, JournalTransaction> transactions = new ConcurrentHashMap<Long, JournalTransaction>();
+   private final ConcurrentLongHashMap<JournalTransaction> transactions = new ConcurrentLongHashMap<JournalTransaction>();
 
    // This will be set only while the JournalCompactor is being executed
    private volatile JournalCompactor compactor;
 
    private final AtomicBoolean compactorRunning = new AtomicBoolean();
 
+   // number of threads reading files ahead during load, 1 reads the files one at a time
+   private volatile int loadThreads = 1;
+
+   // Compacting statistics. These are only written by compact(), which is synchronized
+   private volatile long compactCount;
+
+   private volatile long lastCompactPauseTime;
+
+   private volatile long maxCompactPauseTime;
+
+   private volatile long compactBytesReclaimed;
+
    private ExecutorService filesExecutor = null;
 
    private ExecutorService compactorExecutor = null;
@@ -349,7 +360,7 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
       latch.await();
    }
 
-   public Map<Long, JournalRecord> getRecords()
+   public ConcurrentLongHashMap<JournalRecord> getRecords()
    {
       return records;
    }
@@ -1470,9 +1481,12 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
 
          onCompactStart();
 
+         long pauseTime = 0;
+
          // We need to guarantee that the journal is frozen for this short time
          // We don't freeze the journal as we compact, only for the short time where we replace records
          journalLock.writeLock().lock();
+         long lockTime = System.nanoTime();
          try
          {
             if (state != JournalState.LOADED)
@@ -1499,24 +1513,27 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
                return;
             }
 
+            // The current map is handed to the compactor as its snapshot and a new one takes its place,
+            // so neither needs to be copied while the journal is locked
+            ConcurrentLongHashMap<JournalRecord> recordsSnapshot = records;
+
+            records = new ConcurrentLongHashMap<JournalRecord>();
+
             compactor = new JournalCompactor(fileFactory,
                                              this,
                                              filesRepository,
-                                             records.keySet(),
+                                             recordsSnapshot,
                                              dataFilesToProcess.get(0).getFileID());
 
-            for (Map.Entry<Long, JournalTransaction> entry : transactions.entrySet())
+            for (JournalTransaction transaction : transactions.values())
             {
-               compactor.addPendingTransaction(entry.getKey(), entry.getValue().getPositiveArray());
-               entry.getValue().setCompacting();
+               compactor.addPendingTransaction(transaction.getId(), transaction.getPositiveArray());
+               transaction.setCompacting();
             }
-
-            // We will calculate the new records during compacting, what will take the position the records will take
-            // after compacting
-            records.clear();
          }
          finally
          {
+            pauseTime += System.nanoTime() - lockTime;
             journalLock.writeLock().unlock();
          }
 
@@ -1554,6 +1571,7 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
          SequentialFile controlFile = createControlFile(dataFilesToProcess, compactor.getNewDataFiles(), null);
 
          journalLock.writeLock().lock();
+         lockTime = System.nanoTime();
          try
          {
             // Need to clear the compactor here, or the replay commands will send commands back (infinite loop)
@@ -1563,11 +1581,11 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
 
             newDatafiles = localCompactor.getNewDataFiles();
 
-            // Restore newRecords created during compacting
-            for (Map.Entry<Long, JournalRecord> newRecordEntry : localCompactor.getNewRecords().entrySet())
-            {
-               records.put(newRecordEntry.getKey(), newRecordEntry.getValue());
-            }
+            // The compacted records take the place of the current map. Only the records added while
+            // compacting need to be moved over
+            ConcurrentLongHashMap<JournalRecord> compactedRecords = localCompactor.getNewRecords();
+            compactedRecords.putAll(records);
+            records = compactedRecords;
 
             // Restore compacted dataFiles
             for (int i = newDatafiles.size() - 1; i >= 0; i--)
@@ -1617,6 +1635,7 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
          }
          finally
          {
+            pauseTime += System.nanoTime() - lockTime;
             journalLock.writeLock().unlock();
          }
 
@@ -1624,6 +1643,9 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
          renameFiles(dataFilesToProcess, newDatafiles);
          deleteControlFile(controlFile);
 
+         updateCompactStatistics(TimeUnit.NANOSECONDS.toMillis(pauseTime),
+                                 (long)(dataFilesToProcess.size() - newDatafiles.size()) * fileSize);
+
          HornetQJournalLogger.LOGGER.debug("Finished compacting on journal");
 
       }
@@ -1734,13 +1756,24 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
       // AtomicLong is used only as a reference, not as an Atomic value
       final AtomicLong maxID = new AtomicLong(-1);
 
+      // Files are read and decoded in parallel when there are loader threads, but always replayed in order
+      final JournalFileReadAhead readAhead;
+      if (loadThreads > 1 && orderedFiles.size() > 1)
+      {
+         readAhead = new JournalFileReadAhead(fileFactory, orderedFiles, loadThreads);
+      }
+      else
+      {
+         readAhead = null;
+      }
+
       for (final JournalFile file : orderedFiles)
       {
          JournalImpl.trace("Loading file " + file.getFile().getFileName());
 
          final AtomicBoolean hasData = new AtomicBoolean(false);
 
-         int resultLastPost = JournalImpl.readJournalFile(fileFactory, file, new JournalReaderCallback()
+         int resultLastPost = replayJournalFile(readAhead, file, new JournalReaderCallback()
          {
 
             private void checkID(final long id)
@@ -2463,6 +2496,40 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
       return records.size();
    }
 
+   /**
+    * Sets the number of threads reading and decoding files ahead of the replay during
+    * {@link #load(LoaderCallback)}. The files are always replayed in order.
+    */
+   public void setLoadThreads(final int loadThreads)
+   {
+      this.loadThreads = loadThreads;
+   }
+
+   public int getLoadThreads()
+   {
+      return loadThreads;
+   }
+
+   public long getCompactCount()
+   {
+      return compactCount;
+   }
+
+   public long getLastCompactPauseTime()
+   {
+      return lastCompactPauseTime;
+   }
+
+   public long getMaxCompactPauseTime()
+   {
+      return maxCompactPauseTime;
+   }
+
+   public long getCompactBytesReclaimed()
+   {
+      return compactBytesReclaimed;
+   }
+
 
    protected SequentialFile createControlFile(final List<JournalFile> files,
                                               final List<JournalFile> newFiles,
@@ -2562,6 +2629,37 @@ public class JournalImpl extends JournalBase implements TestableJournal, Journal
    }
 
    // Private
+
+   private void updateCompactStatistics(final long pauseTime, final long bytesReclaimed)
+   {
+      lastCompactPauseTime = pauseTime;
+      if (pauseTime > maxCompactPauseTime)
+      {
+         maxCompactPauseTime = pauseTime;
+      }
+      if (bytesReclaimed > 0)
+      {
+         compactBytesReclaimed += bytesReclaimed;
+      }
+      compactCount++;
+   }
+
+   /**
+    * Reads the file, or replays what the read-ahead threads read from it if there are any.
+    */
+   private int replayJournalFile(final JournalFileReadAhead readAhead,
+                                 final JournalFile file,
+                                 final JournalReaderCallback reader) throws Exception
+   {
+      if (readAhead == null)
+      {
+         return JournalImpl.readJournalFile(fileFactory, file, reader);
+      }
+      else
+      {
+         return readAhead.replay(file, reader);
+      }
+   }
    // -----------------------------------------------------------------------------
 
    /**
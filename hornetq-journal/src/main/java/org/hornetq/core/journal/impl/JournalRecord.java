@@ -13,10 +13,7 @@
 
 package org.hornetq.core.journal.impl;
 
-import java.util.ArrayList;
-import java.util.List;
-
-import org.hornetq.api.core.Pair;
+import java.util.Arrays;
 
 /**
  * This holds the relationship a record has with other files in regard to reference counting.
@@ -24,6 +21,9 @@ import org.hornetq.api.core.Pair;
  *
  * Used on the ref-count for reclaiming
  *
+ * There is one of these per live record, so it is kept small: the files holding updates and their
+ * sizes are kept in arrays, allocated only once the record is updated.
+ *
  * @author <a href="mailto:clebert.suconic@jboss.org">Clebert Suconic</a>
  * */
 public class JournalRecord
@@ -32,7 +32,7 @@ public class JournalRecord
 
    private final int size;
 
-   private List<Pair<JournalFile, Integer>> updateFiles;
+   private UpdateFiles updateFiles;
 
    public JournalRecord(final JournalFile addFile, final int size)
    {
@@ -49,10 +49,10 @@ public class JournalRecord
    {
       if (updateFiles == null)
       {
-         updateFiles = new ArrayList<Pair<JournalFile, Integer>>();
+         updateFiles = new UpdateFiles();
       }
 
-      updateFiles.add(new Pair<JournalFile, Integer>(updateFile, size));
+      updateFiles.add(updateFile, size);
 
       updateFile.incPosCount();
 
@@ -66,10 +66,10 @@ public class JournalRecord
 
       if (updateFiles != null)
       {
-         for (Pair<JournalFile, Integer> updFile : updateFiles)
+         for (int i = 0; i < updateFiles.count; i++)
          {
-            file.incNegCount(updFile.getA());
-            updFile.getA().decSize(updFile.getB());
+            file.incNegCount(updateFiles.files[i]);
+            updateFiles.files[i].decSize(updateFiles.sizes[i]);
          }
       }
    }
@@ -83,9 +83,9 @@ public class JournalRecord
       if (updateFiles != null)
       {
 
-         for (Pair<JournalFile, Integer> update : updateFiles)
+         for (int i = 0; i < updateFiles.count; i++)
          {
-            buffer.append(", update=" + update.getA().getFile().getFileName());
+            buffer.append(", update=" + updateFiles.files[i].getFile().getFileName());
          }
 
       }
@@ -94,4 +94,25 @@ public class JournalRecord
 
       return buffer.toString();
    }
+
+   private static final class UpdateFiles
+   {
+      private JournalFile[] files = new JournalFile[2];
+
+      private int[] sizes = new int[2];
+
+      private int count;
+
+      void add(final JournalFile file, final int size)
+      {
+         if (count == files.length)
+         {
+            files = Arrays.copyOf(files, count * 2);
+            sizes = Arrays.copyOf(sizes, count * 2);
+         }
+         files[count] = file;
+         sizes[count] = size;
+         count++;
+      }
+   }
 }
@@ -0,0 +1,535 @@
+/*
+ * Copyright 2009 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.core.journal.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.hornetq.api.core.HornetQException;
+import org.hornetq.api.core.HornetQExceptionType;
+import org.hornetq.api.core.HornetQIOErrorException;
+import org.hornetq.api.core.HornetQIllegalStateException;
+import org.hornetq.core.journal.IOAsyncTask;
+import org.hornetq.core.journal.SequentialFile;
+import org.hornetq.core.journal.SequentialFileFactory;
+import org.hornetq.journal.HornetQJournalBundle;
+import org.hornetq.journal.HornetQJournalLogger;
+
+/**
+ * A SequentialFile backed by a {@link MappedByteBuffer}.
+ * <p>
+ * Writes are plain memory copies into the mapping, and the only system call on the write path is
+ * the {@link MappedByteBuffer#force()} done when a sync is requested, which with a TimedBuffer
+ * happens once per flush.
+ * <p>
+ * Journal files are pre-filled so they are mapped in a single shot. Page files are not
+ * pre-allocated, so their mapping grows in chunks of {@link #GROWTH_CHUNK} bytes and the file is
+ * trimmed back to what was written when it is closed.
+ */
+public final class MappedSequentialFile extends AbstractSequentialFile
+{
+   private static final int GROWTH_CHUNK = 1024 * 1024;
+
+   private FileChannel channel;
+
+   private RandomAccessFile rfile;
+
+   /**
+    * Guards the mapping. This is not the file's monitor because close() holds that one while
+    * waiting for the writer executor, which may be syncing the mapping.
+    */
+   private final Object mappingLock = new Object();
+
+   private MappedByteBuffer mappedBuffer;
+
+   /** The end of the data written (or pre-filled) on the file. The mapping may go beyond it. */
+   private volatile long logicalSize;
+
+   /** The write semaphore here is only used when writing asynchronously */
+   private Semaphore maxIOSemaphore;
+
+   private final int defaultMaxIO;
+
+   private int maxIO;
+
+   public MappedSequentialFile(final SequentialFileFactory factory,
+                               final String directory,
+                               final String fileName,
+                               final int maxIO,
+                               final Executor writerExecutor)
+   {
+      super(directory, new File(directory + "/" + fileName), factory, writerExecutor);
+      defaultMaxIO = maxIO;
+   }
+
+   public MappedSequentialFile(final SequentialFileFactory factory,
+                               final File file,
+                               final int maxIO,
+                               final Executor writerExecutor)
+   {
+      super(file.getParent(), new File(file.getPath()), factory, writerExecutor);
+      defaultMaxIO = maxIO;
+   }
+
+   public int getAlignment()
+   {
+      return 1;
+   }
+
+   public int calculateBlockStart(final int position)
+   {
+      return position;
+   }
+
+   public synchronized boolean isOpen()
+   {
+      return channel != null;
+   }
+
+   public synchronized void open() throws IOException
+   {
+      open(defaultMaxIO, true);
+   }
+
+   public synchronized void open(final int maxIO, final boolean useExecutor) throws IOException
+   {
+      try
+      {
+         rfile = new RandomAccessFile(getFile(), "rw");
+
+         channel = rfile.getChannel();
+
+         fileSize = channel.size();
+
+         logicalSize = fileSize;
+
+         // just like a newly opened FileChannel, reads and writes start at the beginning of the file
+         position.set(0);
+      }
+      catch (IOException e)
+      {
+         factory.onIOError(new HornetQIOErrorException(e.getMessage(), e), e.getMessage(), this);
+         throw e;
+      }
+
+      if (writerExecutor != null && useExecutor)
+      {
+         maxIOSemaphore = new Semaphore(maxIO);
+         this.maxIO = maxIO;
+      }
+   }
+
+   public synchronized void fill(final int position, final int size, final byte fillCharacter) throws IOException
+   {
+      ByteBuffer bb = ByteBuffer.allocate(size);
+
+      for (int i = 0; i < size; i++)
+      {
+         bb.put(fillCharacter);
+      }
+
+      bb.flip();
+
+      synchronized (mappingLock)
+      {
+         // the file is being resized, so the next access will map it again
+         unmap();
+      }
+
+      try
+      {
+         channel.write(bb, position);
+         channel.force(false);
+      }
+      catch (IOException e)
+      {
+         factory.onIOError(new HornetQIOErrorException(e.getMessage(), e), e.getMessage(), this);
+         throw e;
+      }
+
+      fileSize = channel.size();
+
+      logicalSize = Math.max(logicalSize, position + size);
+   }
+
+   public synchronized void waitForClose() throws InterruptedException
+   {
+      while (isOpen())
+      {
+         wait();
+      }
+   }
+
+   @Override
+   public synchronized void close() throws IOException, InterruptedException, HornetQException
+   {
+      super.close();
+
+      if (maxIOSemaphore != null)
+      {
+         while (!maxIOSemaphore.tryAcquire(maxIO, 60, TimeUnit.SECONDS))
+         {
+            HornetQJournalLogger.LOGGER.errorClosingFile(getFileName());
+         }
+      }
+
+      maxIOSemaphore = null;
+
+      synchronized (mappingLock)
+      {
+         unmap();
+      }
+
+      try
+      {
+         if (channel != null)
+         {
+            // the last growth chunk of a page file is not part of the data
+            if (channel.size() > logicalSize)
+            {
+               channel.truncate(logicalSize);
+            }
+            channel.close();
+         }
+
+         if (rfile != null)
+         {
+            rfile.close();
+         }
+      }
+      catch (IOException e)
+      {
+         factory.onIOError(new HornetQIOErrorException(e.getMessage(), e), e.getMessage(), this);
+         throw e;
+      }
+
+      channel = null;
+
+      rfile = null;
+
+      notifyAll();
+   }
+
+   public int read(final ByteBuffer bytes) throws Exception
+   {
+      return read(bytes, null);
+   }
+
+   public synchronized int read(final ByteBuffer bytes, final IOAsyncTask callback) throws IOException,
+                                                                                   HornetQIllegalStateException
+   {
+      try
+      {
+         if (channel == null)
+         {
+            throw new HornetQIllegalStateException("File " + this.getFileName() + " has a null channel");
+         }
+
+         final long readPosition = position.get();
+
+         final int bytesRead = (int)Math.min(bytes.remaining(), Math.max(0, logicalSize - readPosition));
+
+         if (bytesRead > 0)
+         {
+            synchronized (mappingLock)
+            {
+               ByteBuffer source = map(readPosition + bytesRead).duplicate();
+               source.limit((int)readPosition + bytesRead);
+               source.position((int)readPosition);
+               bytes.put(source);
+            }
+            position.addAndGet(bytesRead);
+         }
+
+         if (callback != null)
+         {
+            callback.done();
+         }
+
+         bytes.flip();
+
+         return bytesRead == 0 && readPosition >= logicalSize ? -1 : bytesRead;
+      }
+      catch (IOException e)
+      {
+         if (callback != null)
+         {
+            callback.onError(HornetQExceptionType.IO_ERROR.getCode(), e.getLocalizedMessage());
+         }
+
+         factory.onIOError(new HornetQIOErrorException(e.getMessage(), e), e.getMessage(), this);
+
+         throw e;
+      }
+   }
+
+   public void sync() throws IOException
+   {
+      synchronized (mappingLock)
+      {
+         if (mappedBuffer != null)
+         {
+            mappedBuffer.force();
+         }
+      }
+   }
+
+   public synchronized long size() throws IOException
+   {
+      if (channel == null)
+      {
+         return getFile().length();
+      }
+
+      return logicalSize;
+   }
+
+   @Override
+   public String toString()
+   {
+      return "MappedSequentialFile " + getFile();
+   }
+
+   public SequentialFile cloneFile()
+   {
+      return new MappedSequentialFile(factory, getFile(), maxIO, writerExecutor);
+   }
+
+   public void writeDirect(final ByteBuffer bytes, final boolean sync, final IOAsyncTask callback)
+   {
+      if (callback == null)
+      {
+         throw new NullPointerException("callback parameter need to be set");
+      }
+
+      try
+      {
+         internalWrite(bytes, sync, callback);
+      }
+      catch (Exception e)
+      {
+         callback.onError(HornetQExceptionType.GENERIC_EXCEPTION.getCode(), e.getMessage());
+      }
+   }
+
+   public void writeDirect(final ByteBuffer bytes, final boolean sync) throws Exception
+   {
+      internalWrite(bytes, sync, null);
+   }
+
+   public void writeInternal(final ByteBuffer bytes) throws Exception
+   {
+      internalWrite(bytes, true, null);
+   }
+
+   @Override
+   protected ByteBuffer newBuffer(int size, final int limit)
+   {
+      // The buffer is only a staging area for the copy into the mapping, no need to go beyond the limit
+      size = limit;
+
+      return super.newBuffer(size, limit);
+   }
+
+   private void internalWrite(final ByteBuffer bytes, final boolean sync, final IOAsyncTask callback) throws IOException,
+                                                                                                       HornetQIOErrorException,
+                                                                                                       InterruptedException
+   {
+      if (!isOpen())
+      {
+         if (callback != null)
+         {
+            callback.onError(HornetQExceptionType.IO_ERROR.getCode(), "File not opened");
+         }
+         else
+         {
+            throw HornetQJournalBundle.BUNDLE.fileNotOpened();
+         }
+         return;
+      }
+
+      try
+      {
+         copyToMapping(bytes);
+      }
+      catch (IOException e)
+      {
+         factory.onIOError(new HornetQIOErrorException(e.getMessage(), e), e.getMessage(), this);
+         if (callback != null)
+         {
+            callback.onError(HornetQExceptionType.IO_ERROR.getCode(), e.getMessage());
+         }
+         return;
+      }
+
+      if (maxIOSemaphore == null || callback == null)
+      {
+         // if maxIOSemaphore == null, that means we are not using executors and the writes are synchronous
+         try
+         {
+            doSyncAndComplete(sync, callback);
+         }
+         catch (IOException e)
+         {
+            factory.onIOError(new HornetQIOErrorException(e.getMessage(), e), e.getMessage(), this);
+         }
+      }
+      else
+      {
+         // The copy is already done, only the force and the callbacks are moved to the executor
+         // so the TimedBuffer can keep filling up while the pages are being synced
+         maxIOSemaphore.acquire();
+
+         writerExecutor.execute(new Runnable()
+         {
+            public void run()
+            {
+               try
+               {
+                  try
+                  {
+                     doSyncAndComplete(sync, callback);
+                  }
+                  catch (IOException e)
+                  {
+                     HornetQJournalLogger.LOGGER.errorSubmittingWrite(e);
+                     factory.onIOError(new HornetQIOErrorException(e.getMessage(), e), e.getMessage(), MappedSequentialFile.this);
+                     callback.onError(HornetQExceptionType.IO_ERROR.getCode(), e.getMessage());
+                  }
+                  catch (Throwable e)
+                  {
+                     HornetQJournalLogger.LOGGER.errorSubmittingWrite(e);
+                     callback.onError(HornetQExceptionType.IO_ERROR.getCode(), e.getMessage());
+                  }
+               }
+               finally
+               {
+                  maxIOSemaphore.release();
+               }
+            }
+         });
+      }
+   }
+
+   private void doSyncAndComplete(final boolean sync, final IOAsyncTask callback) throws IOException
+   {
+      if (sync)
+      {
+         sync();
+      }
+
+      if (callback != null)
+      {
+         callback.done();
+      }
+   }
+
+   private void copyToMapping(final ByteBuffer bytes) throws IOException
+   {
+      synchronized (mappingLock)
+      {
+         final long writePosition = position.get();
+
+         final long end = writePosition + bytes.remaining();
+
+         ByteBuffer target = map(end).duplicate();
+
+         target.position((int)writePosition);
+
+         target.put(bytes);
+
+         position.set(end);
+
+         if (end > logicalSize)
+         {
+            logicalSize = end;
+         }
+      }
+   }
+
+   /**
+    * Returns a mapping covering at least {@code requiredSize} bytes, remapping the file if needed.
+    * Must be called holding the mappingLock.
+    */
+   private MappedByteBuffer map(final long requiredSize) throws IOException
+   {
+      if (mappedBuffer == null || mappedBuffer.capacity() < requiredSize)
+      {
+         long mapSize;
+
+         if (requiredSize <= fileSize)
+         {
+            mapSize = fileSize;
+         }
+         else
+         {
+            mapSize = (requiredSize + GROWTH_CHUNK - 1) / GROWTH_CHUNK * GROWTH_CHUNK;
+         }
+
+         if (mapSize > Integer.MAX_VALUE)
+         {
+            throw new IOException("File " + getFileName() + " is too big to be mapped: " + mapSize);
+         }
+
+         unmap();
+
+         mappedBuffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, mapSize);
+      }
+
+      return mappedBuffer;
+   }
+
+   /**
+    * Releases the current mapping. The JDK only unmaps a file when the buffer is garbage collected,
+    * which could keep deleted journal and page files on disk for a long time, so we call the
+    * buffer's cleaner when it is available. Must be called holding the mappingLock.
+    */
+   private void unmap()
+   {
+      if (mappedBuffer == null)
+      {
+         return;
+      }
+
+      final MappedByteBuffer buffer = mappedBuffer;
+
+      mappedBuffer = null;
+
+      try
+      {
+         Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+         cleanerMethod.setAccessible(true);
+         Object cleaner = cleanerMethod.invoke(buffer);
+         if (cleaner != null)
+         {
+            Method cleanMethod = cleaner.getClass().getMethod("clean");
+            cleanMethod.setAccessible(true);
+            cleanMethod.invoke(cleaner);
+         }
+      }
+      catch (Throwable e)
+      {
+         // we can just have good faith on GC
+         HornetQJournalLogger.LOGGER.debug("Could not unmap " + getFileName() + ", leaving it to GC", e);
+      }
+   }
+}
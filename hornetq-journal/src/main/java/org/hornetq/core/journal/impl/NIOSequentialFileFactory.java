@@ -77,7 +77,22 @@ public class NIOSequentialFileFactory extends AbstractSequentialFileFactory
                                    final boolean logRates,
                                    final IOCriticalErrorListener listener)
    {
-      super(journalDir, buffered, bufferSize, bufferTimeout, logRates, listener);
+      this(journalDir, buffered, bufferSize, bufferTimeout, logRates, false, listener);
+   }
+
+   /**
+    * @param lockFreeBuffer whether the records are appended to the buffer without locking it, see
+    *           {@link TimedBuffer#TimedBuffer(int, int, boolean, boolean)}
+    */
+   public NIOSequentialFileFactory(final String journalDir,
+                                   final boolean buffered,
+                                   final int bufferSize,
+                                   final int bufferTimeout,
+                                   final boolean logRates,
+                                   final boolean lockFreeBuffer,
+                                   final IOCriticalErrorListener listener)
+   {
+      super(journalDir, buffered, bufferSize, bufferTimeout, logRates, lockFreeBuffer, listener);
    }
 
    public SequentialFile createSequentialFile(final String fileName, int maxIO)
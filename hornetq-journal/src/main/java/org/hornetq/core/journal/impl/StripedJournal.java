@@ -0,0 +1,952 @@
+/*
+ * Copyright 2009 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.core.journal.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.hornetq.core.journal.EncodingSupport;
+import org.hornetq.core.journal.IOCompletion;
+import org.hornetq.core.journal.JournalLoadInformation;
+import org.hornetq.core.journal.LoaderCallback;
+import org.hornetq.core.journal.PreparedTransactionInfo;
+import org.hornetq.core.journal.RecordInfo;
+import org.hornetq.core.journal.SequentialFileFactory;
+import org.hornetq.core.journal.TransactionFailureCallback;
+import org.hornetq.core.journal.impl.dataformat.ByteArrayEncoding;
+import org.hornetq.journal.HornetQJournalLogger;
+import org.hornetq.utils.ReusableLatch;
+
+/**
+ * A Journal spreading its records over several {@link JournalImpl}s (stripes), each one with its
+ * own directory, files and {@link TimedBuffer}, so appends on different stripes don't contend on
+ * the same lock and the same disk.
+ * <p>
+ * Records are routed by their ID, so every operation on a given record always goes to the same
+ * stripe. A transaction touching a single stripe is passed straight through. A transaction touching
+ * several stripes is committed with a two-phase protocol: a marker record (with the transaction ID
+ * as its ID) is added to the transaction in every stripe, every stripe is prepared and synced, and
+ * only then the commit records are appended. Once all the commits are on disk the markers are
+ * deleted.
+ * <p>
+ * On load, an internally prepared transaction is committed if any stripe holds a committed marker
+ * for it, and rolled back otherwise. XA transactions prepared on several stripes are merged back
+ * into a single {@link PreparedTransactionInfo}.
+ * <p>
+ * The number of stripes must not change once data was written, as the routing would not match the
+ * data on disk. Replication is not supported.
+ */
+public final class StripedJournal extends JournalBase
+{
+   /**
+    * User record type reserved for the commit markers. It is never exposed to the caller.
+    */
+   public static final byte STRIPE_MARKER_RECORD = Byte.MAX_VALUE;
+
+   private static final byte[] INTERNAL_MARKER = new byte[]{0};
+
+   private static final byte[] XA_MARKER = new byte[]{1};
+
+   private static final Comparator<RecordInfo> RECORD_ORDER = new Comparator<RecordInfo>()
+   {
+      public int compare(final RecordInfo r1, final RecordInfo r2)
+      {
+         return r1.id < r2.id ? -1 : (r1.id == r2.id ? 0 : 1);
+      }
+   };
+
+   private static final ByteArrayEncoding EMPTY_PREPARE_DATA = new ByteArrayEncoding(new byte[0]);
+
+   private final JournalImpl[] stripes;
+
+   private final Executor executor;
+
+   private final ConcurrentMap<Long, TransactionStripes> transactions = new ConcurrentHashMap<Long, TransactionStripes>();
+
+   /** Commits whose markers are still to be deleted */
+   private final ReusableLatch pendingMarkers = new ReusableLatch(0);
+
+   /**
+    * @param stripes the journals holding the data. Their order must be kept between restarts.
+    * @param executor used to delete the commit markers once a transaction is on disk
+    */
+   public StripedJournal(final JournalImpl[] stripes, final Executor executor)
+   {
+      super(stripes[0].getFileFactory().isSupportsCallbacks(), stripes[0].getFileSize());
+      this.stripes = stripes;
+      this.executor = executor;
+   }
+
+   public int getNumberOfStripes()
+   {
+      return stripes.length;
+   }
+
+   public JournalImpl getStripe(final int index)
+   {
+      return stripes[index];
+   }
+
+   int stripeFor(final long id)
+   {
+      return (int)Math.abs(id % stripes.length);
+   }
+
+   // HornetQComponent implementation -------------------------------
+
+   public synchronized void start() throws Exception
+   {
+      for (JournalImpl stripe : stripes)
+      {
+         stripe.start();
+      }
+   }
+
+   public synchronized void stop() throws Exception
+   {
+      if (!pendingMarkers.await(10, TimeUnit.SECONDS))
+      {
+         // they will be removed on the next load
+         HornetQJournalLogger.LOGGER.debug("Stopping with " + pendingMarkers.getCount() +
+                                           " transaction markers still to be deleted");
+      }
+
+      for (JournalImpl stripe : stripes)
+      {
+         stripe.stop();
+      }
+      transactions.clear();
+   }
+
+   public synchronized boolean isStarted()
+   {
+      return stripes[0].isStarted();
+   }
+
+   // Non transactional operations ----------------------------------
+
+   @Override
+   public void appendAddRecord(final long id,
+                               final byte recordType,
+                               final EncodingSupport record,
+                               final boolean sync,
+                               final IOCompletion callback) throws Exception
+   {
+      stripes[stripeFor(id)].appendAddRecord(id, recordType, record, sync, callback);
+   }
+
+   @Override
+   public void appendUpdateRecord(final long id,
+                                  final byte recordType,
+                                  final EncodingSupport record,
+                                  final boolean sync,
+                                  final IOCompletion callback) throws Exception
+   {
+      stripes[stripeFor(id)].appendUpdateRecord(id, recordType, record, sync, callback);
+   }
+
+   @Override
+   public void appendDeleteRecord(final long id, final boolean sync, final IOCompletion callback) throws Exception
+   {
+      stripes[stripeFor(id)].appendDeleteRecord(id, sync, callback);
+   }
+
+   // Transactional operations --------------------------------------
+
+   @Override
+   public void appendAddRecordTransactional(final long txID,
+                                            final long id,
+                                            final byte recordType,
+                                            final EncodingSupport record) throws Exception
+   {
+      int stripe = touch(txID, id);
+      stripes[stripe].appendAddRecordTransactional(txID, id, recordType, record);
+   }
+
+   @Override
+   public void appendUpdateRecordTransactional(final long txID,
+                                               final long id,
+                                               final byte recordType,
+                                               final EncodingSupport record) throws Exception
+   {
+      int stripe = touch(txID, id);
+      stripes[stripe].appendUpdateRecordTransactional(txID, id, recordType, record);
+   }
+
+   @Override
+   public void appendDeleteRecordTransactional(final long txID, final long id, final EncodingSupport record) throws Exception
+   {
+      int stripe = touch(txID, id);
+      stripes[stripe].appendDeleteRecordTransactional(txID, id, record);
+   }
+
+   @Override
+   public void appendPrepareRecord(final long txID,
+                                   final EncodingSupport transactionData,
+                                   final boolean sync,
+                                   final IOCompletion callback) throws Exception
+   {
+      TransactionStripes tx = getTransaction(txID);
+
+      if (!tx.isMultiStripe())
+      {
+         stripes[tx.first()].appendPrepareRecord(txID, transactionData, sync, callback);
+      }
+      else
+      {
+         int[] used = tx.getStripes();
+
+         appendMarkers(txID, used, XA_MARKER);
+
+         IOCompletion completion = null;
+         if (callback != null)
+         {
+            callback.storeLineUp();
+            completion = new StripesCompletion(used.length, callback, null);
+         }
+
+         for (int stripe : used)
+         {
+            stripes[stripe].appendPrepareRecord(txID, transactionData, sync, completion);
+         }
+
+         if (completion != null && !isSupportsCallback())
+         {
+            callback.done();
+         }
+      }
+
+      tx.prepared = true;
+   }
+
+   @Override
+   public void appendCommitRecord(final long txID,
+                                  final boolean sync,
+                                  final IOCompletion callback,
+                                  final boolean lineUpContext) throws Exception
+   {
+      TransactionStripes tx = transactions.remove(txID);
+
+      if (tx == null)
+      {
+         // the stripe will complain about the unknown transaction
+         stripes[stripeFor(txID)].appendCommitRecord(txID, sync, callback, lineUpContext);
+         return;
+      }
+
+      if (!tx.isMultiStripe())
+      {
+         stripes[tx.first()].appendCommitRecord(txID, sync, callback, lineUpContext);
+         return;
+      }
+
+      final int[] used = tx.getStripes();
+
+      if (!tx.prepared)
+      {
+         appendMarkers(txID, used, INTERNAL_MARKER);
+
+         // nothing can be committed before every stripe has its part of the transaction on disk
+         List<SyncIOCompletion> prepares = new ArrayList<SyncIOCompletion>(used.length);
+         for (int stripe : used)
+         {
+            SyncIOCompletion prepareCompletion = getSyncCallback(true);
+            stripes[stripe].appendPrepareRecord(txID, EMPTY_PREPARE_DATA, true, prepareCompletion);
+            if (prepareCompletion != null)
+            {
+               prepares.add(prepareCompletion);
+            }
+         }
+
+         for (SyncIOCompletion prepareCompletion : prepares)
+         {
+            prepareCompletion.waitCompletion();
+         }
+      }
+
+      if (callback != null && lineUpContext)
+      {
+         callback.storeLineUp();
+      }
+
+      Runnable deleteMarkers = new Runnable()
+      {
+         public void run()
+         {
+            try
+            {
+               deleteMarkers(txID, used);
+            }
+            finally
+            {
+               pendingMarkers.countDown();
+            }
+         }
+      };
+
+      pendingMarkers.countUp();
+
+      if (isSupportsCallback())
+      {
+         StripesCompletion completion = new StripesCompletion(used.length, callback, deleteMarkers);
+
+         for (int stripe : used)
+         {
+            stripes[stripe].appendCommitRecord(txID, sync, completion, false);
+         }
+      }
+      else
+      {
+         for (int stripe : used)
+         {
+            stripes[stripe].appendCommitRecord(txID, true, null, false);
+         }
+
+         deleteMarkers.run();
+
+         if (callback != null)
+         {
+            callback.done();
+         }
+      }
+   }
+
+   @Override
+   public void appendRollbackRecord(final long txID, final boolean sync, final IOCompletion callback) throws Exception
+   {
+      TransactionStripes tx = transactions.remove(txID);
+
+      if (tx == null)
+      {
+         stripes[stripeFor(txID)].appendRollbackRecord(txID, sync, callback);
+         return;
+      }
+
+      if (!tx.isMultiStripe())
+      {
+         stripes[tx.first()].appendRollbackRecord(txID, sync, callback);
+         return;
+      }
+
+      int[] used = tx.getStripes();
+
+      IOCompletion completion = null;
+      if (callback != null)
+      {
+         callback.storeLineUp();
+         completion = new StripesCompletion(used.length, callback, null);
+      }
+
+      for (int stripe : used)
+      {
+         stripes[stripe].appendRollbackRecord(txID, sync, completion);
+      }
+
+      if (completion != null && !isSupportsCallback())
+      {
+         callback.done();
+      }
+   }
+
+   public void lineUpContext(final IOCompletion callback)
+   {
+      callback.storeLineUp();
+   }
+
+   // Load ----------------------------------------------------------
+
+   public JournalLoadInformation load(final LoaderCallback loadManager) throws Exception
+   {
+      List<RecordInfo> committedRecords = new ArrayList<RecordInfo>();
+      List<PreparedTransactionInfo> preparedTransactions = new ArrayList<PreparedTransactionInfo>();
+
+      JournalLoadInformation info = load(committedRecords, preparedTransactions, loadManager);
+
+      for (RecordInfo record : committedRecords)
+      {
+         if (record.isUpdate)
+         {
+            loadManager.updateRecord(record);
+         }
+         else
+         {
+            loadManager.addRecord(record);
+         }
+      }
+
+      for (PreparedTransactionInfo preparedTransaction : preparedTransactions)
+      {
+         loadManager.addPreparedTransaction(preparedTransaction);
+      }
+
+      return info;
+   }
+
+   public synchronized JournalLoadInformation load(final List<RecordInfo> committedRecords,
+                                                   final List<PreparedTransactionInfo> preparedTransactions,
+                                                   final TransactionFailureCallback transactionFailure) throws Exception
+   {
+      JournalLoadInformation info = new JournalLoadInformation(0, -1);
+
+      // txID -> stripes holding a committed marker
+      Map<Long, List<Integer>> committedMarkers = new HashMap<Long, List<Integer>>();
+
+      List<List<PreparedTransactionInfo>> preparedPerStripe = new ArrayList<List<PreparedTransactionInfo>>();
+
+      for (int i = 0; i < stripes.length; i++)
+      {
+         List<RecordInfo> stripeRecords = new ArrayList<RecordInfo>();
+         List<PreparedTransactionInfo> stripePrepared = new ArrayList<PreparedTransactionInfo>();
+
+         merge(info, stripes[i].load(stripeRecords, stripePrepared, transactionFailure));
+
+         for (RecordInfo record : stripeRecords)
+         {
+            if (record.userRecordType == STRIPE_MARKER_RECORD)
+            {
+               addMarker(committedMarkers, record.id, i);
+            }
+            else
+            {
+               checkStripe(record, i);
+               committedRecords.add(record);
+            }
+         }
+
+         preparedPerStripe.add(stripePrepared);
+      }
+
+      Set<Long> deletedOnRecovery = new HashSet<Long>();
+
+      Map<Long, PreparedTransactionInfo> mergedXA = new LinkedHashMap<Long, PreparedTransactionInfo>();
+
+      for (int i = 0; i < stripes.length; i++)
+      {
+         for (PreparedTransactionInfo prepared : preparedPerStripe.get(i))
+         {
+            RecordInfo marker = findMarker(prepared);
+
+            if (marker == null)
+            {
+               // a single stripe transaction, prepared by the user
+               registerPrepared(prepared.id, i);
+               preparedTransactions.add(prepared);
+            }
+            else if (committedMarkers.containsKey(prepared.id))
+            {
+               HornetQJournalLogger.LOGGER.debug("Committing transaction " + prepared.id + " on stripe " + i +
+                                                 " as it was committed on another stripe");
+               stripes[i].appendCommitRecord(prepared.id, true);
+               addMarker(committedMarkers, prepared.id, i);
+
+               for (RecordInfo record : prepared.records)
+               {
+                  if (record != marker)
+                  {
+                     committedRecords.add(record);
+                  }
+               }
+               for (RecordInfo record : prepared.recordsToDelete)
+               {
+                  deletedOnRecovery.add(record.id);
+               }
+            }
+            else if (marker.data[0] == INTERNAL_MARKER[0])
+            {
+               HornetQJournalLogger.LOGGER.debug("Rolling back transaction " + prepared.id + " on stripe " + i +
+                                                 " as it was never committed");
+               stripes[i].appendRollbackRecord(prepared.id, true);
+            }
+            else
+            {
+               PreparedTransactionInfo xa = mergedXA.get(prepared.id);
+               if (xa == null)
+               {
+                  xa = new PreparedTransactionInfo(prepared.id, prepared.extraData);
+                  mergedXA.put(prepared.id, xa);
+               }
+               for (RecordInfo record : prepared.records)
+               {
+                  if (record != marker)
+                  {
+                     xa.records.add(record);
+                  }
+               }
+               xa.recordsToDelete.addAll(prepared.recordsToDelete);
+               registerPrepared(prepared.id, i);
+            }
+         }
+      }
+
+      for (PreparedTransactionInfo xa : mergedXA.values())
+      {
+         Collections.sort(xa.records, RECORD_ORDER);
+         preparedTransactions.add(xa);
+      }
+
+      if (!deletedOnRecovery.isEmpty())
+      {
+         List<RecordInfo> survivors = new ArrayList<RecordInfo>(committedRecords.size());
+         for (RecordInfo record : committedRecords)
+         {
+            if (!deletedOnRecovery.contains(record.id))
+            {
+               survivors.add(record);
+            }
+         }
+         committedRecords.clear();
+         committedRecords.addAll(survivors);
+      }
+
+      // IDs are increasing, so this gives back the order the records were created on (for instance
+      // the order of the messages on a queue). Updates of a record keep their order as the sort is stable.
+      Collections.sort(committedRecords, RECORD_ORDER);
+
+      for (Map.Entry<Long, List<Integer>> entry : committedMarkers.entrySet())
+      {
+         for (Integer stripe : entry.getValue())
+         {
+            stripes[stripe].appendDeleteRecord(entry.getKey(), false);
+         }
+      }
+
+      return info;
+   }
+
+   public synchronized JournalLoadInformation loadInternalOnly() throws Exception
+   {
+      JournalLoadInformation info = new JournalLoadInformation(0, -1);
+      for (JournalImpl stripe : stripes)
+      {
+         merge(info, stripe.loadInternalOnly());
+      }
+      return info;
+   }
+
+   public JournalLoadInformation loadSyncOnly(final JournalState state) throws Exception
+   {
+      throw new UnsupportedOperationException("replication is not supported on a striped journal");
+   }
+
+   // Journal implementation ----------------------------------------
+
+   public int getAlignment() throws Exception
+   {
+      return stripes[0].getAlignment();
+   }
+
+   public int getNumberOfRecords()
+   {
+      int records = 0;
+      for (JournalImpl stripe : stripes)
+      {
+         records += stripe.getNumberOfRecords();
+      }
+      return records;
+   }
+
+   public int getUserVersion()
+   {
+      return stripes[0].getUserVersion();
+   }
+
+   public long getCompactCount()
+   {
+      long count = 0;
+      for (JournalImpl stripe : stripes)
+      {
+         count += stripe.getCompactCount();
+      }
+      return count;
+   }
+
+   /**
+    * Stripes are compacted independently, so this is the longest of the last pauses of each stripe.
+    */
+   public long getLastCompactPauseTime()
+   {
+      long pause = 0;
+      for (JournalImpl stripe : stripes)
+      {
+         pause = Math.max(pause, stripe.getLastCompactPauseTime());
+      }
+      return pause;
+   }
+
+   public long getMaxCompactPauseTime()
+   {
+      long pause = 0;
+      for (JournalImpl stripe : stripes)
+      {
+         pause = Math.max(pause, stripe.getMaxCompactPauseTime());
+      }
+      return pause;
+   }
+
+   public long getCompactBytesReclaimed()
+   {
+      long bytes = 0;
+      for (JournalImpl stripe : stripes)
+      {
+         bytes += stripe.getCompactBytesReclaimed();
+      }
+      return bytes;
+   }
+
+   public void perfBlast(final int pages)
+   {
+      stripes[0].perfBlast(pages);
+   }
+
+   public void runDirectJournalBlast() throws Exception
+   {
+      stripes[0].runDirectJournalBlast();
+   }
+
+   public Map<Long, JournalFile> createFilesForBackupSync(final long[] fileIds) throws Exception
+   {
+      throw new UnsupportedOperationException("replication is not supported on a striped journal");
+   }
+
+   public void synchronizationLock()
+   {
+      for (JournalImpl stripe : stripes)
+      {
+         stripe.synchronizationLock();
+      }
+   }
+
+   public void synchronizationUnlock()
+   {
+      for (int i = stripes.length - 1; i >= 0; i--)
+      {
+         stripes[i].synchronizationUnlock();
+      }
+   }
+
+   public void forceMoveNextFile() throws Exception
+   {
+      for (JournalImpl stripe : stripes)
+      {
+         stripe.forceMoveNextFile();
+      }
+   }
+
+   public JournalFile[] getDataFiles()
+   {
+      List<JournalFile> files = new ArrayList<JournalFile>();
+      for (JournalImpl stripe : stripes)
+      {
+         for (JournalFile file : stripe.getDataFiles())
+         {
+            files.add(file);
+         }
+      }
+      return files.toArray(new JournalFile[files.size()]);
+   }
+
+   public SequentialFileFactory getFileFactory()
+   {
+      return stripes[0].getFileFactory();
+   }
+
+   public void scheduleCompactAndBlock(final int timeout) throws Exception
+   {
+      for (JournalImpl stripe : stripes)
+      {
+         stripe.scheduleCompactAndBlock(timeout);
+      }
+   }
+
+   public void replicationSyncPreserveOldFiles()
+   {
+      throw new UnsupportedOperationException("replication is not supported on a striped journal");
+   }
+
+   public void replicationSyncFinished()
+   {
+      throw new UnsupportedOperationException("replication is not supported on a striped journal");
+   }
+
+   @Override
+   void scheduleReclaim()
+   {
+      for (JournalImpl stripe : stripes)
+      {
+         stripe.scheduleReclaim();
+      }
+   }
+
+   @Override
+   public String toString()
+   {
+      return "StripedJournal(stripes=" + stripes.length + ")";
+   }
+
+   // Private -------------------------------------------------------
+
+   private boolean isSupportsCallback()
+   {
+      return stripes[0].getFileFactory().isSupportsCallbacks();
+   }
+
+   private TransactionStripes getTransaction(final long txID)
+   {
+      TransactionStripes tx = transactions.get(txID);
+      if (tx == null)
+      {
+         tx = new TransactionStripes(stripes.length);
+         TransactionStripes old = transactions.putIfAbsent(txID, tx);
+         if (old != null)
+         {
+            tx = old;
+         }
+         else
+         {
+            // an empty transaction, it will live on the stripe of its own ID
+            tx.touch(stripeFor(txID));
+         }
+      }
+      return tx;
+   }
+
+   private int touch(final long txID, final long id)
+   {
+      int stripe = stripeFor(id);
+
+      TransactionStripes tx = transactions.get(txID);
+      if (tx == null)
+      {
+         tx = new TransactionStripes(stripes.length);
+         TransactionStripes old = transactions.putIfAbsent(txID, tx);
+         if (old != null)
+         {
+            tx = old;
+         }
+      }
+      tx.touch(stripe);
+
+      return stripe;
+   }
+
+   private void registerPrepared(final long txID, final int stripe)
+   {
+      TransactionStripes tx = getTransactionForRecovery(txID);
+      tx.touch(stripe);
+      tx.prepared = true;
+   }
+
+   private TransactionStripes getTransactionForRecovery(final long txID)
+   {
+      TransactionStripes tx = transactions.get(txID);
+      if (tx == null)
+      {
+         tx = new TransactionStripes(stripes.length);
+         transactions.put(txID, tx);
+      }
+      return tx;
+   }
+
+   private void appendMarkers(final long txID, final int[] used, final byte[] markerType) throws Exception
+   {
+      for (int stripe : used)
+      {
+         stripes[stripe].appendAddRecordTransactional(txID, txID, STRIPE_MARKER_RECORD, markerType);
+      }
+   }
+
+   private void deleteMarkers(final long txID, final int[] used)
+   {
+      for (int stripe : used)
+      {
+         try
+         {
+            stripes[stripe].appendDeleteRecord(txID, false);
+         }
+         catch (Exception e)
+         {
+            // the marker will be cleared on the next load
+            HornetQJournalLogger.LOGGER.warn(e.getMessage(), e);
+         }
+      }
+   }
+
+   private void checkStripe(final RecordInfo record, final int stripe)
+   {
+      if (stripeFor(record.id) != stripe)
+      {
+         throw new IllegalStateException("Record " + record.id + " found on stripe " + stripe + " but it belongs to stripe " +
+                                         stripeFor(record.id) +
+                                         ", the number of journal stripes can't be changed once data was written");
+      }
+   }
+
+   private static RecordInfo findMarker(final PreparedTransactionInfo prepared)
+   {
+      for (RecordInfo record : prepared.records)
+      {
+         if (record.userRecordType == STRIPE_MARKER_RECORD && record.id == prepared.id)
+         {
+            return record;
+         }
+      }
+      return null;
+   }
+
+   private static void addMarker(final Map<Long, List<Integer>> markers, final long txID, final int stripe)
+   {
+      List<Integer> list = markers.get(txID);
+      if (list == null)
+      {
+         list = new ArrayList<Integer>();
+         markers.put(txID, list);
+      }
+      list.add(stripe);
+   }
+
+   private static void merge(final JournalLoadInformation info, final JournalLoadInformation stripeInfo)
+   {
+      info.setNumberOfRecords(info.getNumberOfRecords() + stripeInfo.getNumberOfRecords());
+      info.setMaxID(Math.max(info.getMaxID(), stripeInfo.getMaxID()));
+   }
+
+   // Inner classes -------------------------------------------------
+
+   /**
+    * The stripes used by a transaction.
+    */
+   private static final class TransactionStripes
+   {
+      private final boolean[] used;
+
+      private int count;
+
+      volatile boolean prepared;
+
+      TransactionStripes(final int stripes)
+      {
+         used = new boolean[stripes];
+      }
+
+      synchronized void touch(final int stripe)
+      {
+         if (!used[stripe])
+         {
+            used[stripe] = true;
+            count++;
+         }
+      }
+
+      synchronized boolean isMultiStripe()
+      {
+         return count > 1;
+      }
+
+      synchronized int first()
+      {
+         for (int i = 0; i < used.length; i++)
+         {
+            if (used[i])
+            {
+               return i;
+            }
+         }
+         throw new IllegalStateException("transaction has no stripes");
+      }
+
+      synchronized int[] getStripes()
+      {
+         int[] stripes = new int[count];
+         int pos = 0;
+         for (int i = 0; i < used.length; i++)
+         {
+            if (used[i])
+            {
+               stripes[pos++] = i;
+            }
+         }
+         return stripes;
+      }
+   }
+
+   /**
+    * Completes the caller's callback once every stripe is done, the caller's storeLineUp is done
+    * once by {@link StripedJournal}.
+    */
+   private final class StripesCompletion implements IOCompletion
+   {
+      private final AtomicInteger pending;
+
+      private final AtomicBoolean failed = new AtomicBoolean(false);
+
+      private final IOCompletion delegate;
+
+      private final Runnable afterCompletion;
+
+      StripesCompletion(final int stripes, final IOCompletion delegate, final Runnable afterCompletion)
+      {
+         this.pending = new AtomicInteger(stripes);
+         this.delegate = delegate;
+         this.afterCompletion = afterCompletion;
+      }
+
+      public void storeLineUp()
+      {
+      }
+
+      public void done()
+      {
+         if (pending.decrementAndGet() == 0 && !failed.get())
+         {
+            if (afterCompletion != null)
+            {
+               executor.execute(afterCompletion);
+            }
+            if (delegate != null)
+            {
+               delegate.done();
+            }
+         }
+      }
+
+      public void onError(final int errorCode, final String errorMessage)
+      {
+         if (failed.compareAndSet(false, true))
+         {
+            if (afterCompletion != null)
+            {
+               // the markers stay until the next load
+               pendingMarkers.countDown();
+            }
+            if (delegate != null)
+            {
+               delegate.onError(errorCode, errorMessage);
+            }
+         }
+      }
+   }
+}
@@ -19,8 +19,11 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Timer;
 import java.util.TimerTask;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 
 import org.hornetq.api.core.HornetQBuffer;
 import org.hornetq.api.core.HornetQBuffers;
@@ -32,6 +35,13 @@ import org.hornetq.journal.HornetQJournalLogger;
 
 /**
  * A TimedBuffer
+ * <p>
+ * By default every append, size check and flush is synchronized on the buffer. On the lock-free
+ * mode appenders reserve their space on the current region with a CAS on its write cursor and
+ * encode their record in parallel. Only the flush (and the switch to a new region it implies) is
+ * done under the lock: the region is sealed, the flusher waits for the appenders still copying into
+ * it, and the region is handed to the {@link TimedBufferObserver} while the next region is already
+ * taking new records.
  *
  * @author <a href="mailto:clebert.suconic@jboss.org">Clebert Suconic</a>
  * @author <a href="mailto:tim.fox@jboss.com">Tim Fox</a>
@@ -90,8 +100,17 @@ public class TimedBuffer
 
    private boolean useSleep = true;
 
-   // no need to be volatile as every access is synchronized
-   private boolean spinning = false;
+   // only changed while synchronized, volatile so lock-free appenders can check it without the lock
+   private volatile boolean spinning = false;
+
+   private final boolean lockFree;
+
+   // lock-free mode only: the region taking records and the two arrays used in turns by the regions
+   private volatile Region region;
+
+   private final byte[][] regionBuffers;
+
+   private int nextRegionBuffer;
 
    // Static --------------------------------------------------------
 
@@ -100,9 +119,26 @@ public class TimedBuffer
    // Public --------------------------------------------------------
 
    public TimedBuffer(final int size, final int timeout, final boolean logRates)
+   {
+      this(size, timeout, logRates, false);
+   }
+
+   public TimedBuffer(final int size, final int timeout, final boolean logRates, final boolean lockFree)
    {
       bufferSize = size;
 
+      this.lockFree = lockFree;
+
+      if (lockFree)
+      {
+         regionBuffers = new byte[][]{new byte[size], new byte[size]};
+         region = newRegion(0);
+      }
+      else
+      {
+         regionBuffers = null;
+      }
+
       this.logRates = logRates;
 
       if (logRates)
@@ -122,6 +158,11 @@ public class TimedBuffer
       this.timeout = timeout;
    }
 
+   public boolean isLockFree()
+   {
+      return lockFree;
+   }
+
    // for Debug purposes
    public synchronized boolean isUseSleep()
    {
@@ -209,6 +250,13 @@ public class TimedBuffer
       }
 
       bufferObserver = observer;
+
+      if (lockFree)
+      {
+         // the space left on the new file is unknown until the next check
+         region.seal();
+         region = newRegion(0);
+      }
    }
 
    /**
@@ -216,7 +264,24 @@ public class TimedBuffer
     *
     * @param sizeChecked
     */
-   public synchronized boolean checkSize(final int sizeChecked)
+   public boolean checkSize(final int sizeChecked)
+   {
+      if (lockFree)
+      {
+         Region current = region;
+         if (current.fits(sizeChecked))
+         {
+            return true;
+         }
+      }
+
+      synchronized (this)
+      {
+         return checkSizeLocked(sizeChecked);
+      }
+   }
+
+   private boolean checkSizeLocked(final int sizeChecked)
    {
       if (!started)
       {
@@ -229,6 +294,29 @@ public class TimedBuffer
             ") on the journal");
       }
 
+      if (lockFree)
+      {
+         Region current = region;
+
+         if (current.fits(sizeChecked))
+         {
+            return true;
+         }
+
+         if (current.isEmpty() && current.seal() == 0)
+         {
+            // nothing to flush, the limit just needs to be re-calculated
+            region = newRegion(Math.min(bufferObserver.getRemainingBytes(), bufferSize));
+         }
+         else
+         {
+            flushRegion();
+         }
+
+         // the new region is limited by what is left on the file
+         return sizeChecked <= region.limit;
+      }
+
       if (bufferLimit == 0 || buffer.writerIndex() + sizeChecked > bufferLimit)
       {
          // Either there is not enough space left in the buffer for the sized record
@@ -263,12 +351,27 @@ public class TimedBuffer
       }
    }
 
-   public synchronized void addBytes(final HornetQBuffer bytes, final boolean sync, final IOAsyncTask callback)
+   public void addBytes(final HornetQBuffer bytes, final boolean sync, final IOAsyncTask callback)
    {
       addBytes(new ByteArrayEncoding(bytes.toByteBuffer().array()), sync, callback);
    }
 
-   public synchronized void addBytes(final EncodingSupport bytes, final boolean sync, final IOAsyncTask callback)
+   public void addBytes(final EncodingSupport bytes, final boolean sync, final IOAsyncTask callback)
+   {
+      if (lockFree)
+      {
+         addBytesLockFree(bytes, sync, callback);
+      }
+      else
+      {
+         synchronized (this)
+         {
+            addBytesLocked(bytes, sync, callback);
+         }
+      }
+   }
+
+   private void addBytesLocked(final EncodingSupport bytes, final boolean sync, final IOAsyncTask callback)
    {
       if (!started)
       {
@@ -308,6 +411,12 @@ public class TimedBuffer
             throw new IllegalStateException("TimedBuffer is not started");
          }
 
+         if (lockFree)
+         {
+            flushRegion();
+            return;
+         }
+
          if ((force || !delayFlush) && buffer.writerIndex() > 0)
          {
             int pos = buffer.writerIndex();
@@ -349,8 +458,231 @@ public class TimedBuffer
 
    // Private -------------------------------------------------------
 
+   private void addBytesLockFree(final EncodingSupport bytes, final boolean sync, final IOAsyncTask callback)
+   {
+      if (!started)
+      {
+         throw new IllegalStateException("TimedBuffer is not started");
+      }
+
+      final int size = bytes.getEncodeSize();
+
+      while (true)
+      {
+         Region current = region;
+
+         int position = current.reserve(size);
+
+         if (position < 0)
+         {
+            // either the region is full or it was already sealed by a flush
+            synchronized (this)
+            {
+               if (current == region && !checkSizeLocked(size))
+               {
+                  throw new IllegalStateException("Not enough space left on the file for a record of " + size +
+                     " bytes, checkSize should be called before addBytes");
+               }
+            }
+            continue;
+         }
+
+         HornetQBuffer target = HornetQBuffers.wrappedBuffer(current.data);
+         target.writerIndex(position);
+         bytes.encode(target);
+
+         if (callback != null)
+         {
+            current.callbacks.add(callback);
+         }
+
+         if (sync)
+         {
+            current.sync = true;
+         }
+
+         current.complete(size);
+
+         break;
+      }
+
+      if (sync)
+      {
+         pendingSync = true;
+
+         if (!spinning)
+         {
+            synchronized (this)
+            {
+               startSpin();
+            }
+         }
+      }
+   }
+
+   /**
+    * Must be called while synchronized.
+    */
+   private void flushRegion()
+   {
+      Region current = region;
+
+      if (current.isEmpty())
+      {
+         if (pendingSync)
+         {
+            // a sync appender raced with the previous flush, its record is already on its way
+            pendingSync = false;
+            stopSpin();
+            restartSpinIfPending();
+         }
+         return;
+      }
+
+      int size = current.seal();
+
+      // reset before a new region can take records, so a sync on the next region is never lost
+      pendingSync = false;
+
+      final int remainingInFile = bufferObserver.getRemainingBytes() - size;
+
+      region = newRegion(Math.max(0, Math.min(remainingInFile, bufferSize)));
+
+      current.awaitCompletion(size);
+
+      if (logRates)
+      {
+         bytesFlushed.addAndGet(size);
+      }
+
+      ByteBuffer bufferToFlush = bufferObserver.newBuffer(bufferSize, size);
+
+      bufferToFlush.put(current.data, 0, size);
+
+      bufferObserver.flushBuffer(bufferToFlush, current.sync, new ArrayList<IOAsyncTask>(current.callbacks));
+
+      stopSpin();
+
+      restartSpinIfPending();
+
+      flushesDone.incrementAndGet();
+   }
+
+   private void restartSpinIfPending()
+   {
+      if (pendingSync)
+      {
+         startSpin();
+      }
+   }
+
+   private Region newRegion(final int limit)
+   {
+      byte[] data = regionBuffers[nextRegionBuffer];
+      nextRegionBuffer = 1 - nextRegionBuffer;
+      return new Region(data, limit);
+   }
+
    // Inner classes -------------------------------------------------
 
+   /**
+    * A section of the buffer being filled by the appenders on the lock-free mode.
+    */
+   private static final class Region
+   {
+      private static final int SEALED = Integer.MIN_VALUE;
+
+      private static final long AWAIT_COMPLETION_PARK_NANOS = 10000;
+
+      final byte[] data;
+
+      final int limit;
+
+      /** Bytes reserved by the appenders, {@link #SEALED} is set once the region is flushed */
+      private final AtomicInteger reserved = new AtomicInteger(0);
+
+      /** Bytes already copied by the appenders */
+      private final AtomicInteger completed = new AtomicInteger(0);
+
+      final ConcurrentLinkedQueue<IOAsyncTask> callbacks = new ConcurrentLinkedQueue<IOAsyncTask>();
+
+      volatile boolean sync;
+
+      Region(final byte[] data, final int limit)
+      {
+         this.data = data;
+         this.limit = limit;
+      }
+
+      boolean fits(final int size)
+      {
+         int position = reserved.get();
+         return position >= 0 && position + size <= limit;
+      }
+
+      boolean isEmpty()
+      {
+         return (reserved.get() & ~SEALED) == 0;
+      }
+
+      /**
+       * @return the position reserved for the record, or -1 if it doesn't fit or the region is sealed
+       */
+      int reserve(final int size)
+      {
+         while (true)
+         {
+            int position = reserved.get();
+
+            if (position < 0 || position + size > limit)
+            {
+               return -1;
+            }
+
+            if (reserved.compareAndSet(position, position + size))
+            {
+               return position;
+            }
+         }
+      }
+
+      void complete(final int size)
+      {
+         completed.addAndGet(size);
+      }
+
+      /**
+       * @return the number of bytes reserved before the region was sealed
+       */
+      int seal()
+      {
+         while (true)
+         {
+            int position = reserved.get();
+
+            if (position < 0)
+            {
+               return position & ~SEALED;
+            }
+
+            if (reserved.compareAndSet(position, position | SEALED))
+            {
+               return position;
+            }
+         }
+      }
+
+      void awaitCompletion(final int size)
+      {
+         // the appenders left are only copying their records, the wait is short unless one of them
+         // was descheduled. Parking for a bounded time doesn't need them to wake the flusher up
+         while (completed.get() != size)
+         {
+            LockSupport.parkNanos(AWAIT_COMPLETION_PARK_NANOS);
+         }
+      }
+   }
+
    private class LogRatesTimerTask extends TimerTask
    {
       private boolean closed;
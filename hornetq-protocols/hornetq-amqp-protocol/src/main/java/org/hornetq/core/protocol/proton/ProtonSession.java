@@ -37,7 +37,9 @@ import org.hornetq.core.server.ServerMessage;
 import org.hornetq.core.server.ServerSession;
 import org.hornetq.spi.core.protocol.SessionCallback;
 import org.hornetq.spi.core.remoting.ReadyListener;
+import org.hornetq.utils.ReferenceCounter;
 
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -153,6 +155,18 @@ public class ProtonSession implements SessionCallback
       return 0;
    }
 
+   @Override
+   public int sendLargeMessageContinuation(long consumerID,
+                                           FileChannel file,
+                                           ReferenceCounter fileReferences,
+                                           long position,
+                                           int count,
+                                           boolean continues,
+                                           boolean requiresResponse)
+   {
+      return 0;
+   }
+
    @Override
    public void closed()
    {
@@ -12,6 +12,7 @@
  */
 package org.hornetq.core.protocol.stomp;
 
+import java.nio.channels.FileChannel;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -38,6 +39,7 @@ import org.hornetq.spi.core.protocol.RemotingConnection;
 import org.hornetq.spi.core.protocol.SessionCallback;
 import org.hornetq.spi.core.remoting.ReadyListener;
 import org.hornetq.utils.ConfigurationHelper;
+import org.hornetq.utils.ReferenceCounter;
 import org.hornetq.utils.UUIDGenerator;
 
 /**
@@ -177,6 +179,17 @@ public class StompSession implements SessionCallback
       return 0;
    }
 
+   public int sendLargeMessageContinuation(long consumerID,
+                                           FileChannel file,
+                                           ReferenceCounter fileReferences,
+                                           long position,
+                                           int count,
+                                           boolean continues,
+                                           boolean requiresResponse)
+   {
+      return 0;
+   }
+
    public int sendLargeMessage(ServerMessage msg, long consumerID, long bodySize, int deliveryCount)
    {
       return 0;
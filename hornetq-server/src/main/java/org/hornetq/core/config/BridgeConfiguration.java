@@ -66,6 +66,12 @@ public final class BridgeConfiguration implements Serializable
 
    private int minLargeMessageSize = HornetQClient.DEFAULT_MIN_LARGE_MESSAGE_SIZE;
 
+   private int producerBatchSize = HornetQClient.DEFAULT_PRODUCER_BATCH_SIZE;
+
+   private long producerBatchLinger = HornetQClient.DEFAULT_PRODUCER_BATCH_LINGER;
+
+   private boolean compressBatches = HornetQClient.DEFAULT_COMPRESS_PRODUCER_BATCHES;
+
    // At this point this is only changed on testcases
    // The bridge shouldn't be sending blocking anyways
    private long callTimeout = HornetQClient.DEFAULT_CALL_TIMEOUT;
@@ -430,6 +436,51 @@ public final class BridgeConfiguration implements Serializable
       this.callTimeout = callTimeout;
    }
 
+   /**
+    * @return the size in bytes of the batches the messages are forwarded in, -1 if they are
+    *         forwarded one at a time
+    */
+   public int getProducerBatchSize()
+   {
+      return producerBatchSize;
+   }
+
+   /**
+    * The messages are only forwarded in batches when the bridge uses duplicate detection, as the
+    * bridge sends blocking otherwise.
+    * @see org.hornetq.api.core.client.ServerLocator#setProducerBatchSize(int)
+    */
+   public void setProducerBatchSize(int producerBatchSize)
+   {
+      this.producerBatchSize = producerBatchSize;
+   }
+
+   public long getProducerBatchLinger()
+   {
+      return producerBatchLinger;
+   }
+
+   /**
+    * @see org.hornetq.api.core.client.ServerLocator#setProducerBatchLinger(long)
+    */
+   public void setProducerBatchLinger(long producerBatchLinger)
+   {
+      this.producerBatchLinger = producerBatchLinger;
+   }
+
+   public boolean isCompressBatches()
+   {
+      return compressBatches;
+   }
+
+   /**
+    * @see org.hornetq.api.core.client.ServerLocator#setCompressProducerBatches(boolean)
+    */
+   public void setCompressBatches(boolean compressBatches)
+   {
+      this.compressBatches = compressBatches;
+   }
+
    @Override
    public int hashCode()
    {
@@ -437,6 +488,7 @@ public final class BridgeConfiguration implements Serializable
       int result = 1;
       result = prime * result + (int)(callTimeout ^ (callTimeout >>> 32));
       result = prime * result + (int)(clientFailureCheckPeriod ^ (clientFailureCheckPeriod >>> 32));
+      result = prime * result + (compressBatches ? 1231 : 1237);
       result = prime * result + confirmationWindowSize;
       result = prime * result + (int)(connectionTTL ^ (connectionTTL >>> 32));
       result = prime * result + ((discoveryGroupName == null) ? 0 : discoveryGroupName.hashCode());
@@ -447,6 +499,8 @@ public final class BridgeConfiguration implements Serializable
       result = prime * result + minLargeMessageSize;
       result = prime * result + ((name == null) ? 0 : name.hashCode());
       result = prime * result + ((password == null) ? 0 : password.hashCode());
+      result = prime * result + (int)(producerBatchLinger ^ (producerBatchLinger >>> 32));
+      result = prime * result + producerBatchSize;
       result = prime * result + ((queueName == null) ? 0 : queueName.hashCode());
       result = prime * result + reconnectAttempts;
       result = prime * result + (int)(retryInterval ^ (retryInterval >>> 32));
@@ -474,6 +528,8 @@ public final class BridgeConfiguration implements Serializable
          return false;
       if (clientFailureCheckPeriod != other.clientFailureCheckPeriod)
          return false;
+      if (compressBatches != other.compressBatches)
+         return false;
       if (confirmationWindowSize != other.confirmationWindowSize)
          return false;
       if (connectionTTL != other.connectionTTL)
@@ -519,6 +575,10 @@ public final class BridgeConfiguration implements Serializable
       }
       else if (!password.equals(other.password))
          return false;
+      if (producerBatchLinger != other.producerBatchLinger)
+         return false;
+      if (producerBatchSize != other.producerBatchSize)
+         return false;
       if (queueName == null)
       {
          if (other.queueName != null)
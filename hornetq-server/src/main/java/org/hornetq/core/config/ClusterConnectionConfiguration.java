@@ -72,6 +72,12 @@ public final class ClusterConnectionConfiguration implements Serializable
 
    private final int clusterNotificationAttempts;
 
+   private boolean loadAwareRouting = HornetQDefaultConfiguration.isDefaultClusterLoadAwareRouting();
+
+   private long loadReportPeriod = HornetQDefaultConfiguration.getDefaultClusterLoadReportPeriod();
+
+   private long backlogRedistributionThreshold = HornetQDefaultConfiguration.getDefaultClusterBacklogRedistributionThreshold();
+
    public ClusterConnectionConfiguration(final String name,
                                          final String address,
                                          final String connectorName,
@@ -450,6 +456,49 @@ public final class ClusterConnectionConfiguration implements Serializable
       return clusterNotificationAttempts;
    }
 
+   public boolean isLoadAwareRouting()
+   {
+      return loadAwareRouting;
+   }
+
+   /**
+    * @param loadAwareRouting whether the messages are routed between the nodes according to the
+    *           load their queues report, instead of round robin
+    */
+   public void setLoadAwareRouting(boolean loadAwareRouting)
+   {
+      this.loadAwareRouting = loadAwareRouting;
+   }
+
+   public long getLoadReportPeriod()
+   {
+      return loadReportPeriod;
+   }
+
+   /**
+    * @param loadReportPeriod how often the load of the local queues is sent to the other nodes, in
+    *           milliseconds
+    */
+   public void setLoadReportPeriod(long loadReportPeriod)
+   {
+      this.loadReportPeriod = loadReportPeriod;
+   }
+
+   public long getBacklogRedistributionThreshold()
+   {
+      return backlogRedistributionThreshold;
+   }
+
+   /**
+    * @param backlogRedistributionThreshold the number of messages above which a queue redistributes
+    *           its messages to a less loaded node even if it has consumers, -1 to only
+    *           redistribute the messages of queues without consumers
+    */
+   public void setBacklogRedistributionThreshold(long backlogRedistributionThreshold)
+   {
+      this.backlogRedistributionThreshold = backlogRedistributionThreshold;
+   }
+
    @Override
    public int hashCode()
    {
@@ -457,6 +506,7 @@ public final class ClusterConnectionConfiguration implements Serializable
       int result = 1;
       result = prime * result + ((address == null) ? 0 : address.hashCode());
       result = prime * result + (allowDirectConnectionsOnly ? 1231 : 1237);
+      result = prime * result + (int)(backlogRedistributionThreshold ^ (backlogRedistributionThreshold >>> 32));
       result = prime * result + (int)(callFailoverTimeout ^ (callFailoverTimeout >>> 32));
       result = prime * result + (int)(callTimeout ^ (callTimeout >>> 32));
       result = prime * result + (int)(clientFailureCheckPeriod ^ (clientFailureCheckPeriod >>> 32));
@@ -468,6 +518,8 @@ public final class ClusterConnectionConfiguration implements Serializable
       result = prime * result + ((discoveryGroupName == null) ? 0 : discoveryGroupName.hashCode());
       result = prime * result + (duplicateDetection ? 1231 : 1237);
       result = prime * result + (forwardWhenNoConsumers ? 1231 : 1237);
+      result = prime * result + (loadAwareRouting ? 1231 : 1237);
+      result = prime * result + (int)(loadReportPeriod ^ (loadReportPeriod >>> 32));
       result = prime * result + maxHops;
       result = prime * result + (int)(maxRetryInterval ^ (maxRetryInterval >>> 32));
       result = prime * result + minLargeMessageSize;
@@ -500,6 +552,8 @@ public final class ClusterConnectionConfiguration implements Serializable
          return false;
       if (allowDirectConnectionsOnly != other.allowDirectConnectionsOnly)
          return false;
+      if (backlogRedistributionThreshold != other.backlogRedistributionThreshold)
+         return false;
       if (callFailoverTimeout != other.callFailoverTimeout)
          return false;
       if (callTimeout != other.callTimeout)
@@ -532,6 +586,10 @@ public final class ClusterConnectionConfiguration implements Serializable
          return false;
       if (forwardWhenNoConsumers != other.forwardWhenNoConsumers)
          return false;
+      if (loadAwareRouting != other.loadAwareRouting)
+         return false;
+      if (loadReportPeriod != other.loadReportPeriod)
+         return false;
       if (maxHops != other.maxHops)
          return false;
       if (maxRetryInterval != other.maxRetryInterval)
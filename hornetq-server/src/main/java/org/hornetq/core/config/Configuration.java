@@ -495,6 +495,34 @@ public interface Configuration extends Serializable
     */
    void setPageMaxConcurrentIO(int maxIO);
 
+   /**
+    * Returns the memory (in bytes) the pages read from the paging directory can take in the page
+    * caches of all the addresses, -1 for a tenth of the maximum heap size.
+    * <p>
+    * Default value is {@value HornetQDefaultConfiguration#DEFAULT_PAGE_CACHE_MAX_SIZE_BYTES}.
+    */
+   long getPageCacheMaxSizeBytes();
+
+   /**
+    * Sets the memory (in bytes) the pages read from the paging directory can take in the page
+    * caches of all the addresses.
+    */
+   void setPageCacheMaxSizeBytes(long maxSize);
+
+   /**
+    * Returns whether the messages of the pages read are cached encoded in direct buffers, out of
+    * the heap.
+    * <p>
+    * Default value is {@value HornetQDefaultConfiguration#DEFAULT_PAGE_CACHE_OFF_HEAP}.
+    */
+   boolean isPageCacheOffHeap();
+
+   /**
+    * Sets whether the messages of the pages read are cached encoded in direct buffers, out of the
+    * heap.
+    */
+   void setPageCacheOffHeap(boolean offHeap);
+
    /**
     * Returns the file system directory used to store journal log. <br>
     * Default value is {@value HornetQDefaultConfiguration#DEFAULT_JOURNAL_DIR}.
@@ -562,6 +590,30 @@ public interface Configuration extends Serializable
     */
    void setJournalCompactMinFiles(int minFiles);
 
+   /**
+    * Returns the number of journals the message journal is striped over. <br>
+    * Default value is {@value HornetQDefaultConfiguration#DEFAULT_JOURNAL_STRIPES}.
+    */
+   int getJournalStripes();
+
+   /**
+    * Sets the number of journals the message journal is striped over.
+    */
+   void setJournalStripes(int stripes);
+
+   /**
+    * Returns the number of threads used to read the journal files and to reload the queues when
+    * the server starts. <br>
+    * Default value is {@value HornetQDefaultConfiguration#DEFAULT_JOURNAL_LOAD_THREADS}.
+    */
+   int getJournalLoadThreads();
+
+   /**
+    * Sets the number of threads used to read the journal files and to reload the queues when the
+    * server starts.
+    */
+   void setJournalLoadThreads(int loadThreads);
+
    /**
     * Returns the percentage of live data before compacting the journal. <br>
     * Default value is {@value HornetQDefaultConfiguration#DEFAULT_JOURNAL_COMPACT_PERCENTAGE}.
@@ -656,6 +708,17 @@ public interface Configuration extends Serializable
     */
    void setJournalBufferSize_NIO(int journalBufferSize);
 
+   /**
+    * Returns whether the records are appended to the journal buffer without locking it. <br>
+    * Default value is {@value HornetQDefaultConfiguration#DEFAULT_JOURNAL_BUFFER_LOCK_FREE}.
+    */
+   boolean isJournalBufferLockFree();
+
+   /**
+    * Sets whether the records are appended to the journal buffer without locking it.
+    */
+   void setJournalBufferLockFree(boolean lockFree);
+
    /**
     * Returns whether the bindings directory is created on this server startup. <br>
     * Default value is {@value HornetQDefaultConfiguration#DEFAULT_CREATE_BINDINGS_DIR}.
@@ -927,6 +990,33 @@ public interface Configuration extends Serializable
     */
    String getReplicationClustername();
 
+   /**
+    * Returns the maximum size (in bytes) of the batches the journal and page writes are replicated
+    * in to the backup, -1 to replicate every write in its own packet.
+    * <p>
+    * Default value is {@value HornetQDefaultConfiguration#DEFAULT_REPLICATION_BATCH_SIZE}.
+    */
+   int getReplicationBatchSize();
+
+   /**
+    * Sets the maximum size (in bytes) of the batches the journal and page writes are replicated in
+    * to the backup.
+    */
+   void setReplicationBatchSize(int batchSize);
+
+   /**
+    * Returns the number of threads sending the journal, page and large message files to a new
+    * backup.
+    * <p>
+    * Default value is {@value HornetQDefaultConfiguration#DEFAULT_REPLICATION_SYNC_THREADS}.
+    */
+   int getReplicationSyncThreads();
+
+   /**
+    * Sets the number of threads sending the journal, page and large message files to a new backup.
+    */
+   void setReplicationSyncThreads(int syncThreads);
+
    /*
    * Whether or not that HornetQ should use all protocols available on the classpath. If false only the core protocol will
    * be set, any other protocols will need to be set directly on the HornetQServer
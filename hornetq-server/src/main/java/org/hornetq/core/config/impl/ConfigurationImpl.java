@@ -122,6 +122,10 @@ public class ConfigurationImpl implements Configuration
 
    private int maxConcurrentPageIO = HornetQDefaultConfiguration.getDefaultMaxConcurrentPageIo();
 
+   private long pageCacheMaxSizeBytes = HornetQDefaultConfiguration.getDefaultPageCacheMaxSizeBytes();
+
+   private boolean pageCacheOffHeap = HornetQDefaultConfiguration.isDefaultPageCacheOffHeap();
+
    protected String largeMessagesDirectory = HornetQDefaultConfiguration.getDefaultLargeMessagesDir();
 
    protected String bindingsDirectory = HornetQDefaultConfiguration.getDefaultBindingsDirectory();
@@ -140,6 +144,10 @@ public class ConfigurationImpl implements Configuration
 
    protected int journalCompactMinFiles = HornetQDefaultConfiguration.getDefaultJournalCompactMinFiles();
 
+   protected int journalStripes = HornetQDefaultConfiguration.getDefaultJournalStripes();
+
+   protected int journalLoadThreads = HornetQDefaultConfiguration.getDefaultJournalLoadThreads();
+
    protected int journalCompactPercentage = HornetQDefaultConfiguration.getDefaultJournalCompactPercentage();
 
    protected int journalFileSize = HornetQDefaultConfiguration.getDefaultJournalFileSize();
@@ -160,6 +168,8 @@ public class ConfigurationImpl implements Configuration
 
    protected int journalBufferSize_NIO = HornetQDefaultConfiguration.getDefaultJournalBufferSizeNio();
 
+   protected boolean journalBufferLockFree = HornetQDefaultConfiguration.isDefaultJournalBufferLockFree();
+
    protected boolean logJournalWriteRate = HornetQDefaultConfiguration.isDefaultJournalLogWriteRate();
 
    protected int journalPerfBlastPages = HornetQDefaultConfiguration.getDefaultJournalPerfBlastPages();
@@ -213,6 +223,10 @@ public class ConfigurationImpl implements Configuration
 
    private String replicationClusterName;
 
+   private int replicationBatchSize = HornetQDefaultConfiguration.getDefaultReplicationBatchSize();
+
+   private int replicationSyncThreads = HornetQDefaultConfiguration.getDefaultReplicationSyncThreads();
+
    private boolean resolveProtocols = HornetQDefaultConfiguration.isDefaultResolveProtocols();
 
    // Public -------------------------------------------------------------------------
@@ -512,6 +526,26 @@ public class ConfigurationImpl implements Configuration
       this.maxConcurrentPageIO = maxIO;
    }
 
+   public long getPageCacheMaxSizeBytes()
+   {
+      return pageCacheMaxSizeBytes;
+   }
+
+   public void setPageCacheMaxSizeBytes(final long maxSize)
+   {
+      this.pageCacheMaxSizeBytes = maxSize;
+   }
+
+   public boolean isPageCacheOffHeap()
+   {
+      return pageCacheOffHeap;
+   }
+
+   public void setPageCacheOffHeap(final boolean offHeap)
+   {
+      this.pageCacheOffHeap = offHeap;
+   }
+
 
    public String getJournalDirectory()
    {
@@ -583,6 +617,16 @@ public class ConfigurationImpl implements Configuration
       journalMinFiles = files;
    }
 
+   public boolean isJournalBufferLockFree()
+   {
+      return journalBufferLockFree;
+   }
+
+   public void setJournalBufferLockFree(final boolean lockFree)
+   {
+      journalBufferLockFree = lockFree;
+   }
+
    public boolean isLogJournalWriteRate()
    {
       return logJournalWriteRate;
@@ -818,6 +862,26 @@ public class ConfigurationImpl implements Configuration
       journalCompactMinFiles = minFiles;
    }
 
+   public int getJournalStripes()
+   {
+      return journalStripes;
+   }
+
+   public void setJournalStripes(final int stripes)
+   {
+      journalStripes = stripes;
+   }
+
+   public int getJournalLoadThreads()
+   {
+      return journalLoadThreads;
+   }
+
+   public void setJournalLoadThreads(final int loadThreads)
+   {
+      journalLoadThreads = loadThreads;
+   }
+
    public void setJournalCompactPercentage(final int percentage)
    {
       journalCompactPercentage = percentage;
@@ -1036,6 +1100,26 @@ public class ConfigurationImpl implements Configuration
       return replicationClusterName;
    }
 
+   public int getReplicationBatchSize()
+   {
+      return replicationBatchSize;
+   }
+
+   public void setReplicationBatchSize(final int batchSize)
+   {
+      this.replicationBatchSize = batchSize;
+   }
+
+   public int getReplicationSyncThreads()
+   {
+      return replicationSyncThreads;
+   }
+
+   public void setReplicationSyncThreads(final int syncThreads)
+   {
+      this.replicationSyncThreads = syncThreads;
+   }
+
    @Override
    public void setResolveProtocols(boolean resolveProtocols)
    {
@@ -1087,10 +1171,13 @@ public class ConfigurationImpl implements Configuration
       result = prime * result + (jmxManagementEnabled ? 1231 : 1237);
       result = prime * result + journalBufferSize_AIO;
       result = prime * result + journalBufferSize_NIO;
+      result = prime * result + (journalBufferLockFree ? 1231 : 1237);
       result = prime * result + journalBufferTimeout_AIO;
       result = prime * result + journalBufferTimeout_NIO;
       result = prime * result + journalCompactMinFiles;
       result = prime * result + journalCompactPercentage;
+      result = prime * result + journalStripes;
+      result = prime * result + journalLoadThreads;
       result = prime * result + ((journalDirectory == null) ? 0 : journalDirectory.hashCode());
       result = prime * result + journalFileSize;
       result = prime * result + journalMaxIO_AIO;
@@ -1108,6 +1195,8 @@ public class ConfigurationImpl implements Configuration
                         ((managementNotificationAddress == null) ? 0 : managementNotificationAddress.hashCode());
       result = prime * result + (maskPassword ? 1231 : 1237);
       result = prime * result + maxConcurrentPageIO;
+      result = prime * result + (int)(pageCacheMaxSizeBytes ^ (pageCacheMaxSizeBytes >>> 32));
+      result = prime * result + (pageCacheOffHeap ? 1231 : 1237);
       result = prime * result + (int)(memoryMeasureInterval ^ (memoryMeasureInterval >>> 32));
       result = prime * result + memoryWarningThreshold;
       result = prime * result + (messageCounterEnabled ? 1231 : 1237);
@@ -1126,6 +1215,8 @@ public class ConfigurationImpl implements Configuration
       result = prime * result + (persistenceEnabled ? 1231 : 1237);
       result = prime * result + ((queueConfigurations == null) ? 0 : queueConfigurations.hashCode());
       result = prime * result + ((replicationClusterName == null) ? 0 : replicationClusterName.hashCode());
+      result = prime * result + replicationBatchSize;
+      result = prime * result + replicationSyncThreads;
       result = prime * result + (runSyncSpeedTest ? 1231 : 1237);
       result = prime * result + scheduledThreadPoolMaxSize;
       result = prime * result + (securityEnabled ? 1231 : 1237);
@@ -1290,10 +1381,16 @@ public class ConfigurationImpl implements Configuration
          return false;
       if (journalBufferTimeout_NIO != other.journalBufferTimeout_NIO)
          return false;
+      if (journalBufferLockFree != other.journalBufferLockFree)
+         return false;
       if (journalCompactMinFiles != other.journalCompactMinFiles)
          return false;
       if (journalCompactPercentage != other.journalCompactPercentage)
          return false;
+      if (journalStripes != other.journalStripes)
+         return false;
+      if (journalLoadThreads != other.journalLoadThreads)
+         return false;
       if (journalDirectory == null)
       {
          if (other.journalDirectory != null)
@@ -1344,6 +1441,10 @@ public class ConfigurationImpl implements Configuration
          return false;
       if (maxConcurrentPageIO != other.maxConcurrentPageIO)
          return false;
+      if (pageCacheMaxSizeBytes != other.pageCacheMaxSizeBytes)
+         return false;
+      if (pageCacheOffHeap != other.pageCacheOffHeap)
+         return false;
       if (memoryMeasureInterval != other.memoryMeasureInterval)
          return false;
       if (memoryWarningThreshold != other.memoryWarningThreshold)
@@ -1406,6 +1507,10 @@ public class ConfigurationImpl implements Configuration
       }
       else if (!replicationClusterName.equals(other.replicationClusterName))
          return false;
+      if (replicationBatchSize != other.replicationBatchSize)
+         return false;
+      if (replicationSyncThreads != other.replicationSyncThreads)
+         return false;
       if (runSyncSpeedTest != other.runSyncSpeedTest)
          return false;
       if (scheduledThreadPoolMaxSize != other.scheduledThreadPoolMaxSize)
@@ -125,6 +125,8 @@ public final class FileConfigurationParser extends XMLConfigurationUtil
 
    private static final String PAGE_MAX_CACHE_SIZE_NODE_NAME = "page-max-cache-size";
 
+   private static final String PAGE_PREFETCH_DEPTH_NODE_NAME = "page-prefetch-depth";
+
    private static final String MESSAGE_COUNTER_HISTORY_DAY_LIMIT_NODE_NAME = "message-counter-history-day-limit";
 
    private static final String LVQ_NODE_NAME = "last-value-queue";
@@ -133,6 +135,8 @@ public final class FileConfigurationParser extends XMLConfigurationUtil
 
    private static final String SEND_TO_DLA_ON_NO_ROUTE = "send-to-dla-on-no-route";
 
+   private static final String INDEX_MESSAGE_IDS_NODE_NAME = "index-message-ids";
+
    // Attributes ----------------------------------------------------
 
    private boolean validateAIO = false;
@@ -194,6 +198,12 @@ public final class FileConfigurationParser extends XMLConfigurationUtil
                                                                          config.isFailoverOnServerShutdown()));
       config.setReplicationClustername(getString(e, "replication-clustername", null, Validators.NO_CHECK));
 
+      config.setReplicationBatchSize(getInteger(e, "replication-batch-size", config.getReplicationBatchSize(),
+                                                Validators.MINUS_ONE_OR_GT_ZERO));
+
+      config.setReplicationSyncThreads(getInteger(e, "replication-sync-threads", config.getReplicationSyncThreads(),
+                                                  Validators.GT_ZERO));
+
       config.setResolveProtocols(getBoolean(e, "resolve-protocols", config.isResolveProtocols()));
 
       config.setBackup(getBoolean(e, "backup", config.isBackup()));
@@ -475,6 +485,11 @@ public final class FileConfigurationParser extends XMLConfigurationUtil
                                                                     config.getPageMaxConcurrentIO(),
                                                                     Validators.MINUS_ONE_OR_GT_ZERO));
 
+      config.setPageCacheMaxSizeBytes(getLong(e, "page-cache-max-size-bytes", config.getPageCacheMaxSizeBytes(),
+                                              Validators.MINUS_ONE_OR_GE_ZERO));
+
+      config.setPageCacheOffHeap(getBoolean(e, "page-cache-off-heap", config.isPageCacheOffHeap()));
+
       config.setPagingDirectory(getString(e,
                                                                "paging-directory",
                                                                config.getPagingDirectory(),
@@ -491,6 +506,10 @@ public final class FileConfigurationParser extends XMLConfigurationUtil
       {
          config.setJournalType(JournalType.NIO);
       }
+      else if (s.equals(JournalType.MAPPED.toString()))
+      {
+         config.setJournalType(JournalType.MAPPED);
+      }
       else if (s.equals(JournalType.ASYNCIO.toString()))
       {
          // https://jira.jboss.org/jira/browse/HORNETQ-295
@@ -558,11 +577,18 @@ public final class FileConfigurationParser extends XMLConfigurationUtil
          config.setJournalMaxIO_NIO(journalMaxIO);
       }
 
+      config.setJournalBufferLockFree(getBoolean(e, "journal-buffer-lock-free", config.isJournalBufferLockFree()));
+
       config.setJournalMinFiles(getInteger(e, "journal-min-files", config.getJournalMinFiles(), Validators.GT_ZERO));
 
       config.setJournalCompactMinFiles(getInteger(e, "journal-compact-min-files", config.getJournalCompactMinFiles(),
                                                   Validators.GE_ZERO));
 
+      config.setJournalStripes(getInteger(e, "journal-stripes", config.getJournalStripes(), Validators.GT_ZERO));
+
+      config.setJournalLoadThreads(getInteger(e, "journal-load-threads", config.getJournalLoadThreads(),
+                                              Validators.GT_ZERO));
+
       config.setJournalCompactPercentage(getInteger(e,
                                                                          "journal-compact-percentage",
                                                                          config.getJournalCompactPercentage(),
@@ -833,6 +859,10 @@ public final class FileConfigurationParser extends XMLConfigurationUtil
          {
             addressSettings.setPageCacheMaxSize(XMLUtil.parseInt(child));
          }
+         else if (PAGE_PREFETCH_DEPTH_NODE_NAME.equalsIgnoreCase(name))
+         {
+            addressSettings.setPagePrefetchDepth(XMLUtil.parseInt(child));
+         }
          else if (MESSAGE_COUNTER_HISTORY_DAY_LIMIT_NODE_NAME.equalsIgnoreCase(name))
          {
             addressSettings.setMessageCounterHistoryDayLimit(XMLUtil.parseInt(child));
@@ -861,6 +891,10 @@ public final class FileConfigurationParser extends XMLConfigurationUtil
          {
             addressSettings.setSendToDLAOnNoRoute(XMLUtil.parseBoolean(child));
          }
+         else if (INDEX_MESSAGE_IDS_NODE_NAME.equalsIgnoreCase(name))
+         {
+            addressSettings.setIndexMessageIDs(XMLUtil.parseBoolean(child));
+         }
       }
       return setting;
    }
@@ -1095,6 +1129,12 @@ public final class FileConfigurationParser extends XMLConfigurationUtil
 
       int clusterNotificationAttempts = getInteger(e, "notification-attempts", HornetQDefaultConfiguration.getDefaultClusterNotificationAttempts(), Validators.GT_ZERO);
 
+      boolean loadAwareRouting = getBoolean(e, "load-aware-routing", HornetQDefaultConfiguration.isDefaultClusterLoadAwareRouting());
+
+      long loadReportPeriod = getLong(e, "load-report-period", HornetQDefaultConfiguration.getDefaultClusterLoadReportPeriod(), Validators.GT_ZERO);
+
+      long backlogRedistributionThreshold = getLong(e, "backlog-redistribution-threshold", HornetQDefaultConfiguration.getDefaultClusterBacklogRedistributionThreshold(), Validators.MINUS_ONE_OR_GT_ZERO);
+
       String discoveryGroupName = null;
 
       List<String> staticConnectorNames = new ArrayList<String>();
@@ -1159,6 +1199,10 @@ public final class FileConfigurationParser extends XMLConfigurationUtil
                                                      clusterNotificationAttempts);
       }
 
+      config.setLoadAwareRouting(loadAwareRouting);
+      config.setLoadReportPeriod(loadReportPeriod);
+      config.setBacklogRedistributionThreshold(backlogRedistributionThreshold);
+
       mainConfig.getClusterConfigurations().add(config);
    }
 
@@ -1253,6 +1297,17 @@ public final class FileConfigurationParser extends XMLConfigurationUtil
 
       boolean ha = getBoolean(brNode, "ha", false);
 
+      int producerBatchSize =
+               getInteger(brNode, "producer-batch-size", HornetQClient.DEFAULT_PRODUCER_BATCH_SIZE,
+                          Validators.MINUS_ONE_OR_GT_ZERO);
+
+      long producerBatchLinger =
+               getLong(brNode, "producer-batch-linger", HornetQClient.DEFAULT_PRODUCER_BATCH_LINGER,
+                       Validators.MINUS_ONE_OR_GT_ZERO);
+
+      boolean compressBatches =
+               getBoolean(brNode, "compress-batches", HornetQClient.DEFAULT_COMPRESS_PRODUCER_BATCHES);
+
       String filterString = null;
 
       List<String> staticConnectorNames = new ArrayList<String>();
@@ -1326,6 +1381,10 @@ public final class FileConfigurationParser extends XMLConfigurationUtil
                                           password);
       }
 
+      config.setProducerBatchSize(producerBatchSize);
+      config.setProducerBatchLinger(producerBatchLinger);
+      config.setCompressBatches(compressBatches);
+
       mainConfig.getBridgeConfigurations().add(config);
    }
 
@@ -0,0 +1,894 @@
+/*
+ * Copyright 2009 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.core.filter.impl;
+
+import java.util.Set;
+
+import org.hornetq.api.core.FilterConstants;
+import org.hornetq.api.core.SimpleString;
+import org.hornetq.core.server.ServerMessage;
+
+/**
+ * Turns a parsed filter expression into a tree of {@link Predicate}s which evaluate it directly on
+ * the message.
+ * <p>
+ * Unlike the {@link Operator} interpreter, the predicates keep no state, so they can be evaluated
+ * concurrently, and they don't allocate: the results are ints instead of Booleans, the numbers are
+ * compared as primitives and the numeric header fields are read without boxing them. The property
+ * values are still the objects returned by {@link ServerMessage#getObjectProperty(SimpleString)}.
+ * <p>
+ * The predicates give the same results as the interpreter. Where the interpreter would throw an
+ * exception, e.g. on an operand of the wrong type, they return {@link #DEFER} and the filter
+ * evaluates the message with the interpreter instead, which logs the error. The expressions with
+ * arithmetic operators are not compiled.
+ */
+final class FilterCompiler
+{
+   static final int FALSE = 0;
+
+   static final int TRUE = 1;
+
+   static final int UNKNOWN = 2;
+
+   static final int DEFER = 3;
+
+   private static final int BAD_TYPE = -1;
+
+   private static final int NULL = 0;
+
+   private FilterCompiler()
+   {
+      // Utility class
+   }
+
+   /**
+    * @return the predicate evaluating the expression, or null if it can't be compiled
+    */
+   static Predicate compile(final Object expression)
+   {
+      if (!(expression instanceof Operator))
+      {
+         return null;
+      }
+
+      return compilePredicate(expression);
+   }
+
+   private static Predicate compilePredicate(final Object expression)
+   {
+      if (!(expression instanceof Operator))
+      {
+         Operand operand = compileOperand(expression);
+
+         return operand == null ? null : new BooleanOperand(operand);
+      }
+
+      Operator op = (Operator)expression;
+
+      switch (op.getOperation())
+      {
+         case Operator.AND:
+         case Operator.OR:
+         {
+            Predicate left = compilePredicate(op.getOper1());
+            Predicate right = compilePredicate(op.getOper2());
+
+            if (left == null || right == null)
+            {
+               return null;
+            }
+
+            return op.getOperation() == Operator.AND ? new And(left, right) : new Or(left, right);
+         }
+         case Operator.NOT:
+         {
+            Predicate predicate = compilePredicate(op.getOper1());
+
+            return predicate == null ? null : new Not(predicate);
+         }
+         case Operator.EQUAL:
+         case Operator.DIFFERENT:
+         case Operator.GT:
+         case Operator.GE:
+         case Operator.LT:
+         case Operator.LE:
+            return compileComparison(op.getOperation(), op.getOper1(), op.getOper2());
+         case Operator.BETWEEN:
+         {
+            Predicate low = compileComparison(Operator.GE, op.getOper1(), op.getOper2());
+            Predicate high = compileComparison(Operator.LE, op.getOper1(), op.getOper3());
+
+            return low == null || high == null ? null : new Between(low, high, false);
+         }
+         case Operator.NOT_BETWEEN:
+         {
+            Predicate low = compileComparison(Operator.LT, op.getOper1(), op.getOper2());
+            Predicate high = compileComparison(Operator.GT, op.getOper1(), op.getOper3());
+
+            return low == null || high == null ? null : new Between(low, high, true);
+         }
+         case Operator.IS_NULL:
+         case Operator.IS_NOT_NULL:
+         {
+            Operand operand = compileOperand(op.getOper1());
+
+            return operand == null ? null : new IsNull(operand, op.getOperation() == Operator.IS_NOT_NULL);
+         }
+         case Operator.IN:
+         case Operator.NOT_IN:
+         {
+            Operand operand = compileOperand(op.getOper1());
+
+            if (operand == null || !(op.getOper2() instanceof Set))
+            {
+               return null;
+            }
+
+            return new In(operand, (Set<?>)op.getOper2(), op.getOperation() == Operator.NOT_IN);
+         }
+         case Operator.LIKE:
+         case Operator.NOT_LIKE:
+         case Operator.LIKE_ESCAPE:
+         case Operator.NOT_LIKE_ESCAPE:
+            return compileLike(op);
+         default:
+            return null;
+      }
+   }
+
+   private static Predicate compileComparison(final int operation, final Object oper1, final Object oper2)
+   {
+      Operand left = compileOperand(oper1);
+      Operand right = compileOperand(oper2);
+
+      if (left == null || right == null)
+      {
+         return null;
+      }
+
+      if (left instanceof NumericHeader && isNumber(right))
+      {
+         return new HeaderComparison(operation, (NumericHeader)left, (Number)((Constant)right).value, true);
+      }
+
+      if (right instanceof NumericHeader && isNumber(left))
+      {
+         return new HeaderComparison(operation, (NumericHeader)right, (Number)((Constant)left).value, false);
+      }
+
+      return new Comparison(operation, left, right);
+   }
+
+   private static Predicate compileLike(final Operator op)
+   {
+      boolean escape = op.getOperation() == Operator.LIKE_ESCAPE || op.getOperation() == Operator.NOT_LIKE_ESCAPE;
+
+      Operand operand = compileOperand(op.getOper1());
+
+      if (operand == null || !(op.getOper2() instanceof SimpleString))
+      {
+         return null;
+      }
+
+      Character escapeChar = null;
+
+      if (escape)
+      {
+         if (!(op.getOper3() instanceof SimpleString) || ((SimpleString)op.getOper3()).length() != 1)
+         {
+            return null;
+         }
+
+         escapeChar = Character.valueOf(((SimpleString)op.getOper3()).charAt(0));
+      }
+
+      RegExp re;
+      try
+      {
+         re = new RegExp(op.getOper2().toString(), escapeChar);
+      }
+      catch (Exception e)
+      {
+         // the interpreter will fail on every message
+         return null;
+      }
+
+      boolean not = op.getOperation() == Operator.NOT_LIKE || op.getOperation() == Operator.NOT_LIKE_ESCAPE;
+
+      return new Like(operand, re, not);
+   }
+
+   private static Operand compileOperand(final Object expression)
+   {
+      if (expression instanceof Identifier)
+      {
+         SimpleString name = ((Identifier)expression).getName();
+
+         if (name.startsWith(FilterConstants.HORNETQ_PREFIX))
+         {
+            Operand header = headerOperand(name);
+
+            if (header != null)
+            {
+               return header;
+            }
+         }
+
+         return new Property(name);
+      }
+      else if (expression instanceof Operator)
+      {
+         Operator op = (Operator)expression;
+
+         // negative literals
+         if (op.getOperation() == Operator.NEG && op.getOper1() instanceof Long)
+         {
+            return new Constant(Long.valueOf(-((Long)op.getOper1()).longValue()));
+         }
+         else if (op.getOperation() == Operator.NEG && op.getOper1() instanceof Double)
+         {
+            return new Constant(Double.valueOf(-((Double)op.getOper1()).doubleValue()));
+         }
+
+         return null;
+      }
+      else
+      {
+         return new Constant(expression);
+      }
+   }
+
+   /**
+    * The header fields have a value for all messages, the other identifiers starting with
+    * {@link FilterConstants#HORNETQ_PREFIX} are looked up as properties.
+    */
+   private static Operand headerOperand(final SimpleString name)
+   {
+      if (FilterConstants.HORNETQ_USERID.equals(name))
+      {
+         return new UserID();
+      }
+      else if (FilterConstants.HORNETQ_PRIORITY.equals(name))
+      {
+         return new Priority();
+      }
+      else if (FilterConstants.HORNETQ_TIMESTAMP.equals(name))
+      {
+         return new Timestamp();
+      }
+      else if (FilterConstants.HORNETQ_DURABLE.equals(name))
+      {
+         return new Durable();
+      }
+      else if (FilterConstants.HORNETQ_EXPIRATION.equals(name))
+      {
+         return new Expiration();
+      }
+      else if (FilterConstants.HORNETQ_SIZE.equals(name))
+      {
+         return new Size();
+      }
+      else
+      {
+         return null;
+      }
+   }
+
+   private static boolean isNumber(final Operand operand)
+   {
+      if (!(operand instanceof Constant))
+      {
+         return false;
+      }
+
+      Object value = ((Constant)operand).value;
+
+      return value instanceof Long || value instanceof Double;
+   }
+
+   /**
+    * @return the type the interpreter gives to the value, or {@link #BAD_TYPE} if it throws an
+    *         exception for it
+    */
+   private static int typeOf(final Object value)
+   {
+      if (value == null)
+      {
+         return NULL;
+      }
+
+      Class<?> clazz = value.getClass();
+
+      if (clazz == SimpleString.class)
+      {
+         return Operator.SIMPLE_STRING;
+      }
+      else if (clazz == Long.class || clazz == Integer.class || clazz == Short.class || clazz == Byte.class)
+      {
+         return Operator.LONG;
+      }
+      else if (clazz == Double.class || clazz == Float.class)
+      {
+         return Operator.DOUBLE;
+      }
+      else if (clazz == Boolean.class)
+      {
+         return Operator.BOOLEAN;
+      }
+      else
+      {
+         return BAD_TYPE;
+      }
+   }
+
+   private static int result(final boolean value)
+   {
+      return value ? TRUE : FALSE;
+   }
+
+   /**
+    * Compares two numbers the way {@link Operator} does, including its >= on a double and a long
+    * which compares the long value of the double.
+    */
+   private static int compareNumbers(final int operation,
+                                     final boolean double1,
+                                     final long long1,
+                                     final double double1Value,
+                                     final boolean double2,
+                                     final long long2,
+                                     final double double2Value)
+   {
+      switch (operation)
+      {
+         case Operator.EQUAL:
+            if (double1)
+            {
+               return result(double2 ? double1Value == double2Value : double1Value == long2);
+            }
+            return result(double2 ? long1 == double2Value : long1 == long2);
+         case Operator.DIFFERENT:
+            if (double1)
+            {
+               return result(double2 ? double1Value != double2Value : double1Value != long2);
+            }
+            return result(double2 ? long1 != double2Value : long1 != long2);
+         case Operator.GT:
+            if (double1)
+            {
+               return result(double2 ? double1Value > double2Value : double1Value > long2);
+            }
+            return result(double2 ? long1 > double2Value : long1 > long2);
+         case Operator.GE:
+            if (double1)
+            {
+               return result(double2 ? double1Value >= double2Value : long1 >= long2);
+            }
+            return result(double2 ? long1 >= double2Value : long1 >= long2);
+         case Operator.LT:
+            if (double1)
+            {
+               return result(double2 ? double1Value < double2Value : double1Value < long2);
+            }
+            return result(double2 ? long1 < double2Value : long1 < long2);
+         case Operator.LE:
+            if (double1)
+            {
+               return result(double2 ? double1Value <= double2Value : double1Value <= long2);
+            }
+            return result(double2 ? long1 <= double2Value : long1 <= long2);
+         default:
+            return DEFER;
+      }
+   }
+
+   // Inner classes -------------------------------------------------
+
+   /**
+    * A boolean expression, evaluated to {@link #TRUE}, {@link #FALSE}, {@link #UNKNOWN} or
+    * {@link #DEFER}.
+    */
+   abstract static class Predicate
+   {
+      abstract int evaluate(ServerMessage message);
+   }
+
+   /**
+    * An identifier or a literal.
+    */
+   private abstract static class Operand
+   {
+      abstract Object getValue(ServerMessage message);
+   }
+
+   private static final class Constant extends Operand
+   {
+      private final Object value;
+
+      Constant(final Object value)
+      {
+         this.value = value;
+      }
+
+      @Override
+      Object getValue(final ServerMessage message)
+      {
+         return value;
+      }
+   }
+
+   private static final class Property extends Operand
+   {
+      private final SimpleString name;
+
+      Property(final SimpleString name)
+      {
+         this.name = name;
+      }
+
+      @Override
+      Object getValue(final ServerMessage message)
+      {
+         return message.getObjectProperty(name);
+      }
+   }
+
+   private static final class UserID extends Operand
+   {
+      @Override
+      Object getValue(final ServerMessage message)
+      {
+         // It's the stringified (hex) representation of a user id that can be used in a selector expression
+         return new SimpleString("ID:" + message.getUserID());
+      }
+   }
+
+   private static final class Durable extends Operand
+   {
+      @Override
+      Object getValue(final ServerMessage message)
+      {
+         return message.isDurable() ? FilterConstants.DURABLE : FilterConstants.NON_DURABLE;
+      }
+   }
+
+   /**
+    * A header field compared as a long, read without boxing it by {@link HeaderComparison}.
+    */
+   private abstract static class NumericHeader extends Operand
+   {
+      abstract long getLong(ServerMessage message);
+
+      @Override
+      Object getValue(final ServerMessage message)
+      {
+         return Long.valueOf(getLong(message));
+      }
+   }
+
+   private static final class Priority extends NumericHeader
+   {
+      @Override
+      long getLong(final ServerMessage message)
+      {
+         return message.getPriority();
+      }
+   }
+
+   private static final class Timestamp extends NumericHeader
+   {
+      @Override
+      long getLong(final ServerMessage message)
+      {
+         return message.getTimestamp();
+      }
+   }
+
+   private static final class Expiration extends NumericHeader
+   {
+      @Override
+      long getLong(final ServerMessage message)
+      {
+         return message.getExpiration();
+      }
+   }
+
+   private static final class Size extends NumericHeader
+   {
+      @Override
+      long getLong(final ServerMessage message)
+      {
+         return message.getEncodeSize();
+      }
+   }
+
+   /**
+    * An identifier or a literal used as a boolean expression.
+    */
+   private static final class BooleanOperand extends Predicate
+   {
+      private final Operand operand;
+
+      BooleanOperand(final Operand operand)
+      {
+         this.operand = operand;
+      }
+
+      @Override
+      int evaluate(final ServerMessage message)
+      {
+         Object value = operand.getValue(message);
+
+         switch (typeOf(value))
+         {
+            case NULL:
+               return UNKNOWN;
+            case Operator.BOOLEAN:
+               return result(((Boolean)value).booleanValue());
+            default:
+               return DEFER;
+         }
+      }
+   }
+
+   private static final class And extends Predicate
+   {
+      private final Predicate left;
+
+      private final Predicate right;
+
+      And(final Predicate left, final Predicate right)
+      {
+         this.left = left;
+         this.right = right;
+      }
+
+      @Override
+      int evaluate(final ServerMessage message)
+      {
+         int result1 = left.evaluate(message);
+
+         if (result1 == FALSE || result1 == DEFER)
+         {
+            return result1;
+         }
+
+         int result2 = right.evaluate(message);
+
+         if (result1 == UNKNOWN && result2 == TRUE)
+         {
+            return UNKNOWN;
+         }
+
+         return result2;
+      }
+   }
+
+   private static final class Or extends Predicate
+   {
+      private final Predicate left;
+
+      private final Predicate right;
+
+      Or(final Predicate left, final Predicate right)
+      {
+         this.left = left;
+         this.right = right;
+      }
+
+      @Override
+      int evaluate(final ServerMessage message)
+      {
+         int result1 = left.evaluate(message);
+
+         if (result1 == TRUE || result1 == DEFER)
+         {
+            return result1;
+         }
+
+         int result2 = right.evaluate(message);
+
+         if (result2 == TRUE || result2 == DEFER)
+         {
+            return result2;
+         }
+
+         return result1 == FALSE && result2 == FALSE ? FALSE : UNKNOWN;
+      }
+   }
+
+   private static final class Not extends Predicate
+   {
+      private final Predicate predicate;
+
+      Not(final Predicate predicate)
+      {
+         this.predicate = predicate;
+      }
+
+      @Override
+      int evaluate(final ServerMessage message)
+      {
+         int result = predicate.evaluate(message);
+
+         switch (result)
+         {
+            case TRUE:
+               return FALSE;
+            case FALSE:
+               return TRUE;
+            default:
+               return result;
+         }
+      }
+   }
+
+   private static final class Comparison extends Predicate
+   {
+      private final int operation;
+
+      private final Operand left;
+
+      private final Operand right;
+
+      Comparison(final int operation, final Operand left, final Operand right)
+      {
+         this.operation = operation;
+         this.left = left;
+         this.right = right;
+      }
+
+      @Override
+      int evaluate(final ServerMessage message)
+      {
+         Object value1 = left.getValue(message);
+         int type1 = typeOf(value1);
+
+         if (type1 == BAD_TYPE)
+         {
+            return DEFER;
+         }
+
+         if (type1 == NULL)
+         {
+            if (operation == Operator.EQUAL)
+            {
+               return FALSE;
+            }
+            else if (operation == Operator.DIFFERENT)
+            {
+               int type2 = typeOf(right.getValue(message));
+
+               return type2 == BAD_TYPE ? DEFER : result(type2 != NULL);
+            }
+            return UNKNOWN;
+         }
+
+         if (type1 == Operator.LONG || type1 == Operator.DOUBLE)
+         {
+            Object value2 = right.getValue(message);
+            int type2 = typeOf(value2);
+
+            if (type2 == BAD_TYPE)
+            {
+               return DEFER;
+            }
+            else if (type2 == NULL)
+            {
+               return UNKNOWN;
+            }
+            else if (type2 != Operator.LONG && type2 != Operator.DOUBLE)
+            {
+               return FALSE;
+            }
+
+            Number number1 = (Number)value1;
+            Number number2 = (Number)value2;
+
+            return compareNumbers(operation,
+                                  type1 == Operator.DOUBLE,
+                                  number1.longValue(),
+                                  number1.doubleValue(),
+                                  type2 == Operator.DOUBLE,
+                                  number2.longValue(),
+                                  number2.doubleValue());
+         }
+
+         // strings and booleans are only compared for equality
+         if (operation != Operator.EQUAL && operation != Operator.DIFFERENT)
+         {
+            return FALSE;
+         }
+
+         Object value2 = right.getValue(message);
+         int type2 = typeOf(value2);
+
+         if (type2 == NULL)
+         {
+            return operation == Operator.EQUAL ? FALSE : UNKNOWN;
+         }
+         else if (type2 != type1)
+         {
+            return DEFER;
+         }
+
+         return result(value1.equals(value2) == (operation == Operator.EQUAL));
+      }
+   }
+
+   /**
+    * Compares a numeric header field with a numeric literal.
+    */
+   private static final class HeaderComparison extends Predicate
+   {
+      private final int operation;
+
+      private final NumericHeader header;
+
+      private final boolean constantDouble;
+
+      private final long constantLong;
+
+      private final double constantDoubleValue;
+
+      private final boolean headerFirst;
+
+      HeaderComparison(final int operation, final NumericHeader header, final Number constant, final boolean headerFirst)
+      {
+         this.operation = operation;
+         this.header = header;
+         constantDouble = constant instanceof Double;
+         constantLong = constant.longValue();
+         constantDoubleValue = constant.doubleValue();
+         this.headerFirst = headerFirst;
+      }
+
+      @Override
+      int evaluate(final ServerMessage message)
+      {
+         long value = header.getLong(message);
+
+         if (headerFirst)
+         {
+            return compareNumbers(operation, false, value, value, constantDouble, constantLong, constantDoubleValue);
+         }
+         return compareNumbers(operation, constantDouble, constantLong, constantDoubleValue, false, value, value);
+      }
+   }
+
+   /**
+    * BETWEEN is >= and <=, NOT BETWEEN is < or >.
+    */
+   private static final class Between extends Predicate
+   {
+      private final Predicate low;
+
+      private final Predicate high;
+
+      private final boolean not;
+
+      Between(final Predicate low, final Predicate high, final boolean not)
+      {
+         this.low = low;
+         this.high = high;
+         this.not = not;
+      }
+
+      @Override
+      int evaluate(final ServerMessage message)
+      {
+         int result = low.evaluate(message);
+
+         if (result == UNKNOWN || result == DEFER || result == (not ? TRUE : FALSE))
+         {
+            return result;
+         }
+
+         return high.evaluate(message);
+      }
+   }
+
+   private static final class IsNull extends Predicate
+   {
+      private final Operand operand;
+
+      private final boolean not;
+
+      IsNull(final Operand operand, final boolean not)
+      {
+         this.operand = operand;
+         this.not = not;
+      }
+
+      @Override
+      int evaluate(final ServerMessage message)
+      {
+         int type = typeOf(operand.getValue(message));
+
+         if (type == BAD_TYPE)
+         {
+            return DEFER;
+         }
+
+         return result((type == NULL) != not);
+      }
+   }
+
+   private static final class In extends Predicate
+   {
+      private final Operand operand;
+
+      private final Set<?> values;
+
+      private final boolean not;
+
+      In(final Operand operand, final Set<?> values, final boolean not)
+      {
+         this.operand = operand;
+         this.values = values;
+         this.not = not;
+      }
+
+      @Override
+      int evaluate(final ServerMessage message)
+      {
+         Object value = operand.getValue(message);
+         int type = typeOf(value);
+
+         if (type == NULL)
+         {
+            return not ? UNKNOWN : FALSE;
+         }
+         else if (type != Operator.SIMPLE_STRING)
+         {
+            return DEFER;
+         }
+
+         return result(values.contains(value) != not);
+      }
+   }
+
+   private static final class Like extends Predicate
+   {
+      private final Operand operand;
+
+      private final RegExp re;
+
+      private final boolean not;
+
+      Like(final Operand operand, final RegExp re, final boolean not)
+      {
+         this.operand = operand;
+         this.re = re;
+         this.not = not;
+      }
+
+      @Override
+      int evaluate(final ServerMessage message)
+      {
+         Object value = operand.getValue(message);
+         int type = typeOf(value);
+
+         if (type == NULL)
+         {
+            return UNKNOWN;
+         }
+         else if (type != Operator.SIMPLE_STRING)
+         {
+            return DEFER;
+         }
+
+         return result(re.isMatch((SimpleString)value) != not);
+      }
+   }
+}
@@ -13,8 +13,10 @@
 
 package org.hornetq.core.filter.impl;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 
 import org.hornetq.api.core.FilterConstants;
 import org.hornetq.api.core.HornetQException;
@@ -60,6 +62,14 @@ public class FilterImpl implements Filter
 
    // Constants -----------------------------------------------------
 
+   /**
+    * Set this system property to evaluate all the filters with the {@link Operator} interpreter
+    * instead of compiling them.
+    */
+   public static final String INTERPRETED_PROPERTY = "org.hornetq.filter.interpreted";
+
+   private static final boolean COMPILED = System.getProperty(FilterImpl.INTERPRETED_PROPERTY) == null;
+
    private final SimpleString sfilterString;
 
    private final Map<SimpleString, Identifier> identifiers;
@@ -68,6 +78,18 @@ public class FilterImpl implements Filter
 
    private final Class<? extends Object> resultType;
 
+   /**
+    * the compiled expression, or null if it is interpreted
+    */
+   private final FilterCompiler.Predicate predicate;
+
+   /**
+    * the property of the predicate found by {@link #findIndexPredicate(Object)}, if any
+    */
+   private SimpleString indexProperty;
+
+   private Set<SimpleString> indexValues;
+
    // Static ---------------------------------------------------------
 
    /**
@@ -84,6 +106,17 @@ public class FilterImpl implements Filter
     * @throws HornetQException if the string does not correspond to a valid filter
     */
    public static Filter createFilter(final SimpleString filterStr) throws HornetQException
+   {
+      return FilterImpl.createFilter(filterStr, FilterImpl.COMPILED);
+   }
+
+   /**
+    * @param compiled whether to compile the expression (see {@link FilterCompiler}) rather than
+    *           interpret it
+    * @return null if <code>filterStr</code> is null or an empty String and a valid filter else
+    * @throws HornetQException if the string does not correspond to a valid filter
+    */
+   public static Filter createFilter(final SimpleString filterStr, final boolean compiled) throws HornetQException
    {
       if (filterStr == null || filterStr.length() == 0)
       {
@@ -101,18 +134,20 @@ public class FilterImpl implements Filter
          HornetQServerLogger.LOGGER.invalidFilter(e, filterStr);
          throw HornetQMessageBundle.BUNDLE.invalidFilter(e, filterStr);
       }
-      return new FilterImpl(filterStr, identifierMap, result0);
+      return new FilterImpl(filterStr, identifierMap, result0, compiled);
    }
 
    // Constructors ---------------------------------------------------
 
    private FilterImpl(final SimpleString str, final HashMap<SimpleString, Identifier> identifierMap,
-                      final Object result0)
+                      final Object result0, final boolean compiled)
    {
       sfilterString = str;
       identifiers = identifierMap;
       this.result = result0;
       resultType = result.getClass();
+      predicate = compiled ? FilterCompiler.compile(result) : null;
+      findIndexPredicate(result);
    }
 
    // Filter implementation ---------------------------------------------------------------------
@@ -122,7 +157,55 @@ public class FilterImpl implements Filter
       return sfilterString;
    }
 
-   public synchronized boolean match(final ServerMessage message)
+   /**
+    * The filter can only match the messages whose value of this property is one of the
+    * {@link #getIndexValues() index values}. The bindings use it to skip the filters that can't
+    * match a message without evaluating them.
+    *
+    * @return the name of a property this filter requires to be one of several strings, or null if
+    *         the filter doesn't have such a predicate
+    */
+   public SimpleString getIndexProperty()
+   {
+      return indexProperty;
+   }
+
+   /**
+    * @return the strings the {@link #getIndexProperty() index property} must be equal to, or null
+    */
+   public Set<SimpleString> getIndexValues()
+   {
+      return indexValues;
+   }
+
+   /**
+    * @return true if the expression was compiled, false if it is interpreted
+    */
+   public boolean isCompiled()
+   {
+      return predicate != null;
+   }
+
+   public boolean match(final ServerMessage message)
+   {
+      if (predicate != null)
+      {
+         int matched = predicate.evaluate(message);
+
+         if (matched != FilterCompiler.DEFER)
+         {
+            return matched == FilterCompiler.TRUE;
+         }
+      }
+
+      return interpret(message);
+   }
+
+   /**
+    * Evaluates the expression with the {@link Operator}s, which keep the values of the current
+    * message.
+    */
+   private synchronized boolean interpret(final ServerMessage message)
    {
       try
       {
@@ -217,6 +300,66 @@ public class FilterImpl implements Filter
 
    // Private --------------------------------------------------------------------------
 
+   /**
+    * Looks for the equality or IN predicates on a string property which must all be true for the
+    * filter to match, i.e. the expression itself or the operands of AND operators, and keeps the
+    * one with the fewest values.
+    */
+   @SuppressWarnings("unchecked")
+   private void findIndexPredicate(final Object expression)
+   {
+      if (!(expression instanceof Operator))
+      {
+         return;
+      }
+
+      Operator op = (Operator)expression;
+
+      Object oper1 = op.getOper1();
+      Object oper2 = op.getOper2();
+
+      switch (op.getOperation())
+      {
+         case Operator.AND:
+            findIndexPredicate(oper1);
+            findIndexPredicate(oper2);
+            break;
+         case Operator.EQUAL:
+            if (oper1 instanceof Identifier && oper2 instanceof SimpleString)
+            {
+               setIndexPredicate((Identifier)oper1, Collections.singleton((SimpleString)oper2));
+            }
+            else if (oper2 instanceof Identifier && oper1 instanceof SimpleString)
+            {
+               setIndexPredicate((Identifier)oper2, Collections.singleton((SimpleString)oper1));
+            }
+            break;
+         case Operator.IN:
+            if (oper1 instanceof Identifier && oper2 instanceof Set)
+            {
+               setIndexPredicate((Identifier)oper1, Collections.unmodifiableSet((Set<SimpleString>)oper2));
+            }
+            break;
+         default:
+            break;
+      }
+   }
+
+   private void setIndexPredicate(final Identifier identifier, final Set<SimpleString> values)
+   {
+      // the header fields are not looked up as properties
+      if (identifier.getName().startsWith(FilterConstants.HORNETQ_PREFIX))
+      {
+         return;
+      }
+
+      if (indexValues == null || values.size() < indexValues.size())
+      {
+         indexProperty = identifier.getName();
+         indexValues = values;
+      }
+   }
+
    private Object getHeaderFieldValue(final ServerMessage msg, final SimpleString fieldName)
    {
       if (FilterConstants.HORNETQ_USERID.equals(fieldName))
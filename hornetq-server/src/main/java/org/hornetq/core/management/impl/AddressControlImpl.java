@@ -192,6 +192,58 @@ public class AddressControlImpl extends AbstractControl implements AddressContro
       }
    }
 
+   public long getPageCacheHits() throws Exception
+   {
+      clearIO();
+      try
+      {
+         return pagingManager.getPageStore(address).getCursorProvider().getCacheHits();
+      }
+      finally
+      {
+         blockOnIO();
+      }
+   }
+
+   public long getPageCacheMisses() throws Exception
+   {
+      clearIO();
+      try
+      {
+         return pagingManager.getPageStore(address).getCursorProvider().getCacheMisses();
+      }
+      finally
+      {
+         blockOnIO();
+      }
+   }
+
+   public long getPrefetchedPages() throws Exception
+   {
+      clearIO();
+      try
+      {
+         return pagingManager.getPageStore(address).getCursorProvider().getPrefetchedPages();
+      }
+      finally
+      {
+         blockOnIO();
+      }
+   }
+
+   public long getPageReadStallTime() throws Exception
+   {
+      clearIO();
+      try
+      {
+         return pagingManager.getPageStore(address).getCursorProvider().getStallTime();
+      }
+      finally
+      {
+         blockOnIO();
+      }
+   }
+
    public boolean isPaging() throws Exception
    {
       clearIO();
@@ -48,13 +48,17 @@ import org.hornetq.api.core.management.QueueControl;
 import org.hornetq.core.config.BridgeConfiguration;
 import org.hornetq.core.config.Configuration;
 import org.hornetq.core.config.DivertConfiguration;
+import org.hornetq.core.journal.Journal;
 import org.hornetq.core.messagecounter.MessageCounterManager;
 import org.hornetq.core.messagecounter.impl.MessageCounterManagerImpl;
+import org.hornetq.core.paging.PagingManager;
+import org.hornetq.core.paging.cursor.PageCacheManager;
 import org.hornetq.core.persistence.StorageManager;
 import org.hornetq.core.persistence.config.PersistedAddressSetting;
 import org.hornetq.core.persistence.config.PersistedRoles;
 import org.hornetq.core.postoffice.PostOffice;
 import org.hornetq.core.remoting.server.RemotingService;
+import org.hornetq.core.replication.ReplicationManager;
 import org.hornetq.core.security.CheckType;
 import org.hornetq.core.security.Role;
 import org.hornetq.core.server.HornetQMessageBundle;
@@ -181,6 +185,38 @@ public class HornetQServerControlImpl extends AbstractControl implements HornetQ
       }
    }
 
+   public long getReplicationSyncTotalBytes()
+   {
+      checkStarted();
+
+      ReplicationManager replicationManager = server.getReplicationManager();
+      return replicationManager == null ? 0 : replicationManager.getSyncTotalBytes();
+   }
+
+   public long getReplicationSyncSentBytes()
+   {
+      checkStarted();
+
+      ReplicationManager replicationManager = server.getReplicationManager();
+      return replicationManager == null ? 0 : replicationManager.getSyncSentBytes();
+   }
+
+   public int getReplicationSyncTotalFiles()
+   {
+      checkStarted();
+
+      ReplicationManager replicationManager = server.getReplicationManager();
+      return replicationManager == null ? 0 : replicationManager.getSyncTotalFiles();
+   }
+
+   public int getReplicationSyncSentFiles()
+   {
+      checkStarted();
+
+      ReplicationManager replicationManager = server.getReplicationManager();
+      return replicationManager == null ? 0 : replicationManager.getSyncSentFiles();
+   }
+
    public String getBindingsDirectory()
    {
       checkStarted();
@@ -398,6 +434,38 @@ public class HornetQServerControlImpl extends AbstractControl implements HornetQ
       }
    }
 
+   public long getJournalCompactCount()
+   {
+      checkStarted();
+
+      Journal journal = storageManager.getMessageJournal();
+      return journal == null ? 0 : journal.getCompactCount();
+   }
+
+   public long getJournalLastCompactPauseTime()
+   {
+      checkStarted();
+
+      Journal journal = storageManager.getMessageJournal();
+      return journal == null ? 0 : journal.getLastCompactPauseTime();
+   }
+
+   public long getJournalMaxCompactPauseTime()
+   {
+      checkStarted();
+
+      Journal journal = storageManager.getMessageJournal();
+      return journal == null ? 0 : journal.getMaxCompactPauseTime();
+   }
+
+   public long getJournalCompactBytesReclaimed()
+   {
+      checkStarted();
+
+      Journal journal = storageManager.getMessageJournal();
+      return journal == null ? 0 : journal.getCompactBytesReclaimed();
+   }
+
    public boolean isPersistenceEnabled()
    {
       checkStarted();
@@ -428,6 +496,37 @@ public class HornetQServerControlImpl extends AbstractControl implements HornetQ
       }
    }
 
+   public long getPageCacheSize()
+   {
+      checkStarted();
+
+      PagingManager pagingManager = server.getPagingManager();
+      return pagingManager == null ? 0 : pagingManager.getPageCacheManager().getSize();
+   }
+
+   public double getPageCacheHitRatio()
+   {
+      checkStarted();
+
+      PagingManager pagingManager = server.getPagingManager();
+      if (pagingManager == null)
+      {
+         return 0;
+      }
+      PageCacheManager pageCacheManager = pagingManager.getPageCacheManager();
+      long hits = pageCacheManager.getHits();
+      long lookups = hits + pageCacheManager.getMisses();
+      return lookups == 0 ? 0 : (double)hits / lookups;
+   }
+
+   public long getPageCacheEvictions()
+   {
+      checkStarted();
+
+      PagingManager pagingManager = server.getPagingManager();
+      return pagingManager == null ? 0 : pagingManager.getPageCacheManager().getEvictions();
+   }
+
    public String getPagingDirectory()
    {
       checkStarted();
@@ -1497,6 +1596,7 @@ public class HornetQServerControlImpl extends AbstractControl implements HornetQ
       settings.put("expiryDelay", addressSettings.getExpiryDelay());
       settings.put("maxDeliveryAttempts", addressSettings.getMaxDeliveryAttempts());
       settings.put("pageCacheMaxSize", addressSettings.getPageCacheMaxSize());
+      settings.put("pagePrefetchDepth", addressSettings.getPagePrefetchDepth());
       settings.put("maxSizeBytes", addressSettings.getMaxSizeBytes());
       settings.put("pageSizeBytes", addressSettings.getPageSizeBytes());
       settings.put("redeliveryDelay", addressSettings.getRedeliveryDelay());
@@ -1505,6 +1605,7 @@ public class HornetQServerControlImpl extends AbstractControl implements HornetQ
       settings.put("redistributionDelay", addressSettings.getRedistributionDelay());
       settings.put("lastValueQueue", addressSettings.isLastValueQueue());
       settings.put("sendToDLAOnNoRoute", addressSettings.isSendToDLAOnNoRoute());
+      settings.put("indexMessageIDs", addressSettings.isIndexMessageIDs());
       String policy = addressSettings.getAddressFullMessagePolicy() == AddressFullMessagePolicy.PAGE ? "PAGE"
             : addressSettings.getAddressFullMessagePolicy() == AddressFullMessagePolicy.BLOCK ? "BLOCK"
             : addressSettings.getAddressFullMessagePolicy() == AddressFullMessagePolicy.DROP ? "DROP"
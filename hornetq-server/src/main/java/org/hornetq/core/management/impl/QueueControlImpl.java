@@ -258,6 +258,21 @@ public class QueueControlImpl extends AbstractControl implements QueueControl
       }
    }
 
+   public long getMessageIDIndexMemorySize()
+   {
+      checkStarted();
+
+      clearIO();
+      try
+      {
+         return queue.getMessageIDIndexMemorySize();
+      }
+      finally
+      {
+         blockOnIO();
+      }
+   }
+
    public long getID()
    {
       checkStarted();
@@ -17,6 +17,7 @@ import java.util.Map;
 
 import org.hornetq.api.core.SimpleString;
 import org.hornetq.core.journal.SequentialFile;
+import org.hornetq.core.paging.cursor.PageCacheManager;
 import org.hornetq.core.paging.impl.Page;
 import org.hornetq.core.postoffice.Address;
 import org.hornetq.core.postoffice.PostOffice;
@@ -89,4 +90,9 @@ public interface PagingManager extends HornetQComponent, HierarchicalRepositoryC
     * @see #lock()
     */
    void unlock();
+
+   /**
+    * @return the cache of the pages read, shared by all the addresses
+    */
+   PageCacheManager getPageCacheManager();
 }
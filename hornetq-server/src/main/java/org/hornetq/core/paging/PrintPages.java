@@ -286,6 +286,15 @@ public class PrintPages // NO_UCD (unused code)
             }
 
             set.add(encoding.position);
+
+            if (encoding.acks != null)
+            {
+               // a single record with the acks of many messages of the page
+               for (int nr = encoding.acks.nextSetBit(0); nr >= 0; nr = encoding.acks.nextSetBit(nr + 1))
+               {
+                  set.add(new PagePositionImpl(encoding.position.getPageNr(), nr));
+               }
+            }
          }
          else if (record.userRecordType == JournalRecordIds.PAGE_CURSOR_COMPLETE)
          {
@@ -0,0 +1,171 @@
+/*
+ * Copyright 2010 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.core.paging.cursor;
+
+import java.util.Arrays;
+
+import org.hornetq.api.core.HornetQBuffer;
+import org.hornetq.core.journal.EncodingSupport;
+import org.hornetq.utils.DataConstants;
+
+/**
+ * A set of the message numbers of a page, one bit per message.
+ * <p>
+ * Messages are mostly acknowledged in order, so the words at the start that have every bit set are
+ * dropped and only counted: a page consumed from its start takes a few words whatever its size, on
+ * the heap and when it is stored.
+ */
+public final class PageAckBitSet implements EncodingSupport
+{
+   private static final long[] EMPTY = new long[0];
+
+   // every message number below full * 64 is in the set
+   private int full;
+
+   // the message numbers from full * 64 on
+   private long[] words = EMPTY;
+
+   /**
+    * @return true if the message number was not in the set
+    */
+   public synchronized boolean set(final int messageNr)
+   {
+      int word = (messageNr >>> 6) - full;
+      if (word < 0)
+      {
+         return false;
+      }
+      if (word >= words.length)
+      {
+         words = Arrays.copyOf(words, Math.max(word + 1, words.length * 2));
+      }
+
+      long bit = 1L << messageNr;
+      if ((words[word] & bit) != 0)
+      {
+         return false;
+      }
+      words[word] |= bit;
+
+      if (word == 0 && words[0] == -1L)
+      {
+         dropFullWords();
+      }
+      return true;
+   }
+
+   public synchronized boolean get(final int messageNr)
+   {
+      int word = (messageNr >>> 6) - full;
+      if (word < 0)
+      {
+         return true;
+      }
+      return word < words.length && (words[word] & 1L << messageNr) != 0;
+   }
+
+   /**
+    * @return the first message number in the set from fromNr on, or -1 if there is none
+    */
+   public synchronized int nextSetBit(final int fromNr)
+   {
+      if (fromNr < full << 6)
+      {
+         return fromNr;
+      }
+      int word = (fromNr >>> 6) - full;
+      if (word >= words.length)
+      {
+         return -1;
+      }
+      long bits = words[word] & -1L << fromNr;
+      while (bits == 0)
+      {
+         if (++word == words.length)
+         {
+            return -1;
+         }
+         bits = words[word];
+      }
+      return (word + full << 6) + Long.numberOfTrailingZeros(bits);
+   }
+
+   public synchronized void clear()
+   {
+      full = 0;
+      words = EMPTY;
+   }
+
+   public synchronized PageAckBitSet copy()
+   {
+      PageAckBitSet copy = new PageAckBitSet();
+      copy.full = full;
+      copy.words = Arrays.copyOf(words, usedWords());
+      return copy;
+   }
+
+   public synchronized int getEncodeSize()
+   {
+      return DataConstants.SIZE_INT + DataConstants.SIZE_INT + usedWords() * DataConstants.SIZE_LONG;
+   }
+
+   public synchronized void encode(final HornetQBuffer buffer)
+   {
+      int used = usedWords();
+      buffer.writeInt(full);
+      buffer.writeInt(used);
+      for (int i = 0; i < used; i++)
+      {
+         buffer.writeLong(words[i]);
+      }
+   }
+
+   public synchronized void decode(final HornetQBuffer buffer)
+   {
+      full = buffer.readInt();
+      words = new long[buffer.readInt()];
+      for (int i = 0; i < words.length; i++)
+      {
+         words[i] = buffer.readLong();
+      }
+   }
+
+   @Override
+   public synchronized String toString()
+   {
+      return "PageAckBitSet [full=" + full + ", words=" + usedWords() + "]";
+   }
+
+   private int usedWords()
+   {
+      int used = words.length;
+      while (used > 0 && words[used - 1] == 0)
+      {
+         used--;
+      }
+      return used;
+   }
+
+   private void dropFullWords()
+   {
+      int drop = 0;
+      while (drop < words.length && words[drop] == -1L)
+      {
+         drop++;
+      }
+      System.arraycopy(words, drop, words, 0, words.length - drop);
+      Arrays.fill(words, words.length - drop, words.length, 0);
+      full += drop;
+   }
+}
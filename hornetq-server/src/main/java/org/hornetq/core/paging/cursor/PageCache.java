@@ -14,7 +14,6 @@
 package org.hornetq.core.paging.cursor;
 
 import org.hornetq.core.paging.PagedMessage;
-import org.hornetq.utils.SoftValueHashMap;
 
 /**
  * A PageCache
@@ -23,7 +22,7 @@ import org.hornetq.utils.SoftValueHashMap;
  *
  *
  */
-public interface PageCache extends SoftValueHashMap.ValueCache
+public interface PageCache
 {
    long getPageId();
 
@@ -58,4 +57,9 @@ public interface PageCache extends SoftValueHashMap.ValueCache
 
    void close();
 
+   /**
+    * @return the memory taken by the messages of this cache, in bytes
+    */
+   int getMemoryEstimate();
+
 }
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2010 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.core.paging.cursor;
+
+/**
+ * Keeps the page caches of every address of a server within one memory budget.
+ * <p>
+ * When the cached pages take more memory than the budget, or an address caches more pages than
+ * its page-max-cache-size, the least recently used pages are evicted from their
+ * {@link PageCursorProvider}. The pages being written and the pages read ahead that weren't
+ * accessed yet are never evicted.
+ */
+public interface PageCacheManager
+{
+   /**
+    * Adds a cache whose messages were just read, or the cache of the page being written.
+    * @param readAhead whether the page was read ahead of the subscriptions
+    */
+   void add(PageCursorProvider provider, PageCache cache, boolean readAhead);
+
+   /**
+    * To be called every time a cached page is looked up.
+    */
+   void accessed(PageCache cache);
+
+   void remove(PageCache cache);
+
+   /**
+    * @return whether the messages of the pages read are kept encoded out of the heap
+    */
+   boolean isOffHeap();
+
+   /**
+    * @return the memory budget of the cached pages, in bytes
+    */
+   long getMaxSize();
+
+   /**
+    * @return the memory taken by the cached pages, in bytes, not counting the pages being written
+    */
+   long getSize();
+
+   int getPageCount();
+
+   long getHits();
+
+   long getMisses();
+
+   long getEvictions();
+}
@@ -28,6 +28,12 @@ public interface PageCursorProvider
 
    PageCache getPageCache(long pageNr);
 
+   /**
+    * Reads the pages following pageNr into the cache in the background, up to the prefetch depth.
+    * To be called when a subscription moves into pageNr.
+    */
+   void prefetchPages(long pageNr);
+
    PagedReference newReference(final PagePosition pos, final PagedMessage msg, PageSubscription sub);
 
    void addPageCache(PageCache cache);
@@ -66,6 +72,38 @@ public interface PageCursorProvider
 
    void setCacheMaxSize(int size);
 
+   /**
+    * @return the maximum number of pages cached for the address
+    */
+   int getCacheMaxSize();
+
+   /**
+    * Removes a page from the cache, called by the {@link PageCacheManager} once it evicted it.
+    */
+   void evictPageCache(PageCache cache);
+
+   void setPrefetchDepth(int depth);
+
+   /**
+    * @return the number of times a page was found in the cache
+    */
+   long getCacheHits();
+
+   /**
+    * @return the number of times a page had to be read by a subscription
+    */
+   long getCacheMisses();
+
+   /**
+    * @return the number of pages read ahead of the subscriptions
+    */
+   long getPrefetchedPages();
+
+   /**
+    * @return the time in milliseconds the subscriptions spent waiting for pages to be read
+    */
+   long getStallTime();
+
    /**
     * @param pageCursorImpl
     */
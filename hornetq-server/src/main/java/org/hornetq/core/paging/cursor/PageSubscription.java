@@ -93,6 +93,12 @@ public interface PageSubscription
     */
    void reloadACK(PagePosition position);
 
+   /**
+    * Reloads a record holding the acks of many messages of a page.
+    * @param position the page and the id of the record
+    */
+   void reloadACK(PagePosition position, PageAckBitSet acks);
+
    void reloadPageCompletion(PagePosition position);
 
    void reloadPageInfo(long pageNr);
@@ -110,6 +110,17 @@ public class LivePageCacheImpl implements LivePageCache
       this.isLive = false;
    }
 
+   @Override
+   public synchronized int getMemoryEstimate()
+   {
+      int estimate = 0;
+      for (PagedMessage message : messages)
+      {
+         estimate += message.getMessage().getMemoryEstimate();
+      }
+      return estimate;
+   }
+
    @Override
    public synchronized PagedMessage[] getMessages()
    {
@@ -0,0 +1,216 @@
+/*
+ * Copyright 2010 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.core.paging.cursor.impl;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.hornetq.api.core.HornetQBuffer;
+import org.hornetq.api.core.HornetQBuffers;
+import org.hornetq.core.paging.PagedMessage;
+import org.hornetq.core.paging.cursor.PageCache;
+import org.hornetq.core.paging.impl.Page;
+import org.hornetq.core.paging.impl.PagedMessageImpl;
+
+/**
+ * The caching associated to a single page, keeping its messages encoded in a direct buffer.
+ * <p>
+ * A message is decoded every time it is looked up, so the heap only holds the messages being
+ * delivered. The headers of large messages are small and are kept decoded, as the delivery of
+ * their bodies is tracked on the instances. The buffer is released by the GC once the cache is
+ * evicted, as a subscription may still be reading from it.
+ */
+class OffHeapPageCacheImpl implements PageCache
+{
+
+   // Attributes ----------------------------------------------------
+
+   private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+   private final Page page;
+
+   private ByteBuffer encoded;
+
+   // where every message starts in the buffer, -1 for large messages
+   private int[] positions;
+
+   // only the large messages, or null if there are none
+   private PagedMessage[] largeMessages;
+
+   private int memoryEstimate;
+
+   // Constructors --------------------------------------------------
+
+   public OffHeapPageCacheImpl(final Page page)
+   {
+      this.page = page;
+   }
+
+   // Public --------------------------------------------------------
+
+   @Override
+   public PagedMessage getMessage(final int messageNumber)
+   {
+      lock.readLock().lock();
+      try
+      {
+         if (messageNumber < positions.length)
+         {
+            return decode(messageNumber);
+         }
+         else
+         {
+            return null;
+         }
+      }
+      finally
+      {
+         lock.readLock().unlock();
+      }
+   }
+
+   public long getPageId()
+   {
+      return page.getPageId();
+   }
+
+   public void lock()
+   {
+      lock.writeLock().lock();
+   }
+
+   public void unlock()
+   {
+      lock.writeLock().unlock();
+   }
+
+   public void setMessages(final PagedMessage[] messages)
+   {
+      int size = 0;
+      for (PagedMessage message : messages)
+      {
+         if (!message.getMessage().isLargeMessage())
+         {
+            size += message.getEncodeSize();
+         }
+      }
+
+      ByteBuffer buffer = ByteBuffer.allocateDirect(size);
+      HornetQBuffer encodeBuffer = HornetQBuffers.wrappedBuffer(buffer);
+      encodeBuffer.clear();
+
+      int[] messagePositions = new int[messages.length];
+      PagedMessage[] large = null;
+      int estimate = size;
+
+      for (int i = 0; i < messages.length; i++)
+      {
+         PagedMessage message = messages[i];
+         if (message.getMessage().isLargeMessage())
+         {
+            if (large == null)
+            {
+               large = new PagedMessage[messages.length];
+            }
+            large[i] = message;
+            messagePositions[i] = -1;
+            estimate += message.getMessage().getMemoryEstimate();
+         }
+         else
+         {
+            messagePositions[i] = encodeBuffer.writerIndex();
+            message.encode(encodeBuffer);
+         }
+      }
+
+      this.encoded = buffer;
+      this.largeMessages = large;
+      this.memoryEstimate = estimate;
+      this.positions = messagePositions;
+   }
+
+   public int getMemoryEstimate()
+   {
+      return memoryEstimate;
+   }
+
+   public int getNumberOfMessages()
+   {
+      lock.readLock().lock();
+      try
+      {
+         return positions.length;
+      }
+      finally
+      {
+         lock.readLock().unlock();
+      }
+   }
+
+   public void close()
+   {
+   }
+
+   @Override
+   public boolean isLive()
+   {
+      return false;
+   }
+
+   @Override
+   public String toString()
+   {
+      return "OffHeapPageCacheImpl::page=" + page.getPageId() + " numberOfMessages = " +
+             (positions == null ? 0 : positions.length);
+   }
+
+   /**
+    * @return the messages decoded again, or null if the page wasn't read yet
+    */
+   @Override
+   public PagedMessage[] getMessages()
+   {
+      if (positions == null)
+      {
+         return null;
+      }
+
+      PagedMessage[] messages = new PagedMessage[positions.length];
+      for (int i = 0; i < messages.length; i++)
+      {
+         messages[i] = decode(i);
+      }
+      return messages;
+   }
+
+   // Private -------------------------------------------------------
+
+   private PagedMessage decode(final int messageNumber)
+   {
+      int position = positions[messageNumber];
+      if (position < 0)
+      {
+         return largeMessages[messageNumber];
+      }
+
+      // the buffer is shared with the other threads reading from the cache
+      HornetQBuffer buffer = HornetQBuffers.wrappedBuffer(encoded.duplicate());
+      buffer.setIndex(position, buffer.capacity());
+
+      PagedMessageImpl message = new PagedMessageImpl();
+      message.decode(buffer);
+      return message;
+   }
+}
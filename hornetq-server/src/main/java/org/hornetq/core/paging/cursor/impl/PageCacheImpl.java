@@ -13,15 +13,21 @@
 
 package org.hornetq.core.paging.cursor.impl;
 
+import java.util.Arrays;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import org.hornetq.core.paging.PagedMessage;
 import org.hornetq.core.paging.cursor.PageCache;
 import org.hornetq.core.paging.impl.Page;
+import org.hornetq.core.paging.impl.PageReader;
+import org.hornetq.core.persistence.StorageManager;
 
 /**
  * The caching associated to a single page.
+ * <p>
+ * The messages are either all set once the page is read, or read as they are looked up when the
+ * page has an index, so the first messages of a page can be delivered before the rest is read.
  *
  * @author <a href="mailto:clebert.suconic@jboss.org">Clebert Suconic</a>
  *
@@ -36,10 +42,25 @@ class PageCacheImpl implements PageCache
 
    private final ReadWriteLock lock = new ReentrantReadWriteLock();
 
-   private PagedMessage[] messages;
+   // the messages not read yet are null while the cache isn't complete
+   private volatile PagedMessage[] messages;
+
+   // set once every message is in messages, they can be looked up without locking from then on
+   private volatile boolean complete = true;
+
+   private int memoryEstimate;
 
    private final Page page;
 
+   // Guarded by this, only used while the cache isn't complete
+   private StorageManager storageManager;
+
+   // Guarded by this, null while the page isn't open
+   private PageReader reader;
+
+   // Guarded by this, the number of messages read while the cache isn't complete
+   private int loaded;
+
    // Static --------------------------------------------------------
 
    // Constructors --------------------------------------------------
@@ -57,19 +78,28 @@ class PageCacheImpl implements PageCache
       lock.readLock().lock();
       try
       {
-         if (messageNumber < messages.length)
+         if (messageNumber >= messages.length)
          {
-            return messages[messageNumber];
+            return null;
          }
-         else
+         else if (complete)
          {
-            return null;
+            return messages[messageNumber];
          }
       }
       finally
       {
          lock.readLock().unlock();
       }
+
+      try
+      {
+         return load(messageNumber);
+      }
+      catch (Exception e)
+      {
+         throw new RuntimeException("Couldn't complete paging due to an IO Exception on Paging - " + e.getMessage(), e);
+      }
    }
 
    public long getPageId()
@@ -89,9 +119,68 @@ class PageCacheImpl implements PageCache
 
    public void setMessages(final PagedMessage[] messages)
    {
+      int estimate = 0;
+      for (PagedMessage message : messages)
+      {
+         estimate += message.getMessage().getMemoryEstimate();
+      }
+      this.memoryEstimate = estimate;
       this.messages = messages;
    }
 
+   /**
+    * Reads the messages of the page as they're looked up instead of all at once. This is only
+    * possible when the page has an index, as the number of messages is known from it. The cache
+    * is locked by the caller.
+    * @return false if the page has no index, the messages have to be set then
+    */
+   synchronized boolean readLazily(final StorageManager storage) throws Exception
+   {
+      storage.beforePageRead();
+      try
+      {
+         page.open();
+         PageReader newReader = page.newReader(storage);
+
+         int numberOfMessages = newReader.getIndexedNumberOfMessages();
+         if (numberOfMessages < 0)
+         {
+            newReader.close();
+            page.close();
+            return false;
+         }
+
+         this.storageManager = storage;
+         this.reader = newReader;
+         // the page is not decoded yet, its size is close to what the messages take
+         this.memoryEstimate = page.getSize();
+         this.loaded = 0;
+         this.complete = false;
+         this.messages = new PagedMessage[numberOfMessages];
+         return true;
+      }
+      catch (Exception e)
+      {
+         try
+         {
+            page.close();
+         }
+         catch (Exception ignored)
+         {
+         }
+         throw e;
+      }
+      finally
+      {
+         storage.afterPageRead();
+      }
+   }
+
+   public int getMemoryEstimate()
+   {
+      return memoryEstimate;
+   }
+
    public int getNumberOfMessages()
    {
       lock.readLock().lock();
@@ -105,8 +194,13 @@ class PageCacheImpl implements PageCache
       }
    }
 
-   public void close()
+   /**
+    * Releases the page file if the page isn't fully read yet, it's opened again if more messages
+    * are looked up.
+    */
+   public synchronized void close()
    {
+      closeReader();
    }
 
    @Override
@@ -124,6 +218,110 @@ class PageCacheImpl implements PageCache
    @Override
    public PagedMessage[] getMessages()
    {
+      if (!complete)
+      {
+         try
+         {
+            for (int i = 0; !complete && i < messages.length; i++)
+            {
+               load(i);
+            }
+         }
+         catch (Exception e)
+         {
+            throw new RuntimeException("Couldn't complete paging due to an IO Exception on Paging - " + e.getMessage(), e);
+         }
+      }
       return messages;
    }
+
+   // Private -------------------------------------------------------
+
+   private synchronized PagedMessage load(final int messageNumber) throws Exception
+   {
+      PagedMessage[] localMessages = messages;
+
+      if (complete || messageNumber >= localMessages.length || localMessages[messageNumber] != null)
+      {
+         return messageNumber < localMessages.length ? localMessages[messageNumber] : null;
+      }
+
+      StorageManager storage = storageManager;
+
+      storage.beforePageRead();
+      try
+      {
+         if (reader == null)
+         {
+            page.open();
+            reader = page.newReader(storage);
+         }
+
+         PagedMessage message = null;
+         if (reader.seek(messageNumber))
+         {
+            message = reader.readMessage();
+         }
+
+         if (message == null)
+         {
+            // the page is damaged, it ends at the first invalid record
+            localMessages = Arrays.copyOf(localMessages, messageNumber);
+            loaded = 0;
+            for (PagedMessage msg : localMessages)
+            {
+               if (msg != null)
+               {
+                  loaded++;
+               }
+            }
+            messages = localMessages;
+         }
+         else
+         {
+            localMessages[messageNumber] = message;
+            loaded++;
+         }
+
+         if (loaded == localMessages.length)
+         {
+            int estimate = 0;
+            for (PagedMessage msg : localMessages)
+            {
+               estimate += msg.getMessage().getMemoryEstimate();
+            }
+            memoryEstimate = estimate;
+            closeReader();
+            storageManager = null;
+            complete = true;
+         }
+
+         return message;
+      }
+      catch (Exception e)
+      {
+         closeReader();
+         throw e;
+      }
+      finally
+      {
+         storage.afterPageRead();
+      }
+   }
+
+   private void closeReader()
+   {
+      if (reader != null)
+      {
+         reader.close();
+         reader = null;
+         try
+         {
+            page.close();
+         }
+         catch (Exception ignored)
+         {
+         }
+      }
+   }
 }
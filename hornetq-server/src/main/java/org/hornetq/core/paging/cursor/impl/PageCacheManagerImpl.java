@@ -0,0 +1,327 @@
+/*
+ * Copyright 2010 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.core.paging.cursor.impl;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.hornetq.core.paging.cursor.PageCache;
+import org.hornetq.core.paging.cursor.PageCacheManager;
+import org.hornetq.core.paging.cursor.PageCursorProvider;
+import org.hornetq.core.server.HornetQServerLogger;
+
+/**
+ * Evicts the least recently used pages over the budget.
+ * <p>
+ * The entries are kept in access order, so looking up a page only moves its entry to the tail and
+ * the pages are evicted from the head, without sorting them.
+ */
+public class PageCacheManagerImpl implements PageCacheManager
+{
+   // Constants -----------------------------------------------------
+
+   private static final boolean isTrace = HornetQServerLogger.LOGGER.isTraceEnabled();
+
+   /**
+    * The share of the maximum heap used by the cached pages when no budget is configured
+    */
+   private static final int DEFAULT_HEAP_FRACTION = 10;
+
+   // Attributes ----------------------------------------------------
+
+   private final long maxSize;
+
+   private final boolean offHeap;
+
+   // From the least to the most recently used. Guarded by this
+   private final Map<PageCache, Entry> entries = new LinkedHashMap<PageCache, Entry>(16, 0.75f, true);
+
+   // The entries of the pages being written, they are counted once they are closed. Guarded by this
+   private final List<Entry> liveEntries = new ArrayList<Entry>();
+
+   // Guarded by this
+   private final Map<PageCursorProvider, Integer> pageCounts = new HashMap<PageCursorProvider, Integer>();
+
+   // Guarded by this
+   private long size;
+
+   private final AtomicLong hits = new AtomicLong(0);
+
+   private final AtomicLong misses = new AtomicLong(0);
+
+   private final AtomicLong evictions = new AtomicLong(0);
+
+   // Constructors --------------------------------------------------
+
+   public PageCacheManagerImpl()
+   {
+      this(-1, false);
+   }
+
+   /**
+    * @param maxSize the memory budget of the cached pages in bytes, -1 for a tenth of the maximum
+    *           heap
+    * @param offHeap whether to keep the messages of the pages read encoded in direct buffers
+    */
+   public PageCacheManagerImpl(final long maxSize, final boolean offHeap)
+   {
+      this.maxSize = maxSize < 0 ? Runtime.getRuntime().maxMemory() / DEFAULT_HEAP_FRACTION : maxSize;
+      this.offHeap = offHeap;
+   }
+
+   // Public --------------------------------------------------------
+
+   public void add(final PageCursorProvider provider, final PageCache cache, final boolean readAhead)
+   {
+      boolean live = cache.isLive();
+      if (!readAhead && !live)
+      {
+         misses.incrementAndGet();
+      }
+
+      Entry entry = new Entry(provider, cache, readAhead, live);
+
+      List<Entry> evicted;
+
+      synchronized (this)
+      {
+         Entry previous = entries.put(cache, entry);
+         if (previous != null)
+         {
+            unaccount(previous);
+         }
+         account(entry);
+
+         evicted = evict(entry);
+      }
+
+      // outside of the lock, as the providers are locked while they add pages
+      if (evicted != null)
+      {
+         for (Entry victim : evicted)
+         {
+            if (isTrace)
+            {
+               HornetQServerLogger.LOGGER.trace("Evicting page " + victim.cache.getPageId() + " from the page cache");
+            }
+            victim.provider.evictPageCache(victim.cache);
+         }
+      }
+   }
+
+   public void accessed(final PageCache cache)
+   {
+      hits.incrementAndGet();
+
+      synchronized (this)
+      {
+         // moves the entry to the tail
+         Entry entry = entries.get(cache);
+         if (entry != null)
+         {
+            entry.readAhead = false;
+         }
+      }
+   }
+
+   public synchronized void remove(final PageCache cache)
+   {
+      Entry entry = entries.remove(cache);
+      if (entry != null)
+      {
+         unaccount(entry);
+      }
+   }
+
+   public boolean isOffHeap()
+   {
+      return offHeap;
+   }
+
+   public long getMaxSize()
+   {
+      return maxSize;
+   }
+
+   public synchronized long getSize()
+   {
+      refreshLiveEntries();
+      return size;
+   }
+
+   public synchronized int getPageCount()
+   {
+      return entries.size();
+   }
+
+   public long getHits()
+   {
+      return hits.get();
+   }
+
+   public long getMisses()
+   {
+      return misses.get();
+   }
+
+   public long getEvictions()
+   {
+      return evictions.get();
+   }
+
+   @Override
+   public String toString()
+   {
+      return "PageCacheManagerImpl [maxSize=" + maxSize + ", offHeap=" + offHeap + ", pages=" + getPageCount() + "]";
+   }
+
+   // Private -------------------------------------------------------
+
+   /**
+    * @return the entries evicted to get back within the limits, or null
+    */
+   private List<Entry> evict(final Entry added)
+   {
+      refreshLiveEntries();
+
+      int maxPages = added.provider.getCacheMaxSize();
+
+      if (size <= maxSize && (maxPages <= 0 || pageCount(added.provider) <= maxPages))
+      {
+         return null;
+      }
+
+      List<Entry> evicted = new ArrayList<Entry>();
+      Iterator<Entry> iterator = entries.values().iterator();
+      while (iterator.hasNext())
+      {
+         boolean overPages = maxPages > 0 && pageCount(added.provider) > maxPages;
+         if (size <= maxSize && !overPages)
+         {
+            break;
+         }
+
+         Entry entry = iterator.next();
+         if (entry == added || entry.live || entry.readAhead)
+         {
+            continue;
+         }
+
+         if (size > maxSize || entry.provider == added.provider)
+         {
+            iterator.remove();
+            unaccount(entry);
+            evictions.incrementAndGet();
+            evicted.add(entry);
+         }
+      }
+
+      return evicted;
+   }
+
+   /**
+    * Counts the pages that were being written and were closed since.
+    */
+   private void refreshLiveEntries()
+   {
+      for (int i = liveEntries.size() - 1; i >= 0; i--)
+      {
+         Entry entry = liveEntries.get(i);
+         if (!entry.cache.isLive())
+         {
+            // the entries removed from the cache were removed from the list by unaccount, and
+            // looking them up would move them to the tail
+            liveEntries.remove(i);
+            entry.live = false;
+            entry.size = entry.cache.getMemoryEstimate();
+            size += entry.size;
+         }
+      }
+   }
+
+   private void account(final Entry entry)
+   {
+      if (entry.live)
+      {
+         liveEntries.add(entry);
+      }
+      else
+      {
+         entry.size = entry.cache.getMemoryEstimate();
+         size += entry.size;
+      }
+
+      Integer count = pageCounts.get(entry.provider);
+      pageCounts.put(entry.provider, count == null ? 1 : count + 1);
+   }
+
+   private void unaccount(final Entry entry)
+   {
+      if (entry.live)
+      {
+         liveEntries.remove(entry);
+      }
+      else
+      {
+         size -= entry.size;
+      }
+
+      Integer count = pageCounts.get(entry.provider);
+      if (count == null || count <= 1)
+      {
+         pageCounts.remove(entry.provider);
+      }
+      else
+      {
+         pageCounts.put(entry.provider, count - 1);
+      }
+   }
+
+   private int pageCount(final PageCursorProvider provider)
+   {
+      Integer count = pageCounts.get(provider);
+      return count == null ? 0 : count;
+   }
+
+   // Inner classes -------------------------------------------------
+
+   private static final class Entry
+   {
+      final PageCursorProvider provider;
+
+      final PageCache cache;
+
+      // a page read ahead is kept until first accessed. Guarded by PageCacheManagerImpl.this
+      boolean readAhead;
+
+      // Guarded by PageCacheManagerImpl.this
+      boolean live;
+
+      // Guarded by PageCacheManagerImpl.this
+      long size;
+
+      Entry(final PageCursorProvider provider, final PageCache cache, final boolean readAhead, final boolean live)
+      {
+         this.provider = provider;
+         this.cache = cache;
+         this.readAhead = readAhead;
+         this.live = live;
+      }
+   }
+}
@@ -15,16 +15,23 @@ package org.hornetq.core.paging.cursor.impl;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.hornetq.core.filter.Filter;
 import org.hornetq.core.paging.PagedMessage;
 import org.hornetq.core.paging.PagingStore;
 import org.hornetq.core.paging.cursor.PageCache;
+import org.hornetq.core.paging.cursor.PageCacheManager;
 import org.hornetq.core.paging.cursor.PageCursorProvider;
 import org.hornetq.core.paging.cursor.PagePosition;
 import org.hornetq.core.paging.cursor.PageSubscription;
@@ -36,7 +43,6 @@ import org.hornetq.core.server.HornetQServerLogger;
 import org.hornetq.core.transaction.Transaction;
 import org.hornetq.core.transaction.impl.TransactionImpl;
 import org.hornetq.utils.FutureLatch;
-import org.hornetq.utils.SoftValueHashMap;
 /**
  * A PageProviderIMpl
  *
@@ -69,10 +75,32 @@ public class PageCursorProviderImpl implements PageCursorProvider
    // This is the same executor used at the PageStoreImpl. One Executor per pageStore
    private final Executor executor;
 
-   private final SoftValueHashMap<Long, PageCache> softCache;
+   // The pages cached for this address, the PageCacheManager decides which ones are evicted
+   private final Map<Long, PageCache> caches = new HashMap<Long, PageCache>();
+
+   private final PageCacheManager pageCacheManager;
+
+   private volatile int maxCacheSize;
 
    private final ConcurrentMap<Long, PageSubscription> activeCursors = new ConcurrentHashMap<Long, PageSubscription>();
 
+   // Reads the pages ahead of the subscriptions, one page at a time
+   private final Executor prefetchExecutor;
+
+   private volatile int prefetchDepth;
+
+   // Pages scheduled to be read ahead, guarded by caches
+   private final Set<Long> prefetching = new HashSet<Long>();
+
+   private final AtomicLong cacheHits = new AtomicLong(0);
+
+   private final AtomicLong cacheMisses = new AtomicLong(0);
+
+   private final AtomicLong prefetchedPages = new AtomicLong(0);
+
+   // Time spent by the subscriptions waiting for pages to be read, in nanoseconds
+   private final AtomicLong stallTime = new AtomicLong(0);
+
    // Static --------------------------------------------------------
 
    // Constructors --------------------------------------------------
@@ -81,11 +109,32 @@ public class PageCursorProviderImpl implements PageCursorProvider
                                  final StorageManager storageManager,
                                  final Executor executor,
                                  final int maxCacheSize)
+   {
+      this(pagingStore, storageManager, executor, executor, maxCacheSize);
+   }
+
+   public PageCursorProviderImpl(final PagingStore pagingStore,
+                                 final StorageManager storageManager,
+                                 final Executor executor,
+                                 final Executor prefetchExecutor,
+                                 final int maxCacheSize)
+   {
+      this(pagingStore, storageManager, executor, prefetchExecutor, new PageCacheManagerImpl(), maxCacheSize);
+   }
+
+   public PageCursorProviderImpl(final PagingStore pagingStore,
+                                 final StorageManager storageManager,
+                                 final Executor executor,
+                                 final Executor prefetchExecutor,
+                                 final PageCacheManager pageCacheManager,
+                                 final int maxCacheSize)
    {
       this.pagingStore = pagingStore;
       this.storageManager = storageManager;
       this.executor = executor;
-      this.softCache = new SoftValueHashMap<Long, PageCache>(maxCacheSize);
+      this.prefetchExecutor = prefetchExecutor;
+      this.pageCacheManager = pageCacheManager;
+      this.maxCacheSize = maxCacheSize;
    }
 
    // Public --------------------------------------------------------
@@ -138,15 +187,16 @@ public class PageCursorProviderImpl implements PageCursorProvider
       try
       {
          boolean needToRead = false;
+         boolean prefetchRunning = false;
          PageCache cache = null;
-         synchronized (softCache)
+         synchronized (caches)
          {
             if (pageId > pagingStore.getCurrentWritingPage())
             {
                return null;
             }
 
-            cache = softCache.get(pageId);
+            cache = caches.get(pageId);
             if (cache == null)
             {
                if (!pagingStore.checkPageFileExists((int)pageId))
@@ -163,7 +213,14 @@ public class PageCursorProviderImpl implements PageCursorProvider
                {
                   HornetQServerLogger.LOGGER.trace("adding " + pageId +  " into cursor = " + this.pagingStore.getAddress());
                }
-               softCache.put(pageId, cache);
+               caches.put(pageId, cache);
+               cacheMisses.incrementAndGet();
+            }
+            else
+            {
+               prefetchRunning = prefetching.contains(pageId);
+               cacheHits.incrementAndGet();
+               pageCacheManager.accessed(cache);
             }
          }
 
@@ -171,31 +228,43 @@ public class PageCursorProviderImpl implements PageCursorProvider
          // the page stays locked until the entire reading is finished
          if (needToRead)
          {
-            Page page = null;
+            long start = System.nanoTime();
             try
             {
-               page = pagingStore.createPage((int)pageId);
-
-               storageManager.beforePageRead();
-               page.open();
-
-               List<PagedMessage> pgdMessages = page.read(storageManager);
-               cache.setMessages(pgdMessages.toArray(new PagedMessage[pgdMessages.size()]));
+               readPage(pageId, cache, true);
+            }
+            catch (Exception e)
+            {
+               removePageCache(pageId, cache);
+               throw e;
             }
             finally
             {
-               try
-               {
-                  if (page != null)
-                  {
-                     page.close();
-                  }
-               }
-               catch (Throwable ignored)
-               {
-               }
-               storageManager.afterPageRead();
                cache.unlock();
+               stallTime.addAndGet(System.nanoTime() - start);
+            }
+
+            // not while holding the cache, as this may evict pages of other addresses
+            pageCacheManager.add(this, cache, false);
+         }
+         else if (prefetchRunning)
+         {
+            // the page may still be being read ahead, wait for it
+            long start = System.nanoTime();
+            cache.lock();
+            cache.unlock();
+            stallTime.addAndGet(System.nanoTime() - start);
+
+            boolean readFailed;
+            synchronized (caches)
+            {
+               readFailed = caches.get(pageId) != cache;
+            }
+
+            if (readFailed)
+            {
+               // reading ahead failed and the page was removed from the cache, read it here
+               return getPageCache(pageId);
             }
          }
 
@@ -207,32 +276,109 @@ public class PageCursorProviderImpl implements PageCursorProvider
       }
    }
 
+   public void prefetchPages(final long pageNr)
+   {
+      // never read ahead more than the cache can hold next to the pages being read, acknowledged and written
+      int depth = Math.min(prefetchDepth, maxCacheSize - 3);
+
+      for (long nextPage = pageNr + 1; nextPage <= pageNr + depth; nextPage++)
+      {
+         synchronized (caches)
+         {
+            // the page being written is cached by the store
+            if (nextPage >= pagingStore.getCurrentWritingPage())
+            {
+               return;
+            }
+
+            if (caches.containsKey(nextPage) || !prefetching.add(nextPage))
+            {
+               continue;
+            }
+         }
+
+         prefetchExecutor.execute(new PrefetchRunnable(nextPage));
+      }
+   }
+
+   public void setPrefetchDepth(final int depth)
+   {
+      this.prefetchDepth = depth;
+   }
+
+   public long getCacheHits()
+   {
+      return cacheHits.get();
+   }
+
+   public long getCacheMisses()
+   {
+      return cacheMisses.get();
+   }
+
+   public long getPrefetchedPages()
+   {
+      return prefetchedPages.get();
+   }
+
+   public long getStallTime()
+   {
+      return TimeUnit.NANOSECONDS.toMillis(stallTime.get());
+   }
+
    public void addPageCache(PageCache cache)
    {
-      synchronized (softCache)
+      synchronized (caches)
       {
-         softCache.put(cache.getPageId(), cache);
+         caches.put(cache.getPageId(), cache);
       }
+      pageCacheManager.add(this, cache, false);
    }
 
    public void setCacheMaxSize(final int size)
    {
-      softCache.setMaxElements(size);
+      this.maxCacheSize = size;
+   }
+
+   public int getCacheMaxSize()
+   {
+      return maxCacheSize;
+   }
+
+   public void evictPageCache(final PageCache cache)
+   {
+      synchronized (caches)
+      {
+         if (caches.get(cache.getPageId()) == cache)
+         {
+            caches.remove(cache.getPageId());
+         }
+      }
+      // releases the file of a page not fully read
+      cache.close();
    }
 
    public int getCacheSize()
    {
-      synchronized (softCache)
+      synchronized (caches)
       {
-         return softCache.size();
+         return caches.size();
       }
    }
 
    public void clearCache()
    {
-      synchronized (softCache)
+      synchronized (caches)
       {
-         softCache.clear();
+         for (PageCache cache : caches.values())
+         {
+            pageCacheManager.remove(cache);
+            if (!cache.isLive())
+            {
+               cache.close();
+            }
+         }
+         caches.clear();
       }
    }
 
@@ -276,6 +422,9 @@ public class PageCursorProviderImpl implements PageCursorProvider
       }
 
       waitForFuture();
+
+      // the budget is shared with the other addresses
+      clearCache();
    }
 
    private void waitForFuture()
@@ -514,9 +663,9 @@ public class PageCursorProviderImpl implements PageCursorProvider
          {
             PageCache cache;
             PagedMessage[] pgdMessages;
-            synchronized (softCache)
+            synchronized (caches)
             {
-               cache = softCache.get((long)depagedPage.getPageId());
+               cache = caches.get((long)depagedPage.getPageId());
             }
 
             if (isTrace)
@@ -524,7 +673,8 @@ public class PageCursorProviderImpl implements PageCursorProvider
                HornetQServerLogger.LOGGER.trace("Removing page " + depagedPage.getPageId() + " from page-cache");
             }
 
-            if (cache == null)
+            // a page still being read ahead has no messages yet
+            if (cache == null || cache.getMessages() == null)
             {
                // The page is not on cache any more
                // We need to read the page-file before deleting it
@@ -560,9 +710,14 @@ public class PageCursorProviderImpl implements PageCursorProvider
             depagedPage.delete(pgdMessages);
             onDeletePage(depagedPage);
 
-            synchronized (softCache)
+            synchronized (caches)
+            {
+               cache = caches.remove((long)depagedPage.getPageId());
+            }
+            if (cache != null)
             {
-               softCache.remove((long)depagedPage.getPageId());
+               pageCacheManager.remove(cache);
+               cache.close();
             }
          }
       }
@@ -625,7 +780,7 @@ public class PageCursorProviderImpl implements PageCursorProvider
    public void printDebug()
    {
       System.out.println("Debug information for PageCursorProviderImpl:");
-      for (PageCache cache : softCache.values())
+      for (PageCache cache : caches.values())
       {
          System.out.println("Cache " + cache);
       }
@@ -636,13 +791,70 @@ public class PageCursorProviderImpl implements PageCursorProvider
    // Protected -----------------------------------------------------
 
    /* Protected as we may let test cases to instrument the test */
-   protected PageCacheImpl createPageCache(final long pageId) throws Exception
+   protected PageCache createPageCache(final long pageId) throws Exception
    {
-      return new PageCacheImpl(pagingStore.createPage((int)pageId));
+      Page page = pagingStore.createPage((int)pageId);
+      if (pageCacheManager.isOffHeap())
+      {
+         return new OffHeapPageCacheImpl(page);
+      }
+      return new PageCacheImpl(page);
    }
 
    // Private -------------------------------------------------------
 
+   /**
+    * Removes a cache that couldn't be read, so the page is read again when needed.
+    */
+   private void removePageCache(final long pageId, final PageCache cache)
+   {
+      synchronized (caches)
+      {
+         if (caches.get(pageId) == cache)
+         {
+            caches.remove(pageId);
+         }
+      }
+   }
+
+   /**
+    * Reads the messages of a page into its cache, the cache is locked by the caller.
+    * @param lazily whether the messages may be read as they're looked up, when the page has an index
+    */
+   private void readPage(final long pageId, final PageCache cache, final boolean lazily) throws Exception
+   {
+      if (lazily && cache instanceof PageCacheImpl && ((PageCacheImpl)cache).readLazily(storageManager))
+      {
+         return;
+      }
+
+      Page page = null;
+      try
+      {
+         page = pagingStore.createPage((int)pageId);
+
+         storageManager.beforePageRead();
+         page.open();
+
+         List<PagedMessage> pgdMessages = page.read(storageManager);
+         cache.setMessages(pgdMessages.toArray(new PagedMessage[pgdMessages.size()]));
+      }
+      finally
+      {
+         try
+         {
+            if (page != null)
+            {
+               page.close();
+            }
+         }
+         catch (Throwable ignored)
+         {
+         }
+         storageManager.afterPageRead();
+      }
+   }
+
    /**
     * This method is synchronized because we want it to be atomic with the cursors being used
     */
@@ -676,4 +888,64 @@ public class PageCursorProviderImpl implements PageCursorProvider
 
    // Inner classes -------------------------------------------------
 
+   /**
+    * Reads a page into the cache ahead of the subscriptions. The cache is locked until the page is
+    * read, so a subscription getting to the page meanwhile waits for it instead of reading it again.
+    */
+   private final class PrefetchRunnable implements Runnable
+   {
+      private final long pageId;
+
+      PrefetchRunnable(final long pageId)
+      {
+         this.pageId = pageId;
+      }
+
+      public void run()
+      {
+         PageCache cache = null;
+         try
+         {
+            synchronized (caches)
+            {
+               // the page may have been read or deleted since this was scheduled
+               if (caches.containsKey(pageId) || pageId >= pagingStore.getCurrentWritingPage() ||
+                  !pagingStore.checkPageFileExists((int)pageId))
+               {
+                  return;
+               }
+
+               cache = createPageCache(pageId);
+               cache.lock();
+               caches.put(pageId, cache);
+            }
+
+            readPage(pageId, cache, false);
+            prefetchedPages.incrementAndGet();
+
+            // a page read ahead would otherwise be the least recently used and the first evicted
+            pageCacheManager.add(PageCursorProviderImpl.this, cache, true);
+         }
+         catch (Exception e)
+         {
+            // the subscription getting to this page will read it again
+            HornetQServerLogger.LOGGER.debug("Couldn't read page " + pageId + " ahead on " + pagingStore.getAddress(), e);
+            if (cache != null)
+            {
+               removePageCache(pageId, cache);
+            }
+         }
+         finally
+         {
+            synchronized (caches)
+            {
+               prefetching.remove(pageId);
+            }
+            if (cache != null)
+            {
+               cache.unlock();
+            }
+         }
+      }
+   }
 }
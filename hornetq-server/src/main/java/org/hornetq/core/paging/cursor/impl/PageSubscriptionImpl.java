@@ -15,9 +15,10 @@ package org.hornetq.core.paging.cursor.impl;
 
 import java.lang.ref.WeakReference;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.LinkedHashSet;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -34,6 +35,7 @@ import org.hornetq.core.journal.IOAsyncTask;
 import org.hornetq.core.paging.PageTransactionInfo;
 import org.hornetq.core.paging.PagedMessage;
 import org.hornetq.core.paging.PagingStore;
+import org.hornetq.core.paging.cursor.PageAckBitSet;
 import org.hornetq.core.paging.cursor.PageCache;
 import org.hornetq.core.paging.cursor.PageCursorProvider;
 import org.hornetq.core.paging.cursor.PagePosition;
@@ -50,7 +52,6 @@ import org.hornetq.core.transaction.Transaction;
 import org.hornetq.core.transaction.TransactionOperationAbstract;
 import org.hornetq.core.transaction.TransactionPropertyIndexes;
 import org.hornetq.core.transaction.impl.TransactionImpl;
-import org.hornetq.utils.ConcurrentHashSet;
 import org.hornetq.utils.FutureLatch;
 import org.hornetq.utils.LinkedListIterator;
 
@@ -88,6 +89,9 @@ final class PageSubscriptionImpl implements PageSubscription
 
    private List<PagePosition> recoveredACK;
 
+   // the acks of the records holding many acks each, by record id
+   private Map<Long, PageAckBitSet> recoveredACKSets;
+
    private final SortedMap<Long, PageCursorInfo> consumedPages = new TreeMap<Long, PageCursorInfo>();
 
    private final PageSubscriptionCounter counter;
@@ -321,21 +325,16 @@ final class PageSubscriptionImpl implements PageSubscription
          }
 
          // it will delete the page ack records
-         for (PagePosition pos : infoPG.acks)
+         for (long recordID : infoPG.clearACKRecordIDs())
          {
-            if (pos.getRecordID() >= 0)
+            store.deleteCursorAcknowledgeTransactional(tx.getID(), recordID);
+            if (!persist)
             {
-               store.deleteCursorAcknowledgeTransactional(tx.getID(), pos.getRecordID());
-               if (!persist)
-               {
-                  // only need to set it once
-                  tx.setContainsPersistent();
-                  persist = true;
-               }
+               // only need to set it once
+               tx.setContainsPersistent();
+               persist = true;
             }
          }
-
-         infoPG.acks.clear();
       }
 
       tx.addOperation(new TransactionOperationAbstract()
@@ -397,6 +396,8 @@ final class PageSubscriptionImpl implements PageSubscription
       {
          retPos = moveNextPage(retPos);
 
+         cursorProvider.prefetchPages(retPos.getPageNr());
+
          cache = cursorProvider.getPageCache(retPos.getPageNr());
       }
 
@@ -602,6 +603,20 @@ final class PageSubscriptionImpl implements PageSubscription
       recoveredACK.add(position);
    }
 
+   /**
+    * Theres no need to synchronize this method as it's only called from journal load on startup
+    */
+   public void reloadACK(final PagePosition position, final PageAckBitSet acks)
+   {
+      if (recoveredACKSets == null)
+      {
+         recoveredACKSets = new HashMap<Long, PageAckBitSet>();
+      }
+
+      recoveredACKSets.put(position.getRecordID(), acks);
+      reloadACK(position);
+   }
+
    @Override
    public void reloadPreparedACK(final Transaction tx, final PagePosition position)
    {
@@ -659,13 +674,10 @@ final class PageSubscriptionImpl implements PageSubscription
          {
             for (PageCursorInfo cursor : consumedPages.values())
             {
-               for (PagePosition info : cursor.acks)
+               for (long recordID : cursor.getACKRecordIDs())
                {
-                  if (info.getRecordID() >= 0)
-                  {
-                     isPersistent = true;
-                     store.deleteCursorAcknowledgeTransactional(tx, info.getRecordID());
-                  }
+                  isPersistent = true;
+                  store.deleteCursorAcknowledgeTransactional(tx, recordID);
                }
                PagePosition completeInfo = cursor.getCompleteInfo();
                if (completeInfo != null && completeInfo.getRecordID() >= 0)
@@ -735,7 +747,15 @@ final class PageSubscriptionImpl implements PageSubscription
             }
             else
             {
-               pageInfo.loadACK(pos);
+               PageAckBitSet acks = recoveredACKSets == null ? null : recoveredACKSets.get(pos.getRecordID());
+               if (acks == null)
+               {
+                  pageInfo.loadACK(pos);
+               }
+               else
+               {
+                  pageInfo.loadACKs(pos, acks);
+               }
             }
          }
 
@@ -746,6 +766,7 @@ final class PageSubscriptionImpl implements PageSubscription
 
          recoveredACK.clear();
          recoveredACK = null;
+         recoveredACKSets = null;
       }
    }
 
@@ -801,21 +822,17 @@ final class PageSubscriptionImpl implements PageSubscription
             }
             info.setCompleteInfo(null);
          }
-         for (PagePosition deleteInfo : info.acks)
+         for (long recordID : info.clearACKRecordIDs())
          {
-            if (deleteInfo.getRecordID() >= 0)
+            try
             {
-               try
-               {
-                  store.deleteCursorAcknowledge(deleteInfo.getRecordID());
-               }
-               catch (Exception e)
-               {
-                  HornetQServerLogger.LOGGER.warn("Error while deleting page-complete-record", e);
-               }
+               store.deleteCursorAcknowledge(recordID);
+            }
+            catch (Exception e)
+            {
+               HornetQServerLogger.LOGGER.warn("Error while deleting page-complete-record", e);
             }
          }
-         info.acks.clear();
       }
    }
 
@@ -960,11 +977,20 @@ final class PageSubscriptionImpl implements PageSubscription
 
    // Inner classes -------------------------------------------------
 
+   // ACK records of a page replaced by a single record
+   private static final int ACK_RECORDS_TO_CONSOLIDATE = 64;
+
+   private static final long[] NO_RECORD_IDS = new long[0];
+
    /**
     * This will hold information about the pending ACKs towards a page.
     * <p>
     * This instance will be released as soon as the entire page is consumed, releasing the memory at
     * that point The ref counts are increased also when a message is ignored for any reason.
+    * <p>
+    * The ACKs are kept as one bit per message number. Once {@link #ACK_RECORDS_TO_CONSOLIDATE} ACK
+    * records are stored for the page they are replaced by a single record holding the bits, so the
+    * record IDs kept here don't grow with the number of ACKs either.
     */
    private final class PageCursorInfo
    {
@@ -974,11 +1000,25 @@ final class PageSubscriptionImpl implements PageSubscription
       private final long pageId;
 
       // Confirmed ACKs on this page
-      private final Set<PagePosition> acks = Collections.synchronizedSet(new LinkedHashSet<PagePosition>());
+      private final PageAckBitSet acks = new PageAckBitSet();
+
+      // The IDs of the records of single ACKs on this page, guarded by this
+      private long[] ackRecordIDs = NO_RECORD_IDS;
+
+      private int ackRecordCount;
+
+      // The ID of the record holding the ACKs of many messages, guarded by this
+      private long consolidatedRecordID = -1;
+
+      private boolean consolidating;
+
+      // ACKs before the first message of the page (bookmarks such as -1), guarded by this
+      private Set<PagePosition> bookmarks;
 
       private WeakReference<PageCache> cache;
 
-      private final Set<PagePosition> removedReferences = new ConcurrentHashSet<PagePosition>();
+      // Messages removed by a pending TX, the acked ones are only on acks
+      private final PageAckBitSet removedReferences = new PageAckBitSet();
 
       // The page was live at the time of the creation
       private final boolean wasLive;
@@ -989,7 +1029,7 @@ final class PageSubscriptionImpl implements PageSubscription
       // There's a pending delete on the async IO pipe
       // We're holding this object to avoid delete the pages before the IO is complete,
       // however we can't delete these records again
-      private boolean pendingDelete;
+      private volatile boolean pendingDelete;
 
       /**
        * This is to be set when all the messages are complete on a given page, and we cleanup the records that are marked on it
@@ -1076,12 +1116,16 @@ final class PageSubscriptionImpl implements PageSubscription
 
       public boolean isRemoved(final PagePosition pos)
       {
-         return removedReferences.contains(pos);
+         int messageNr = pos.getMessageNr();
+         return messageNr >= 0 && (acks.get(messageNr) || removedReferences.get(messageNr));
       }
 
       public void remove(final PagePosition position)
       {
-         removedReferences.add(position);
+         if (position.getMessageNr() >= 0)
+         {
+            removedReferences.set(position.getMessageNr());
+         }
       }
 
       public void addACK(final PagePosition posACK)
@@ -1105,6 +1149,27 @@ final class PageSubscriptionImpl implements PageSubscription
             confirmed.incrementAndGet();
             checkDone();
          }
+
+         boolean consolidate;
+         synchronized (this)
+         {
+            consolidate = !consolidating && ackRecordCount >= ACK_RECORDS_TO_CONSOLIDATE;
+            if (consolidate)
+            {
+               consolidating = true;
+            }
+         }
+
+         if (consolidate)
+         {
+            executor.execute(new Runnable()
+            {
+               public void run()
+               {
+                  consolidateACKs();
+               }
+            });
+         }
       }
 
       // To be called during reload
@@ -1116,10 +1181,155 @@ final class PageSubscriptionImpl implements PageSubscription
          }
       }
 
-      private boolean internalAddACK(final PagePosition posACK)
+      // To be called during reload, for a record holding the ACKs of many messages
+      public synchronized void loadACKs(final PagePosition posACK, final PageAckBitSet recordACKs)
       {
-         removedReferences.add(posACK);
-         return acks.add(posACK);
+         for (int nr = recordACKs.nextSetBit(0); nr >= 0; nr = recordACKs.nextSetBit(nr + 1))
+         {
+            if (acks.set(nr))
+            {
+               confirmed.incrementAndGet();
+            }
+         }
+
+         if (consolidatedRecordID >= 0)
+         {
+            // this shouldn't happen as a new record replaces the previous one on the same TX
+            addACKRecordID(consolidatedRecordID);
+         }
+         consolidatedRecordID = posACK.getRecordID();
+      }
+
+      private synchronized boolean internalAddACK(final PagePosition posACK)
+      {
+         boolean added;
+         if (posACK.getMessageNr() >= 0)
+         {
+            added = acks.set(posACK.getMessageNr());
+         }
+         else
+         {
+            if (bookmarks == null)
+            {
+               bookmarks = new HashSet<PagePosition>();
+            }
+            added = bookmarks.add(posACK);
+         }
+
+         if (added && posACK.getRecordID() >= 0 && posACK.getMessageNr() >= 0)
+         {
+            addACKRecordID(posACK.getRecordID());
+         }
+         return added;
+      }
+
+      private void addACKRecordID(final long recordID)
+      {
+         if (ackRecordCount == ackRecordIDs.length)
+         {
+            ackRecordIDs = Arrays.copyOf(ackRecordIDs, Math.max(4, ackRecordCount * 2));
+         }
+         ackRecordIDs[ackRecordCount++] = recordID;
+      }
+
+      /**
+       * @return the IDs of every ACK record of this page
+       */
+      public synchronized List<Long> getACKRecordIDs()
+      {
+         List<Long> recordIDs = new ArrayList<Long>(ackRecordCount + 1);
+         for (int i = 0; i < ackRecordCount; i++)
+         {
+            recordIDs.add(ackRecordIDs[i]);
+         }
+         if (consolidatedRecordID >= 0)
+         {
+            recordIDs.add(consolidatedRecordID);
+         }
+         if (bookmarks != null)
+         {
+            for (PagePosition bookmark : bookmarks)
+            {
+               if (bookmark.getRecordID() >= 0)
+               {
+                  recordIDs.add(bookmark.getRecordID());
+               }
+            }
+         }
+         return recordIDs;
+      }
+
+      /**
+       * Forgets the ACK records of this page, the ACKs are kept.
+       * @return the IDs of the records, to be deleted by the caller
+       */
+      public synchronized List<Long> clearACKRecordIDs()
+      {
+         List<Long> recordIDs = getACKRecordIDs();
+         ackRecordIDs = NO_RECORD_IDS;
+         ackRecordCount = 0;
+         consolidatedRecordID = -1;
+         if (bookmarks != null)
+         {
+            // the bookmark ACKs are still needed, only their records are gone
+            Set<PagePosition> positions = new HashSet<PagePosition>();
+            for (PagePosition bookmark : bookmarks)
+            {
+               positions.add(new PagePositionImpl(bookmark.getPageNr(), bookmark.getMessageNr()));
+            }
+            bookmarks = positions;
+         }
+         return recordIDs;
+      }
+
+      /**
+       * Replaces the records of single ACKs on this page by a record of all the ACKs.
+       * <p>
+       * Every ACK set here is final, so the ones that had no record (ignored messages) can be stored
+       * as well. This runs while holding the lock so no cleanup can delete the records in between,
+       * none of the calls to the storage wait on the IO.
+       */
+      private synchronized void consolidateACKs()
+      {
+         consolidating = false;
+
+         if (isPendingDelete() || ackRecordCount < ACK_RECORDS_TO_CONSOLIDATE)
+         {
+            return;
+         }
+
+         long txID = -1;
+         try
+         {
+            txID = store.generateUniqueID();
+            PagePosition position = new PagePositionImpl(pageId, -1);
+            store.storeCursorAcknowledgeTransactional(txID, cursorId, position, acks.copy());
+            for (int i = 0; i < ackRecordCount; i++)
+            {
+               store.deleteCursorAcknowledgeTransactional(txID, ackRecordIDs[i]);
+            }
+            if (consolidatedRecordID >= 0)
+            {
+               store.deleteCursorAcknowledgeTransactional(txID, consolidatedRecordID);
+            }
+            store.commit(txID);
+
+            consolidatedRecordID = position.getRecordID();
+            ackRecordIDs = NO_RECORD_IDS;
+            ackRecordCount = 0;
+         }
+         catch (Exception e)
+         {
+            HornetQServerLogger.LOGGER.warn("Error while consolidating page-ack-records", e);
+            try
+            {
+               store.rollback(txID);
+            }
+            catch (Exception ignored)
+            {
+               // exception of the exception.. nothing that can be done here
+            }
+         }
       }
 
       /**
@@ -44,9 +44,9 @@ public final class Page implements Comparable<Page>
 
    public static final int SIZE_RECORD = DataConstants.SIZE_BYTE + DataConstants.SIZE_INT + DataConstants.SIZE_BYTE;
 
-   private static final byte START_BYTE = (byte)'{';
+   static final byte START_BYTE = (byte)'{';
 
-   private static final byte END_BYTE = (byte)'}';
+   static final byte END_BYTE = (byte)'}';
 
    // Attributes ----------------------------------------------------
 
@@ -71,6 +71,14 @@ public final class Page implements Comparable<Page>
 
    private final SimpleString storeName;
 
+   /**
+    * The positions of the messages written, stored next to the page when it's closed. Null if the
+    * page was opened with messages that weren't read.
+    */
+   private PageIndex index;
+
+   private boolean written;
+
    public Page(final SimpleString storeName,
                    final StorageManager storageManager,
                    final SequentialFileFactory factory,
@@ -109,76 +117,63 @@ public final class Page implements Comparable<Page>
       ArrayList<PagedMessage> messages = new ArrayList<PagedMessage>();
 
       size.set((int)file.size());
-      // Using direct buffer, as described on https://jira.jboss.org/browse/HORNETQ-467
-      ByteBuffer directBuffer = storage.allocateDirectBuffer((int)file.size());
 
+      PageIndex readIndex = new PageIndex();
+
+      PageReader reader = new PageReader(this, file, storage, size.get(), null, PageReader.DEFAULT_WINDOW_SIZE);
       try
       {
-
-         file.position(0);
-         file.read(directBuffer);
-
-         directBuffer.rewind();
-
-         HornetQBuffer fileBuffer = HornetQBuffers.wrappedBuffer(directBuffer);
-         fileBuffer.writerIndex(fileBuffer.capacity());
-
-         while (fileBuffer.readable())
+         while (true)
          {
-            final int position = fileBuffer.readerIndex();
-
-            byte byteRead = fileBuffer.readByte();
-
-            if (byteRead == Page.START_BYTE)
+            int position = reader.getPosition();
+            PagedMessage msg = reader.readMessage();
+            if (msg == null)
             {
-               if (fileBuffer.readerIndex() + DataConstants.SIZE_INT < fileBuffer.capacity())
-               {
-                  int messageSize = fileBuffer.readInt();
-                  int oldPos = fileBuffer.readerIndex();
-                  if (fileBuffer.readerIndex() + messageSize < fileBuffer.capacity() &&
-                           fileBuffer.getByte(oldPos + messageSize) == Page.END_BYTE)
-                  {
-                     PagedMessage msg = new PagedMessageImpl();
-                     msg.decode(fileBuffer);
-                     byte b = fileBuffer.readByte();
-                     if (b != Page.END_BYTE)
-                     {
-                        // Sanity Check: This would only happen if there is a bug on decode or any internal code, as
-                        // this
-                        // constraint was already checked
-                        throw new IllegalStateException("Internal error, it wasn't possible to locate END_BYTE " + b);
-                     }
-                     msg.initMessage(storage);
-                     if (isTrace)
-                     {
-                        HornetQServerLogger.LOGGER.trace("Reading message " + msg + " on pageId=" + this.pageId + " for address=" + storeName);
-                     }
-                     messages.add(msg);
-                  }
-                  else
-                  {
-                     markFileAsSuspect(file.getFileName(), position, messages.size());
-                     break;
-                  }
-               }
-            }
-            else
-            {
-               markFileAsSuspect(file.getFileName(), position, messages.size());
                break;
             }
+            readIndex.add(messages.size(), position);
+            messages.add(msg);
          }
       }
       finally
       {
-         storage.freeDirectBuffer(directBuffer);
+         reader.close();
       }
 
+      // the messages written from now on are appended to the page
+      file.position(size.get());
+
       numberOfMessages.set(messages.size());
 
+      // a damaged page is read from the start, as the index would skip the invalid records
+      index = suspiciousRecords ? null : readIndex;
+
       return messages;
    }
 
+   /**
+    * Opens a reader over the messages of the page, using the index of the page if it has one. The
+    * page must be open, and it must not be written while the reader is used.
+    */
+   public synchronized PageReader newReader(final StorageManager storage) throws Exception
+   {
+      if (!file.isOpen())
+      {
+         throw HornetQMessageBundle.BUNDLE.invalidPageIO();
+      }
+
+      size.set((int)file.size());
+
+      PageIndex pageIndex = PageIndex.read(fileFactory, getIndexFileName(), size.get());
+
+      if (pageIndex != null)
+      {
+         numberOfMessages.set(pageIndex.getNumberOfMessages());
+      }
+
+      return new PageReader(this, file, storage, size.get(), pageIndex, PageReader.DEFAULT_WINDOW_SIZE);
+   }
+
    public synchronized void write(final PagedMessage message) throws Exception
    {
       if (!file.isOpen())
@@ -202,8 +197,16 @@ public final class Page implements Comparable<Page>
 
       buffer.rewind();
 
+      int position = size.get();
+
       file.writeDirect(buffer, false);
 
+      if (index != null)
+      {
+         index.add(numberOfMessages.get(), position);
+      }
+      written = true;
+
       if (pageCache != null)
       {
          pageCache.addLiveMessage(message);
@@ -228,6 +231,9 @@ public final class Page implements Comparable<Page>
       }
       size.set((int)file.size());
       file.position(0);
+      // the messages already on the page are indexed once they're read
+      index = size.get() == 0 ? new PageIndex() : null;
+      written = false;
    }
 
    public synchronized void close() throws Exception
@@ -239,9 +245,22 @@ public final class Page implements Comparable<Page>
       if (pageCache != null)
       {
          pageCache.close();
-         // leave it to the soft cache to decide when to release it now
+         // leave it to the page cache manager to decide when to release it now
          pageCache = null;
       }
+      if (written && index != null && numberOfMessages.get() > 0)
+      {
+         try
+         {
+            index.write(fileFactory, getIndexFileName(), size.get());
+         }
+         catch (Exception e)
+         {
+            // the page is read from the start without its index
+            HornetQServerLogger.LOGGER.debug("Couldn't write the index of " + this, e);
+         }
+      }
+      written = false;
       file.close();
    }
 
@@ -280,6 +299,8 @@ public final class Page implements Comparable<Page>
 
       try
       {
+         PageIndex.delete(fileFactory, getIndexFileName());
+
          if (suspiciousRecords)
          {
             HornetQServerLogger.LOGGER.pageInvalid(file.getFileName(), file.getFileName());
@@ -365,7 +386,7 @@ public final class Page implements Comparable<Page>
     * @param position
     * @param msgNumber
     */
-   private void markFileAsSuspect(final String fileName, final int position, final int msgNumber)
+   void markFileAsSuspect(final String fileName, final int position, final int msgNumber)
    {
       HornetQServerLogger.LOGGER.pageSuspectFile(fileName, position, msgNumber);
       suspiciousRecords = true;
@@ -375,4 +396,11 @@ public final class Page implements Comparable<Page>
    {
       return file;
    }
+
+   private String getIndexFileName()
+   {
+      String fileName = file.getFileName();
+      int extension = fileName.lastIndexOf('.');
+      return (extension < 0 ? fileName : fileName.substring(0, extension)) + PageIndex.EXTENSION;
+   }
 }
@@ -0,0 +1,207 @@
+/*
+ * Copyright 2010 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.core.paging.impl;
+
+import java.nio.ByteBuffer;
+
+import org.hornetq.api.core.HornetQBuffer;
+import org.hornetq.api.core.HornetQBuffers;
+import org.hornetq.core.journal.SequentialFile;
+import org.hornetq.core.journal.SequentialFileFactory;
+import org.hornetq.utils.DataConstants;
+
+/**
+ * The file positions of every {@link #INTERVAL}th message of a page.
+ * <p>
+ * It is written next to the page file when the page is closed, so a page can be read from any of
+ * its messages without reading the messages before it. The index is only a hint: it is ignored
+ * if it doesn't match the size of the page file, and pages without one are read from the start.
+ */
+final class PageIndex
+{
+   // Constants -----------------------------------------------------
+
+   static final int INTERVAL = 32;
+
+   static final String EXTENSION = ".index";
+
+   private static final int VERSION = 1;
+
+   // version, interval, page size, number of messages and number of positions
+   private static final int HEADER_SIZE = 5 * DataConstants.SIZE_INT;
+
+   // Attributes ----------------------------------------------------
+
+   private int[] positions;
+
+   private int size;
+
+   private int numberOfMessages;
+
+   // Constructors --------------------------------------------------
+
+   PageIndex()
+   {
+      positions = new int[16];
+   }
+
+   private PageIndex(final int[] positions, final int numberOfMessages)
+   {
+      this.positions = positions;
+      this.size = positions.length;
+      this.numberOfMessages = numberOfMessages;
+   }
+
+   // Public --------------------------------------------------------
+
+   /**
+    * To be called for every message of the page, in order.
+    */
+   void add(final int messageNumber, final int position)
+   {
+      if (messageNumber % INTERVAL == 0)
+      {
+         if (size == positions.length)
+         {
+            int[] newPositions = new int[size * 2];
+            System.arraycopy(positions, 0, newPositions, 0, size);
+            positions = newPositions;
+         }
+         positions[size++] = position;
+      }
+      numberOfMessages = messageNumber + 1;
+   }
+
+   int getNumberOfMessages()
+   {
+      return numberOfMessages;
+   }
+
+   /**
+    * @return the number of the closest message at or before the message number that has its
+    *         position indexed
+    */
+   int getIndexedMessage(final int messageNumber)
+   {
+      return Math.min(messageNumber / INTERVAL, size - 1) * INTERVAL;
+   }
+
+   /**
+    * @return the position in the page file of a message returned by {@link #getIndexedMessage(int)}
+    */
+   int getPosition(final int indexedMessage)
+   {
+      return positions[indexedMessage / INTERVAL];
+   }
+
+   void write(final SequentialFileFactory factory, final String fileName, final int pageSize) throws Exception
+   {
+      ByteBuffer buffer = factory.newBuffer(HEADER_SIZE + size * DataConstants.SIZE_INT);
+      HornetQBuffer wrap = HornetQBuffers.wrappedBuffer(buffer);
+      wrap.clear();
+
+      wrap.writeInt(VERSION);
+      wrap.writeInt(INTERVAL);
+      wrap.writeInt(pageSize);
+      wrap.writeInt(numberOfMessages);
+      wrap.writeInt(size);
+      for (int i = 0; i < size; i++)
+      {
+         wrap.writeInt(positions[i]);
+      }
+
+      buffer.rewind();
+
+      SequentialFile file = factory.createSequentialFile(fileName, 1);
+      file.open();
+      try
+      {
+         file.position(0);
+         file.writeDirect(buffer, false);
+      }
+      finally
+      {
+         file.close();
+      }
+   }
+
+   /**
+    * @return the index of a page, or null if there is none or it doesn't match the page file
+    */
+   static PageIndex read(final SequentialFileFactory factory, final String fileName, final int pageSize) throws Exception
+   {
+      SequentialFile file = factory.createSequentialFile(fileName, 1);
+      if (!file.exists())
+      {
+         return null;
+      }
+
+      file.open();
+      try
+      {
+         int fileSize = (int)file.size();
+         if (fileSize < HEADER_SIZE)
+         {
+            return null;
+         }
+
+         ByteBuffer buffer = factory.newBuffer(fileSize);
+         buffer.limit(fileSize);
+         file.position(0);
+         file.read(buffer);
+         buffer.rewind();
+
+         HornetQBuffer wrap = HornetQBuffers.wrappedBuffer(buffer);
+         wrap.writerIndex(fileSize);
+
+         if (wrap.readInt() != VERSION || wrap.readInt() != INTERVAL || wrap.readInt() != pageSize)
+         {
+            return null;
+         }
+
+         int numberOfMessages = wrap.readInt();
+         int size = wrap.readInt();
+         if (numberOfMessages <= 0 || size != (numberOfMessages + INTERVAL - 1) / INTERVAL ||
+            fileSize != HEADER_SIZE + size * DataConstants.SIZE_INT)
+         {
+            return null;
+         }
+
+         int[] positions = new int[size];
+         for (int i = 0; i < size; i++)
+         {
+            positions[i] = wrap.readInt();
+            if (positions[i] < 0 || positions[i] >= pageSize || i > 0 && positions[i] <= positions[i - 1])
+            {
+               return null;
+            }
+         }
+
+         return new PageIndex(positions, numberOfMessages);
+      }
+      finally
+      {
+         file.close();
+      }
+   }
+
+   static void delete(final SequentialFileFactory factory, final String fileName) throws Exception
+   {
+      SequentialFile file = factory.createSequentialFile(fileName, 1);
+      if (file.exists())
+      {
+         file.delete();
+      }
+   }
+}
@@ -0,0 +1,314 @@
+/*
+ * Copyright 2010 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.core.paging.impl;
+
+import java.nio.ByteBuffer;
+
+import org.hornetq.api.core.HornetQBuffer;
+import org.hornetq.api.core.HornetQBuffers;
+import org.hornetq.core.journal.SequentialFile;
+import org.hornetq.core.paging.PagedMessage;
+import org.hornetq.core.persistence.StorageManager;
+import org.hornetq.core.server.HornetQServerLogger;
+import org.hornetq.utils.DataConstants;
+
+/**
+ * Reads the messages of a page one at a time.
+ * <p>
+ * The file is read through a buffer of a fixed size, so the first messages of a page can be used
+ * before the rest of it is read, and a page is never loaded in memory as a whole. A reader is
+ * used by a single thread at a time, and the page file has to stay open while it is used.
+ */
+public final class PageReader
+{
+   // Constants -----------------------------------------------------
+
+   private static final boolean isTrace = HornetQServerLogger.LOGGER.isTraceEnabled();
+
+   public static final int DEFAULT_WINDOW_SIZE = 64 * 1024;
+
+   private static final int RECORD_HEADER_SIZE = DataConstants.SIZE_BYTE + DataConstants.SIZE_INT;
+
+   // Attributes ----------------------------------------------------
+
+   private final Page page;
+
+   private final SequentialFile file;
+
+   private final StorageManager storage;
+
+   private final int fileSize;
+
+   // null if the page has no index, it's read from the start then
+   private final PageIndex index;
+
+   private final int windowSize;
+
+   private ByteBuffer window;
+
+   private HornetQBuffer windowBuffer;
+
+   // where the window starts in the file
+   private int windowPosition;
+
+   // where the next message starts in the file
+   private int position;
+
+   private int messageNumber;
+
+   // set once the end of the page or an invalid record is reached
+   private boolean done;
+
+   // Constructors --------------------------------------------------
+
+   PageReader(final Page page,
+              final SequentialFile file,
+              final StorageManager storage,
+              final int fileSize,
+              final PageIndex index,
+              final int windowSize)
+   {
+      this.page = page;
+      this.file = file;
+      this.storage = storage;
+      this.fileSize = fileSize;
+      this.index = index;
+      this.windowSize = windowSize;
+   }
+
+   // Public --------------------------------------------------------
+
+   /**
+    * @return the number of the message returned by the next call to {@link #readMessage()}
+    */
+   public int getMessageNumber()
+   {
+      return messageNumber;
+   }
+
+   /**
+    * @return the number of messages of the page as written on its index, or -1 if the page has no
+    *         index
+    */
+   public int getIndexedNumberOfMessages()
+   {
+      return index == null ? -1 : index.getNumberOfMessages();
+   }
+
+   /**
+    * @return the next message of the page, or null at the end of the page or at an invalid record
+    */
+   public PagedMessage readMessage() throws Exception
+   {
+      if (done)
+      {
+         return null;
+      }
+
+      final int recordPosition = position;
+
+      if (!ensureWindow(recordPosition, DataConstants.SIZE_BYTE))
+      {
+         // the end of the page
+         done = true;
+         return null;
+      }
+
+      if (windowBuffer.getByte(recordPosition - windowPosition) != Page.START_BYTE ||
+         !ensureWindow(recordPosition, RECORD_HEADER_SIZE + DataConstants.SIZE_BYTE))
+      {
+         return invalidRecord(recordPosition);
+      }
+
+      int messageSize = windowBuffer.getInt(recordPosition - windowPosition + DataConstants.SIZE_BYTE);
+      int recordSize = RECORD_HEADER_SIZE + messageSize + DataConstants.SIZE_BYTE;
+
+      if (messageSize < 0 || !ensureWindow(recordPosition, recordSize) ||
+         windowBuffer.getByte(recordPosition - windowPosition + recordSize - 1) != Page.END_BYTE)
+      {
+         return invalidRecord(recordPosition);
+      }
+
+      windowBuffer.setIndex(recordPosition - windowPosition + RECORD_HEADER_SIZE,
+                            recordPosition - windowPosition + RECORD_HEADER_SIZE + messageSize);
+
+      PagedMessage msg = new PagedMessageImpl();
+      msg.decode(windowBuffer);
+
+      if (windowBuffer.readerIndex() != windowBuffer.writerIndex())
+      {
+         // Sanity Check: This would only happen if there is a bug on decode or any internal code, as
+         // the END_BYTE was already checked
+         throw new IllegalStateException("Internal error, it wasn't possible to locate END_BYTE on " + page);
+      }
+
+      msg.initMessage(storage);
+
+      if (isTrace)
+      {
+         HornetQServerLogger.LOGGER.trace("Reading message " + msg + " on pageId=" + page.getPageId());
+      }
+
+      position = recordPosition + recordSize;
+      messageNumber++;
+
+      return msg;
+   }
+
+   /**
+    * Moves the reader to a message of the page, using the page index to skip the messages before
+    * it. The records skipped are not decoded.
+    * @return false if the page doesn't have as many messages
+    */
+   public boolean seek(final int targetMessage) throws Exception
+   {
+      if (targetMessage < messageNumber || index != null &&
+         index.getIndexedMessage(targetMessage) > messageNumber)
+      {
+         if (index == null)
+         {
+            position = 0;
+            messageNumber = 0;
+         }
+         else
+         {
+            int indexedMessage = index.getIndexedMessage(targetMessage);
+            position = index.getPosition(indexedMessage);
+            messageNumber = indexedMessage;
+         }
+         done = false;
+      }
+
+      while (messageNumber < targetMessage)
+      {
+         if (!skipMessage())
+         {
+            return false;
+         }
+      }
+
+      return !done;
+   }
+
+   public void close()
+   {
+      if (window != null)
+      {
+         storage.freeDirectBuffer(window);
+         window = null;
+         windowBuffer = null;
+      }
+   }
+
+   @Override
+   public String toString()
+   {
+      return "PageReader [page=" + page.getPageId() + ", messageNumber=" + messageNumber + ", position=" + position + "]";
+   }
+
+   // Package protected ---------------------------------------------
+
+   /**
+    * @return where the next message starts in the file
+    */
+   int getPosition()
+   {
+      return position;
+   }
+
+   // Private -------------------------------------------------------
+
+   private boolean skipMessage() throws Exception
+   {
+      if (done)
+      {
+         return false;
+      }
+
+      final int recordPosition = position;
+
+      if (recordPosition >= fileSize)
+      {
+         done = true;
+         return false;
+      }
+
+      if (!ensureWindow(recordPosition, RECORD_HEADER_SIZE + DataConstants.SIZE_BYTE) ||
+         windowBuffer.getByte(recordPosition - windowPosition) != Page.START_BYTE)
+      {
+         invalidRecord(recordPosition);
+         return false;
+      }
+
+      int messageSize = windowBuffer.getInt(recordPosition - windowPosition + DataConstants.SIZE_BYTE);
+      if (messageSize < 0 || recordPosition + RECORD_HEADER_SIZE + messageSize >= fileSize)
+      {
+         invalidRecord(recordPosition);
+         return false;
+      }
+
+      position = recordPosition + RECORD_HEADER_SIZE + messageSize + DataConstants.SIZE_BYTE;
+      messageNumber++;
+      return true;
+   }
+
+   private PagedMessage invalidRecord(final int recordPosition)
+   {
+      page.markFileAsSuspect(file.getFileName(), recordPosition, messageNumber);
+      done = true;
+      return null;
+   }
+
+   /**
+    * Makes sure the bytes at a position of the file are in the window, reading the file if they
+    * aren't.
+    * @return false if the file ends before
+    */
+   private boolean ensureWindow(final int filePosition, final int length) throws Exception
+   {
+      if (filePosition + length > fileSize)
+      {
+         return false;
+      }
+
+      if (window != null && filePosition >= windowPosition &&
+         filePosition + length <= windowPosition + windowBuffer.capacity())
+      {
+         return true;
+      }
+
+      int capacity = Math.max(windowSize, length);
+      if (window == null || window.capacity() < capacity)
+      {
+         close();
+         // Using direct buffer, as described on https://jira.jboss.org/browse/HORNETQ-467
+         window = storage.allocateDirectBuffer(capacity);
+      }
+
+      int bytesToRead = Math.min(window.capacity(), fileSize - filePosition);
+
+      window.clear();
+      window.limit(bytesToRead);
+      file.position(filePosition);
+      int bytesRead = Math.max(0, Math.min(bytesToRead, file.read(window)));
+      window.rewind();
+      window.limit(bytesRead);
+
+      windowPosition = filePosition;
+      windowBuffer = HornetQBuffers.wrappedBuffer(window.slice());
+      windowBuffer.writerIndex(windowBuffer.capacity());
+
+      return length <= bytesRead;
+   }
+}
@@ -25,6 +25,8 @@ import org.hornetq.core.paging.PageTransactionInfo;
 import org.hornetq.core.paging.PagingManager;
 import org.hornetq.core.paging.PagingStore;
 import org.hornetq.core.paging.PagingStoreFactory;
+import org.hornetq.core.paging.cursor.PageCacheManager;
+import org.hornetq.core.paging.cursor.impl.PageCacheManagerImpl;
 import org.hornetq.core.server.HornetQServerLogger;
 import org.hornetq.core.settings.HierarchicalRepository;
 import org.hornetq.core.settings.impl.AddressSettings;
@@ -48,12 +50,16 @@ public final class PagingManagerImpl implements PagingManager
     */
    private final ReentrantReadWriteLock syncLock = new ReentrantReadWriteLock();
 
+   private final Object newStoreLock = new Object();
+
    private final ConcurrentMap<SimpleString, PagingStore> stores = new ConcurrentHashMap<SimpleString, PagingStore>();
 
    private final HierarchicalRepository<AddressSettings> addressSettingsRepository;
 
    private final PagingStoreFactory pagingStoreFactory;
 
+   private final PageCacheManager pageCacheManager;
+
    private volatile boolean cleanupEnabled = true;
 
    private final ConcurrentMap</*TransactionID*/Long, PageTransactionInfo> transactions =
@@ -69,9 +75,17 @@ public final class PagingManagerImpl implements PagingManager
 
    public PagingManagerImpl(final PagingStoreFactory pagingSPI,
                             final HierarchicalRepository<AddressSettings> addressSettingsRepository)
+   {
+      this(pagingSPI, addressSettingsRepository, new PageCacheManagerImpl());
+   }
+
+   public PagingManagerImpl(final PagingStoreFactory pagingSPI,
+                            final HierarchicalRepository<AddressSettings> addressSettingsRepository,
+                            final PageCacheManager pageCacheManager)
    {
       pagingStoreFactory = pagingSPI;
       this.addressSettingsRepository = addressSettingsRepository;
+      this.pageCacheManager = pageCacheManager;
       addressSettingsRepository.registerListener(this);
    }
 
@@ -298,18 +312,22 @@ public final class PagingManagerImpl implements PagingManager
    {
       syncLock.readLock().lock();
       try {
-         PagingStore store = stores.get(address);
-         if (store == null)
+         // queues are reloaded in parallel, two threads may ask for a new address at once
+         synchronized (newStoreLock)
          {
-            store = pagingStoreFactory.newStore(address, addressSettingsRepository.getMatch(address.toString()));
-            store.start();
-            if (!cleanupEnabled)
+            PagingStore store = stores.get(address);
+            if (store == null)
             {
-               store.disableCleanup();
+               store = pagingStoreFactory.newStore(address, addressSettingsRepository.getMatch(address.toString()));
+               store.start();
+               if (!cleanupEnabled)
+               {
+                  store.disableCleanup();
+               }
+               stores.put(address, store);
             }
-            stores.put(address, store);
+            return store;
          }
-         return store;
       }
       finally
       {
@@ -327,4 +345,9 @@ public final class PagingManagerImpl implements PagingManager
       syncLock.writeLock().lock();
    }
 
+   public PageCacheManager getPageCacheManager()
+   {
+      return pageCacheManager;
+   }
+
 }
@@ -28,6 +28,7 @@ import java.util.concurrent.ScheduledExecutorService;
 import org.hornetq.api.core.SimpleString;
 import org.hornetq.core.journal.IOCriticalErrorListener;
 import org.hornetq.core.journal.SequentialFileFactory;
+import org.hornetq.core.journal.impl.MappedSequentialFileFactory;
 import org.hornetq.core.journal.impl.NIOSequentialFileFactory;
 import org.hornetq.core.paging.PagingManager;
 import org.hornetq.core.paging.PagingStore;
@@ -70,6 +71,9 @@ public class PagingStoreFactoryNIO implements PagingStoreFactory
 
    private final IOCriticalErrorListener critialErrorListener;
 
+   /** if true the page files are memory mapped instead of being written through a FileChannel */
+   private final boolean mappedFiles;
+
    public PagingStoreFactoryNIO(final StorageManager storageManager, final String directory,
                                 final long syncTimeout,
                                 final ScheduledExecutorService scheduledExecutor,
@@ -77,6 +81,25 @@ public class PagingStoreFactoryNIO implements PagingStoreFactory
                                 final boolean syncNonTransactional,
                                 final IOCriticalErrorListener critialErrorListener)
    {
+      this(storageManager,
+           directory,
+           syncTimeout,
+           scheduledExecutor,
+           executorFactory,
+           syncNonTransactional,
+           critialErrorListener,
+           false);
+   }
+
+   public PagingStoreFactoryNIO(final StorageManager storageManager, final String directory,
+                                final long syncTimeout,
+                                final ScheduledExecutorService scheduledExecutor,
+                                final ExecutorFactory executorFactory,
+                                final boolean syncNonTransactional,
+                                final IOCriticalErrorListener critialErrorListener,
+                                final boolean mappedFiles)
+   {
+      this.mappedFiles = mappedFiles;
       this.storageManager = storageManager;
       this.directory = directory;
       this.executorFactory = executorFactory;
@@ -105,6 +128,7 @@ public class PagingStoreFactoryNIO implements PagingStoreFactory
                                  address,
                                  settings,
                                  executorFactory.getExecutor(),
+                                 executorFactory.getExecutor(),
                                  syncNonTransactional);
    }
 
@@ -198,6 +222,7 @@ public class PagingStoreFactoryNIO implements PagingStoreFactory
                                                     address,
                                                     settings,
                                                     executorFactory.getExecutor(),
+                                                    executorFactory.getExecutor(),
                                                     syncNonTransactional);
 
             storesReturn.add(store);
@@ -209,6 +234,12 @@ public class PagingStoreFactoryNIO implements PagingStoreFactory
 
    private SequentialFileFactory newFileFactory(final String directoryName)
    {
+      if (mappedFiles)
+      {
+         return new MappedSequentialFileFactory(directory + File.separatorChar + directoryName,
+                                                false,
+                                                critialErrorListener);
+      }
       return new NIOSequentialFileFactory(directory + File.separatorChar + directoryName, false, critialErrorListener);
    }
 }
@@ -128,6 +128,33 @@ public class PagingStoreImpl implements PagingStore
                           final AddressSettings addressSettings,
                           final Executor executor,
                           final boolean syncNonTransactional)
+   {
+      this(address,
+         scheduledExecutor,
+         syncTimeout,
+         pagingManager,
+         storageManager,
+         fileFactory,
+         storeFactory,
+         storeName,
+         addressSettings,
+         executor,
+         executor,
+         syncNonTransactional);
+   }
+
+   public PagingStoreImpl(final SimpleString address,
+                          final ScheduledExecutorService scheduledExecutor,
+                          final long syncTimeout,
+                          final PagingManager pagingManager,
+                          final StorageManager storageManager,
+                          final SequentialFileFactory fileFactory,
+                          final PagingStoreFactory storeFactory,
+                          final SimpleString storeName,
+                          final AddressSettings addressSettings,
+                          final Executor executor,
+                          final Executor prefetchExecutor,
+                          final boolean syncNonTransactional)
    {
       if (pagingManager == null)
       {
@@ -174,8 +201,12 @@ public class PagingStoreImpl implements PagingStore
       this.cursorProvider = new PageCursorProviderImpl(this,
          this.storageManager,
          executor,
+         prefetchExecutor,
+         pagingManager.getPageCacheManager(),
          addressSettings.getPageCacheMaxSize());
 
+      cursorProvider.setPrefetchDepth(addressSettings.getPagePrefetchDepth());
+
    }
 
    /**
@@ -192,6 +223,7 @@ public class PagingStoreImpl implements PagingStore
       if (cursorProvider != null)
       {
          cursorProvider.setCacheMaxSize(addressSettings.getPageCacheMaxSize());
+         cursorProvider.setPrefetchDepth(addressSettings.getPagePrefetchDepth());
       }
    }
 
@@ -32,6 +32,7 @@ import org.hornetq.core.paging.PageTransactionInfo;
 import org.hornetq.core.paging.PagedMessage;
 import org.hornetq.core.paging.PagingManager;
 import org.hornetq.core.paging.PagingStore;
+import org.hornetq.core.paging.cursor.PageAckBitSet;
 import org.hornetq.core.paging.cursor.PagePosition;
 import org.hornetq.core.persistence.config.PersistedAddressSetting;
 import org.hornetq.core.persistence.config.PersistedRoles;
@@ -147,6 +148,11 @@ public interface StorageManager extends HornetQComponent
 
    void storeReference(long queueID, long messageID, boolean last) throws Exception;
 
+   /**
+    * Stores the references of a message to several queues in a single record.
+    */
+   void storeReferences(long[] queueIDs, long messageID, boolean last) throws Exception;
+
    void deleteMessage(long messageID) throws Exception;
 
    void storeAcknowledge(long queueID, long messageID) throws Exception;
@@ -165,10 +171,18 @@ public interface StorageManager extends HornetQComponent
 
    void storeReferenceTransactional(long txID, long queueID, long messageID) throws Exception;
 
+   void storeReferencesTransactional(long txID, long[] queueIDs, long messageID) throws Exception;
+
    void storeAcknowledgeTransactional(long txID, long queueID, long messageID) throws Exception;
 
    void storeCursorAcknowledgeTransactional(long txID, long queueID, PagePosition position) throws Exception;
 
+   /**
+    * Stores the acks of many messages of a page in a single record, replacing the records of the single acks
+    * deleted in the same transaction.
+    */
+   void storeCursorAcknowledgeTransactional(long txID, long queueID, PagePosition position, PageAckBitSet acks) throws Exception;
+
    void deleteCursorAcknowledgeTransactional(long txID, long ackID) throws Exception;
 
    void deleteCursorAcknowledge(long ackID) throws Exception;
@@ -7,6 +7,7 @@ import static org.hornetq.core.persistence.impl.journal.JournalRecordIds.ADD_LAR
 import static org.hornetq.core.persistence.impl.journal.JournalRecordIds.ADD_LARGE_MESSAGE_PENDING;
 import static org.hornetq.core.persistence.impl.journal.JournalRecordIds.ADD_MESSAGE;
 import static org.hornetq.core.persistence.impl.journal.JournalRecordIds.ADD_REF;
+import static org.hornetq.core.persistence.impl.journal.JournalRecordIds.ADD_REFS;
 import static org.hornetq.core.persistence.impl.journal.JournalRecordIds.DUPLICATE_ID;
 import static org.hornetq.core.persistence.impl.journal.JournalRecordIds.HEURISTIC_COMPLETION;
 import static org.hornetq.core.persistence.impl.journal.JournalRecordIds.ID_COUNTER_RECORD;
@@ -57,6 +58,7 @@ import org.hornetq.core.persistence.impl.journal.JournalStorageManager.PageCount
 import org.hornetq.core.persistence.impl.journal.JournalStorageManager.PageUpdateTXEncoding;
 import org.hornetq.core.persistence.impl.journal.JournalStorageManager.PendingLargeMessageEncoding;
 import org.hornetq.core.persistence.impl.journal.JournalStorageManager.RefEncoding;
+import org.hornetq.core.persistence.impl.journal.JournalStorageManager.RefsEncoding;
 import org.hornetq.core.persistence.impl.journal.JournalStorageManager.ScheduledDeliveryEncoding;
 import org.hornetq.core.server.LargeServerMessage;
 import org.hornetq.core.server.ServerMessage;
@@ -295,6 +297,14 @@ public final class DescribeJournal
                messageRefCounts.put(ref.refEncoding.queueID, count + 1);
             }
          }
+         else if (info.getUserRecordType() == JournalRecordIds.ADD_REFS)
+         {
+            for (long queueID : ((RefsEncoding)o).queueIDs)
+            {
+               Integer count = messageRefCounts.get(queueID);
+               messageRefCounts.put(queueID, count == null ? 1 : count + 1);
+            }
+         }
          else if (info.getUserRecordType() == JournalRecordIds.ACKNOWLEDGE_REF)
          {
             AckDescribe ref = (AckDescribe)o;
@@ -504,6 +514,13 @@ public final class DescribeJournal
             return new ReferenceDescribe(encoding);
          }
 
+         case ADD_REFS:
+         {
+            final RefsEncoding encoding = new RefsEncoding();
+            encoding.decode(buffer);
+            return encoding;
+         }
+
          case ACKNOWLEDGE_REF:
          {
             final RefEncoding encoding = new RefEncoding();
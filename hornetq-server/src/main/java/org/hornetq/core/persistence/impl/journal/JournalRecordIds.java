@@ -66,4 +66,10 @@ public final class JournalRecordIds
    public static final byte PAGE_CURSOR_COUNTER_INC = 41;
 
    public static final byte PAGE_CURSOR_COMPLETE = 42;
+
+   /**
+    * The references of a message to several queues, written instead of one {@link #ADD_REF} per
+    * queue when a message is routed to many durable queues at once.
+    */
+   public static final byte ADD_REFS = 43;
 }
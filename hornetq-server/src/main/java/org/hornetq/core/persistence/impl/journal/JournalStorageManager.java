@@ -40,11 +40,14 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
@@ -73,12 +76,15 @@ import org.hornetq.core.journal.TransactionFailureCallback;
 import org.hornetq.core.journal.impl.AIOSequentialFileFactory;
 import org.hornetq.core.journal.impl.JournalFile;
 import org.hornetq.core.journal.impl.JournalImpl;
+import org.hornetq.core.journal.impl.MappedSequentialFileFactory;
 import org.hornetq.core.journal.impl.NIOSequentialFileFactory;
+import org.hornetq.core.journal.impl.StripedJournal;
 import org.hornetq.core.message.impl.MessageInternal;
 import org.hornetq.core.paging.PageTransactionInfo;
 import org.hornetq.core.paging.PagedMessage;
 import org.hornetq.core.paging.PagingManager;
 import org.hornetq.core.paging.PagingStore;
+import org.hornetq.core.paging.cursor.PageAckBitSet;
 import org.hornetq.core.paging.cursor.PagePosition;
 import org.hornetq.core.paging.cursor.PageSubscription;
 import org.hornetq.core.paging.cursor.PagedReferenceImpl;
@@ -204,6 +210,10 @@ public class JournalStorageManager implements StorageManager
 
    private final String journalDir;
 
+   private final int journalStripes;
+
+   private final int journalLoadThreads;
+
    private final String largeMessagesDirectory;
 
    private boolean journalLoaded = false;
@@ -229,7 +239,8 @@ public class JournalStorageManager implements StorageManager
 
       executor = executorFactory.getExecutor();
 
-      if (config.getJournalType() != JournalType.NIO && config.getJournalType() != JournalType.ASYNCIO)
+      if (config.getJournalType() != JournalType.NIO && config.getJournalType() != JournalType.ASYNCIO &&
+               config.getJournalType() != JournalType.MAPPED)
       {
          throw HornetQMessageBundle.BUNDLE.invalidJournal();
       }
@@ -272,39 +283,45 @@ public class JournalStorageManager implements StorageManager
       if (config.getJournalType() == JournalType.ASYNCIO)
       {
          HornetQServerLogger.LOGGER.journalUseAIO();
-
-         journalFF = new AIOSequentialFileFactory(journalDir,
-            config.getJournalBufferSize_AIO(),
-            config.getJournalBufferTimeout_AIO(),
-            config.isLogJournalWriteRate(),
-            criticalErrorListener);
       }
       else if (config.getJournalType() == JournalType.NIO)
       {
          HornetQServerLogger.LOGGER.journalUseNIO();
-         journalFF = new NIOSequentialFileFactory(journalDir,
-            true,
-            config.getJournalBufferSize_NIO(),
-            config.getJournalBufferTimeout_NIO(),
-            config.isLogJournalWriteRate(),
-            criticalErrorListener);
+      }
+      else if (config.getJournalType() == JournalType.MAPPED)
+      {
+         HornetQServerLogger.LOGGER.journalUseMapped();
       }
       else
       {
          throw HornetQMessageBundle.BUNDLE.invalidJournalType2(config.getJournalType());
       }
 
+      journalFF = createJournalFileFactory(config, journalDir, criticalErrorListener);
+
       idGenerator = new BatchingIDGenerator(0, JournalStorageManager.CHECKPOINT_BATCH_SIZE, this);
 
-      Journal localMessage = new JournalImpl(config.getJournalFileSize(),
-         config.getJournalMinFiles(),
-         config.getJournalCompactMinFiles(),
-         config.getJournalCompactPercentage(),
-         journalFF,
-         "hornetq-data",
-         "hq",
-         config.getJournalType() == JournalType.ASYNCIO ? config.getJournalMaxIO_AIO()
-            : config.getJournalMaxIO_NIO());
+      journalStripes = config.getJournalStripes();
+
+      journalLoadThreads = config.getJournalLoadThreads();
+
+      Journal localMessage;
+
+      if (journalStripes > 1)
+      {
+         JournalImpl[] stripes = new JournalImpl[journalStripes];
+         stripes[0] = createMessageJournal(config, journalFF);
+         for (int i = 1; i < journalStripes; i++)
+         {
+            stripes[i] = createMessageJournal(config,
+               createJournalFileFactory(config, getStripeDirectory(i), criticalErrorListener));
+         }
+         localMessage = new StripedJournal(stripes, executorFactory.getExecutor());
+      }
+      else
+      {
+         localMessage = createMessageJournal(config, journalFF);
+      }
 
       messageJournal = localMessage;
       originalMessageJournal = localMessage;
@@ -429,6 +446,7 @@ public class JournalStorageManager implements StorageManager
          sendJournalFile(bindingsFiles, JournalContent.BINDINGS);
          sendLargeMessageFiles();
          sendPagesToBackup(pageFilesToSync, pagingManager);
+         replicator.sendFilesToSync();
 
          storageManagerLock.writeLock().lock();
          try
@@ -927,6 +945,20 @@ public class JournalStorageManager implements StorageManager
       }
    }
 
+   public void storeReferences(final long[] queueIDs, final long messageID, final boolean last) throws Exception
+   {
+      readLock();
+      try
+      {
+         messageJournal.appendUpdateRecord(messageID, JournalRecordIds.ADD_REFS, new RefsEncoding(queueIDs), last &&
+            syncNonTransactional, getContext(last && syncNonTransactional));
+      }
+      finally
+      {
+         readUnLock();
+      }
+   }
+
    @Override
    public void readLock()
    {
@@ -1134,6 +1166,20 @@ public class JournalStorageManager implements StorageManager
       }
    }
 
+   public void storeReferencesTransactional(final long txID, final long[] queueIDs, final long messageID) throws Exception
+   {
+      readLock();
+      try
+      {
+         messageJournal.appendUpdateRecordTransactional(txID, messageID, JournalRecordIds.ADD_REFS,
+            new RefsEncoding(queueIDs));
+      }
+      finally
+      {
+         readUnLock();
+      }
+   }
+
    public void storeAcknowledgeTransactional(final long txID, final long queueID, final long messageID)
       throws Exception
    {
@@ -1167,6 +1213,24 @@ public class JournalStorageManager implements StorageManager
       }
    }
 
+   public void storeCursorAcknowledgeTransactional(long txID, long queueID, PagePosition position, PageAckBitSet acks) throws Exception
+   {
+      readLock();
+      try
+      {
+         long ackID = idGenerator.generateID();
+         position.setRecordID(ackID);
+         messageJournal.appendAddRecordTransactional(txID,
+            ackID,
+ JournalRecordIds.ACKNOWLEDGE_CURSOR,
+            new CursorAckRecordEncoding(queueID, position, acks));
+      }
+      finally
+      {
+         readUnLock();
+      }
+   }
+
    public void storePageCompleteTransactional(long txID, long queueID, PagePosition position) throws Exception
    {
       long recordID = idGenerator.generateID();
@@ -1593,30 +1657,23 @@ public class JournalStorageManager implements StorageManager
                }
                case JournalRecordIds.ADD_REF:
                {
-                  long messageID = record.id;
-
                   RefEncoding encoding = new RefEncoding();
 
                   encoding.decode(buff);
 
-                  Map<Long, AddMessageRecord> queueMessages = queueMap.get(encoding.queueID);
-
-                  if (queueMessages == null)
-                  {
-                     queueMessages = new LinkedHashMap<Long, AddMessageRecord>();
+                  loadReference(queueMap, messages, record.id, encoding.queueID);
 
-                     queueMap.put(encoding.queueID, queueMessages);
-                  }
+                  break;
+               }
+               case JournalRecordIds.ADD_REFS:
+               {
+                  RefsEncoding encoding = new RefsEncoding();
 
-                  ServerMessage message = messages.get(messageID);
+                  encoding.decode(buff);
 
-                  if (message == null)
+                  for (long queueID : encoding.queueIDs)
                   {
-                     HornetQServerLogger.LOGGER.cannotFindMessage(record.id);
-                  }
-                  else
-                  {
-                     queueMessages.put(messageID, new AddMessageRecord(message));
+                     loadReference(queueMap, messages, record.id, queueID);
                   }
 
                   break;
@@ -1770,7 +1827,14 @@ public class JournalStorageManager implements StorageManager
 
                   if (sub != null)
                   {
-                     sub.reloadACK(encoding.position);
+                     if (encoding.acks != null)
+                     {
+                        sub.reloadACK(encoding.position, encoding.acks);
+                     }
+                     else
+                     {
+                        sub.reloadACK(encoding.position);
+                     }
                   }
                   else
                   {
@@ -1861,58 +1925,7 @@ public class JournalStorageManager implements StorageManager
          records.clear();
          records = null;
 
-         for (Map.Entry<Long, Map<Long, AddMessageRecord>> entry : queueMap.entrySet())
-         {
-            long queueID = entry.getKey();
-
-            Map<Long, AddMessageRecord> queueRecords = entry.getValue();
-
-            Queue queue = queues.get(queueID);
-
-            if (queue == null)
-            {
-               if (queueRecords.values().size() != 0)
-               {
-                  HornetQServerLogger.LOGGER.journalCannotFindQueueForMessage(queueID);
-               }
-
-               continue;
-            }
-
-            // Redistribution could install a Redistributor while we are still loading records, what will be an issue with
-            // prepared ACKs
-            // We make sure te Queue is paused before we reroute values.
-            queue.pause();
-
-            Collection<AddMessageRecord> valueRecords = queueRecords.values();
-
-            long currentTime = System.currentTimeMillis();
-
-            for (AddMessageRecord record : valueRecords)
-            {
-               long scheduledDeliveryTime = record.scheduledDeliveryTime;
-
-               if (scheduledDeliveryTime != 0 && scheduledDeliveryTime <= currentTime)
-               {
-                  scheduledDeliveryTime = 0;
-                  record.message.removeProperty(Message.HDR_SCHEDULED_DELIVERY_TIME);
-               }
-
-               if (scheduledDeliveryTime != 0)
-               {
-                  record.message.putLongProperty(Message.HDR_SCHEDULED_DELIVERY_TIME, scheduledDeliveryTime);
-               }
-
-               MessageReference ref = postOffice.reroute(record.message, queue, null);
-
-               ref.setDeliveryCount(record.deliveryCount);
-
-               if (scheduledDeliveryTime != 0)
-               {
-                  record.message.removeProperty(Message.HDR_SCHEDULED_DELIVERY_TIME);
-               }
-            }
-         }
+         reloadQueues(postOffice, queues, queueMap);
 
          loadPreparedTransactions(postOffice,
             pagingManager,
@@ -1985,6 +1998,117 @@ public class JournalStorageManager implements StorageManager
       }
    }
 
+   /**
+    * Routes the loaded messages to their queues. Queues don't depend on each other, so with more
+    * than one load thread they are spread over that many executors.
+    */
+   private void reloadQueues(final PostOffice postOffice,
+                             final Map<Long, Queue> queues,
+                             final Map<Long, Map<Long, AddMessageRecord>> queueMap) throws Exception
+   {
+      if (journalLoadThreads <= 1 || queueMap.size() <= 1)
+      {
+         for (Map.Entry<Long, Map<Long, AddMessageRecord>> entry : queueMap.entrySet())
+         {
+            reloadQueue(postOffice, queues.get(entry.getKey()), entry.getKey(), entry.getValue());
+         }
+         return;
+      }
+
+      Executor[] executors = new Executor[Math.min(journalLoadThreads, queueMap.size())];
+      for (int i = 0; i < executors.length; i++)
+      {
+         executors[i] = executorFactory.getExecutor();
+      }
+
+      List<FutureTask<Void>> tasks = new ArrayList<FutureTask<Void>>(queueMap.size());
+
+      for (final Map.Entry<Long, Map<Long, AddMessageRecord>> entry : queueMap.entrySet())
+      {
+         FutureTask<Void> task = new FutureTask<Void>(new Callable<Void>()
+         {
+            public Void call() throws Exception
+            {
+               reloadQueue(postOffice, queues.get(entry.getKey()), entry.getKey(), entry.getValue());
+               return null;
+            }
+         });
+         executors[tasks.size() % executors.length].execute(task);
+         tasks.add(task);
+      }
+
+      for (FutureTask<Void> task : tasks)
+      {
+         try
+         {
+            task.get();
+         }
+         catch (ExecutionException e)
+         {
+            if (e.getCause() instanceof Exception)
+            {
+               throw (Exception)e.getCause();
+            }
+            throw e;
+         }
+      }
+   }
+
+   private void reloadQueue(final PostOffice postOffice,
+                            final Queue queue,
+                            final long queueID,
+                            final Map<Long, AddMessageRecord> queueRecords) throws Exception
+   {
+      if (queue == null)
+      {
+         if (queueRecords.values().size() != 0)
+         {
+            HornetQServerLogger.LOGGER.journalCannotFindQueueForMessage(queueID);
+         }
+
+         return;
+      }
+
+      // Redistribution could install a Redistributor while we are still loading records, what will be an issue with
+      // prepared ACKs
+      // We make sure te Queue is paused before we reroute values.
+      queue.pause();
+
+      Collection<AddMessageRecord> valueRecords = queueRecords.values();
+
+      long currentTime = System.currentTimeMillis();
+
+      for (AddMessageRecord record : valueRecords)
+      {
+         long scheduledDeliveryTime = record.scheduledDeliveryTime;
+
+         // a message routed to several queues may be reloaded by other threads at the same time, and
+         // its properties are changed here
+         synchronized (record.message)
+         {
+            if (scheduledDeliveryTime != 0 && scheduledDeliveryTime <= currentTime)
+            {
+               scheduledDeliveryTime = 0;
+               record.message.removeProperty(Message.HDR_SCHEDULED_DELIVERY_TIME);
+            }
+
+            if (scheduledDeliveryTime != 0)
+            {
+               record.message.putLongProperty(Message.HDR_SCHEDULED_DELIVERY_TIME, scheduledDeliveryTime);
+            }
+
+            MessageReference ref = postOffice.reroute(record.message, queue, null);
+
+            ref.setDeliveryCount(record.deliveryCount);
+
+            if (scheduledDeliveryTime != 0)
+            {
+               record.message.removeProperty(Message.HDR_SCHEDULED_DELIVERY_TIME);
+            }
+         }
+      }
+   }
+
    /**
     * @param queueID
     * @param pageSubscriptions
@@ -2241,6 +2365,11 @@ public class JournalStorageManager implements StorageManager
 
       checkAndCreateDir(journalDir, createJournalDir);
 
+      for (int i = 1; i < journalStripes; i++)
+      {
+         checkAndCreateDir(getStripeDirectory(i), createJournalDir);
+      }
+
       checkAndCreateDir(largeMessagesDirectory, createJournalDir);
 
       cleanupIncompleteFiles();
@@ -2501,6 +2630,66 @@ public class JournalStorageManager implements StorageManager
 
    // Private ----------------------------------------------------------------------------------
 
+   private static SequentialFileFactory createJournalFileFactory(final Configuration config,
+                                                                 final String directory,
+                                                                 final IOCriticalErrorListener criticalErrorListener)
+   {
+      if (config.getJournalType() == JournalType.ASYNCIO)
+      {
+         return new AIOSequentialFileFactory(directory,
+            config.getJournalBufferSize_AIO(),
+            config.getJournalBufferTimeout_AIO(),
+            config.isLogJournalWriteRate(),
+            config.isJournalBufferLockFree(),
+            criticalErrorListener);
+      }
+      else if (config.getJournalType() == JournalType.MAPPED)
+      {
+         return new MappedSequentialFileFactory(directory,
+            true,
+            config.getJournalBufferSize_NIO(),
+            config.getJournalBufferTimeout_NIO(),
+            config.isLogJournalWriteRate(),
+            config.isJournalBufferLockFree(),
+            criticalErrorListener);
+      }
+      else
+      {
+         return new NIOSequentialFileFactory(directory,
+            true,
+            config.getJournalBufferSize_NIO(),
+            config.getJournalBufferTimeout_NIO(),
+            config.isLogJournalWriteRate(),
+            config.isJournalBufferLockFree(),
+            criticalErrorListener);
+      }
+   }
+
+   private static JournalImpl createMessageJournal(final Configuration config, final SequentialFileFactory fileFactory)
+   {
+      JournalImpl journal = new JournalImpl(config.getJournalFileSize(),
+         config.getJournalMinFiles(),
+         config.getJournalCompactMinFiles(),
+         config.getJournalCompactPercentage(),
+         fileFactory,
+         "hornetq-data",
+         "hq",
+         config.getJournalType() == JournalType.ASYNCIO ? config.getJournalMaxIO_AIO()
+            : config.getJournalMaxIO_NIO());
+
+      journal.setLoadThreads(config.getJournalLoadThreads());
+
+      return journal;
+   }
+
+   /**
+    * Stripe 0 uses the journal directory itself, so a single stripe journal keeps its usual layout.
+    */
+   private String getStripeDirectory(final int stripe)
+   {
+      return new File(journalDir, "stripe-" + stripe).getPath();
+   }
+
    private void checkAndCreateDir(final String dir, final boolean create)
    {
       File f = new File(dir);
@@ -2558,6 +2747,58 @@ public class JournalStorageManager implements StorageManager
       return largeMessage;
    }
 
+   private void loadReference(final Map<Long, Map<Long, AddMessageRecord>> queueMap,
+                              final Map<Long, ServerMessage> messages,
+                              final long messageID,
+                              final long queueID)
+   {
+      Map<Long, AddMessageRecord> queueMessages = queueMap.get(queueID);
+
+      if (queueMessages == null)
+      {
+         queueMessages = new LinkedHashMap<Long, AddMessageRecord>();
+
+         queueMap.put(queueID, queueMessages);
+      }
+
+      ServerMessage message = messages.get(messageID);
+
+      if (message == null)
+      {
+         HornetQServerLogger.LOGGER.cannotFindMessage(messageID);
+      }
+      else
+      {
+         queueMessages.put(messageID, new AddMessageRecord(message));
+      }
+   }
+
+   private void rerouteReference(final PostOffice postOffice,
+                                 final Map<Long, Queue> queues,
+                                 final Transaction tx,
+                                 final Map<Long, ServerMessage> messages,
+                                 final long messageID,
+                                 final long queueID) throws Exception
+   {
+      Queue queue = queues.get(queueID);
+
+      if (queue == null)
+      {
+         HornetQServerLogger.LOGGER.journalMessageInPreparedTX(queueID);
+      }
+      else
+      {
+         ServerMessage message = messages.get(messageID);
+
+         if (message == null)
+         {
+            throw new IllegalStateException("Cannot find message with id " + messageID);
+         }
+
+         postOffice.reroute(message, queue, tx);
+      }
+   }
+
    private void loadPreparedTransactions(final PostOffice postOffice,
                                          final PagingManager pagingManager,
                                          final ResourceManager resourceManager,
@@ -2613,28 +2854,23 @@ public class JournalStorageManager implements StorageManager
                }
                case JournalRecordIds.ADD_REF:
                {
-                  long messageID = record.id;
-
                   RefEncoding encoding = new RefEncoding();
 
                   encoding.decode(buff);
 
-                  Queue queue = queues.get(encoding.queueID);
+                  rerouteReference(postOffice, queues, tx, messages, record.id, encoding.queueID);
 
-                  if (queue == null)
-                  {
-                     HornetQServerLogger.LOGGER.journalMessageInPreparedTX(encoding.queueID);
-                  }
-                  else
-                  {
-                     ServerMessage message = messages.get(messageID);
+                  break;
+               }
+               case JournalRecordIds.ADD_REFS:
+               {
+                  RefsEncoding encoding = new RefsEncoding();
 
-                     if (message == null)
-                     {
-                        throw new IllegalStateException("Cannot find message with id " + messageID);
-                     }
+                  encoding.decode(buff);
 
-                     postOffice.reroute(message, queue, tx);
+                  for (long queueID : encoding.queueIDs)
+                  {
+                     rerouteReference(postOffice, queues, tx, messages, record.id, queueID);
                   }
 
                   break;
@@ -3345,6 +3581,52 @@ public class JournalStorageManager implements StorageManager
       }
    }
 
+   /**
+    * The queues a message was routed to, see {@link JournalRecordIds#ADD_REFS}.
+    */
+   public static class RefsEncoding implements EncodingSupport
+   {
+      public long[] queueIDs;
+
+      public RefsEncoding()
+      {
+      }
+
+      public RefsEncoding(final long[] queueIDs)
+      {
+         this.queueIDs = queueIDs;
+      }
+
+      public void decode(final HornetQBuffer buffer)
+      {
+         queueIDs = new long[buffer.readInt()];
+         for (int i = 0; i < queueIDs.length; i++)
+         {
+            queueIDs[i] = buffer.readLong();
+         }
+      }
+
+      public void encode(final HornetQBuffer buffer)
+      {
+         buffer.writeInt(queueIDs.length);
+         for (long queueID : queueIDs)
+         {
+            buffer.writeLong(queueID);
+         }
+      }
+
+      public int getEncodeSize()
+      {
+         return DataConstants.SIZE_INT + queueIDs.length * DataConstants.SIZE_LONG;
+      }
+
+      @Override
+      public String toString()
+      {
+         return "RefsEncoding [queueIDs=" + Arrays.toString(queueIDs) + "]";
+      }
+   }
+
    public static class PageUpdateTXEncoding implements EncodingSupport
    {
 
@@ -3639,6 +3921,12 @@ public class JournalStorageManager implements StorageManager
          this.position = position;
       }
 
+      public CursorAckRecordEncoding(final long queueID, final PagePosition position, final PageAckBitSet acks)
+      {
+         this(queueID, position);
+         this.acks = acks;
+      }
+
       public CursorAckRecordEncoding()
       {
          this.position = new PagePositionImpl();
@@ -3647,16 +3935,23 @@ public class JournalStorageManager implements StorageManager
       @Override
       public String toString()
       {
-         return "CursorAckRecordEncoding [queueID=" + queueID + ", position=" + position + "]";
+         return "CursorAckRecordEncoding [queueID=" + queueID + ", position=" + position +
+            (acks == null ? "" : ", acks=" + acks) + "]";
       }
 
       public long queueID;
 
       public PagePosition position;
 
+      /**
+       * The acks of many messages of the page, the position is then not one of them
+       */
+      public PageAckBitSet acks;
+
       public int getEncodeSize()
       {
-         return DataConstants.SIZE_LONG + DataConstants.SIZE_LONG + DataConstants.SIZE_INT;
+         return DataConstants.SIZE_LONG + DataConstants.SIZE_LONG + DataConstants.SIZE_INT +
+            (acks == null ? 0 : acks.getEncodeSize());
       }
 
       public void encode(HornetQBuffer buffer)
@@ -3664,6 +3959,10 @@ public class JournalStorageManager implements StorageManager
          buffer.writeLong(queueID);
          buffer.writeLong(position.getPageNr());
          buffer.writeInt(position.getMessageNr());
+         if (acks != null)
+         {
+            acks.encode(buffer);
+         }
       }
 
       public void decode(HornetQBuffer buffer)
@@ -3672,6 +3971,12 @@ public class JournalStorageManager implements StorageManager
          long pageNR = buffer.readLong();
          int messageNR = buffer.readInt();
          this.position = new PagePositionImpl(pageNR, messageNR);
+         // the records of a single ack end here
+         if (buffer.readable())
+         {
+            acks = new PageAckBitSet();
+            acks.decode(buffer);
+         }
       }
    }
 
@@ -41,6 +41,8 @@ public final class LargeServerMessageInSync implements ReplicatedLargeMessage
       }
       if (appendFile != null)
       {
+         // the synchronized ranges may not have been received in order
+         mainSeqFile.position(mainSeqFile.size());
          appendFile.close();
          appendFile.open();
          for (;;)
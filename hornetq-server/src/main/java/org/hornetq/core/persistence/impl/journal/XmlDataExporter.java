@@ -18,6 +18,7 @@ import static org.hornetq.core.persistence.impl.journal.JournalRecordIds.ACKNOWL
 import static org.hornetq.core.persistence.impl.journal.JournalRecordIds.ADD_LARGE_MESSAGE;
 import static org.hornetq.core.persistence.impl.journal.JournalRecordIds.ADD_MESSAGE;
 import static org.hornetq.core.persistence.impl.journal.JournalRecordIds.ADD_REF;
+import static org.hornetq.core.persistence.impl.journal.JournalRecordIds.ADD_REFS;
 import static org.hornetq.core.persistence.impl.journal.JournalRecordIds.PAGE_TRANSACTION;
 import static org.hornetq.core.persistence.impl.journal.JournalRecordIds.QUEUE_BINDING_RECORD;
 
@@ -71,6 +72,8 @@ import org.hornetq.core.persistence.impl.journal.JournalStorageManager.AckDescri
 import org.hornetq.core.persistence.impl.journal.JournalStorageManager.CursorAckRecordEncoding;
 import org.hornetq.core.persistence.impl.journal.JournalStorageManager.PageUpdateTXEncoding;
 import org.hornetq.core.persistence.impl.journal.JournalStorageManager.PersistentQueueBindingEncoding;
+import org.hornetq.core.persistence.impl.journal.JournalStorageManager.RefEncoding;
+import org.hornetq.core.persistence.impl.journal.JournalStorageManager.RefsEncoding;
 import org.hornetq.core.persistence.impl.nullpm.NullStorageManager;
 import org.hornetq.core.server.HornetQServerLogger;
 import org.hornetq.core.server.JournalType;
@@ -274,17 +277,13 @@ public final class XmlDataExporter
          }
          else if (info.getUserRecordType() == ADD_REF)
          {
-            ReferenceDescribe ref = (ReferenceDescribe) o;
-            HashMap<Long, ReferenceDescribe> map = messageRefs.get(info.id);
-            if (map == null)
-            {
-               HashMap<Long, ReferenceDescribe> newMap = new HashMap<Long, ReferenceDescribe>();
-               newMap.put(ref.refEncoding.queueID, ref);
-               messageRefs.put(info.id, newMap);
-            }
-            else
+            addReference(info.id, (ReferenceDescribe) o);
+         }
+         else if (info.getUserRecordType() == ADD_REFS)
+         {
+            for (long queueID : ((RefsEncoding) o).queueIDs)
             {
-               map.put(ref.refEncoding.queueID, ref);
+               addReference(info.id, new ReferenceDescribe(new RefEncoding(queueID)));
             }
          }
          else if (info.getUserRecordType() == ACKNOWLEDGE_REF)
@@ -305,6 +304,15 @@ public final class XmlDataExporter
             }
 
             set.add(encoding.position);
+
+            if (encoding.acks != null)
+            {
+               // a single record with the acks of many messages of the page
+               for (int nr = encoding.acks.nextSetBit(0); nr >= 0; nr = encoding.acks.nextSetBit(nr + 1))
+               {
+                  set.add(new PagePositionImpl(encoding.position.getPageNr(), nr));
+               }
+            }
          }
          else if (info.userRecordType == PAGE_TRANSACTION)
          {
@@ -352,6 +360,17 @@ public final class XmlDataExporter
       }
    }
 
+   private void addReference(final long messageID, final ReferenceDescribe ref)
+   {
+      HashMap<Long, ReferenceDescribe> map = messageRefs.get(messageID);
+      if (map == null)
+      {
+         map = new HashMap<Long, ReferenceDescribe>();
+         messageRefs.put(messageID, map);
+      }
+      map.put(ref.refEncoding.queueID, ref);
+   }
+
    /**
     * Open the bindings journal and extract all bindings data.
     *
@@ -34,6 +34,7 @@ import org.hornetq.core.paging.PageTransactionInfo;
 import org.hornetq.core.paging.PagedMessage;
 import org.hornetq.core.paging.PagingManager;
 import org.hornetq.core.paging.PagingStore;
+import org.hornetq.core.paging.cursor.PageAckBitSet;
 import org.hornetq.core.paging.cursor.PagePosition;
 import org.hornetq.core.persistence.GroupingInfo;
 import org.hornetq.core.persistence.OperationContext;
@@ -167,6 +168,16 @@ public class NullStorageManager implements StorageManager
    {
    }
 
+   @Override
+   public void storeReferences(final long[] queueIDs, final long messageID, final boolean last) throws Exception
+   {
+   }
+
+   @Override
+   public void storeReferencesTransactional(final long txID, final long[] queueIDs, final long messageID) throws Exception
+   {
+   }
+
    @Override
    public void storeAcknowledge(final long queueID, final long messageID) throws Exception
    {
@@ -453,6 +464,14 @@ public class NullStorageManager implements StorageManager
    {
    }
 
+   @Override
+   public void storeCursorAcknowledgeTransactional(final long txID,
+                                                   final long queueID,
+                                                   final PagePosition position,
+                                                   final PageAckBitSet acks)
+   {
+   }
+
    @Override
    public void deleteCursorAcknowledgeTransactional(final long txID, final long ackID) throws Exception
    {
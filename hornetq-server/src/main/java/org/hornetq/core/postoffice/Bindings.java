@@ -39,6 +39,12 @@ public interface Bindings
 
    void setRouteWhenNoConsumers(boolean takePriorityIntoAccount);
 
+   /**
+    * Sets whether the messages are load balanced by the load of the queues rather than round
+    * robin.
+    */
+   void setLoadAwareRouting(boolean loadAwareRouting);
+
    boolean redistribute(ServerMessage message, Queue originatingQueue, RoutingContext context) throws Exception;
 
    void route(ServerMessage message, RoutingContext context) throws Exception;
@@ -13,6 +13,8 @@
 
 package org.hornetq.core.postoffice;
 
+import java.util.Map;
+
 import org.hornetq.api.core.Pair;
 import org.hornetq.api.core.SimpleString;
 import org.hornetq.core.server.HornetQComponent;
@@ -59,6 +61,11 @@ public interface PostOffice extends HornetQComponent
 
    Binding getBinding(SimpleString uniqueName);
 
+   /**
+    * @return the bindings of every address, by unique name
+    */
+   Map<SimpleString, Binding> getAllBindings();
+
    Bindings getMatchingBindings(SimpleString address) throws Exception;
 
    void route(ServerMessage message, boolean direct) throws Exception;
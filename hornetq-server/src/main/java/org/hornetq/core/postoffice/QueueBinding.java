@@ -29,4 +29,14 @@ public interface QueueBinding extends Binding
    int consumerCount();
 
    Queue getQueue();
+
+   /**
+    * @return the number of messages in the queue, as last known for a queue on another node
+    */
+   long getMessageCount();
+
+   /**
+    * @return the rate the queue's messages were last acknowledged at, in messages per second
+    */
+   double getConsumerRate();
 }
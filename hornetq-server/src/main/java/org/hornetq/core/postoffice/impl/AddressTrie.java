@@ -0,0 +1,246 @@
+/*
+ * Copyright 2009 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.hornetq.core.postoffice.impl;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.hornetq.api.core.SimpleString;
+
+/**
+ * A set of addresses stored as a tree of their words, so the addresses matching a wildcard, or the
+ * wildcards matching an address, are found by walking the words instead of comparing every pair.
+ * <p>
+ * '*' matches one word and '#' any number of words. The matches are candidates, a '#' here also
+ * matches cases {@link AddressImpl#matches(org.hornetq.core.postoffice.Address)} doesn't, so callers
+ * check each candidate with it.
+ * <p>
+ * This class is not thread safe, it is guarded by its owner. Only the size can be read without the lock.
+ *
+ * @see WildcardAddressManager
+ */
+final class AddressTrie
+{
+   private final Node root = new Node();
+
+   private volatile int size;
+
+   /**
+    * @return false if the address was already there
+    */
+   boolean add(final SimpleString address)
+   {
+      Node node = root;
+      for (SimpleString word : address.split(WildcardAddressManager.DELIM))
+      {
+         Node child = node.child(word);
+         if (child == null)
+         {
+            child = node.addChild(word);
+         }
+         node = child;
+      }
+
+      if (node.address != null)
+      {
+         return false;
+      }
+      node.address = address;
+      size++;
+      return true;
+   }
+
+   /**
+    * @return false if the address was not there
+    */
+   boolean remove(final SimpleString address)
+   {
+      SimpleString[] words = address.split(WildcardAddressManager.DELIM);
+      Node[] path = new Node[words.length + 1];
+      path[0] = root;
+      for (int i = 0; i < words.length; i++)
+      {
+         path[i + 1] = path[i].child(words[i]);
+         if (path[i + 1] == null)
+         {
+            return false;
+         }
+      }
+
+      Node node = path[words.length];
+      if (node.address == null)
+      {
+         return false;
+      }
+      node.address = null;
+      size--;
+
+      // prune the branch that is left with no address
+      for (int i = words.length; i > 0 && path[i].address == null && path[i].children == null; i--)
+      {
+         path[i - 1].removeChild(words[i - 1]);
+      }
+      return true;
+   }
+
+   boolean isEmpty()
+   {
+      return size == 0;
+   }
+
+   int size()
+   {
+      return size;
+   }
+
+   void clear()
+   {
+      root.children = null;
+      root.address = null;
+      size = 0;
+   }
+
+   /**
+    * Adds to matches the wildcard addresses of this trie that match an address with no wildcards.
+    */
+   void matchAddress(final SimpleString address, final Collection<SimpleString> matches)
+   {
+      matchAddress(root, address.split(WildcardAddressManager.DELIM), 0, matches);
+   }
+
+   /**
+    * Adds to matches the addresses of this trie that match a wildcard address.
+    */
+   void matchWildcard(final SimpleString wildcard, final Collection<SimpleString> matches)
+   {
+      matchWildcard(root, wildcard.split(WildcardAddressManager.DELIM), 0, matches);
+   }
+
+   private static void matchAddress(final Node node,
+                                    final SimpleString[] words,
+                                    final int pos,
+                                    final Collection<SimpleString> matches)
+   {
+      if (pos == words.length)
+      {
+         if (node.address != null)
+         {
+            matches.add(node.address);
+         }
+      }
+      else
+      {
+         Node child = node.child(words[pos]);
+         if (child != null)
+         {
+            matchAddress(child, words, pos + 1, matches);
+         }
+         child = node.child(WildcardAddressManager.SINGLE_WORD_SIMPLESTRING);
+         if (child != null)
+         {
+            matchAddress(child, words, pos + 1, matches);
+         }
+      }
+
+      Node any = node.child(WildcardAddressManager.ANY_WORDS_SIMPLESTRING);
+      if (any != null)
+      {
+         for (int i = pos; i <= words.length; i++)
+         {
+            matchAddress(any, words, i, matches);
+         }
+      }
+   }
+
+   private static void matchWildcard(final Node node,
+                                     final SimpleString[] words,
+                                     final int pos,
+                                     final Collection<SimpleString> matches)
+   {
+      if (pos == words.length)
+      {
+         if (node.address != null)
+         {
+            matches.add(node.address);
+         }
+         return;
+      }
+
+      SimpleString word = words[pos];
+
+      if (word.equals(WildcardAddressManager.ANY_WORDS_SIMPLESTRING))
+      {
+         // no word, or one more word and still on the '#'
+         matchWildcard(node, words, pos + 1, matches);
+         if (node.children != null)
+         {
+            for (Node child : node.children.values())
+            {
+               matchWildcard(child, words, pos, matches);
+            }
+         }
+      }
+      else if (word.equals(WildcardAddressManager.SINGLE_WORD_SIMPLESTRING))
+      {
+         if (node.children != null)
+         {
+            for (Node child : node.children.values())
+            {
+               matchWildcard(child, words, pos + 1, matches);
+            }
+         }
+      }
+      else
+      {
+         Node child = node.child(word);
+         if (child != null)
+         {
+            matchWildcard(child, words, pos + 1, matches);
+         }
+      }
+   }
+
+   private static final class Node
+   {
+      // the address ending on this node, if any
+      SimpleString address;
+
+      Map<SimpleString, Node> children;
+
+      Node child(final SimpleString word)
+      {
+         return children == null ? null : children.get(word);
+      }
+
+      Node addChild(final SimpleString word)
+      {
+         if (children == null)
+         {
+            children = new HashMap<SimpleString, Node>(4);
+         }
+         Node child = new Node();
+         children.put(word, child);
+         return child;
+      }
+
+      void removeChild(final SimpleString word)
+      {
+         children.remove(word);
+         if (children.isEmpty())
+         {
+            children = null;
+         }
+      }
+   }
+}
@@ -16,20 +16,25 @@ package org.hornetq.core.postoffice.impl;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.hornetq.api.core.Message;
 import org.hornetq.api.core.SimpleString;
 import org.hornetq.core.filter.Filter;
+import org.hornetq.core.filter.impl.FilterImpl;
 import org.hornetq.core.message.impl.MessageImpl;
 import org.hornetq.core.paging.PagingStore;
 import org.hornetq.core.postoffice.Binding;
 import org.hornetq.core.postoffice.Bindings;
+import org.hornetq.core.postoffice.QueueBinding;
 import org.hornetq.core.server.HornetQMessageBundle;
 import org.hornetq.core.server.HornetQServerLogger;
 import org.hornetq.core.server.Queue;
@@ -60,8 +65,23 @@ public final class BindingsImpl implements Bindings
 
    private final List<Binding> exclusiveBindings = new CopyOnWriteArrayList<Binding>();
 
+   /**
+    * Incremented after the routing names or their bindings change, see {@link #getRouteTable()}.
+    */
+   private final AtomicInteger bindingsVersion = new AtomicInteger();
+
+   private volatile RouteTable routeTable;
+
    private volatile boolean routeWhenNoConsumers;
 
+   private volatile boolean loadAwareRouting;
+
+   /**
+    * The current weights of the smooth weighted round robin over the queue bindings, by binding ID,
+    * see {@link #getLoadAwareBinding(ServerMessage, List)}.
+    */
+   private final Map<Long, Double> currentWeights = new ConcurrentHashMap<Long, Double>();
+
    private final GroupingHandler groupingHandler;
 
    private final PagingStore pageStore;
@@ -80,6 +100,11 @@ public final class BindingsImpl implements Bindings
       this.routeWhenNoConsumers = routeWhenNoConsumers;
    }
 
+   public void setLoadAwareRouting(final boolean loadAwareRouting)
+   {
+      this.loadAwareRouting = loadAwareRouting;
+   }
+
    public Collection<Binding> getBindings()
    {
       return bindingsMap.values();
@@ -114,6 +139,8 @@ public final class BindingsImpl implements Bindings
          }
 
          bindings.add(binding);
+
+         bindingsVersion.incrementAndGet();
       }
 
       bindingsMap.put(binding.getID(), binding);
@@ -145,11 +172,15 @@ public final class BindingsImpl implements Bindings
             {
                routingNameBindingMap.remove(routingName);
             }
+
+            bindingsVersion.incrementAndGet();
          }
       }
 
       bindingsMap.remove(binding.getID());
 
+      currentWeights.remove(binding.getID());
+
       if (isTrace)
       {
          HornetQServerLogger.LOGGER.trace("Removing binding " + binding + " into " + this + " bindingTable: " + debugBindings());
@@ -180,6 +211,38 @@ public final class BindingsImpl implements Bindings
          return false;
       }
 
+      if (loadAwareRouting)
+      {
+         // send the message where it will be consumed the soonest
+         Binding leastLoaded = null;
+
+         double maxWeight = 0;
+
+         for (Binding binding : bindings)
+         {
+            if (binding.getBindable() != originatingQueue)
+            {
+               double weight = getWeight(message, binding);
+
+               if (weight > maxWeight)
+               {
+                  leastLoaded = binding;
+
+                  maxWeight = weight;
+               }
+            }
+         }
+
+         if (leastLoaded != null)
+         {
+            leastLoaded.route(message, context);
+
+            return true;
+         }
+
+         return false;
+      }
+
       Integer ipos = routingNamePositions.get(routingName);
 
       int pos = ipos != null ? ipos.intValue() : 0;
@@ -283,20 +346,44 @@ public final class BindingsImpl implements Bindings
             {
                HornetQServerLogger.LOGGER.trace("Routing message " + message + " on binding=" + this);
             }
-            for (Map.Entry<SimpleString, List<Binding>> entry : routingNameBindingMap.entrySet())
+            RouteTable table = getRouteTable();
+
+            // no load balancing for the bindings alone on their routing name, e.g. the subscriptions of a topic
+            for (Binding binding : table.singleBindings)
             {
-               SimpleString routingName = entry.getKey();
+               Filter filter = binding.getFilter();
+
+               if (filter == null || filter.match(message))
+               {
+                  binding.route(message, context);
+               }
+            }
 
-               List<Binding> bindings = entry.getValue();
+            // the filters indexed on a property can only match if the message has one of their values
+            for (int i = 0; i < table.indexProperties.length; i++)
+            {
+               Object value = message.getObjectProperty(table.indexProperties[i]);
 
-               if (bindings == null)
+               if (value instanceof SimpleString)
                {
-                  // The value can become null if it's concurrently removed while we're iterating - this is expected
-                  // ConcurrentHashMap behaviour!
-                  continue;
+                  Binding[] candidates = table.indexedBindings.get(i).get(value);
+
+                  if (candidates != null)
+                  {
+                     for (Binding binding : candidates)
+                     {
+                        if (binding.getFilter().match(message))
+                        {
+                           binding.route(message, context);
+                        }
+                     }
+                  }
                }
+            }
 
-               Binding theBinding = getNextBinding(message, routingName, bindings);
+            for (int i = 0; i < table.routingNames.length; i++)
+            {
+               Binding theBinding = getNextBinding(message, table.routingNames[i], table.bindings.get(i));
 
                if (theBinding != null)
                {
@@ -307,6 +394,26 @@ public final class BindingsImpl implements Bindings
       }
    }
 
+   /**
+    * @return the routing names and their bindings as of the last change
+    */
+   private RouteTable getRouteTable()
+   {
+      RouteTable table = routeTable;
+
+      int version = bindingsVersion.get();
+
+      if (table == null || table.version != version)
+      {
+         // if the bindings change while this is computed, the version won't match and it's computed again
+         table = new RouteTable(version, routingNameBindingMap);
+
+         routeTable = table;
+      }
+
+      return table;
+   }
+
    @Override
    public String toString()
    {
@@ -325,6 +432,18 @@ public final class BindingsImpl implements Bindings
                                   final SimpleString routingName,
                                   final List<Binding> bindings)
    {
+      if (loadAwareRouting)
+      {
+         Binding theBinding = getLoadAwareBinding(message, bindings);
+
+         if (theBinding != null)
+         {
+            return theBinding;
+         }
+
+         // none of the queues has a consumer for the message, route as usual
+      }
+
       Integer ipos = routingNamePositions.get(routingName);
 
       int pos = ipos != null ? ipos : 0;
@@ -427,6 +546,82 @@ public final class BindingsImpl implements Bindings
       return theBinding;
    }
 
+   /**
+    * Chooses the binding by a smooth weighted round robin, each queue binding being weighted by its
+    * consumers and by how long they would take to consume its backlog at the rate they last
+    * consumed, as reported by the nodes of the cluster.
+    * <p>
+    * Like {@link #getNextBinding(ServerMessage, SimpleString, List)}, concurrent routings race on
+    * the current weights, which only skews the distribution a little.
+    * @return the binding, or {@code null} if no queue binding has consumers for the message
+    */
+   private Binding getLoadAwareBinding(final ServerMessage message, final List<Binding> bindings)
+   {
+      Binding theBinding = null;
+
+      double maxCurrentWeight = 0;
+
+      double totalWeight = 0;
+
+      for (Binding binding : bindings)
+      {
+         double weight = getWeight(message, binding);
+
+         if (weight > 0)
+         {
+            Double currentWeight = currentWeights.get(binding.getID());
+
+            double newWeight = (currentWeight != null ? currentWeight : 0) + weight;
+
+            currentWeights.put(binding.getID(), newWeight);
+
+            totalWeight += weight;
+
+            if (theBinding == null || newWeight > maxCurrentWeight)
+            {
+               theBinding = binding;
+
+               maxCurrentWeight = newWeight;
+            }
+         }
+      }
+
+      if (theBinding != null)
+      {
+         currentWeights.put(theBinding.getID(), maxCurrentWeight - totalWeight);
+      }
+
+      return theBinding;
+   }
+
+   /**
+    * @return the weight of the binding for the message, {@code 0} if it isn't a queue binding
+    *         with consumers for the message
+    */
+   private static double getWeight(final ServerMessage message, final Binding binding)
+   {
+      if (!(binding instanceof QueueBinding))
+      {
+         return 0;
+      }
+
+      QueueBinding queueBinding = (QueueBinding)binding;
+
+      int consumers = queueBinding.consumerCount();
+
+      Filter filter = binding.getFilter();
+
+      if (consumers == 0 || !binding.isHighAcceptPriority(message) || filter != null && !filter.match(message))
+      {
+         return 0;
+      }
+
+      // a queue whose rate is unknown yet is assumed to consume one message per second
+      double drainSeconds = queueBinding.getMessageCount() / Math.max(queueBinding.getConsumerRate(), 1);
+
+      return consumers / (1 + drainSeconds);
+   }
+
    private void routeUsingStrictOrdering(final ServerMessage message,
                                          final RoutingContext context,
                                          final GroupingHandler groupingGroupingHandler) throws Exception
@@ -602,6 +797,118 @@ public final class BindingsImpl implements Bindings
       }
    }
 
+   /**
+    * The bindings to route to, grouped once for all the messages until the bindings change.
+    * <p>
+    * The bindings alone on their routing name whose filter has an index predicate (see
+    * {@link FilterImpl#getIndexProperty()}) are looked up by the values of that property.
+    */
+   private static final class RouteTable
+   {
+      private final int version;
+
+      private final Binding[] singleBindings;
+
+      private final SimpleString[] indexProperties;
+
+      private final List<Map<SimpleString, Binding[]>> indexedBindings;
+
+      private final SimpleString[] routingNames;
+
+      private final List<List<Binding>> bindings;
+
+      RouteTable(final int version, final Map<SimpleString, List<Binding>> routingNameBindingMap)
+      {
+         this.version = version;
+
+         List<Binding> singles = new ArrayList<Binding>(routingNameBindingMap.size());
+         Map<SimpleString, Map<SimpleString, List<Binding>>> index = new HashMap<SimpleString, Map<SimpleString, List<Binding>>>();
+         List<SimpleString> names = new ArrayList<SimpleString>();
+         bindings = new ArrayList<List<Binding>>();
+
+         for (Map.Entry<SimpleString, List<Binding>> entry : routingNameBindingMap.entrySet())
+         {
+            List<Binding> list = entry.getValue();
+
+            if (list.size() == 1)
+            {
+               Binding binding;
+               try
+               {
+                  binding = list.get(0);
+               }
+               catch (IndexOutOfBoundsException e)
+               {
+                  // removed concurrently, the table will be computed again
+                  continue;
+               }
+
+               Filter filter = binding.getFilter();
+
+               if (filter instanceof FilterImpl && ((FilterImpl)filter).getIndexProperty() != null)
+               {
+                  addToIndex(index, (FilterImpl)filter, binding);
+               }
+               else
+               {
+                  singles.add(binding);
+               }
+            }
+            else if (!list.isEmpty())
+            {
+               names.add(entry.getKey());
+               bindings.add(list);
+            }
+         }
+
+         singleBindings = singles.toArray(new Binding[singles.size()]);
+         routingNames = names.toArray(new SimpleString[names.size()]);
+
+         indexProperties = new SimpleString[index.size()];
+         indexedBindings = new ArrayList<Map<SimpleString, Binding[]>>(index.size());
+
+         int i = 0;
+         for (Map.Entry<SimpleString, Map<SimpleString, List<Binding>>> entry : index.entrySet())
+         {
+            indexProperties[i++] = entry.getKey();
+
+            Map<SimpleString, Binding[]> valueBindings = new HashMap<SimpleString, Binding[]>(entry.getValue().size() * 2);
+            for (Map.Entry<SimpleString, List<Binding>> valueEntry : entry.getValue().entrySet())
+            {
+               List<Binding> list = valueEntry.getValue();
+               valueBindings.put(valueEntry.getKey(), list.toArray(new Binding[list.size()]));
+            }
+            indexedBindings.add(valueBindings);
+         }
+      }
+
+      private static void addToIndex(final Map<SimpleString, Map<SimpleString, List<Binding>>> index,
+                                     final FilterImpl filter,
+                                     final Binding binding)
+      {
+         Map<SimpleString, List<Binding>> valueBindings = index.get(filter.getIndexProperty());
+
+         if (valueBindings == null)
+         {
+            valueBindings = new HashMap<SimpleString, List<Binding>>();
+            index.put(filter.getIndexProperty(), valueBindings);
+         }
+
+         for (SimpleString value : filter.getIndexValues())
+         {
+            List<Binding> list = valueBindings.get(value);
+
+            if (list == null)
+            {
+               list = new ArrayList<Binding>(1);
+               valueBindings.put(value, list);
+            }
+
+            list.add(binding);
+         }
+      }
+   }
+
    private final int incrementPos(int pos, final int length)
    {
       pos++;
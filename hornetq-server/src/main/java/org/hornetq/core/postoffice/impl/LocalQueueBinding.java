@@ -13,6 +13,8 @@
 
 package org.hornetq.core.postoffice.impl;
 
+import java.util.concurrent.TimeUnit;
+
 import org.hornetq.api.core.SimpleString;
 import org.hornetq.core.filter.Filter;
 import org.hornetq.core.postoffice.BindingType;
@@ -38,6 +40,12 @@ public class LocalQueueBinding implements QueueBinding
 
    private final SimpleString clusterName;
 
+   private volatile double consumerRate;
+
+   private long lastAcknowledged;
+
+   private long lastMeasure;
+
    public LocalQueueBinding(final SimpleString address, final Queue queue, final SimpleString nodeID)
    {
       this.address = address;
@@ -123,6 +131,38 @@ public class LocalQueueBinding implements QueueBinding
       return queue.getConsumerCount();
    }
 
+   public long getMessageCount()
+   {
+      return queue.getInstantMessageCount();
+   }
+
+   public double getConsumerRate()
+   {
+      return consumerRate;
+   }
+
+   /**
+    * Measures the rate the queue's messages were acknowledged at since the previous measure.
+    * @return the consumer rate, in messages per second
+    */
+   public synchronized double measureConsumerRate()
+   {
+      long now = System.nanoTime();
+
+      long acknowledged = queue.getMessagesAcknowledged();
+
+      if (lastMeasure != 0 && now > lastMeasure)
+      {
+         consumerRate = (double)(acknowledged - lastAcknowledged) * TimeUnit.SECONDS.toNanos(1) / (now - lastMeasure);
+      }
+
+      lastAcknowledged = acknowledged;
+
+      lastMeasure = now;
+
+      return consumerRate;
+   }
+
    public BindingType getType()
    {
       return BindingType.LOCAL_QUEUE;
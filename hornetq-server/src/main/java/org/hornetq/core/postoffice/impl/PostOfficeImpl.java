@@ -565,6 +565,11 @@ public class PostOfficeImpl implements PostOffice, NotificationListener, Binding
       return addressManager.getBinding(name);
    }
 
+   public Map<SimpleString, Binding> getAllBindings()
+   {
+      return addressManager.getBindings();
+   }
+
    public Bindings getMatchingBindings(final SimpleString address) throws Exception
    {
       return addressManager.getMatchingBindings(address);
@@ -980,10 +985,18 @@ public class PostOfficeImpl implements PostOffice, NotificationListener, Binding
 
    public void processRoute(final ServerMessage message, final RoutingContext context, final boolean direct) throws Exception
    {
-      final List<MessageReference> refs = new ArrayList<MessageReference>();
+      final List<MessageReference> refs = new ArrayList<MessageReference>(context.getQueueCount());
 
       Transaction tx = context.getTransaction();
 
+      // looked up once for all the queues
+      Long scheduledDeliveryTime = null;
+
+      if (message.containsProperty(Message.HDR_SCHEDULED_DELIVERY_TIME))
+      {
+         scheduledDeliveryTime = message.getLongProperty(Message.HDR_SCHEDULED_DELIVERY_TIME);
+      }
+
       for (Map.Entry<SimpleString, RouteContextList> entry : context.getContexListing().entrySet())
       {
          PagingStore store = pagingManager.getPageStore(entry.getKey());
@@ -1006,17 +1019,28 @@ public class PostOfficeImpl implements PostOffice, NotificationListener, Binding
 
             refs.add(reference);
 
-            if (message.containsProperty(Message.HDR_SCHEDULED_DELIVERY_TIME))
+            if (scheduledDeliveryTime != null)
             {
-               Long scheduledDeliveryTime = message.getLongProperty(Message.HDR_SCHEDULED_DELIVERY_TIME);
-
                reference.setScheduledDeliveryTime(scheduledDeliveryTime);
             }
 
             message.incrementRefCount();
          }
 
-         Iterator<Queue> iter = entry.getValue().getDurableQueues().iterator();
+         List<Queue> durableQueues = entry.getValue().getDurableQueues();
+
+         // The references to several durable queues are stored in a single record, unless each one needs a
+         // scheduled delivery record after it
+         long[] durableQueueIDs = null;
+
+         if (message.isDurable() && durableQueues.size() > 1 && scheduledDeliveryTime == null)
+         {
+            durableQueueIDs = new long[durableQueues.size()];
+         }
+
+         Iterator<Queue> iter = durableQueues.iterator();
+
+         int durableQueueCount = 0;
 
          while (iter.hasNext())
          {
@@ -1026,10 +1050,8 @@ public class PostOfficeImpl implements PostOffice, NotificationListener, Binding
 
             refs.add(reference);
 
-            if (message.containsProperty(Message.HDR_SCHEDULED_DELIVERY_TIME))
+            if (scheduledDeliveryTime != null)
             {
-               Long scheduledDeliveryTime = message.getLongProperty(Message.HDR_SCHEDULED_DELIVERY_TIME);
-
                reference.setScheduledDeliveryTime(scheduledDeliveryTime);
             }
 
@@ -1054,7 +1076,11 @@ public class PostOfficeImpl implements PostOffice, NotificationListener, Binding
                   }
                }
 
-               if (tx != null)
+               if (durableQueueIDs != null)
+               {
+                  durableQueueIDs[durableQueueCount++] = queue.getID();
+               }
+               else if (tx != null)
                {
                   storageManager.storeReferenceTransactional(tx.getID(), queue.getID(), message.getMessageID());
 
@@ -1065,7 +1091,7 @@ public class PostOfficeImpl implements PostOffice, NotificationListener, Binding
                   storageManager.storeReference(queue.getID(), message.getMessageID(), !iter.hasNext());
                }
 
-               if (message.containsProperty(Message.HDR_SCHEDULED_DELIVERY_TIME))
+               if (scheduledDeliveryTime != null)
                {
                   if (tx != null)
                   {
@@ -1080,6 +1106,20 @@ public class PostOfficeImpl implements PostOffice, NotificationListener, Binding
 
             message.incrementRefCount();
          }
+
+         if (durableQueueIDs != null)
+         {
+            if (tx != null)
+            {
+               storageManager.storeReferencesTransactional(tx.getID(), durableQueueIDs, message.getMessageID());
+
+               tx.setContainsPersistent();
+            }
+            else
+            {
+               storageManager.storeReferences(durableQueueIDs, message.getMessageID(), true);
+            }
+         }
       }
 
       if (tx != null)
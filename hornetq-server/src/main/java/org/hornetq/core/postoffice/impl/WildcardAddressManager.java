@@ -12,10 +12,12 @@
  */
 package org.hornetq.core.postoffice.impl;
 
-import java.util.Collection;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Set;
 
 import org.hornetq.api.core.SimpleString;
 import org.hornetq.core.postoffice.Address;
@@ -26,6 +28,11 @@ import org.hornetq.core.transaction.Transaction;
 
 /**
  * extends the simple manager to allow wildcard addresses to be used.
+ * <p>
+ * The bindings of a wildcard address are copied to the mappings of every address it matches, so
+ * routing is still a single lookup. The wildcard addresses with bindings and the addresses with
+ * mappings are kept in two {@link AddressTrie}s, so adding a binding only visits the addresses it
+ * matches, and each wildcard address remembers where it was copied to for when it is removed.
  *
  * @author <a href="mailto:andy.taylor@jboss.org">Andy Taylor</a>
  */
@@ -42,12 +49,19 @@ public class WildcardAddressManager extends SimpleAddressManager
    static final SimpleString ANY_WORDS_SIMPLESTRING = new SimpleString("#");
 
    /**
-    * These are all the addresses, we use this so we can link back from the actual address to its linked wilcard addresses
-    * or vice versa
+    * The addresses without wildcards that have mappings, their own bindings or copies of matching wildcard bindings
     */
-   private final Map<SimpleString, Address> addresses = new ConcurrentHashMap<SimpleString, Address>();
+   private final AddressTrie addresses = new AddressTrie();
 
-   private final Map<SimpleString, Address> wildCardAddresses = new ConcurrentHashMap<SimpleString, Address>();
+   /**
+    * The wildcard addresses that have bindings
+    */
+   private final AddressTrie wildCardAddresses = new AddressTrie();
+
+   /**
+    * The addresses the bindings of each wildcard address were copied to
+    */
+   private final Map<SimpleString, List<SimpleString>> linkedAddresses = new HashMap<SimpleString, List<SimpleString>>();
 
    public WildcardAddressManager(final BindingsFactory bindingsFactory)
    {
@@ -60,25 +74,17 @@ public class WildcardAddressManager extends SimpleAddressManager
       Bindings bindings = super.getBindingsForRoutingAddress(address);
 
       // this should only happen if we're routing to an address that has no mappings when we're running checkAllowable
-      if (bindings == null && !wildCardAddresses.isEmpty())
+      if (bindings == null && !wildCardAddresses.isEmpty() && !containsWildCard(address))
       {
-         Address add = addAndUpdateAddressMap(address);
-         if (!add.containsWildCard())
+         synchronized (this)
          {
-            for (Address destAdd : add.getLinkedAddresses())
+            bindings = super.getBindingsForRoutingAddress(address);
+            if (bindings == null)
             {
-               Bindings b = super.getBindingsForRoutingAddress(destAdd.getAddress());
-               if (b != null)
-               {
-                  Collection<Binding> theBindings = b.getBindings();
-                  for (Binding theBinding : theBindings)
-                  {
-                     super.addMappingInternal(address, theBinding);
-                  }
-               }
+               copyWildCardBindings(address);
+               bindings = super.getBindingsForRoutingAddress(address);
             }
          }
-         bindings = super.getBindingsForRoutingAddress(address);
       }
       return bindings;
    }
@@ -91,29 +97,26 @@ public class WildcardAddressManager extends SimpleAddressManager
     * @return true if the address was a new mapping
     */
    @Override
-   public boolean addBinding(final Binding binding) throws Exception
+   public synchronized boolean addBinding(final Binding binding) throws Exception
    {
       boolean exists = super.addBinding(binding);
       if (!exists)
       {
-         Address add = addAndUpdateAddressMap(binding.getAddress());
-         if (add.containsWildCard())
+         SimpleString address = binding.getAddress();
+         if (containsWildCard(address))
          {
-            for (Address destAdd : add.getLinkedAddresses())
+            if (wildCardAddresses.add(address))
+            {
+               linkedAddresses.put(address, matchingAddresses(address));
+            }
+            for (SimpleString destAddress : linkedAddresses.get(address))
             {
-               super.addMappingInternal(destAdd.getAddress(), binding);
+               super.addMappingInternal(destAddress, binding);
             }
          }
          else
          {
-            for (Address destAdd : add.getLinkedAddresses())
-            {
-               Bindings bindings = super.getBindingsForRoutingAddress(destAdd.getAddress());
-               for (Binding b : bindings.getBindings())
-               {
-                  super.addMappingInternal(binding.getAddress(), b);
-               }
-            }
+            copyWildCardBindings(address);
          }
       }
       return exists;
@@ -127,131 +130,115 @@ public class WildcardAddressManager extends SimpleAddressManager
     * @return true if this was the last mapping for a specific address
     */
    @Override
-   public Binding removeBinding(final SimpleString uniqueName, Transaction tx) throws Exception
+   public synchronized Binding removeBinding(final SimpleString uniqueName, Transaction tx) throws Exception
    {
       Binding binding = super.removeBinding(uniqueName, tx);
       if (binding != null)
       {
-         Address add = getAddress(binding.getAddress());
-         if (add.containsWildCard())
+         SimpleString address = binding.getAddress();
+         if (containsWildCard(address))
          {
-            for (Address theAddress : add.getLinkedAddresses())
+            for (SimpleString destAddress : linkedAddresses.get(address))
+            {
+               super.removeBindingInternal(destAddress, uniqueName);
+               removeIfUnmapped(addresses, destAddress);
+            }
+            if (removeIfUnmapped(wildCardAddresses, address))
             {
-               super.removeBindingInternal(theAddress.getAddress(), uniqueName);
+               linkedAddresses.remove(address);
             }
          }
-         removeAndUpdateAddressMap(add);
+         else
+         {
+            removeIfUnmapped(addresses, address);
+         }
       }
       return binding;
    }
 
    @Override
-   public void clear()
+   public synchronized void clear()
    {
       super.clear();
       addresses.clear();
       wildCardAddresses.clear();
+      linkedAddresses.clear();
    }
 
-   private Address getAddress(final SimpleString address)
+   /**
+    * Indexes an address without wildcards and copies to its mappings the bindings of the wildcard
+    * addresses matching it, unless that was already done.
+    */
+   private void copyWildCardBindings(final SimpleString address) throws Exception
    {
-      Address add = new AddressImpl(address);
-      Address actualAddress;
-      if (add.containsWildCard())
-      {
-         actualAddress = wildCardAddresses.get(address);
-      }
-      else
+      boolean mapped = super.getBindingsForRoutingAddress(address) != null;
+      if (mapped && !addresses.add(address))
       {
-         actualAddress = addresses.get(address);
+         return;
       }
-      return actualAddress != null ? actualAddress : add;
-   }
 
-   private synchronized Address addAndUpdateAddressMap(final SimpleString address)
-   {
       Address add = new AddressImpl(address);
-      Address actualAddress;
-      if (add.containsWildCard())
-      {
-         actualAddress = wildCardAddresses.get(address);
-      }
-      else
-      {
-         actualAddress = addresses.get(address);
-      }
-      if (actualAddress == null)
-      {
-         actualAddress = add;
-         addAddress(address, actualAddress);
-      }
-      if (actualAddress.containsWildCard())
-      {
-         for (Address destAdd : addresses.values())
-         {
-            if (destAdd.matches(actualAddress))
-            {
-               destAdd.addLinkedAddress(actualAddress);
-               actualAddress.addLinkedAddress(destAdd);
-            }
-         }
-      }
-      else
+      Set<SimpleString> candidates = new HashSet<SimpleString>();
+      wildCardAddresses.matchAddress(address, candidates);
+
+      for (SimpleString wildCardAddress : candidates)
       {
-         for (Address destAdd : wildCardAddresses.values())
+         // the trie agrees with AddressImpl on '*', only the matches through a '#' are checked
+         if (!wildCardAddress.contains(ANY_WORDS) || add.matches(new AddressImpl(wildCardAddress)))
          {
-            if (actualAddress.matches(destAdd))
+            Bindings b = super.getBindingsForRoutingAddress(wildCardAddress);
+            if (b != null)
             {
-               destAdd.addLinkedAddress(actualAddress);
-               actualAddress.addLinkedAddress(destAdd);
-
+               for (Binding theBinding : b.getBindings())
+               {
+                  super.addMappingInternal(address, theBinding);
+               }
+               linkedAddresses.get(wildCardAddress).add(address);
             }
          }
       }
-      return actualAddress;
-   }
 
-   private void addAddress(final SimpleString address, final Address actualAddress)
-   {
-      if (actualAddress.containsWildCard())
+      // an address that is only routed to is kept if some wildcard matched it
+      if (!mapped && super.getBindingsForRoutingAddress(address) != null)
       {
-         wildCardAddresses.put(address, actualAddress);
-      }
-      else
-      {
-         addresses.put(address, actualAddress);
+         addresses.add(address);
       }
    }
 
-   private synchronized void removeAndUpdateAddressMap(final Address address) throws Exception
+   /**
+    * @return the indexed addresses without wildcards matching the wildcard address
+    */
+   private List<SimpleString> matchingAddresses(final SimpleString wildCardAddress)
    {
-      // we only remove if there are no bindings left
-      Bindings bindings = super.getBindingsForRoutingAddress(address.getAddress());
-      if (bindings == null || bindings.getBindings().size() == 0)
+      Set<SimpleString> candidates = new HashSet<SimpleString>();
+      addresses.matchWildcard(wildCardAddress, candidates);
+
+      Address wildCard = wildCardAddress.contains(ANY_WORDS) ? new AddressImpl(wildCardAddress) : null;
+
+      List<SimpleString> matches = new ArrayList<SimpleString>(Math.max(1, candidates.size()));
+      for (SimpleString candidate : candidates)
       {
-         List<Address> addresses = address.getLinkedAddresses();
-         for (Address address1 : addresses)
+         if (wildCard == null || new AddressImpl(candidate).matches(wildCard))
          {
-            address1.removeLinkedAddress(address);
-            Bindings linkedBindings = super.getBindingsForRoutingAddress(address1.getAddress());
-            if (linkedBindings == null || linkedBindings.getBindings().size() == 0)
-            {
-               removeAddress(address1);
-            }
+            matches.add(candidate);
          }
-         removeAddress(address);
       }
+      return matches;
    }
 
-   private void removeAddress(final Address add)
+   /**
+    * An address without wildcards is only unmapped once it has no copies of wildcard bindings either, so it is in
+    * no linked addresses when it is removed.
+    *
+    * @return true if the address was removed
+    */
+   private boolean removeIfUnmapped(final AddressTrie trie, final SimpleString address) throws Exception
    {
-      if (add.containsWildCard())
-      {
-         wildCardAddresses.remove(add.getAddress());
-      }
-      else
-      {
-         addresses.remove(add.getAddress());
-      }
+      return super.getBindingsForRoutingAddress(address) == null && trie.remove(address);
+   }
+
+   private static boolean containsWildCard(final SimpleString address)
+   {
+      return address.contains(SINGLE_WORD) || address.contains(ANY_WORDS);
    }
 }
@@ -23,6 +23,7 @@ package org.hornetq.core.protocol;
 
 import static org.hornetq.core.protocol.core.impl.PacketImpl.REPLICATION_APPEND;
 import static org.hornetq.core.protocol.core.impl.PacketImpl.REPLICATION_APPEND_TX;
+import static org.hornetq.core.protocol.core.impl.PacketImpl.REPLICATION_BATCH;
 import static org.hornetq.core.protocol.core.impl.PacketImpl.REPLICATION_COMMIT_ROLLBACK;
 import static org.hornetq.core.protocol.core.impl.PacketImpl.REPLICATION_DELETE;
 import static org.hornetq.core.protocol.core.impl.PacketImpl.REPLICATION_DELETE_TX;
@@ -45,6 +46,7 @@ import org.hornetq.core.protocol.core.impl.wireformat.BackupReplicationStartFail
 import org.hornetq.core.protocol.core.impl.wireformat.ReplicationLiveIsStoppingMessage;
 import org.hornetq.core.protocol.core.impl.wireformat.ReplicationAddMessage;
 import org.hornetq.core.protocol.core.impl.wireformat.ReplicationAddTXMessage;
+import org.hornetq.core.protocol.core.impl.wireformat.ReplicationBatchMessage;
 import org.hornetq.core.protocol.core.impl.wireformat.ReplicationCommitMessage;
 import org.hornetq.core.protocol.core.impl.wireformat.ReplicationDeleteMessage;
 import org.hornetq.core.protocol.core.impl.wireformat.ReplicationDeleteTXMessage;
@@ -120,6 +122,11 @@ public class ServerPacketDecoder extends PacketDecoder
             packet = new ReplicationCommitMessage();
             break;
          }
+         case REPLICATION_BATCH:
+         {
+            packet = new ReplicationBatchMessage();
+            break;
+         }
          case REPLICATION_RESPONSE:
          {
             packet = new ReplicationResponseMessage();
@@ -170,6 +177,11 @@ public class ServerPacketDecoder extends PacketDecoder
             packet = new ReplicationSyncFileMessage();
             break;
          }
+         case PacketImpl.REPLICATION_SYNC_FILE_RANGE:
+         {
+            packet = new ReplicationSyncFileMessage(true);
+            break;
+         }
          case PacketImpl.REPLICATION_SCHEDULED_FAILOVER:
          {
             packet = new ReplicationLiveIsStoppingMessage();
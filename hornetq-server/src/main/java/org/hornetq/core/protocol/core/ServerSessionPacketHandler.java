@@ -26,9 +26,11 @@ import static org.hornetq.core.protocol.core.impl.PacketImpl.SESS_EXPIRED;
 import static org.hornetq.core.protocol.core.impl.PacketImpl.SESS_FLOWTOKEN;
 import static org.hornetq.core.protocol.core.impl.PacketImpl.SESS_FORCE_CONSUMER_DELIVERY;
 import static org.hornetq.core.protocol.core.impl.PacketImpl.SESS_INDIVIDUAL_ACKNOWLEDGE;
+import static org.hornetq.core.protocol.core.impl.PacketImpl.SESS_INDIVIDUAL_ACKNOWLEDGE_BATCH;
 import static org.hornetq.core.protocol.core.impl.PacketImpl.SESS_QUEUEQUERY;
 import static org.hornetq.core.protocol.core.impl.PacketImpl.SESS_ROLLBACK;
 import static org.hornetq.core.protocol.core.impl.PacketImpl.SESS_SEND;
+import static org.hornetq.core.protocol.core.impl.PacketImpl.SESS_SEND_BATCH;
 import static org.hornetq.core.protocol.core.impl.PacketImpl.SESS_SEND_CONTINUATION;
 import static org.hornetq.core.protocol.core.impl.PacketImpl.SESS_SEND_LARGE;
 import static org.hornetq.core.protocol.core.impl.PacketImpl.SESS_START;
@@ -52,6 +54,7 @@ import java.util.List;
 import javax.transaction.xa.XAResource;
 import javax.transaction.xa.Xid;
 
+import org.hornetq.api.core.HornetQBuffer;
 import org.hornetq.api.core.HornetQException;
 import org.hornetq.api.core.HornetQExceptionType;
 import org.hornetq.api.core.HornetQInternalErrorException;
@@ -75,10 +78,12 @@ import org.hornetq.core.protocol.core.impl.wireformat.SessionCreateConsumerMessa
 import org.hornetq.core.protocol.core.impl.wireformat.SessionDeleteQueueMessage;
 import org.hornetq.core.protocol.core.impl.wireformat.SessionExpireMessage;
 import org.hornetq.core.protocol.core.impl.wireformat.SessionForceConsumerDelivery;
+import org.hornetq.core.protocol.core.impl.wireformat.SessionIndividualAcknowledgeBatchMessage;
 import org.hornetq.core.protocol.core.impl.wireformat.SessionIndividualAcknowledgeMessage;
 import org.hornetq.core.protocol.core.impl.wireformat.SessionQueueQueryMessage;
 import org.hornetq.core.protocol.core.impl.wireformat.SessionQueueQueryResponseMessage;
 import org.hornetq.core.protocol.core.impl.wireformat.SessionRequestProducerCreditsMessage;
+import org.hornetq.core.protocol.core.impl.wireformat.SessionSendBatchMessage;
 import org.hornetq.core.protocol.core.impl.wireformat.SessionSendContinuationMessage;
 import org.hornetq.core.protocol.core.impl.wireformat.SessionSendLargeMessage;
 import org.hornetq.core.protocol.core.impl.wireformat.SessionSendMessage;
@@ -106,6 +111,7 @@ import org.hornetq.core.server.HornetQMessageBundle;
 import org.hornetq.core.server.QueueQueryResult;
 import org.hornetq.core.server.ServerMessage;
 import org.hornetq.core.server.ServerSession;
+import org.hornetq.core.server.impl.ServerMessageImpl;
 import org.hornetq.spi.core.remoting.Connection;
 
 /**
@@ -450,6 +456,17 @@ public class ServerSessionPacketHandler implements ChannelHandler
                   }
                   break;
                }
+               case SESS_INDIVIDUAL_ACKNOWLEDGE_BATCH:
+               {
+                  SessionIndividualAcknowledgeBatchMessage message = (SessionIndividualAcknowledgeBatchMessage)packet;
+                  requiresResponse = message.isRequiresResponse();
+                  session.individualAcknowledge(message.getConsumerID(), message.getMessageIDs());
+                  if (requiresResponse)
+                  {
+                     response = new NullResponseMessage();
+                  }
+                  break;
+               }
                case SESS_CONSUMER_CLOSE:
                {
                   requiresResponse = true;
@@ -475,6 +492,20 @@ public class ServerSessionPacketHandler implements ChannelHandler
                   }
                   break;
                }
+               case SESS_SEND_BATCH:
+               {
+                  // the whole batch is routed with the storage context of this packet, and confirmed once.
+                  // As with a single send, a message which can't be routed doesn't fail the others
+                  SessionSendBatchMessage message = (SessionSendBatchMessage)packet;
+                  HornetQBuffer messages = message.getMessages();
+                  for (int i = 0; i < message.getMessageCount(); i++)
+                  {
+                     ServerMessage serverMessage = new ServerMessageImpl(-1, 50);
+                     serverMessage.decode(messages);
+                     session.sendBatched(serverMessage, direct);
+                  }
+                  break;
+               }
                case SESS_SEND_LARGE:
                {
                   SessionSendLargeMessage message = (SessionSendLargeMessage)packet;
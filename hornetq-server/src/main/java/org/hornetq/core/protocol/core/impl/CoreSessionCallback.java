@@ -12,6 +12,8 @@
  */
 package org.hornetq.core.protocol.core.impl;
 
+import java.nio.channels.FileChannel;
+
 import org.hornetq.api.core.SimpleString;
 import org.hornetq.core.protocol.core.Channel;
 import org.hornetq.core.protocol.core.Packet;
@@ -24,6 +26,7 @@ import org.hornetq.core.server.ServerMessage;
 import org.hornetq.spi.core.protocol.ProtocolManager;
 import org.hornetq.spi.core.protocol.SessionCallback;
 import org.hornetq.spi.core.remoting.ReadyListener;
+import org.hornetq.utils.ReferenceCounter;
 
 /**
  * A CoreSessionCallback
@@ -67,6 +70,27 @@ public final class CoreSessionCallback implements SessionCallback
       return packet.getPacketSize();
    }
 
+   public int sendLargeMessageContinuation(long consumerID,
+                                           FileChannel file,
+                                           ReferenceCounter fileReferences,
+                                           long position,
+                                           int count,
+                                           boolean continues,
+                                           boolean requiresResponse)
+   {
+      Packet packet = new SessionReceiveContinuationMessage(consumerID,
+                                                            file,
+                                                            fileReferences,
+                                                            position,
+                                                            count,
+                                                            continues,
+                                                            requiresResponse);
+
+      channel.send(packet);
+
+      return packet.getPacketSize();
+   }
+
    public int sendMessage(ServerMessage message, long consumerID, int deliveryCount)
    {
       Packet packet = new SessionReceiveMessage(consumerID, message, deliveryCount);
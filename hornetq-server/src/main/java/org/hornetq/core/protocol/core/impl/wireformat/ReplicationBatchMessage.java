@@ -0,0 +1,125 @@
+/*
+ * Copyright 2009 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.core.protocol.core.impl.wireformat;
+
+import org.hornetq.api.core.HornetQBuffer;
+import org.hornetq.api.core.HornetQBuffers;
+import org.hornetq.core.protocol.core.impl.PacketImpl;
+
+/**
+ * Several replication packets sent to the backup in one packet, in the order they were written.
+ * <p>
+ * Each packet is encoded as it would be on the wire without its length, so that the backup can
+ * decode them one after the other with {@link org.hornetq.core.protocol.ServerPacketDecoder}. The
+ * backup answers the whole batch with a single {@link ReplicationResponseMessage}.
+ * @see org.hornetq.core.replication.ReplicationManager
+ */
+public final class ReplicationBatchMessage extends PacketImpl
+{
+   private int packetCount;
+
+   private HornetQBuffer packets;
+
+   public ReplicationBatchMessage()
+   {
+      super(PacketImpl.REPLICATION_BATCH);
+   }
+
+   public ReplicationBatchMessage(final int initialSize)
+   {
+      this();
+      packets = HornetQBuffers.dynamicBuffer(initialSize);
+   }
+
+   /**
+    * Encodes the packet at the end of the batch.
+    * <p>
+    * The packet is encoded right away, so its record may be reused once this method returns.
+    */
+   public void addPacket(final PacketImpl packet)
+   {
+      packets.writeByte(packet.getType());
+      packets.writeLong(packet.getChannelID());
+      packet.encodeRest(packets);
+      packetCount++;
+   }
+
+   public int getPacketCount()
+   {
+      return packetCount;
+   }
+
+   /**
+    * @return the size of the encoded packets
+    */
+   public int getBatchSize()
+   {
+      return packets.writerIndex();
+   }
+
+   /**
+    * @return the encoded packets, positioned at the first one
+    */
+   public HornetQBuffer getPackets()
+   {
+      return packets;
+   }
+
+   @Override
+   public void encodeRest(final HornetQBuffer buffer)
+   {
+      buffer.writeInt(packetCount);
+      buffer.writeInt(packets.writerIndex());
+      buffer.writeBytes(packets, 0, packets.writerIndex());
+   }
+
+   @Override
+   public void decodeRest(final HornetQBuffer buffer)
+   {
+      packetCount = buffer.readInt();
+      int length = buffer.readInt();
+      packets = buffer.copy(buffer.readerIndex(), length);
+      buffer.skipBytes(length);
+   }
+
+   @Override
+   public String toString()
+   {
+      return getParentString() + ", packets=" + packetCount + "]";
+   }
+
+   @Override
+   public int hashCode()
+   {
+      final int prime = 31;
+      int result = super.hashCode();
+      result = prime * result + packetCount;
+      return result;
+   }
+
+   @Override
+   public boolean equals(Object obj)
+   {
+      if (this == obj)
+         return true;
+      if (!super.equals(obj))
+         return false;
+      if (!(obj instanceof ReplicationBatchMessage))
+         return false;
+      ReplicationBatchMessage other = (ReplicationBatchMessage)obj;
+      if (packetCount != other.packetCount)
+         return false;
+      return true;
+   }
+}
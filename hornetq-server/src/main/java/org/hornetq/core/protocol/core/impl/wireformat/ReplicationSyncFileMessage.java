@@ -14,6 +14,9 @@ import org.hornetq.core.protocol.core.impl.PacketImpl;
 /**
  * Message is used to sync {@link SequentialFile}s to a backup server. The {@link FileType} controls
  * which extra information is sent.
+ * <p>
+ * A {@link PacketImpl#REPLICATION_SYNC_FILE_RANGE} message also carries the offset its data is
+ * written at, so that several ranges of a file may be sent in any order.
  */
 public final class ReplicationSyncFileMessage extends PacketImpl
 {
@@ -27,6 +30,10 @@ public final class ReplicationSyncFileMessage extends PacketImpl
     * message id if we are sync'ing a large-message.
     */
    private long fileId;
+   /**
+    * The position of the data in the file, or -1 if it follows the data sent before.
+    */
+   private long offset = -1;
    private int dataSize;
    private ByteBuffer byteBuffer;
    private byte[] byteArray;
@@ -61,7 +68,15 @@ public final class ReplicationSyncFileMessage extends PacketImpl
 
    public ReplicationSyncFileMessage()
    {
-      super(REPLICATION_SYNC_FILE);
+      this(false);
+   }
+
+   /**
+    * @param range whether the message is decoded from a {@link PacketImpl#REPLICATION_SYNC_FILE_RANGE}
+    */
+   public ReplicationSyncFileMessage(boolean range)
+   {
+      super(range ? REPLICATION_SYNC_FILE_RANGE : REPLICATION_SYNC_FILE);
    }
 
    public ReplicationSyncFileMessage(JournalContent content, SimpleString storeName, long id, int size,
@@ -76,6 +91,19 @@ public final class ReplicationSyncFileMessage extends PacketImpl
       determineType();
    }
 
+   public ReplicationSyncFileMessage(JournalContent content, SimpleString storeName, long id, long offset, int size,
+                                     ByteBuffer buffer)
+   {
+      this(true);
+      this.byteBuffer = buffer;
+      this.pageStoreName = storeName;
+      this.offset = offset;
+      this.dataSize = size;
+      this.fileId = id;
+      this.journalType = content;
+      determineType();
+   }
+
    private void determineType()
    {
       if (journalType != null)
@@ -116,6 +144,10 @@ public final class ReplicationSyncFileMessage extends PacketImpl
             // no-op
       }
 
+      if (getType() == REPLICATION_SYNC_FILE_RANGE)
+      {
+         buffer.writeLong(offset);
+      }
       buffer.writeInt(dataSize);
       /*
        * sending -1 will close the file in case of a journal, but not in case of a largeMessage
@@ -151,6 +183,10 @@ public final class ReplicationSyncFileMessage extends PacketImpl
             break;
          }
       }
+      if (getType() == REPLICATION_SYNC_FILE_RANGE)
+      {
+         offset = buffer.readLong();
+      }
       int size = buffer.readInt();
       if (size > 0)
       {
@@ -164,6 +200,14 @@ public final class ReplicationSyncFileMessage extends PacketImpl
       return fileId;
    }
 
+   /**
+    * @return the position of the data in the file, or -1 if it follows the data received before
+    */
+   public long getOffset()
+   {
+      return offset;
+   }
+
    public JournalContent getJournalContent()
    {
       return journalType;
@@ -191,6 +235,7 @@ public final class ReplicationSyncFileMessage extends PacketImpl
       int result = super.hashCode();
       result = prime * result + Arrays.hashCode(byteArray);
       result = prime * result + ((byteBuffer == null) ? 0 : byteBuffer.hashCode());
+      result = prime * result + (int)(offset ^ (offset >>> 32));
       result = prime * result + dataSize;
       result = prime * result + (int)(fileId ^ (fileId >>> 32));
       result = prime * result + ((fileType == null) ? 0 : fileType.hashCode());
@@ -230,6 +275,10 @@ public final class ReplicationSyncFileMessage extends PacketImpl
       {
          return false;
       }
+      if (offset != other.offset)
+      {
+         return false;
+      }
       if (dataSize != other.dataSize)
       {
          return false;
@@ -264,6 +313,7 @@ public final class ReplicationSyncFileMessage extends PacketImpl
    public String toString()
    {
       return ReplicationSyncFileMessage.class.getSimpleName() + "(" + fileType +
-               (journalType != null ? ", " + journalType : "") + ", id=" + fileId + ")";
+               (journalType != null ? ", " + journalType : "") + ", id=" + fileId +
+               (offset != -1 ? ", offset=" + offset : "") + ")";
    }
 }
@@ -12,6 +12,7 @@
  */
 package org.hornetq.core.remoting.impl.invm;
 
+import java.nio.channels.FileChannel;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.CountDownLatch;
@@ -29,6 +30,7 @@ import org.hornetq.spi.core.remoting.BufferHandler;
 import org.hornetq.spi.core.remoting.Connection;
 import org.hornetq.spi.core.remoting.ConnectionLifeCycleListener;
 import org.hornetq.spi.core.remoting.ReadyListener;
+import org.hornetq.utils.ReferenceCounter;
 import org.hornetq.utils.UUIDGenerator;
 
 /**
@@ -206,6 +208,17 @@ public class InVMConnection implements Connection
 
    }
 
+   public boolean writeFileRegion(final HornetQBuffer header,
+                                  final FileChannel file,
+                                  final ReferenceCounter fileReferences,
+                                  final long position,
+                                  final int count,
+                                  final HornetQBuffer trailer)
+   {
+      // the buffers are handed to the other side, the bytes of the file have to be read anyway
+      return false;
+   }
+
    public String getRemoteAddress()
    {
       return "invm:" + serverID;
@@ -172,6 +172,8 @@ public class NettyAcceptor implements Acceptor
 
    private final boolean directDeliver;
 
+   private final boolean fileRegionEnabled;
+
 
    public NettyAcceptor(final Map<String, Object> configuration,
                         final BufferHandler handler,
@@ -312,6 +314,10 @@ public class NettyAcceptor implements Acceptor
       directDeliver = ConfigurationHelper.getBooleanProperty(TransportConstants.DIRECT_DELIVER,
                                                              TransportConstants.DEFAULT_DIRECT_DELIVER,
                                                              configuration);
+
+      fileRegionEnabled = ConfigurationHelper.getBooleanProperty(TransportConstants.FILE_REGION_ENABLED,
+                                                                 TransportConstants.DEFAULT_FILE_REGION_ENABLED,
+                                                                 configuration);
    }
 
    public synchronized void start() throws Exception
@@ -670,7 +676,13 @@ public class NettyAcceptor implements Acceptor
       {
          Listener connectionListener = new Listener();
 
-         NettyConnection nc = new NettyConnection(configuration, e.getChannel(), connectionListener, !httpEnabled && batchDelay > 0, directDeliver);
+         // the SSL and HTTP handlers only encode buffers
+         NettyConnection nc = new NettyConnection(configuration,
+                                                  e.getChannel(),
+                                                  connectionListener,
+                                                  !httpEnabled && batchDelay > 0,
+                                                  directDeliver,
+                                                  fileRegionEnabled && !sslEnabled && !httpEnabled);
 
          connectionListener.connectionCreated(NettyAcceptor.this, nc, HornetQClient.DEFAULT_CORE_PROTOCOL);
 
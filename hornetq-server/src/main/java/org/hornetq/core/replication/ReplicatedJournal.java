@@ -541,6 +541,30 @@ public class ReplicatedJournal implements Journal
       return localJournal.getFileSize();
    }
 
+   @Override
+   public long getCompactCount()
+   {
+      return localJournal.getCompactCount();
+   }
+
+   @Override
+   public long getLastCompactPauseTime()
+   {
+      return localJournal.getLastCompactPauseTime();
+   }
+
+   @Override
+   public long getMaxCompactPauseTime()
+   {
+      return localJournal.getMaxCompactPauseTime();
+   }
+
+   @Override
+   public long getCompactBytesReclaimed()
+   {
+      return localJournal.getCompactBytesReclaimed();
+   }
+
    @Override
    public void scheduleCompactAndBlock(int timeout) throws Exception
    {
@@ -28,6 +28,7 @@ import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 
+import org.hornetq.api.core.HornetQBuffer;
 import org.hornetq.api.core.HornetQException;
 import org.hornetq.api.core.SimpleString;
 import org.hornetq.core.config.Configuration;
@@ -46,6 +47,7 @@ import org.hornetq.core.paging.impl.PagingStoreFactoryNIO;
 import org.hornetq.core.persistence.StorageManager;
 import org.hornetq.core.persistence.impl.journal.JournalStorageManager.JournalContent;
 import org.hornetq.core.persistence.impl.journal.LargeServerMessageInSync;
+import org.hornetq.core.protocol.ServerPacketDecoder;
 import org.hornetq.core.protocol.core.Channel;
 import org.hornetq.core.protocol.core.ChannelHandler;
 import org.hornetq.core.protocol.core.Packet;
@@ -54,6 +56,7 @@ import org.hornetq.core.protocol.core.impl.wireformat.BackupReplicationStartFail
 import org.hornetq.core.protocol.core.impl.wireformat.HornetQExceptionMessage;
 import org.hornetq.core.protocol.core.impl.wireformat.ReplicationAddMessage;
 import org.hornetq.core.protocol.core.impl.wireformat.ReplicationAddTXMessage;
+import org.hornetq.core.protocol.core.impl.wireformat.ReplicationBatchMessage;
 import org.hornetq.core.protocol.core.impl.wireformat.ReplicationCommitMessage;
 import org.hornetq.core.protocol.core.impl.wireformat.ReplicationDeleteMessage;
 import org.hornetq.core.protocol.core.impl.wireformat.ReplicationDeleteTXMessage;
@@ -72,6 +75,7 @@ import org.hornetq.core.replication.ReplicationManager.ADD_OPERATION_TYPE;
 import org.hornetq.core.server.HornetQComponent;
 import org.hornetq.core.server.HornetQMessageBundle;
 import org.hornetq.core.server.HornetQServerLogger;
+import org.hornetq.core.server.JournalType;
 import org.hornetq.core.server.ServerMessage;
 import org.hornetq.core.server.impl.HornetQServerImpl;
 import org.hornetq.core.server.impl.QuorumManager;
@@ -155,78 +159,21 @@ public final class ReplicationEndpoint implements ChannelHandler, HornetQCompone
    public void handlePacket(final Packet packet)
    {
       PacketImpl response = new ReplicationResponseMessage();
-      final byte type=packet.getType();
 
       try
       {
-            if (!started)
-            {
-               return;
-            }
-
-            if (type == PacketImpl.REPLICATION_APPEND)
-            {
-               handleAppendAddRecord((ReplicationAddMessage) packet);
-            }
-            else if (type == PacketImpl.REPLICATION_APPEND_TX)
-            {
-               handleAppendAddTXRecord((ReplicationAddTXMessage) packet);
-            }
-            else if (type == PacketImpl.REPLICATION_DELETE)
-            {
-               handleAppendDelete((ReplicationDeleteMessage) packet);
-            }
-            else if (type == PacketImpl.REPLICATION_DELETE_TX)
-            {
-               handleAppendDeleteTX((ReplicationDeleteTXMessage) packet);
-            }
-            else if (type == PacketImpl.REPLICATION_PREPARE)
-            {
-               handlePrepare((ReplicationPrepareMessage) packet);
-            }
-            else if (type == PacketImpl.REPLICATION_COMMIT_ROLLBACK)
-            {
-               handleCommitRollback((ReplicationCommitMessage) packet);
-            }
-            else if (type == PacketImpl.REPLICATION_PAGE_WRITE)
-            {
-               handlePageWrite((ReplicationPageWriteMessage) packet);
-            }
-            else if (type == PacketImpl.REPLICATION_PAGE_EVENT)
-            {
-               handlePageEvent((ReplicationPageEventMessage) packet);
-            }
-            else if (type == PacketImpl.REPLICATION_LARGE_MESSAGE_BEGIN)
-            {
-               handleLargeMessageBegin((ReplicationLargeMessageBeginMessage) packet);
-            }
-            else if (type == PacketImpl.REPLICATION_LARGE_MESSAGE_WRITE)
-            {
-               handleLargeMessageWrite((ReplicationLargeMessageWriteMessage) packet);
-            }
-            else if (type == PacketImpl.REPLICATION_LARGE_MESSAGE_END)
-            {
-               handleLargeMessageEnd((ReplicationLargeMessageEndMessage) packet);
-            }
-            else if (type == PacketImpl.REPLICATION_START_FINISH_SYNC)
-            {
-               handleStartReplicationSynchronization((ReplicationStartSyncMessage) packet);
-            }
-            else if (type == PacketImpl.REPLICATION_SYNC_FILE)
-            {
-               handleReplicationSynchronization((ReplicationSyncFileMessage) packet);
-            }
-         else if (type == PacketImpl.REPLICATION_SCHEDULED_FAILOVER)
+         if (!started)
          {
-            handleLiveStopping((ReplicationLiveIsStoppingMessage)packet);
+            return;
          }
-         else if (type == PacketImpl.BACKUP_REGISTRATION_FAILED)
+
+         if (packet.getType() == PacketImpl.REPLICATION_BATCH)
          {
-            handleFatalError((BackupReplicationStartFailedMessage)packet);
+            handleBatch((ReplicationBatchMessage)packet);
          }
          else
          {
-            HornetQServerLogger.LOGGER.invalidPacketForReplication(packet);
+            handle(packet);
          }
       }
       catch (HornetQException e)
@@ -243,6 +190,89 @@ public final class ReplicationEndpoint implements ChannelHandler, HornetQCompone
       channel.send(response);
    }
 
+   /**
+    * Applies the packets of the batch in order, they are answered by one response.
+    */
+   private void handleBatch(final ReplicationBatchMessage batch) throws Exception
+   {
+      HornetQBuffer packets = batch.getPackets();
+
+      for (int i = 0; i < batch.getPacketCount(); i++)
+      {
+         handle(ServerPacketDecoder.INSTANCE.decode(packets));
+      }
+   }
+
+   private void handle(final Packet packet) throws Exception
+   {
+      final byte type = packet.getType();
+
+      if (type == PacketImpl.REPLICATION_APPEND)
+      {
+         handleAppendAddRecord((ReplicationAddMessage) packet);
+      }
+      else if (type == PacketImpl.REPLICATION_APPEND_TX)
+      {
+         handleAppendAddTXRecord((ReplicationAddTXMessage) packet);
+      }
+      else if (type == PacketImpl.REPLICATION_DELETE)
+      {
+         handleAppendDelete((ReplicationDeleteMessage) packet);
+      }
+      else if (type == PacketImpl.REPLICATION_DELETE_TX)
+      {
+         handleAppendDeleteTX((ReplicationDeleteTXMessage) packet);
+      }
+      else if (type == PacketImpl.REPLICATION_PREPARE)
+      {
+         handlePrepare((ReplicationPrepareMessage) packet);
+      }
+      else if (type == PacketImpl.REPLICATION_COMMIT_ROLLBACK)
+      {
+         handleCommitRollback((ReplicationCommitMessage) packet);
+      }
+      else if (type == PacketImpl.REPLICATION_PAGE_WRITE)
+      {
+         handlePageWrite((ReplicationPageWriteMessage) packet);
+      }
+      else if (type == PacketImpl.REPLICATION_PAGE_EVENT)
+      {
+         handlePageEvent((ReplicationPageEventMessage) packet);
+      }
+      else if (type == PacketImpl.REPLICATION_LARGE_MESSAGE_BEGIN)
+      {
+         handleLargeMessageBegin((ReplicationLargeMessageBeginMessage) packet);
+      }
+      else if (type == PacketImpl.REPLICATION_LARGE_MESSAGE_WRITE)
+      {
+         handleLargeMessageWrite((ReplicationLargeMessageWriteMessage) packet);
+      }
+      else if (type == PacketImpl.REPLICATION_LARGE_MESSAGE_END)
+      {
+         handleLargeMessageEnd((ReplicationLargeMessageEndMessage) packet);
+      }
+      else if (type == PacketImpl.REPLICATION_START_FINISH_SYNC)
+      {
+         handleStartReplicationSynchronization((ReplicationStartSyncMessage) packet);
+      }
+      else if (type == PacketImpl.REPLICATION_SYNC_FILE || type == PacketImpl.REPLICATION_SYNC_FILE_RANGE)
+      {
+         handleReplicationSynchronization((ReplicationSyncFileMessage) packet);
+      }
+      else if (type == PacketImpl.REPLICATION_SCHEDULED_FAILOVER)
+      {
+         handleLiveStopping((ReplicationLiveIsStoppingMessage)packet);
+      }
+      else if (type == PacketImpl.BACKUP_REGISTRATION_FAILED)
+      {
+         handleFatalError((BackupReplicationStartFailedMessage)packet);
+      }
+      else
+      {
+         HornetQServerLogger.LOGGER.invalidPacketForReplication(packet);
+      }
+   }
+
    /**
     * @param packet
     */
@@ -291,7 +321,8 @@ public final class ReplicationEndpoint implements ChannelHandler, HornetQCompone
                                                                     config.getJournalBufferSize_NIO(),
                                                                     server.getScheduledPool(),
                                                                     server.getExecutorFactory(),
-                                                                    config.isJournalSyncNonTransactional(), criticalErrorListener),
+                                                                    config.isJournalSyncNonTransactional(), criticalErrorListener,
+                                                                    config.getJournalType() == JournalType.MAPPED),
                                           server.getAddressSettingsRepository());
 
       pageManager.start();
@@ -472,6 +503,11 @@ public final class ReplicationEndpoint implements ChannelHandler, HornetQCompone
          {
             LargeServerMessageInSync lmSync = (LargeServerMessageInSync)lm;
             lmSync.joinSyncedData(buffer);
+            SequentialFile file = lmSync.getSyncFile();
+            if (file.isOpen())
+            {
+               file.sync();
+            }
          }
       }
 
@@ -521,7 +557,17 @@ public final class ReplicationEndpoint implements ChannelHandler, HornetQCompone
                channel2.close();
                return;
             }
-            channel2.write(ByteBuffer.wrap(data));
+            ByteBuffer buffer = ByteBuffer.wrap(data);
+            if (msg.getOffset() == -1)
+            {
+               channel2.write(buffer);
+               return;
+            }
+            long position = msg.getOffset();
+            while (buffer.hasRemaining())
+            {
+               position += channel2.write(buffer, position);
+            }
             return;
          }
          default:
@@ -530,6 +576,10 @@ public final class ReplicationEndpoint implements ChannelHandler, HornetQCompone
 
       if (data == null)
       {
+         if (channel1.isOpen())
+         {
+            channel1.sync();
+         }
          channel1.close();
          return;
       }
@@ -538,7 +588,12 @@ public final class ReplicationEndpoint implements ChannelHandler, HornetQCompone
       {
          channel1.open(1, false);
       }
-      channel1.writeDirect(ByteBuffer.wrap(data), true);
+      if (msg.getOffset() != -1)
+      {
+         channel1.position(msg.getOffset());
+      }
+      // synced once the whole file is received
+      channel1.writeDirect(ByteBuffer.wrap(data), false);
    }
 
    /**
@@ -13,18 +13,27 @@
 
 package org.hornetq.core.replication;
 
-import java.io.FileInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.hornetq.api.core.HornetQBuffer;
 import org.hornetq.api.core.HornetQException;
@@ -33,6 +42,7 @@ import org.hornetq.api.core.Pair;
 import org.hornetq.api.core.SimpleString;
 import org.hornetq.api.core.client.SessionFailureListener;
 import org.hornetq.core.journal.EncodingSupport;
+import org.hornetq.core.journal.IOAsyncTask;
 import org.hornetq.core.journal.SequentialFile;
 import org.hornetq.core.journal.impl.JournalFile;
 import org.hornetq.core.paging.PagedMessage;
@@ -47,6 +57,7 @@ import org.hornetq.core.protocol.core.impl.ChannelImpl.CHANNEL_ID;
 import org.hornetq.core.protocol.core.impl.PacketImpl;
 import org.hornetq.core.protocol.core.impl.wireformat.ReplicationAddMessage;
 import org.hornetq.core.protocol.core.impl.wireformat.ReplicationAddTXMessage;
+import org.hornetq.core.protocol.core.impl.wireformat.ReplicationBatchMessage;
 import org.hornetq.core.protocol.core.impl.wireformat.ReplicationCommitMessage;
 import org.hornetq.core.protocol.core.impl.wireformat.ReplicationDeleteMessage;
 import org.hornetq.core.protocol.core.impl.wireformat.ReplicationDeleteTXMessage;
@@ -69,6 +80,12 @@ import org.hornetq.utils.ExecutorFactory;
  * Manages replication tasks on the live server (that is the live server side of a "remote backup"
  * use case).
  * <p>
+ * With a batch size, the journal and page writes are encoded in a {@link ReplicationBatchMessage}
+ * sent once it reaches that size, or once an executor gets to it: the writes made in the meantime
+ * are replicated in one packet and completed by one response.
+ * <p>
+ * A new backup is first sent the files of the live server, by one or several threads.
+ * <p>
  * Its equivalent in the backup server is {@link ReplicationEndpoint}.
  * @author <mailto:clebert.suconic@jboss.org">Clebert Suconic</a>
  * @see ReplicationEndpoint
@@ -102,6 +119,17 @@ public final class ReplicationManager implements HornetQComponent
       }
    }
 
+   private static final int INITIAL_BATCH_SIZE = 4096;
+
+   /** The size of the chunks the files are sent to a new backup in */
+   private static final int SYNC_CHUNK_SIZE = 1 << 17;
+
+   /** The size of the ranges the files are split in when several threads send them */
+   private static final long SYNC_RANGE_SIZE = 1 << 22;
+
+   /** The maximum number of chunks sent to a new backup and not yet written by it */
+   private static final int SYNC_WINDOW = 32;
+
    private final ResponseHandler responseHandler = new ResponseHandler();
 
    private final Channel replicatingChannel;
@@ -116,8 +144,35 @@ public final class ReplicationManager implements HornetQComponent
 
    private final Queue<OperationContext> pendingTokens = new ConcurrentLinkedQueue<OperationContext>();
 
+   /** The number of tokens completed by each response expected from the backup */
+   private final Queue<Integer> pendingResponses = new ConcurrentLinkedQueue<Integer>();
+
    private final ExecutorFactory executorFactory;
 
+   private final int batchSize;
+
+   private final Executor batchExecutor;
+
+   private final Runnable batchFlusher = new BatchFlusher();
+
+   /** The batch being filled, guarded by the replicationLock */
+   private ReplicationBatchMessage batch;
+
+   private final int syncThreads;
+
+   /** The files to send to a new backup, queued by the thread synchronizing it */
+   private final List<SyncFile> filesToSync = new ArrayList<SyncFile>();
+
+   private final Semaphore syncWindow = new Semaphore(SYNC_WINDOW);
+
+   private final AtomicLong syncTotalBytes = new AtomicLong();
+
+   private final AtomicLong syncSentBytes = new AtomicLong();
+
+   private final AtomicInteger syncTotalFiles = new AtomicInteger();
+
+   private final AtomicInteger syncSentFiles = new AtomicInteger();
+
    private SessionFailureListener failureListener;
 
    private CoreRemotingConnection remotingConnection;
@@ -126,12 +181,19 @@ public final class ReplicationManager implements HornetQComponent
 
    /**
     * @param remotingConnection
+    * @param batchSize the maximum size of the batches of journal and page writes, -1 to send every
+    *           write in its own packet
+    * @param syncThreads the number of threads sending the files to the backup being synchronized
     */
-   public ReplicationManager(CoreRemotingConnection remotingConnection, final ExecutorFactory executorFactory)
+   public ReplicationManager(CoreRemotingConnection remotingConnection, final ExecutorFactory executorFactory,
+                             final int batchSize, final int syncThreads)
    {
       this.executorFactory = executorFactory;
       this.replicatingChannel = remotingConnection.getChannel(CHANNEL_ID.REPLICATION.id, -1);
       this.remotingConnection = remotingConnection;
+      this.batchSize = batchSize;
+      this.batchExecutor = batchSize > 0 ? executorFactory.getExecutor() : null;
+      this.syncThreads = syncThreads;
    }
 
    public void appendUpdateRecord(final byte journalID, final ADD_OPERATION_TYPE operation, final long id,
@@ -140,7 +202,7 @@ public final class ReplicationManager implements HornetQComponent
    {
       if (enabled)
       {
-         sendReplicatePacket(new ReplicationAddMessage(journalID, operation, id, recordType, record));
+         sendBatchablePacket(new ReplicationAddMessage(journalID, operation, id, recordType, record), true);
       }
    }
 
@@ -148,7 +210,7 @@ public final class ReplicationManager implements HornetQComponent
    {
       if (enabled)
       {
-         sendReplicatePacket(new ReplicationDeleteMessage(journalID, id));
+         sendBatchablePacket(new ReplicationDeleteMessage(journalID, id), true);
       }
    }
 
@@ -161,7 +223,7 @@ public final class ReplicationManager implements HornetQComponent
    {
       if (enabled)
       {
-         sendReplicatePacket(new ReplicationAddTXMessage(journalID, operation, txID, id, recordType, record));
+         sendBatchablePacket(new ReplicationAddTXMessage(journalID, operation, txID, id, recordType, record), true);
       }
    }
 
@@ -170,7 +232,7 @@ public final class ReplicationManager implements HornetQComponent
    {
       if (enabled)
       {
-         sendReplicatePacket(new ReplicationCommitMessage(journalID, false, txID), lineUp);
+         sendBatchablePacket(new ReplicationCommitMessage(journalID, false, txID), lineUp);
       }
    }
 
@@ -181,7 +243,7 @@ public final class ReplicationManager implements HornetQComponent
    {
       if (enabled)
       {
-         sendReplicatePacket(new ReplicationDeleteTXMessage(journalID, txID, id, record));
+         sendBatchablePacket(new ReplicationDeleteTXMessage(journalID, txID, id, record), true);
       }
    }
 
@@ -189,7 +251,7 @@ public final class ReplicationManager implements HornetQComponent
    {
       if (enabled)
       {
-         sendReplicatePacket(new ReplicationDeleteTXMessage(journalID, txID, id, NullEncoding.instance));
+         sendBatchablePacket(new ReplicationDeleteTXMessage(journalID, txID, id, NullEncoding.instance), true);
       }
    }
 
@@ -200,7 +262,7 @@ public final class ReplicationManager implements HornetQComponent
    {
       if (enabled)
       {
-         sendReplicatePacket(new ReplicationPrepareMessage(journalID, txID, transactionData));
+         sendBatchablePacket(new ReplicationPrepareMessage(journalID, txID, transactionData), true);
       }
    }
 
@@ -208,7 +270,7 @@ public final class ReplicationManager implements HornetQComponent
    {
       if (enabled)
       {
-         sendReplicatePacket(new ReplicationCommitMessage(journalID, true, txID));
+         sendBatchablePacket(new ReplicationCommitMessage(journalID, true, txID), true);
       }
    }
 
@@ -236,7 +298,7 @@ public final class ReplicationManager implements HornetQComponent
    {
       if (enabled)
       {
-         sendReplicatePacket(new ReplicationPageWriteMessage(message, pageNumber));
+         sendBatchablePacket(new ReplicationPageWriteMessage(message, pageNumber), true);
       }
    }
 
@@ -335,6 +397,8 @@ public final class ReplicationManager implements HornetQComponent
                HornetQServerLogger.LOGGER.errorCompletingCallbackOnReplicationManager(e);
             }
          }
+         pendingResponses.clear();
+         batch = null;
       }
    }
 
@@ -362,6 +426,19 @@ public final class ReplicationManager implements HornetQComponent
    }
 
    private OperationContext sendReplicatePacket(final Packet packet, boolean lineUp)
+   {
+      return sendReplicatePacket(packet, lineUp, false);
+   }
+
+   /**
+    * Sends a journal or page write, in the current batch if there is a batch size.
+    */
+   private OperationContext sendBatchablePacket(final PacketImpl packet, boolean lineUp)
+   {
+      return sendReplicatePacket(packet, lineUp, batchSize > 0);
+   }
+
+   private OperationContext sendReplicatePacket(final Packet packet, boolean lineUp, final boolean batched)
    {
       if (!enabled)
          return null;
@@ -378,7 +455,17 @@ public final class ReplicationManager implements HornetQComponent
          if (enabled)
          {
             pendingTokens.add(repliToken);
-            replicatingChannel.send(packet);
+            if (batched)
+            {
+               addToBatch((PacketImpl)packet);
+            }
+            else
+            {
+               // the packets batched before this one must reach the backup first
+               flushBatch();
+               pendingResponses.add(1);
+               replicatingChannel.send(packet);
+            }
          }
          else
          {
@@ -397,6 +484,38 @@ public final class ReplicationManager implements HornetQComponent
       return repliToken;
    }
 
+   /**
+    * Must hold the replicationLock.
+    */
+   private void addToBatch(final PacketImpl packet)
+   {
+      if (batch == null)
+      {
+         batch = new ReplicationBatchMessage(Math.min(batchSize, INITIAL_BATCH_SIZE));
+         batchExecutor.execute(batchFlusher);
+      }
+
+      batch.addPacket(packet);
+
+      if (batch.getBatchSize() >= batchSize)
+      {
+         flushBatch();
+      }
+   }
+
+   /**
+    * Must hold the replicationLock.
+    */
+   private void flushBatch()
+   {
+      if (batch != null)
+      {
+         pendingResponses.add(batch.getPacketCount());
+         replicatingChannel.send(batch);
+         batch = null;
+      }
+   }
+
    /**
     * @throws IllegalStateException By default, all replicated packets generate a replicated
     *            response. If your packets are triggering this exception, it may be because the
@@ -404,14 +523,24 @@ public final class ReplicationManager implements HornetQComponent
     */
    private void replicated()
    {
-      OperationContext ctx = pendingTokens.poll();
+      Integer tokens = pendingResponses.poll();
 
-      if (ctx == null)
+      if (tokens == null)
       {
          throw new IllegalStateException("Missing replication token on the queue.");
       }
 
-      ctx.replicationDone();
+      for (int i = 0; i < tokens; i++)
+      {
+         OperationContext ctx = pendingTokens.poll();
+
+         if (ctx == null)
+         {
+            throw new IllegalStateException("Missing replication token on the queue.");
+         }
+
+         ctx.replicationDone();
+      }
    }
 
    // Inner classes -------------------------------------------------
@@ -445,6 +574,23 @@ public final class ReplicationManager implements HornetQComponent
       }
    }
 
+   /**
+    * Sends the current batch, with the writes added to it since it was scheduled.
+    */
+   private final class BatchFlusher implements Runnable
+   {
+      public void run()
+      {
+         synchronized (replicationLock)
+         {
+            if (enabled)
+            {
+               flushBatch();
+            }
+         }
+      }
+   }
+
    private final class ResponseHandler implements ChannelHandler
    {
      public void handlePacket(final Packet packet)
@@ -457,6 +603,116 @@ public final class ReplicationManager implements HornetQComponent
 
    }
 
+   /**
+    * A journal, page or large message file queued to be sent to the backup being synchronized.
+    */
+   private final class SyncFile
+   {
+      private final JournalContent content;
+
+      private final SimpleString pageStore;
+
+      private final long id;
+
+      private final File file;
+
+      private final long bytesToSend;
+
+      /** Whether the backup closes the file once it is sent, as no more data is appended to it */
+      private final boolean close;
+
+      /** The number of ranges of the file not yet sent */
+      private final AtomicInteger ranges = new AtomicInteger();
+
+      SyncFile(final JournalContent content, final SimpleString pageStore, final long id, final File file,
+               final long bytesToSend, final boolean close)
+      {
+         this.content = content;
+         this.pageStore = pageStore;
+         this.id = id;
+         this.file = file;
+         this.bytesToSend = bytesToSend;
+         this.close = close;
+      }
+
+      /**
+       * Called once all the data of the file is sent.
+       */
+      void sent() throws InterruptedException
+      {
+         if (close)
+         {
+            // sending -1 bytes will close the file at the backup
+            sendSyncChunk(new ReplicationSyncFileMessage(content, pageStore, id, -1, null));
+         }
+         syncSentFiles.incrementAndGet();
+      }
+   }
+
+   /**
+    * A range of a file to be sent to the backup being synchronized.
+    */
+   private final class SyncRange
+   {
+      private final SyncFile file;
+
+      private final long offset;
+
+      private final long length;
+
+      SyncRange(final SyncFile file, final long offset, final long length)
+      {
+         this.file = file;
+         this.offset = offset;
+         this.length = length;
+      }
+
+      void send(final ByteBuffer buffer) throws Exception
+      {
+         RandomAccessFile raf = new RandomAccessFile(file.file, "r");
+         try
+         {
+            FileChannel channel = raf.getChannel();
+            long position = offset;
+            long end = offset + length;
+            while (position < end && enabled)
+            {
+               buffer.clear();
+               buffer.limit((int)Math.min(buffer.capacity(), end - position));
+               int bytesRead = channel.read(buffer, position);
+               if (bytesRead <= 0)
+               {
+                  throw new IOException("Unexpected end of " + file.file + " at " + position);
+               }
+               buffer.flip();
+
+               // ranges sent concurrently must tell the backup where their data goes
+               if (syncThreads > 1)
+               {
+                  sendSyncChunk(new ReplicationSyncFileMessage(file.content, file.pageStore, file.id, position,
+                                                               bytesRead, buffer));
+               }
+               else
+               {
+                  sendSyncChunk(new ReplicationSyncFileMessage(file.content, file.pageStore, file.id, bytesRead,
+                                                               buffer));
+               }
+               position += bytesRead;
+               syncSentBytes.addAndGet(bytesRead);
+            }
+         }
+         finally
+         {
+            raf.close();
+         }
+
+         if (enabled && file.ranges.decrementAndGet() == 0)
+         {
+            file.sent();
+         }
+      }
+   }
+
    private static final class NullEncoding implements EncodingSupport
    {
       static final NullEncoding instance = new NullEncoding();
@@ -476,9 +732,10 @@ public final class ReplicationManager implements HornetQComponent
    }
 
    /**
-    * Sends the whole content of the file to be duplicated.
+    * Queues the whole content of the file to be duplicated.
     * @throws HornetQException
     * @throws Exception
+    * @see #sendFilesToSync()
     */
    public void syncJournalFile(JournalFile jf, JournalContent content) throws Exception
    {
@@ -487,16 +744,8 @@ public final class ReplicationManager implements HornetQComponent
          return;
       }
       SequentialFile file = jf.getFile().cloneFile();
-      try
-      {
-         HornetQServerLogger.LOGGER.journalSynch(jf, file.size(), file);
-         sendLargeFile(content, null, jf.getFileID(), file, Long.MAX_VALUE);
-      }
-      finally
-      {
-         if (file.isOpen())
-            file.close();
-      }
+      HornetQServerLogger.LOGGER.journalSynch(jf, file.size(), file);
+      addFileToSync(content, null, jf.getFileID(), file, Long.MAX_VALUE);
    }
 
    /**
@@ -519,86 +768,162 @@ public final class ReplicationManager implements HornetQComponent
    {
       if (enabled)
       {
-         sendLargeFile(null, null, id, file, size);
+         addFileToSync(null, null, id, file, size);
       }
    }
 
    public void syncPages(SequentialFile file, long id, SimpleString queueName) throws Exception
    {
       if (enabled)
-         sendLargeFile(null, queueName, id, file, Long.MAX_VALUE);
+         addFileToSync(null, queueName, id, file, Long.MAX_VALUE);
    }
 
    /**
-    * Sends large files in reasonably sized chunks to the backup during replication synchronization.
+    * Queues a file to be sent to the backup by {@link #sendFilesToSync()}.
     * @param content journal type or {@code null} for large-messages and pages
     * @param pageStore page store name for pages, or {@code null} otherwise
     * @param id journal file id or (large) message id
     * @param file
     * @param maxBytesToSend maximum number of bytes to read and send from the file
-    * @throws Exception
     */
-   private void sendLargeFile(JournalContent content, SimpleString pageStore, final long id, SequentialFile file,
-      long maxBytesToSend) throws Exception
+   private void addFileToSync(JournalContent content, SimpleString pageStore, final long id, SequentialFile file,
+                              long maxBytesToSend) throws Exception
    {
-      if (!enabled)
-         return;
-      if (!file.isOpen())
+      long length = file.size();
+      SyncFile syncFile = new SyncFile(content, pageStore, id, file.getJavaFile(),
+                                       Math.min(length, maxBytesToSend), length < maxBytesToSend);
+      filesToSync.add(syncFile);
+      syncTotalBytes.addAndGet(syncFile.bytesToSend);
+      syncTotalFiles.incrementAndGet();
+   }
+
+   /**
+    * Sends the files queued by {@link #syncJournalFile(JournalFile, JournalContent)},
+    * {@link #syncLargeMessageFile(SequentialFile, long, long)} and
+    * {@link #syncPages(SequentialFile, long, SimpleString)} to the backup, and waits until they are
+    * all sent.
+    * <p>
+    * With a single sync thread the files are sent one after the other, in reasonably sized chunks.
+    * With several threads they are split in ranges that the threads send concurrently, each chunk
+    * carrying its offset in the file. Either way at most {@link #SYNC_WINDOW} chunks are sent and
+    * not yet written by the backup, so the data being synchronized can't pile up in memory.
+    * @throws Exception if a file could not be read
+    */
+   public void sendFilesToSync() throws Exception
+   {
+      final Queue<SyncRange> ranges = new ConcurrentLinkedQueue<SyncRange>();
+      for (SyncFile file : filesToSync)
       {
-         file.open();
+         if (file.bytesToSend == 0)
+         {
+            file.sent();
+            continue;
+         }
+         long rangeSize = syncThreads > 1 ? SYNC_RANGE_SIZE : file.bytesToSend;
+         for (long offset = 0; offset < file.bytesToSend; offset += rangeSize)
+         {
+            file.ranges.incrementAndGet();
+            ranges.add(new SyncRange(file, offset, Math.min(rangeSize, file.bytesToSend - offset)));
+         }
       }
-      try
+      filesToSync.clear();
+
+      final CountDownLatch done = new CountDownLatch(syncThreads);
+      final AtomicReference<Exception> failure = new AtomicReference<Exception>();
+      for (int i = 0; i < syncThreads; i++)
       {
-         final FileInputStream fis = new FileInputStream(file.getJavaFile());
-         try
+         executorFactory.getExecutor().execute(new Runnable()
          {
-            final FileChannel channel = fis.getChannel();
-            try
+            public void run()
             {
-               final ByteBuffer buffer = ByteBuffer.allocate(1 << 17);
-               while (true)
+               try
                {
-                  buffer.clear();
-                  final int bytesRead = channel.read(buffer);
-                  int toSend = bytesRead;
-                  if (bytesRead > 0)
+                  ByteBuffer buffer = ByteBuffer.allocate(SYNC_CHUNK_SIZE);
+                  SyncRange range;
+                  while (enabled && failure.get() == null && (range = ranges.poll()) != null)
                   {
-                     if (bytesRead >= maxBytesToSend)
-                     {
-                        toSend = (int)maxBytesToSend;
-                        maxBytesToSend = 0;
-                     }
-                     else
-                     {
-                        maxBytesToSend = maxBytesToSend - bytesRead;
-                     }
-                     buffer.limit(toSend);
+                     range.send(buffer);
                   }
-                  buffer.rewind();
-
-                  // sending -1 or 0 bytes will close the file at the backup
-                  sendReplicatePacket(new ReplicationSyncFileMessage(content, pageStore, id, toSend, buffer));
-                  if (bytesRead == -1 || bytesRead == 0 || maxBytesToSend == 0)
-                     break;
+               }
+               catch (Exception e)
+               {
+                  failure.compareAndSet(null, e);
+               }
+               finally
+               {
+                  OperationContextImpl.clearContext();
+                  done.countDown();
                }
             }
-            finally
-            {
-               channel.close();
-            }
-         }
-         finally
-         {
-            fis.close();
-         }
+         });
       }
-      finally
+      done.await();
+
+      if (failure.get() != null)
       {
-         if (file.isOpen())
-            file.close();
+         throw failure.get();
       }
    }
 
+   /**
+    * Sends a chunk of a file being synchronized, once the backup has written enough of the chunks
+    * sent before.
+    */
+   private void sendSyncChunk(final ReplicationSyncFileMessage message) throws InterruptedException
+   {
+      syncWindow.acquire();
+      OperationContext token = sendReplicatePacket(message);
+      if (token == null)
+      {
+         syncWindow.release();
+         return;
+      }
+      token.executeOnCompletion(new IOAsyncTask()
+      {
+         public void done()
+         {
+            syncWindow.release();
+         }
+
+         public void onError(int errorCode, String errorMessage)
+         {
+            syncWindow.release();
+         }
+      });
+   }
+
+   /**
+    * @return the number of bytes of the files to send to the backup being synchronized
+    */
+   public long getSyncTotalBytes()
+   {
+      return syncTotalBytes.get();
+   }
+
+   /**
+    * @return the number of bytes of the files sent to the backup being synchronized
+    */
+   public long getSyncSentBytes()
+   {
+      return syncSentBytes.get();
+   }
+
+   /**
+    * @return the number of files to send to the backup being synchronized
+    */
+   public int getSyncTotalFiles()
+   {
+      return syncTotalFiles.get();
+   }
+
+   /**
+    * @return the number of files completely sent to the backup being synchronized
+    */
+   public int getSyncSentFiles()
+   {
+      return syncSentFiles.get();
+   }
+
    /**
     * Reserve the following fileIDs in the backup server.
     * @param datafiles
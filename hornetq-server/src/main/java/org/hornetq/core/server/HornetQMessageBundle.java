@@ -217,7 +217,7 @@ public interface HornetQMessageBundle
    @Message(id = 119049, value = "No queue found for {0}", format = Message.Format.MESSAGE_FORMAT)
    IllegalArgumentException noQueueFound(String otherQueueName);
 
-   @Message(id = 119050, value = "Only NIO and AsyncIO are supported journals", format = Message.Format.MESSAGE_FORMAT)
+   @Message(id = 119050, value = "Only NIO, AsyncIO and Mapped are supported journals", format = Message.Format.MESSAGE_FORMAT)
    IllegalArgumentException invalidJournal();
 
    @Message(id = 119051, value = "Invalid journal type {0}", format = Message.Format.MESSAGE_FORMAT)
@@ -327,6 +327,10 @@ public interface HornetQMessageBundle
             format = Message.Format.MESSAGE_FORMAT)
    HornetQException noProtocolManagerFound(String protocol);
 
+   @Message(id = 119086, value = "journal-stripes is {0}, a striped journal can''t be replicated: set journal-stripes to 1 or use a shared store",
+            format = Message.Format.MESSAGE_FORMAT)
+   IllegalArgumentException stripedJournalReplication(int journalStripes);
+
    // this code has to match with version 2.3.x as it's used on integration tests at Wildfly and JBoss EAP
    @Message(id = 119099, value = "Unable to authenticate cluster user: {0}",
             format = Message.Format.MESSAGE_FORMAT)
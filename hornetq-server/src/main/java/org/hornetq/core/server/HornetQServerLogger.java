@@ -142,6 +142,10 @@ public interface HornetQServerLogger extends BasicLogger
    @Message(id = 221013, value = "Using NIO Journal", format = Message.Format.MESSAGE_FORMAT)
    void journalUseNIO();
 
+   @LogMessage(level = Logger.Level.INFO)
+   @Message(id = 221039, value = "Using Memory Mapped Journal", format = Message.Format.MESSAGE_FORMAT)
+   void journalUseMapped();
+
    @LogMessage(level = Logger.Level.INFO)
    @Message(id = 221014, value = "{0}% loaded", format = Message.Format.MESSAGE_FORMAT)
    void percentLoaded(Long percent);
@@ -985,6 +989,11 @@ public interface HornetQServerLogger extends BasicLogger
    @Message(id = 222166, value = "Error stopping naming server", format = Message.Format.MESSAGE_FORMAT)
    void unableToStopNamingServer(@Cause Exception e);
 
+   @LogMessage(level = Logger.Level.WARN)
+   @Message(id = 222167, value = "Message of a batch sent to {0} could not be routed, the rest of the batch is still sent",
+            format = Message.Format.MESSAGE_FORMAT)
+   void errorSendingBatchedMessage(SimpleString address, @Cause Exception e);
+
    @LogMessage(level = Logger.Level.ERROR)
    @Message(id = 224000, value = "Failure in initialisation", format = Message.Format.MESSAGE_FORMAT)
    void initializationError(@Cause Throwable e);
@@ -120,6 +120,11 @@ public interface Queue extends Bindable
 
    int getScheduledCount();
 
+   /**
+    * @return an estimate in bytes of the memory used by the message-id index, 0 when the queue is not indexed
+    */
+   long getMessageIDIndexMemorySize();
+
    List<MessageReference> getScheduledMessages();
 
    /**
@@ -146,6 +151,12 @@ public interface Queue extends Bindable
 
    long getInstantMessagesAdded();
 
+   /**
+    * @return the number of messages acknowledged since the queue was created, including the
+    *         messages expired or redistributed to other nodes
+    */
+   long getMessagesAcknowledged();
+
    MessageReference removeReferenceWithID(long id) throws Exception;
 
    MessageReference getReference(long id);
@@ -191,6 +202,14 @@ public interface Queue extends Bindable
 
    void cancelRedistributor() throws Exception;
 
+   /**
+    * Redistributes messages to other nodes even while the queue has consumers, to move its
+    * backlog, or stops doing so.
+    * <p>
+    * The redistributor added for the backlog is also cancelled when a consumer is added.
+    */
+   void setRedistributeBacklog(boolean redistribute) throws Exception;
+
    boolean hasMatchingConsumer(ServerMessage message);
 
    Collection<Consumer> getConsumers();
@@ -46,6 +46,12 @@ public interface ServerConsumer extends Consumer
 
    void individualAcknowledge(boolean autoCommitAcks, Transaction tx, long messageID) throws Exception;
 
+   /**
+    * Acknowledges several messages in one transaction, none of them is acknowledged if one of them
+    * can't be found.
+    */
+   void individualAcknowledge(boolean autoCommitAcks, Transaction tx, long[] messageIDs) throws Exception;
+
    void individualCancel(final long messageID, boolean failed) throws Exception;
 
    void forceDelivery(long sequence);
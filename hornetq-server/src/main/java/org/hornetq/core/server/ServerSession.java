@@ -53,6 +53,8 @@ public interface ServerSession
 
    void individualAcknowledge(long consumerID, long messageID) throws Exception;
 
+   void individualAcknowledge(long consumerID, long[] messageIDs) throws Exception;
+
    void individualCancel(final long consumerID, final long messageID, boolean failed) throws Exception;
 
    void expire(long consumerID, long messageID) throws Exception;
@@ -113,6 +115,14 @@ public interface ServerSession
 
    void send(ServerMessage message, boolean direct) throws Exception;
 
+   /**
+    * Sends a message of a batch. If it can't be routed the failure is logged and, on a transacted
+    * session, the transaction is marked rollback-only, so that the rest of the batch is still sent.
+    *
+    * @return whether the message was sent
+    */
+   boolean sendBatched(ServerMessage message, boolean direct);
+
    void sendLarge(MessageInternal msg) throws Exception;
 
    void forceConsumerDelivery(long consumerID, long sequence) throws Exception;
@@ -586,6 +586,9 @@ public final class ClusterManager implements HornetQComponent
       serverLocator.setMinLargeMessageSize(config.getMinLargeMessageSize());
       //disable flow control
       serverLocator.setProducerWindowSize(-1);
+      serverLocator.setProducerBatchSize(config.getProducerBatchSize());
+      serverLocator.setProducerBatchLinger(config.getProducerBatchLinger());
+      serverLocator.setCompressProducerBatches(config.isCompressBatches());
 
       // This will be set to 30s unless it's changed from embedded / testing
       // there is no reason to exception the config for this timeout
@@ -817,7 +820,10 @@ public final class ClusterManager implements HornetQComponent
                                                        server.getConfiguration().getClusterPassword(),
                                                        config.isAllowDirectConnectionsOnly(),
                                                        config.getClusterNotificationInterval(),
-                                                       config.getClusterNotificationAttempts());
+                                                       config.getClusterNotificationAttempts(),
+                                                       config.isLoadAwareRouting(),
+                                                       config.getLoadReportPeriod(),
+                                                       config.getBacklogRedistributionThreshold());
       }
       else
       {
@@ -859,7 +865,10 @@ public final class ClusterManager implements HornetQComponent
                                                        server.getConfiguration().getClusterPassword(),
                                                        config.isAllowDirectConnectionsOnly(),
                                                        config.getClusterNotificationInterval(),
-                                                       config.getClusterNotificationAttempts());
+                                                       config.getClusterNotificationAttempts(),
+                                                       config.isLoadAwareRouting(),
+                                                       config.getLoadReportPeriod(),
+                                                       config.getBacklogRedistributionThreshold());
       }
 
       if (defaultClusterConnection == null)
@@ -30,4 +30,9 @@ public interface RemoteQueueBinding extends QueueBinding
    void addConsumer(SimpleString filterString) throws Exception;
 
    void removeConsumer(SimpleString filterString) throws Exception;
+
+   /**
+    * Updates the load last reported by the node of the queue.
+    */
+   void updateLoad(long messageCount, double consumerRate);
 }
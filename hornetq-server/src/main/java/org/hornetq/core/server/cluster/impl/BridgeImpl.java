@@ -30,10 +30,10 @@ import org.hornetq.api.core.TransportConfiguration;
 import org.hornetq.api.core.client.ClientProducer;
 import org.hornetq.api.core.client.ClientSession.BindingQuery;
 import org.hornetq.api.core.client.ClusterTopologyListener;
-import org.hornetq.api.core.client.SendAcknowledgementHandler;
 import org.hornetq.api.core.client.SessionFailureListener;
 import org.hornetq.api.core.client.TopologyMember;
 import org.hornetq.api.core.management.NotificationType;
+import org.hornetq.core.client.impl.BatchSendAcknowledgementHandler;
 import org.hornetq.core.client.impl.ClientSessionFactoryInternal;
 import org.hornetq.core.client.impl.ClientSessionInternal;
 import org.hornetq.core.client.impl.ServerLocatorInternal;
@@ -50,6 +50,8 @@ import org.hornetq.core.server.cluster.Bridge;
 import org.hornetq.core.server.cluster.Transformer;
 import org.hornetq.core.server.management.Notification;
 import org.hornetq.core.server.management.NotificationService;
+import org.hornetq.core.transaction.Transaction;
+import org.hornetq.core.transaction.impl.TransactionImpl;
 import org.hornetq.spi.core.protocol.RemotingConnection;
 import org.hornetq.utils.FutureLatch;
 import org.hornetq.utils.ReusableLatch;
@@ -68,7 +70,7 @@ import org.hornetq.utils.UUID;
  *
  */
 
-public class BridgeImpl implements Bridge, SessionFailureListener, SendAcknowledgementHandler
+public class BridgeImpl implements Bridge, SessionFailureListener, BatchSendAcknowledgementHandler
 {
    // Constants -----------------------------------------------------
 
@@ -120,6 +122,8 @@ public class BridgeImpl implements Bridge, SessionFailureListener, SendAcknowled
 
    private final long maxRetryInterval;
 
+   private final StorageManager storageManager;
+
    /** Used when there's a scheduled reconnection */
    protected ScheduledFuture<?> futureScheduledReconnection;
 
@@ -209,6 +213,8 @@ public class BridgeImpl implements Bridge, SessionFailureListener, SendAcknowled
       this.password = password;
 
       this.activated = activated;
+
+      this.storageManager = storageManager;
    }
 
    public final static byte[] getDuplicateBytes(final UUID nodeUUID, final long messageID)
@@ -504,6 +510,83 @@ public class BridgeImpl implements Bridge, SessionFailureListener, SendAcknowled
       }
    }
 
+   /**
+    * Acknowledges the references of a batch of forwarded messages in one transaction, so that
+    * the acknowledgements of the durable messages take a single journal sync.
+    */
+   public void sendAcknowledged(final Message[] messages)
+   {
+      if (active)
+      {
+         Transaction tx = new TransactionImpl(storageManager);
+         int polled = 0;
+         // the reference being acknowledged, it isn't part of the transaction if its ack fails
+         MessageReference pending = null;
+         try
+         {
+            for (int i = 0; i < messages.length; i++)
+            {
+               pending = refs.poll();
+
+               if (pending == null)
+               {
+                  break;
+               }
+
+               polled++;
+
+               if (isTrace)
+               {
+                  HornetQServerLogger.LOGGER.trace(this + " Acking " + pending + " on queue " + pending.getQueue());
+               }
+               pending.getQueue().acknowledge(tx, pending);
+               pending = null;
+            }
+
+            tx.commit();
+         }
+         catch (Exception e)
+         {
+            HornetQServerLogger.LOGGER.bridgeFailedToAck(e);
+
+            // the references go back to the queue, the duplicate detection of the target drops them
+            // if they are forwarded again
+            cancelFailedAcks(tx, pending);
+         }
+         finally
+         {
+            for (int i = 0; i < polled; i++)
+            {
+               pendingAcks.countDown();
+            }
+         }
+      }
+   }
+
+   private void cancelFailedAcks(final Transaction tx, final MessageReference pending)
+   {
+      try
+      {
+         tx.rollback();
+      }
+      catch (Exception e)
+      {
+         HornetQServerLogger.LOGGER.bridgeFailedToAck(e);
+      }
+
+      if (pending != null)
+      {
+         try
+         {
+            pending.getQueue().cancel(pending, System.currentTimeMillis());
+         }
+         catch (Exception e)
+         {
+            HornetQServerLogger.LOGGER.errorCancellingRefOnBridge(e, pending);
+         }
+      }
+   }
+
    protected boolean isPlainCoreBridge()
    {
       return true;
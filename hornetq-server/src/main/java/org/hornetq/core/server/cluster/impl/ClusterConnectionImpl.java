@@ -15,6 +15,7 @@ package org.hornetq.core.server.cluster.impl;
 
 import static org.hornetq.api.core.management.NotificationType.CONSUMER_CLOSED;
 import static org.hornetq.api.core.management.NotificationType.CONSUMER_CREATED;
+import static org.hornetq.api.core.management.NotificationType.QUEUE_LOAD;
 
 import java.io.PrintWriter;
 import java.io.StringWriter;
@@ -29,6 +30,7 @@ import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 
 import org.hornetq.api.core.DiscoveryGroupConfiguration;
@@ -48,8 +50,10 @@ import org.hornetq.core.client.impl.ServerLocatorInternal;
 import org.hornetq.core.client.impl.Topology;
 import org.hornetq.core.client.impl.TopologyMemberImpl;
 import org.hornetq.core.postoffice.Binding;
+import org.hornetq.core.postoffice.BindingType;
 import org.hornetq.core.postoffice.Bindings;
 import org.hornetq.core.postoffice.PostOffice;
+import org.hornetq.core.postoffice.impl.LocalQueueBinding;
 import org.hornetq.core.postoffice.impl.PostOfficeImpl;
 import org.hornetq.core.protocol.core.impl.wireformat.NodeAnnounceMessage;
 import org.hornetq.core.server.HornetQMessageBundle;
@@ -168,6 +172,11 @@ public final class ClusterConnectionImpl implements ClusterConnection, AfterConn
    private final long clusterNotificationInterval;
    private final int clusterNotificationAttempts;
 
+   private final boolean loadAwareRouting;
+   private final long loadReportPeriod;
+   private final long backlogRedistributionThreshold;
+   private ScheduledFuture<?> loadReporterFuture;
+
    /**
     * @param staticTranspConfigs notice if {@code null} this is a cluster which won't connect to
     *           anyone, but that can still accept incoming connections.
@@ -202,7 +211,10 @@ public final class ClusterConnectionImpl implements ClusterConnection, AfterConn
                                 final String clusterPassword,
                                 final boolean allowDirectConnectionsOnly,
                                 final long clusterNotificationInterval,
-                                final int clusterNotificationAttempts) throws Exception
+                                final int clusterNotificationAttempts,
+                                final boolean loadAwareRouting,
+                                final long loadReportPeriod,
+                                final long backlogRedistributionThreshold) throws Exception
    {
       this.nodeManager = nodeManager;
 
@@ -236,6 +248,12 @@ public final class ClusterConnectionImpl implements ClusterConnection, AfterConn
 
       this.clusterNotificationAttempts = clusterNotificationAttempts;
 
+      this.loadAwareRouting = loadAwareRouting;
+
+      this.loadReportPeriod = loadReportPeriod;
+
+      this.backlogRedistributionThreshold = backlogRedistributionThreshold;
+
       this.executor = executorFactory.getExecutor();
 
       this.threadPool = threadPool;
@@ -331,7 +349,10 @@ public final class ClusterConnectionImpl implements ClusterConnection, AfterConn
                                 final String clusterPassword,
                                 final boolean allowDirectConnectionsOnly,
                                 final long clusterNotificationInterval,
-                                final int clusterNotificationAttempts) throws Exception
+                                final int clusterNotificationAttempts,
+                                final boolean loadAwareRouting,
+                                final long loadReportPeriod,
+                                final long backlogRedistributionThreshold) throws Exception
    {
       this.nodeManager = nodeManager;
 
@@ -371,6 +392,12 @@ public final class ClusterConnectionImpl implements ClusterConnection, AfterConn
 
       this.clusterNotificationAttempts = clusterNotificationAttempts;
 
+      this.loadAwareRouting = loadAwareRouting;
+
+      this.loadReportPeriod = loadReportPeriod;
+
+      this.backlogRedistributionThreshold = backlogRedistributionThreshold;
+
       this.executor = executorFactory.getExecutor();
 
       this.threadPool = threadPool;
@@ -456,6 +483,12 @@ public final class ClusterConnectionImpl implements ClusterConnection, AfterConn
 
       synchronized (this)
       {
+         if (loadReporterFuture != null)
+         {
+            loadReporterFuture.cancel(false);
+            loadReporterFuture = null;
+         }
+
          for (MessageFlowRecord record : records.values())
          {
             try
@@ -712,6 +745,14 @@ public final class ClusterConnectionImpl implements ClusterConnection, AfterConn
       liveNotifier.updateAsLive();
       liveNotifier.schedule();
 
+      if (loadAwareRouting || backlogRedistributionThreshold > 0)
+      {
+         loadReporterFuture = scheduledExecutor.scheduleWithFixedDelay(new LoadReporter(),
+                                                                       loadReportPeriod,
+                                                                       loadReportPeriod,
+                                                                       TimeUnit.MILLISECONDS);
+      }
+
       if (backupServerLocator != null)
       {
          // todo we could use the topology of this to preempt it arriving from the cc
@@ -1289,6 +1330,12 @@ public final class ClusterConnectionImpl implements ClusterConnection, AfterConn
 
                   break;
                }
+               case QUEUE_LOAD:
+               {
+                  doQueueLoad(message);
+
+                  break;
+               }
                case PROPOSAL:
                {
                   doProposalReceived(message);
@@ -1449,6 +1496,8 @@ public final class ClusterConnectionImpl implements ClusterConnection, AfterConn
 
          theBindings.setRouteWhenNoConsumers(routeWhenNoConsumers);
 
+         theBindings.setLoadAwareRouting(loadAwareRouting);
+
       }
 
       private void doBindingRemoved(final ClientMessage message) throws Exception
@@ -1596,6 +1645,64 @@ public final class ClusterConnectionImpl implements ClusterConnection, AfterConn
          managementService.sendNotification(notification);
       }
 
+      private synchronized void doQueueLoad(final ClientMessage message) throws Exception
+      {
+         if (HornetQServerLogger.LOGGER.isTraceEnabled())
+         {
+            HornetQServerLogger.LOGGER.trace(ClusterConnectionImpl.this + " Queue load " + message);
+         }
+         if (!message.containsProperty(ManagementHelper.HDR_DISTANCE))
+         {
+            throw new IllegalStateException("distance is null");
+         }
+
+         if (!message.containsProperty(ManagementHelper.HDR_CLUSTER_NAME))
+         {
+            throw new IllegalStateException("clusterName is null");
+         }
+
+         Integer distance = message.getIntProperty(ManagementHelper.HDR_DISTANCE);
+
+         SimpleString clusterName = message.getSimpleStringProperty(ManagementHelper.HDR_CLUSTER_NAME);
+
+         RemoteQueueBinding binding = bindings.get(clusterName);
+
+         if (binding == null)
+         {
+            // the load may be reported before the binding is added, the next report will update it
+            return;
+         }
+
+         long messageCount = message.getLongProperty(ManagementHelper.HDR_MESSAGE_COUNT);
+
+         double consumerRate = message.getDoubleProperty(ManagementHelper.HDR_CONSUMER_RATE);
+
+         binding.updateLoad(messageCount, consumerRate);
+
+         // Need to propagate the load to the nodes further away
+         TypedProperties props = new TypedProperties();
+
+         props.putSimpleStringProperty(ManagementHelper.HDR_ADDRESS, binding.getAddress());
+
+         props.putSimpleStringProperty(ManagementHelper.HDR_CLUSTER_NAME, clusterName);
+
+         props.putSimpleStringProperty(ManagementHelper.HDR_ROUTING_NAME, binding.getRoutingName());
+
+         props.putIntProperty(ManagementHelper.HDR_BINDING_TYPE, BindingType.REMOTE_QUEUE.toInt());
+
+         props.putIntProperty(ManagementHelper.HDR_DISTANCE, distance + 1);
+
+         props.putIntProperty(ManagementHelper.HDR_CONSUMER_COUNT, binding.consumerCount());
+
+         props.putLongProperty(ManagementHelper.HDR_MESSAGE_COUNT, messageCount);
+
+         props.putDoubleProperty(ManagementHelper.HDR_CONSUMER_RATE, consumerRate);
+
+         Notification notification = new Notification(null, QUEUE_LOAD, props);
+
+         managementService.sendNotification(notification);
+      }
+
    }
 
    // for testing only
@@ -1695,6 +1802,98 @@ public final class ClusterConnectionImpl implements ClusterConnection, AfterConn
       return clusterUser.equals(clusterUser0) && clusterPassword.equals(clusterPassword0);
    }
 
+   /**
+    * Reports the load of the local queues of the cluster connection's address to the other nodes,
+    * and redistributes the backlog of the queues far more loaded than their remote counterparts.
+    */
+   private final class LoadReporter implements Runnable
+   {
+      public void run()
+      {
+         if (!started || stopping)
+         {
+            return;
+         }
+
+         try
+         {
+            for (Binding binding : postOffice.getAllBindings().values())
+            {
+               if (binding instanceof LocalQueueBinding && binding.getAddress().startsWith(address))
+               {
+                  reportLoad((LocalQueueBinding)binding);
+               }
+            }
+         }
+         catch (Exception e)
+         {
+            HornetQServerLogger.LOGGER.errorHandlingMessage(e);
+         }
+      }
+
+      private void reportLoad(final LocalQueueBinding binding) throws Exception
+      {
+         double consumerRate = binding.measureConsumerRate();
+
+         long messageCount = binding.getMessageCount();
+
+         TypedProperties props = new TypedProperties();
+
+         props.putSimpleStringProperty(ManagementHelper.HDR_ADDRESS, binding.getAddress());
+
+         props.putSimpleStringProperty(ManagementHelper.HDR_CLUSTER_NAME, binding.getClusterName());
+
+         props.putSimpleStringProperty(ManagementHelper.HDR_ROUTING_NAME, binding.getRoutingName());
+
+         props.putIntProperty(ManagementHelper.HDR_BINDING_TYPE, BindingType.LOCAL_QUEUE.toInt());
+
+         props.putIntProperty(ManagementHelper.HDR_DISTANCE, 0);
+
+         props.putIntProperty(ManagementHelper.HDR_CONSUMER_COUNT, binding.consumerCount());
+
+         props.putLongProperty(ManagementHelper.HDR_MESSAGE_COUNT, messageCount);
+
+         props.putDoubleProperty(ManagementHelper.HDR_CONSUMER_RATE, consumerRate);
+
+         managementService.sendNotification(new Notification(null, QUEUE_LOAD, props));
+
+         if (backlogRedistributionThreshold > 0)
+         {
+            binding.getQueue().setRedistributeBacklog(messageCount > backlogRedistributionThreshold &&
+                                                      isLessLoadedElsewhere(binding, messageCount));
+         }
+      }
+
+      /**
+       * @return whether a queue of another node with the same name has consumers and less than
+       *         half the messages
+       */
+      private boolean isLessLoadedElsewhere(final LocalQueueBinding binding, final long messageCount) throws Exception
+      {
+         Bindings theBindings = postOffice.lookupBindingsForAddress(binding.getAddress());
+
+         if (theBindings == null)
+         {
+            return false;
+         }
+
+         for (Binding other : theBindings.getBindings())
+         {
+            if (other instanceof RemoteQueueBinding && other.getRoutingName().equals(binding.getRoutingName()))
+            {
+               RemoteQueueBinding remote = (RemoteQueueBinding)other;
+
+               if (remote.consumerCount() > 0 && remote.getMessageCount() < messageCount / 2)
+               {
+                  return true;
+               }
+            }
+         }
+
+         return false;
+      }
+   }
+
    private final class LiveNotifier implements Runnable
    {
       int notificationsSent = 0;
@@ -67,6 +67,10 @@ public class RemoteQueueBindingImpl implements RemoteQueueBinding
 
    private final int distance;
 
+   private volatile long messageCount;
+
+   private volatile double consumerRate;
+
    public RemoteQueueBindingImpl(final long id,
                                  final SimpleString address,
                                  final SimpleString uniqueName,
@@ -245,6 +249,23 @@ public class RemoteQueueBindingImpl implements RemoteQueueBinding
       return consumerCount;
    }
 
+   public void updateLoad(final long messageCount, final double consumerRate)
+   {
+      this.messageCount = messageCount;
+
+      this.consumerRate = consumerRate;
+   }
+
+   public long getMessageCount()
+   {
+      return messageCount;
+   }
+
+   public double getConsumerRate()
+   {
+      return consumerRate;
+   }
+
    @Override
    public String toString()
    {
@@ -253,6 +274,10 @@ public class RemoteQueueBindingImpl implements RemoteQueueBinding
              consumerCount +
              ", distance=" +
              distance +
+             ", messageCount=" +
+             messageCount +
+             ", consumerRate=" +
+             consumerRate +
              ", filters=" +
              filters +
              ", id=" +
@@ -83,6 +83,7 @@ import org.hornetq.core.journal.impl.SyncSpeedTest;
 import org.hornetq.core.management.impl.HornetQServerControlImpl;
 import org.hornetq.core.paging.PagingManager;
 import org.hornetq.core.paging.cursor.PageSubscription;
+import org.hornetq.core.paging.cursor.impl.PageCacheManagerImpl;
 import org.hornetq.core.paging.impl.PagingManagerImpl;
 import org.hornetq.core.paging.impl.PagingStoreFactoryNIO;
 import org.hornetq.core.persistence.GroupingInfo;
@@ -384,6 +385,9 @@ public class HornetQServerImpl implements HornetQServer
          HornetQServerLogger.LOGGER.debug("Server already started!");
          return;
       }
+
+      checkJournalStripes();
+
       synchronized (failbackCheckerGuard)
       {
          cancelFailBackChecker = false;
@@ -1390,8 +1394,10 @@ public class HornetQServerImpl implements HornetQServer
          scheduledPool,
          executorFactory,
          configuration.isJournalSyncNonTransactional(),
-         shutdownOnCriticalIO),
-      addressSettingsRepository);
+         shutdownOnCriticalIO,
+         configuration.getJournalType() == JournalType.MAPPED),
+      addressSettingsRepository,
+      new PageCacheManagerImpl(configuration.getPageCacheMaxSizeBytes(), configuration.isPageCacheOffHeap()));
    }
 
    /**
@@ -2030,6 +2036,18 @@ public class HornetQServerImpl implements HornetQServer
       }
    }
 
+   /**
+    * The journal of a live replicating to a backup, or of a backup, must be a single journal.
+    */
+   private void checkJournalStripes()
+   {
+      if (configuration.getJournalStripes() > 1 && configuration.isPersistenceEnabled() &&
+          !configuration.isSharedStore() && (configuration.isBackup() || configuration.isClustered()))
+      {
+         throw HornetQMessageBundle.BUNDLE.stripedJournalReplication(configuration.getJournalStripes());
+      }
+   }
+
    /**
     * To be called by backup trying to fail back the server
     */
@@ -2835,7 +2853,8 @@ public class HornetQServerImpl implements HornetQServer
          ReplicationFailureListener listener = new ReplicationFailureListener();
          rc.addCloseListener(listener);
          rc.addFailureListener(listener);
-         replicationManager = new ReplicationManager(rc, executorFactory);
+         replicationManager = new ReplicationManager(rc, executorFactory, configuration.getReplicationBatchSize(),
+                                                    configuration.getReplicationSyncThreads());
          replicationManager.start();
          Thread t = new Thread(new Runnable()
          {
@@ -73,6 +73,15 @@ public class LastValueQueue extends QueueImpl
             executor);
    }
 
+   /**
+    * The message-id index is never used here, the reference held for a last value is replaced in place
+    * so the message id of an element of the queue can change.
+    */
+   @Override
+   public void setIndexMessageIDs(final boolean indexMessageIDs)
+   {
+   }
+
    @Override
    public synchronized void addTail(final MessageReference ref, final boolean direct)
    {
@@ -13,7 +13,7 @@
 
 package org.hornetq.core.server.impl;
 
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 
 import org.hornetq.core.server.MessageReference;
 import org.hornetq.core.server.Queue;
@@ -28,7 +28,11 @@ import org.hornetq.utils.MemorySize;
  */
 public class MessageReferenceImpl implements MessageReference
 {
-   private final AtomicInteger deliveryCount = new AtomicInteger();
+   // a field and not an AtomicInteger, as a message routed to many queues has as many references
+   private static final AtomicIntegerFieldUpdater<MessageReferenceImpl> DELIVERY_COUNT_UPDATER =
+      AtomicIntegerFieldUpdater.newUpdater(MessageReferenceImpl.class, "deliveryCount");
+
+   private volatile int deliveryCount;
 
    private volatile int persistedCount;
 
@@ -70,7 +74,7 @@ public class MessageReferenceImpl implements MessageReference
 
    public MessageReferenceImpl(final MessageReferenceImpl other, final Queue queue)
    {
-      deliveryCount.set(other.deliveryCount.get());
+      deliveryCount = other.deliveryCount;
 
       scheduledDeliveryTime = other.scheduledDeliveryTime;
 
@@ -116,23 +120,23 @@ public class MessageReferenceImpl implements MessageReference
 
    public int getDeliveryCount()
    {
-      return deliveryCount.get();
+      return deliveryCount;
    }
 
    public void setDeliveryCount(final int deliveryCount)
    {
-      this.deliveryCount.set(deliveryCount);
-      this.persistedCount = this.deliveryCount.get();
+      this.deliveryCount = deliveryCount;
+      this.persistedCount = deliveryCount;
    }
 
    public void incrementDeliveryCount()
    {
-      deliveryCount.incrementAndGet();
+      DELIVERY_COUNT_UPDATER.incrementAndGet(this);
    }
 
    public void decrementDeliveryCount()
    {
-      deliveryCount.decrementAndGet();
+      DELIVERY_COUNT_UPDATER.decrementAndGet(this);
    }
 
    public long getScheduledDeliveryTime()
@@ -22,6 +22,7 @@ import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.CopyOnWriteArrayList;
@@ -31,6 +32,7 @@ import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.hornetq.api.core.Message;
 import org.hornetq.api.core.SimpleString;
@@ -61,6 +63,7 @@ import org.hornetq.core.transaction.impl.BindingsTransactionImpl;
 import org.hornetq.core.transaction.impl.TransactionImpl;
 import org.hornetq.utils.ConcurrentHashSet;
 import org.hornetq.utils.FutureLatch;
+import org.hornetq.utils.IDSupplier;
 import org.hornetq.utils.LinkedListIterator;
 import org.hornetq.utils.PriorityLinkedList;
 import org.hornetq.utils.PriorityLinkedListImpl;
@@ -86,6 +89,14 @@ public class QueueImpl implements Queue
 
    public static final int NUM_PRIORITIES = 10;
 
+   private static final IDSupplier<MessageReference> MESSAGE_ID_SUPPLIER = new IDSupplier<MessageReference>()
+   {
+      public long getID(final MessageReference ref)
+      {
+         return ref.getMessage().getMessageID();
+      }
+   };
+
    public static final int MAX_DELIVERIES_IN_LOOP = 1000;
 
    public static final int CHECK_QUEUE_SIZE_PERIOD = 100;
@@ -140,7 +151,9 @@ public class QueueImpl implements Queue
 
    private final ScheduledDeliveryHandler scheduledDeliveryHandler;
 
-   private long messagesAdded;
+   private final AtomicLong messagesAdded = new AtomicLong(0);
+
+   private final AtomicLong messagesAcknowledged = new AtomicLong(0);
 
    protected final AtomicInteger deliveringCount = new AtomicInteger(0);
 
@@ -167,6 +180,9 @@ public class QueueImpl implements Queue
 
    private Redistributor redistributor;
 
+   // the redistributor was added to move the backlog while the queue has consumers
+   private boolean backlogRedistributor;
+
    private final Set<ScheduledFuture<?>> futures = new ConcurrentHashSet<ScheduledFuture<?>>();
 
    private ScheduledFuture<?> redistributorFuture;
@@ -195,6 +211,8 @@ public class QueueImpl implements Queue
 
    private final ExpiryScanner expiryScanner = new ExpiryScanner();
 
+   private boolean indexMessageIDs;
+
    private final ReusableLatch deliveriesInTransit = new ReusableLatch(0);
 
     /**
@@ -314,7 +332,9 @@ public class QueueImpl implements Queue
 
       if (addressSettingsRepository != null)
       {
-         expiryAddress = addressSettingsRepository.getMatch(address.toString()).getExpiryAddress();
+         AddressSettings settings = addressSettingsRepository.getMatch(address.toString());
+         expiryAddress = settings.getExpiryAddress();
+         setIndexMessageIDs(settings.isIndexMessageIDs());
          addressSettingsRepositoryListener = new AddressSettingsRepositoryListener();
          addressSettingsRepository.registerListener(addressSettingsRepositoryListener);
       }
@@ -447,7 +467,7 @@ public class QueueImpl implements Queue
 
       directDeliver = false;
 
-      messagesAdded++;
+      messagesAdded.incrementAndGet();
    }
 
    public void addTail(final MessageReference ref)
@@ -457,42 +477,43 @@ public class QueueImpl implements Queue
 
    public void addTail(final MessageReference ref, final boolean direct)
    {
+      // Producers never take the queue's monitor on this path: references are handed over through the
+      // lock free intermediateMessageReferences and moved to messageReferences by the delivering thread
       if (scheduledDeliveryHandler.checkAndSchedule(ref, true))
       {
-         synchronized (this)
-         {
-            messagesAdded++;
-         }
+         messagesAdded.incrementAndGet();
 
          return;
       }
 
-      synchronized (directDeliveryGuard)
-       {
-          // The checkDirect flag is periodically set to true, if the delivery is specified as direct then this causes the
-          // directDeliver flag to be re-computed resulting in direct delivery if the queue is empty
-          // We don't recompute it on every delivery since executing isEmpty is expensive for a ConcurrentQueue
-          if (!directDeliver &&
-              direct &&
-             System.currentTimeMillis() - lastDirectDeliveryCheck > CHECK_QUEUE_SIZE_PERIOD)
-          {
-             lastDirectDeliveryCheck = System.currentTimeMillis();
-
-             if (intermediateMessageReferences.isEmpty() &&
-                 messageReferences.isEmpty() &&
-                 !pageIterator.hasNext() &&
-                 !pageSubscription.isPaging())
-             {
-                // We must block on the executor to ensure any async deliveries have completed or we might get out of order
-                // deliveries
-                if (flushExecutor() && flushDeliveriesInTransit())
-                {
-                   // Go into direct delivery mode
-                   directDeliver = true;
-                }
-             }
-          }
-       }
+      // The checkDirect flag is periodically set to true, if the delivery is specified as direct then this causes the
+      // directDeliver flag to be re-computed resulting in direct delivery if the queue is empty
+      // We don't recompute it on every delivery since executing isEmpty is expensive for a ConcurrentQueue
+      // The guard is only taken when the check is due, the conditions are checked again once it is held
+      if (!directDeliver && direct && System.currentTimeMillis() - lastDirectDeliveryCheck > CHECK_QUEUE_SIZE_PERIOD)
+      {
+         synchronized (directDeliveryGuard)
+         {
+            if (!directDeliver && System.currentTimeMillis() - lastDirectDeliveryCheck > CHECK_QUEUE_SIZE_PERIOD)
+            {
+               lastDirectDeliveryCheck = System.currentTimeMillis();
+
+               if (intermediateMessageReferences.isEmpty() &&
+                   messageReferences.isEmpty() &&
+                   !pageIterator.hasNext() &&
+                   !pageSubscription.isPaging())
+               {
+                  // We must block on the executor to ensure any async deliveries have completed or we might get out of order
+                  // deliveries
+                  if (flushExecutor() && flushDeliveriesInTransit())
+                  {
+                     // Go into direct delivery mode
+                     directDeliver = true;
+                  }
+               }
+            }
+         }
+      }
 
       if (direct && directDeliver && deliveriesInTransit.getCount() == 0 && deliverDirect(ref))
       {
@@ -504,7 +525,11 @@ public class QueueImpl implements Queue
 
       intermediateMessageReferences.add(ref);
 
-      directDeliver = false;
+      // reading before writing keeps concurrent producers from bouncing the flag's cache line
+      if (directDeliver)
+      {
+         directDeliver = false;
+      }
 
       // Delivery async will both poll for intermediate reference and deliver to clients
       deliverAsync();
@@ -733,6 +758,12 @@ public class QueueImpl implements Queue
 
    public synchronized void addRedistributor(final long delay)
    {
+      if (consumerSet.isEmpty())
+      {
+         // a redistributor already added for the backlog now stays until a consumer is added
+         backlogRedistributor = false;
+      }
+
       if (redistributorFuture != null)
       {
          redistributorFuture.cancel(false);
@@ -763,8 +794,27 @@ public class QueueImpl implements Queue
       }
    }
 
+   public synchronized void setRedistributeBacklog(final boolean redistribute) throws Exception
+   {
+      if (redistribute)
+      {
+         if (redistributor == null)
+         {
+            backlogRedistributor = true;
+
+            internalAddRedistributor(executor, true);
+         }
+      }
+      else if (backlogRedistributor)
+      {
+         cancelRedistributor();
+      }
+   }
+
    public synchronized void cancelRedistributor() throws Exception
    {
+      backlogRedistributor = false;
+
       if (redistributor != null)
       {
          redistributor.stop();
@@ -843,9 +893,51 @@ public class QueueImpl implements Queue
       return new TotalQueueIterator();
    }
 
+   /**
+    * The iterator used by the operations on a single message: the whole queue, or just the
+    * reference to the message when the message-id index can find it. Callers hold the queue's monitor.
+    */
+   private LinkedListIterator<MessageReference> referencesWithID(final long messageID)
+   {
+      if (messageReferences.isIndexedByID())
+      {
+         return new IndexedReferenceIterator(messageReferences.getWithID(messageID));
+      }
+      else
+      {
+         return iterator();
+      }
+   }
+
+   /**
+    * Turns the message-id index used by {@link #getReference(long)}, {@link #removeReferenceWithID(long)},
+    * {@link #deleteReference(long)}, {@link #expireReference(long)}, {@link #moveReference(long, SimpleString)},
+    * {@link #changeReferencePriority(long, byte)} and {@link #sendMessageToDeadLetterAddress(long)} on or off.
+    * Turning it on indexes the messages already in the queue.
+    */
+   public synchronized void setIndexMessageIDs(final boolean indexMessageIDs)
+   {
+      if (this.indexMessageIDs != indexMessageIDs)
+      {
+         this.indexMessageIDs = indexMessageIDs;
+
+         messageReferences.setIDSupplier(indexMessageIDs ? MESSAGE_ID_SUPPLIER : null);
+      }
+   }
+
+   public synchronized boolean isIndexMessageIDs()
+   {
+      return indexMessageIDs;
+   }
+
+   public long getMessageIDIndexMemorySize()
+   {
+      return messageReferences.getIndexMemorySize();
+   }
+
    public synchronized MessageReference removeReferenceWithID(final long id1) throws Exception
    {
-      LinkedListIterator<MessageReference> iterator = iterator();
+      LinkedListIterator<MessageReference> iterator = referencesWithID(id1);
 
       try
       {
@@ -883,7 +975,7 @@ public class QueueImpl implements Queue
 
    public synchronized MessageReference getReference(final long id1)
    {
-      LinkedListIterator<MessageReference> iterator = iterator();
+      LinkedListIterator<MessageReference> iterator = referencesWithID(id1);
 
       try
       {
@@ -923,29 +1015,28 @@ public class QueueImpl implements Queue
 
    public long getInstantMessageCount()
    {
-      synchronized (this)
+      // The counters are read without the queue's monitor so management doesn't stall deliveries,
+      // the result is a snapshot that may be off by the references being moved while it is taken
+      if (pageSubscription != null)
       {
-         if (pageSubscription != null)
-         {
-            // messageReferences will have depaged messages which we need to discount from the counter as they are
-            // counted on the pageSubscription as well
-            return messageReferences.size() + getScheduledCount() +
-                   deliveringCount.get() +
-                   pageSubscription.getMessageCount();
-         }
-         else
-         {
-            return messageReferences.size() + getScheduledCount() + deliveringCount.get();
-         }
+         // messageReferences will have depaged messages which we need to discount from the counter as they are
+         // counted on the pageSubscription as well
+         return messageReferences.size() + getScheduledCount() +
+                deliveringCount.get() +
+                pageSubscription.getMessageCount();
+      }
+      else
+      {
+         return messageReferences.size() + getScheduledCount() + deliveringCount.get();
       }
    }
 
-   public synchronized int getScheduledCount()
+   public int getScheduledCount()
    {
       return scheduledDeliveryHandler.getScheduledCount();
    }
 
-   public synchronized List<MessageReference> getScheduledMessages()
+   public List<MessageReference> getScheduledMessages()
    {
       return scheduledDeliveryHandler.getScheduledReferences();
    }
@@ -1131,15 +1222,20 @@ public class QueueImpl implements Queue
       return getInstantMessagesAdded();
    }
 
-   public synchronized long getInstantMessagesAdded()
+   public long getMessagesAcknowledged()
+   {
+      return messagesAcknowledged.get();
+   }
+
+   public long getInstantMessagesAdded()
    {
       if (pageSubscription != null)
       {
-         return messagesAdded + pageSubscription.getCounter().getValue() - pagedReferences.get();
+         return messagesAdded.get() + pageSubscription.getCounter().getValue() - pagedReferences.get();
       }
       else
       {
-         return messagesAdded;
+         return messagesAdded.get();
       }
     }
 
@@ -1306,7 +1402,7 @@ public class QueueImpl implements Queue
 
       Transaction tx = new TransactionImpl(storageManager);
 
-      LinkedListIterator<MessageReference> iter = iterator();
+      LinkedListIterator<MessageReference> iter = referencesWithID(messageID);
       try
       {
 
@@ -1379,7 +1475,7 @@ public class QueueImpl implements Queue
          return false;
       }
 
-      LinkedListIterator<MessageReference> iter = iterator();
+      LinkedListIterator<MessageReference> iter = referencesWithID(messageID);
       try
       {
 
@@ -1525,7 +1621,7 @@ public class QueueImpl implements Queue
 
    public synchronized boolean sendMessageToDeadLetterAddress(final long messageID) throws Exception
    {
-      LinkedListIterator<MessageReference> iter = iterator();
+      LinkedListIterator<MessageReference> iter = referencesWithID(messageID);
 
       try
       {
@@ -1585,7 +1681,7 @@ public class QueueImpl implements Queue
                                              final SimpleString toAddress,
                                              final boolean rejectDuplicate) throws Exception
    {
-      LinkedListIterator<MessageReference> iter = iterator();
+      LinkedListIterator<MessageReference> iter = referencesWithID(messageID);
 
       try
       {
@@ -1661,7 +1757,7 @@ public class QueueImpl implements Queue
 
    public synchronized boolean changeReferencePriority(final long messageID, final byte newPriority) throws Exception
    {
-      LinkedListIterator<MessageReference> iter = iterator();
+      LinkedListIterator<MessageReference> iter = referencesWithID(messageID);
 
       try
       {
@@ -1830,7 +1926,7 @@ public class QueueImpl implements Queue
       {
          internalAddTail(ref);
 
-         messagesAdded++;
+         messagesAdded.incrementAndGet();
          if (added++ > MAX_DELIVERIES_IN_LOOP)
          {
             // if we just keep polling from the intermediate we could starve in case there's a sustained load
@@ -2164,8 +2260,13 @@ public class QueueImpl implements Queue
 
    private void internalAddRedistributor(final Executor executor)
    {
-      // create the redistributor only once if there are no local consumers
-      if (consumerSet.isEmpty() && redistributor == null)
+      internalAddRedistributor(executor, false);
+   }
+
+   private void internalAddRedistributor(final Executor executor, final boolean withConsumers)
+   {
+      // create the redistributor only once if there are no local consumers, or to move the backlog
+      if ((consumerSet.isEmpty() || withConsumers) && redistributor == null)
       {
          redistributor = new Redistributor(this,
                                            storageManager,
@@ -2415,7 +2516,7 @@ public class QueueImpl implements Queue
                   groups.put(groupID, consumer);
                }
 
-               messagesAdded++;
+               messagesAdded.incrementAndGet();
 
                deliveriesInTransit.countUp();
                proceedDeliver(consumer, ref);
@@ -2541,6 +2642,8 @@ public class QueueImpl implements Queue
 
       queue.deliveringCount.decrementAndGet();
 
+      queue.messagesAcknowledged.incrementAndGet();
+
       if (ref.isPaged())
       {
          // nothing to be done
@@ -2613,9 +2716,9 @@ public class QueueImpl implements Queue
       return delay;
    }
 
-   public synchronized void resetMessagesAdded()
+   public void resetMessagesAdded()
    {
-	  messagesAdded = 0;
+	  messagesAdded.set(0);
    }
 
 
@@ -2835,6 +2938,66 @@ public class QueueImpl implements Queue
    }
 
    /* For external use we need to use a synchronized version since the list is not thread safe */
+   /**
+    * Iterates over the reference found through the message-id index, if any.
+    */
+   private class IndexedReferenceIterator implements LinkedListIterator<MessageReference>
+   {
+      private MessageReference ref;
+
+      private MessageReference last;
+
+      IndexedReferenceIterator(final MessageReference ref)
+      {
+         this.ref = ref;
+      }
+
+      public void close()
+      {
+      }
+
+      public void repeat()
+      {
+         if (last == null)
+         {
+            throw new NoSuchElementException();
+         }
+
+         ref = last;
+      }
+
+      public boolean hasNext()
+      {
+         return ref != null;
+      }
+
+      public MessageReference next()
+      {
+         if (ref == null)
+         {
+            throw new NoSuchElementException();
+         }
+
+         last = ref;
+
+         ref = null;
+
+         return last;
+      }
+
+      public void remove()
+      {
+         if (last == null)
+         {
+            throw new NoSuchElementException();
+         }
+
+         messageReferences.removeWithID(last.getMessage().getMessageID());
+
+         last = null;
+      }
+   }
+
    private class SynchronizedIterator implements LinkedListIterator<MessageReference>
    {
       private final LinkedListIterator<MessageReference> iter;
@@ -2961,7 +3124,9 @@ public class QueueImpl implements Queue
       @Override
       public void onChange()
       {
-         expiryAddress = addressSettingsRepository.getMatch(address.toString()).getExpiryAddress();
+         AddressSettings settings = addressSettingsRepository.getMatch(address.toString());
+         expiryAddress = settings.getExpiryAddress();
+         setIndexMessageIDs(settings.isIndexMessageIDs());
       }
    }
 }
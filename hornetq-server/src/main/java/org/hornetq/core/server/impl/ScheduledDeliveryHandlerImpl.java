@@ -13,12 +13,14 @@
 package org.hornetq.core.server.impl;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 
 import org.hornetq.core.filter.Filter;
@@ -26,9 +28,16 @@ import org.hornetq.core.server.HornetQServerLogger;
 import org.hornetq.core.server.MessageReference;
 import org.hornetq.core.server.Queue;
 import org.hornetq.core.server.ScheduledDeliveryHandler;
+import org.hornetq.utils.ConcurrentLongHashMap;
 
 /**
  * Handles scheduling deliveries to a queue at the correct time.
+ * <p>
+ * The scheduled references are kept on a hashed timing wheel: each reference goes into the bucket
+ * of the tick its delivery time falls in, so scheduling and cancelling are O(1). A single one-shot
+ * timer task per queue, armed for the earliest tick holding references, delivers everything due in
+ * that tick at once and re-arms itself for the next one. A reference is never delivered before its
+ * delivery time, and at most one tick after it.
  *
  * @author <a href="mailto:tim.fox@jboss.com">Tim Fox</a>
  * @author <a href="ataylor@redhat.com">Andy Taylor</a>
@@ -39,15 +48,67 @@ public class ScheduledDeliveryHandlerImpl implements ScheduledDeliveryHandler
 {
    private static final boolean trace = HornetQServerLogger.LOGGER.isTraceEnabled();
 
+   public static final long DEFAULT_TICK_DURATION = 10;
+
+   public static final int DEFAULT_WHEEL_SIZE = 1024;
+
+   private static final Comparator<ScheduledEntry> SEQUENCE_ORDER = new Comparator<ScheduledEntry>()
+   {
+      public int compare(final ScheduledEntry e1, final ScheduledEntry e2)
+      {
+         return e1.sequence < e2.sequence ? -1 : e1.sequence == e2.sequence ? 0 : 1;
+      }
+   };
+
    private final ScheduledExecutorService scheduledExecutor;
 
+   private final long tickDuration;
+
+   private final int wheelSize;
+
    private final Object lockDelivery = new Object();
 
-   private final LinkedList<MessageReference> scheduledReferences = new LinkedList<MessageReference>();
+   private final Runnable ticker = new Ticker();
+
+   // The fields below are guarded by this
+
+   // the buckets and the index are created with the first scheduled reference
+   private ScheduledEntry[] buckets;
+
+   private ConcurrentLongHashMap<ScheduledEntry> entriesByID;
+
+   private int size;
+
+   // the last tick delivered
+   private long lastTick;
+
+   // References scheduled at the tail are delivered before the ones scheduled at the head, that were cancelled
+   // back to the queue, and each group in the order it was scheduled. The sequences keep that order.
+   private long tailSequence;
+
+   private long headSequence;
+
+   private ScheduledFuture<?> tickerFuture;
+
+   // the tick the ticker is armed for
+   private long armedTick;
 
    public ScheduledDeliveryHandlerImpl(final ScheduledExecutorService scheduledExecutor)
+   {
+      this(scheduledExecutor, DEFAULT_TICK_DURATION, DEFAULT_WHEEL_SIZE);
+   }
+
+   /**
+    * @param tickDuration the resolution of the wheel in milliseconds
+    * @param wheelSize the number of buckets, rounded up to a power of 2
+    */
+   public ScheduledDeliveryHandlerImpl(final ScheduledExecutorService scheduledExecutor,
+                                       final long tickDuration,
+                                       final int wheelSize)
    {
       this.scheduledExecutor = scheduledExecutor;
+      this.tickDuration = tickDuration;
+      this.wheelSize = Integer.highestOneBit(Math.max(1, wheelSize - 1)) << 1;
    }
 
    public boolean checkAndSchedule(final MessageReference ref, final boolean tail)
@@ -61,150 +122,357 @@ public class ScheduledDeliveryHandlerImpl implements ScheduledDeliveryHandler
             HornetQServerLogger.LOGGER.trace("Scheduling delivery for " + ref + " to occur at " + deliveryTime);
          }
 
-         ScheduledDeliveryRunnable runnable = new ScheduledDeliveryRunnable(ref.getScheduledDeliveryTime());
-
-         synchronized (scheduledReferences)
+         synchronized (this)
          {
-            if (tail)
+            if (buckets == null)
             {
-               // We do the opposite what the parameter says as the Runnable will always add it to the head
-               scheduledReferences.addFirst(ref);
+               buckets = new ScheduledEntry[wheelSize];
+               entriesByID = new ConcurrentLongHashMap<ScheduledEntry>(16, 1);
             }
-            else
+
+            if (size == 0)
             {
-               // We do the opposite what the parameter says as the Runnable will always add it to the head
-               scheduledReferences.add(ref);
+               lastTick = tickOf(currentTimeMillis()) - 1;
             }
-         }
 
-         scheduleDelivery(runnable, deliveryTime);
+            // the first tick starting at or after the delivery time, or the next one if that is already gone
+            long tick = Math.max((deliveryTime + tickDuration - 1) / tickDuration, lastTick + 1);
+
+            ScheduledEntry entry = new ScheduledEntry(ref, tick, tail ? --headSequence : ++tailSequence);
+
+            link(entry);
+
+            arm(tick);
+         }
 
          return true;
       }
       return false;
    }
 
-   public int getScheduledCount()
+   public synchronized int getScheduledCount()
    {
-      synchronized (scheduledReferences)
-      {
-         return scheduledReferences.size();
-      }
+      return size;
    }
 
    public List<MessageReference> getScheduledReferences()
    {
-      List<MessageReference> refs = new ArrayList<MessageReference>();
+      List<ScheduledEntry> entries = new ArrayList<ScheduledEntry>();
 
-      synchronized (scheduledReferences)
+      synchronized (this)
       {
-         refs.addAll(scheduledReferences);
+         if (buckets != null)
+         {
+            for (ScheduledEntry head : buckets)
+            {
+               for (ScheduledEntry entry = head; entry != null; entry = entry.next)
+               {
+                  entries.add(entry);
+               }
+            }
+         }
       }
-      return refs;
+
+      return references(entries);
    }
 
    public List<MessageReference> cancel(final Filter filter)
    {
-      List<MessageReference> refs = new ArrayList<MessageReference>();
+      List<ScheduledEntry> entries = new ArrayList<ScheduledEntry>();
 
-      synchronized (scheduledReferences)
+      synchronized (this)
       {
-         Iterator<MessageReference> iter = scheduledReferences.iterator();
-
-         while (iter.hasNext())
+         if (buckets != null)
          {
-            MessageReference ref = iter.next();
-            if (filter == null || filter.match(ref.getMessage()))
+            for (ScheduledEntry head : buckets)
             {
-               iter.remove();
-               refs.add(ref);
+               ScheduledEntry entry = head;
+               while (entry != null)
+               {
+                  ScheduledEntry next = entry.next;
+                  if (filter == null || filter.match(entry.ref.getMessage()))
+                  {
+                     unlink(entry);
+                     entries.add(entry);
+                  }
+                  entry = next;
+               }
             }
+
+            disarmIfEmpty();
          }
       }
-      return refs;
+
+      return references(entries);
+   }
+
+   public synchronized MessageReference removeReferenceWithID(final long id)
+   {
+      if (entriesByID == null)
+      {
+         return null;
+      }
+
+      ScheduledEntry entry = entriesByID.get(id);
+
+      if (entry == null)
+      {
+         return null;
+      }
+
+      unlink(entry);
+
+      disarmIfEmpty();
+
+      return entry.ref;
+   }
+
+   /**
+    * @return the current time in milliseconds, the clock of the wheel
+    */
+   protected long currentTimeMillis()
+   {
+      return System.currentTimeMillis();
+   }
+
+   private long tickOf(final long time)
+   {
+      return time / tickDuration;
+   }
+
+   /**
+    * Arms the ticker for the tick, unless it's already armed for the same or an earlier one.
+    */
+   private void arm(final long tick)
+   {
+      if (tickerFuture != null)
+      {
+         if (armedTick <= tick)
+         {
+            return;
+         }
+         tickerFuture.cancel(false);
+      }
+
+      armedTick = tick;
+      long delay = Math.max(0, tick * tickDuration - currentTimeMillis());
+      tickerFuture = scheduledExecutor.schedule(ticker, delay, TimeUnit.MILLISECONDS);
    }
 
-   public MessageReference removeReferenceWithID(final long id)
+   private void disarmIfEmpty()
    {
-      synchronized (scheduledReferences)
+      if (size == 0 && tickerFuture != null)
       {
-         Iterator<MessageReference> iter = scheduledReferences.iterator();
-         while (iter.hasNext())
+         tickerFuture.cancel(false);
+         tickerFuture = null;
+      }
+   }
+
+   /**
+    * @return the earliest tick of the scheduled entries, all of them after the given tick
+    */
+   private long nextTick(final long after)
+   {
+      // an entry due within the next revolution is in the bucket of its own tick
+      for (long tick = after + 1; tick <= after + wheelSize; tick++)
+      {
+         for (ScheduledEntry entry = buckets[(int)(tick & (wheelSize - 1))]; entry != null; entry = entry.next)
          {
-            MessageReference ref = iter.next();
-            if (ref.getMessage().getMessageID() == id)
+            if (entry.tick == tick)
             {
-               iter.remove();
-               return ref;
+               return tick;
             }
          }
       }
 
-      return null;
+      long next = Long.MAX_VALUE;
+      for (ScheduledEntry head : buckets)
+      {
+         for (ScheduledEntry entry = head; entry != null; entry = entry.next)
+         {
+            next = Math.min(next, entry.tick);
+         }
+      }
+      return next;
    }
 
-   private void scheduleDelivery(final ScheduledDeliveryRunnable runnable, final long deliveryTime)
+   private void link(final ScheduledEntry entry)
    {
-      long now = System.currentTimeMillis();
+      int bucket = (int)(entry.tick & (wheelSize - 1));
 
-      long delay = deliveryTime - now;
+      entry.next = buckets[bucket];
+      if (entry.next != null)
+      {
+         entry.next.prev = entry;
+      }
+      buckets[bucket] = entry;
+
+      // the same message may be scheduled more than once, the others hang from the indexed entry
+      long id = entry.ref.getMessage().getMessageID();
+      ScheduledEntry sameID = entriesByID.putIfAbsent(id, entry);
+      if (sameID != null)
+      {
+         entry.nextSameID = sameID.nextSameID;
+         sameID.nextSameID = entry;
+      }
+
+      size++;
+   }
+
+   private void unlink(final ScheduledEntry entry)
+   {
+      if (entry.prev != null)
+      {
+         entry.prev.next = entry.next;
+      }
+      else
+      {
+         buckets[(int)(entry.tick & (wheelSize - 1))] = entry.next;
+      }
+      if (entry.next != null)
+      {
+         entry.next.prev = entry.prev;
+      }
+      entry.prev = entry.next = null;
 
-      if (delay < 0)
+      long id = entry.ref.getMessage().getMessageID();
+      ScheduledEntry indexed = entriesByID.get(id);
+      if (indexed == entry)
+      {
+         if (entry.nextSameID != null)
+         {
+            entriesByID.put(id, entry.nextSameID);
+         }
+         else
+         {
+            entriesByID.remove(id);
+         }
+      }
+      else
       {
-         delay = 0;
+         while (indexed.nextSameID != entry)
+         {
+            indexed = indexed.nextSameID;
+         }
+         indexed.nextSameID = entry.nextSameID;
       }
+      entry.nextSameID = null;
 
-      scheduledExecutor.schedule(runnable, delay, TimeUnit.MILLISECONDS);
+      size--;
    }
 
-   private class ScheduledDeliveryRunnable implements Runnable
+   /**
+    * @return the references of the entries in the order they are to be added to the head of the queue
+    */
+   private static List<MessageReference> references(final List<ScheduledEntry> entries)
    {
-      private final long scheduledTime;
+      Collections.sort(entries, SEQUENCE_ORDER);
 
-      public ScheduledDeliveryRunnable(final long scheduledTime)
+      List<MessageReference> refs = new ArrayList<MessageReference>(entries.size());
+      for (ScheduledEntry entry : entries)
       {
-         this.scheduledTime = scheduledTime;
+         refs.add(entry.ref);
       }
+      return refs;
+   }
+
+   private static final class ScheduledEntry
+   {
+      final MessageReference ref;
 
+      final long tick;
+
+      final long sequence;
+
+      ScheduledEntry prev;
+
+      ScheduledEntry next;
+
+      ScheduledEntry nextSameID;
+
+      ScheduledEntry(final MessageReference ref, final long tick, final long sequence)
+      {
+         this.ref = ref;
+         this.tick = tick;
+         this.sequence = sequence;
+      }
+   }
+
+   private class Ticker implements Runnable
+   {
       public void run()
       {
-         HashMap<Queue, LinkedList<MessageReference>> refs = new HashMap<Queue, LinkedList<MessageReference>>();
+         List<ScheduledEntry> due = new ArrayList<ScheduledEntry>();
 
          synchronized (lockDelivery)
          {
-            synchronized (scheduledReferences)
+            synchronized (ScheduledDeliveryHandlerImpl.this)
             {
+               long currentTick = tickOf(currentTimeMillis());
 
-               Iterator<MessageReference> iter = scheduledReferences.iterator();
-               while (iter.hasNext())
+               // the ticker armed is due: it's this run, or it will find nothing to deliver
+               if (tickerFuture != null && tickerFuture.getDelay(TimeUnit.MILLISECONDS) <= 0)
                {
-                  MessageReference reference = iter.next();
-                  if (reference.getScheduledDeliveryTime() <= this.scheduledTime)
-                  {
-                     iter.remove();
-
-                     reference.setScheduledDeliveryTime(0);
+                  tickerFuture = null;
+               }
 
-                     LinkedList<MessageReference> references = refs.get(reference.getQueue());
+               // catch up with the ticks missed by a late timer, one revolution visits every bucket
+               long tick = Math.max(lastTick + 1, currentTick - wheelSize + 1);
 
-                     if (references == null)
+               for (; tick <= currentTick && size > 0; tick++)
+               {
+                  ScheduledEntry entry = buckets[(int)(tick & (wheelSize - 1))];
+                  while (entry != null)
+                  {
+                     ScheduledEntry next = entry.next;
+                     // the bucket also holds the entries of the next revolutions
+                     if (entry.tick <= currentTick)
                      {
-                        references = new LinkedList<MessageReference>();
-                        refs.put(reference.getQueue(), references);
+                        unlink(entry);
+                        due.add(entry);
                      }
-
-                     references.add(reference);
+                     entry = next;
                   }
                }
+
+               lastTick = Math.max(lastTick, currentTick);
+
+               if (size > 0)
+               {
+                  arm(nextTick(lastTick));
+               }
+               else
+               {
+                  disarmIfEmpty();
+               }
+            }
+
+            if (due.isEmpty())
+            {
+               return;
+            }
+
+            HashMap<Queue, LinkedList<MessageReference>> refs = new HashMap<Queue, LinkedList<MessageReference>>();
+
+            for (MessageReference reference : references(due))
+            {
+               reference.setScheduledDeliveryTime(0);
+
+               LinkedList<MessageReference> references = refs.get(reference.getQueue());
+
+               if (references == null)
+               {
+                  references = new LinkedList<MessageReference>();
+                  refs.put(reference.getQueue(), references);
+               }
+
+               references.add(reference);
             }
 
             for (Map.Entry<Queue, LinkedList<MessageReference>> entry : refs.entrySet())
             {
                entry.getKey().addHead(entry.getValue());
             }
-
-            // Just to speed up GC
-            refs.clear();
          }
       }
    }
@@ -13,10 +13,12 @@
 
 package org.hornetq.core.server.impl;
 
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.ReadWriteLock;
@@ -31,6 +33,7 @@ import org.hornetq.api.core.management.ManagementHelper;
 import org.hornetq.api.core.management.NotificationType;
 import org.hornetq.core.client.impl.ClientConsumerImpl;
 import org.hornetq.core.filter.Filter;
+import org.hornetq.core.journal.SequentialFile;
 import org.hornetq.core.message.BodyEncoder;
 import org.hornetq.core.persistence.StorageManager;
 import org.hornetq.core.postoffice.Binding;
@@ -51,7 +54,11 @@ import org.hornetq.core.transaction.impl.TransactionImpl;
 import org.hornetq.spi.core.protocol.SessionCallback;
 import org.hornetq.spi.core.remoting.ReadyListener;
 import org.hornetq.utils.FutureLatch;
+import org.hornetq.utils.IDSupplier;
+import org.hornetq.utils.LinkedListImpl;
 import org.hornetq.utils.LinkedListIterator;
+import org.hornetq.utils.ReferenceCounter;
+import org.hornetq.utils.ReferenceCounterUtil;
 import org.hornetq.utils.TypedProperties;
 
 /**
@@ -71,6 +78,14 @@ public class ServerConsumerImpl implements ServerConsumer, ReadyListener
 
    // Static ---------------------------------------------------------------------------------------
 
+   private static final IDSupplier<MessageReference> MESSAGE_ID_SUPPLIER = new IDSupplier<MessageReference>()
+   {
+      public long getID(final MessageReference ref)
+      {
+         return ref.getMessage().getMessageID();
+      }
+   };
+
    // Attributes -----------------------------------------------------------------------------------
 
    private final long id;
@@ -102,7 +117,10 @@ public class ServerConsumerImpl implements ServerConsumer, ReadyListener
 
    public String debug()
    {
-      return toString() + "::Delivering " + this.deliveringRefs.size();
+      synchronized (deliveringRefs)
+      {
+         return toString() + "::Delivering " + this.deliveringRefs.size();
+      }
    }
 
    /**
@@ -117,7 +135,12 @@ public class ServerConsumerImpl implements ServerConsumer, ReadyListener
 
    private final StorageManager storageManager;
 
-   private final java.util.Queue<MessageReference> deliveringRefs = new ConcurrentLinkedQueue<MessageReference>();
+   /**
+    * The refs delivered and not acknowledged yet, in delivery order and indexed by message ID, so an
+    * individual ack doesn't walk the whole consumer window. Guarded by its own monitor, which is
+    * never held while calling the queue.
+    */
+   private final LinkedListImpl<MessageReference> deliveringRefs = new LinkedListImpl<MessageReference>();
 
    private final SessionCallback callback;
 
@@ -188,6 +211,8 @@ public class ServerConsumerImpl implements ServerConsumer, ReadyListener
 
       this.preAcknowledge = preAcknowledge;
 
+      deliveringRefs.setIDSupplier(MESSAGE_ID_SUPPLIER);
+
       this.managementService = managementService;
 
       minLargeMessageSize = session.getMinLargeMessageSize();
@@ -241,7 +266,21 @@ public class ServerConsumerImpl implements ServerConsumer, ReadyListener
    {
       synchronized(lock)
       {
-         refList.addAll(deliveringRefs);
+         synchronized (deliveringRefs)
+         {
+            LinkedListIterator<MessageReference> iter = deliveringRefs.iterator();
+            try
+            {
+               while (iter.hasNext())
+               {
+                  refList.add(iter.next());
+               }
+            }
+            finally
+            {
+               iter.close();
+            }
+         }
       }
    }
 
@@ -309,7 +348,10 @@ public class ServerConsumerImpl implements ServerConsumer, ReadyListener
          {
             if (!preAcknowledge)
             {
-               deliveringRefs.add(ref);
+               synchronized (deliveringRefs)
+               {
+                  deliveringRefs.addTail(ref);
+               }
             }
 
             ref.handled();
@@ -535,35 +577,54 @@ public class ServerConsumerImpl implements ServerConsumer, ReadyListener
 
       LinkedList<MessageReference> refs = new LinkedList<MessageReference>();
 
-      if (!deliveringRefs.isEmpty())
+      if (performACK)
       {
-         for (MessageReference ref : deliveringRefs)
+         MessageReference first;
+
+         synchronized (deliveringRefs)
          {
-            if (isTrace)
+            LinkedListIterator<MessageReference> iter = deliveringRefs.iterator();
+            try
             {
-               HornetQServerLogger.LOGGER.trace("Cancelling reference for messageID = " + ref.getMessage().getMessageID() + ", ref = " + ref);
+               first = iter.hasNext() ? iter.next() : null;
             }
-            if (performACK)
+            finally
             {
-               acknowledge(false, tx, ref.getMessage().getMessageID());
+               iter.close();
+            }
+         }
 
-               performACK = false;
+         if (first != null)
+         {
+            if (isTrace)
+            {
+               HornetQServerLogger.LOGGER.trace("Cancelling reference for messageID = " + first.getMessage().getMessageID() + ", ref = " + first);
             }
-            else
+
+            acknowledge(false, tx, first.getMessage().getMessageID());
+         }
+      }
+
+      synchronized (deliveringRefs)
+      {
+         MessageReference ref;
+         while ((ref = deliveringRefs.poll()) != null)
+         {
+            if (isTrace)
             {
-               if (!failed)
-               {
-                  // We don't decrement delivery count if the client failed, since there's a possibility that refs
-                  // were actually delivered but we just didn't get any acks for them
-                  // before failure
-                  ref.decrementDeliveryCount();
-               }
+               HornetQServerLogger.LOGGER.trace("Cancelling reference for messageID = " + ref.getMessage().getMessageID() + ", ref = " + ref);
+            }
 
-               refs.add(ref);
+            if (!failed)
+            {
+               // We don't decrement delivery count if the client failed, since there's a possibility that refs
+               // were actually delivered but we just didn't get any acks for them
+               // before failure
+               ref.decrementDeliveryCount();
             }
-         }
 
-         deliveringRefs.clear();
+            refs.add(ref);
+         }
       }
 
       return refs;
@@ -712,7 +773,10 @@ public class ServerConsumerImpl implements ServerConsumer, ReadyListener
          MessageReference ref;
          do
          {
-            ref = deliveringRefs.poll();
+            synchronized (deliveringRefs)
+            {
+               ref = deliveringRefs.poll();
+            }
 
             if (HornetQServerLogger.LOGGER.isTraceEnabled())
             {
@@ -785,6 +849,70 @@ public class ServerConsumerImpl implements ServerConsumer, ReadyListener
       }
    }
 
+   public void individualAcknowledge(final boolean autoCommitAcks, Transaction tx, final long[] messageIDs) throws Exception
+   {
+      if (browseOnly)
+      {
+         return;
+      }
+
+      // The acks are written to the journal in one transaction, so they take a single sync
+
+      boolean startedTransaction = false;
+
+      if (tx == null || autoCommitAcks)
+      {
+         startedTransaction = true;
+         tx = new TransactionImpl(storageManager);
+      }
+
+      try
+      {
+         for (long messageID : messageIDs)
+         {
+            MessageReference ref = removeReferenceByID(messageID);
+
+            if (ref == null)
+            {
+               throw HornetQMessageBundle.BUNDLE.consumerNoReference(id, messageID, messageQueue.getName());
+            }
+
+            ref.getQueue().acknowledge(tx, ref);
+         }
+
+         if (startedTransaction)
+         {
+            tx.commit();
+         }
+      }
+      catch (HornetQException e)
+      {
+         if (startedTransaction)
+         {
+            tx.rollback();
+         }
+         else
+         {
+            tx.markAsRollbackOnly(e);
+         }
+         throw e;
+      }
+      catch (Throwable e)
+      {
+         HornetQServerLogger.LOGGER.errorAckingMessage((Exception) e);
+         HornetQException hqex = new HornetQIllegalStateException(e.getMessage());
+         if (startedTransaction)
+         {
+            tx.rollback();
+         }
+         else
+         {
+            tx.markAsRollbackOnly(hqex);
+         }
+         throw hqex;
+      }
+   }
+
    public void individualCancel(final long messageID, boolean failed) throws Exception
    {
       if (browseOnly)
@@ -816,25 +944,10 @@ public class ServerConsumerImpl implements ServerConsumer, ReadyListener
 
       // Expiries can come in out of sequence with respect to delivery order
 
-      Iterator<MessageReference> iter = deliveringRefs.iterator();
-
-      MessageReference ref = null;
-
-      while (iter.hasNext())
+      synchronized (deliveringRefs)
       {
-         MessageReference theRef = iter.next();
-
-         if (theRef.getMessage().getMessageID() == messageID)
-         {
-            iter.remove();
-
-            ref = theRef;
-
-            break;
-         }
+         return deliveringRefs.removeWithID(messageID);
       }
-
-      return ref;
    }
 
    public void readyForWriting(final boolean ready)
@@ -967,6 +1080,12 @@ public class ServerConsumerImpl implements ServerConsumer, ReadyListener
 
       private BodyEncoder context;
 
+      /** The file of the body, sent without being read when the connection supports it */
+      private FileChannel bodyFile;
+
+      /** Closes the file once neither this deliverer nor the connection transferring it use it */
+      private ReferenceCounter bodyFileReferences;
+
       public LargeMessageDeliverer(final LargeServerMessage message, final MessageReference ref) throws Exception
       {
          largeMessage = message;
@@ -1003,7 +1122,16 @@ public class ServerConsumerImpl implements ServerConsumer, ReadyListener
 
                sizePendingLargeMessage = context.getLargeBodySize();
 
-               context.open();
+               bodyFile = openBodyFile();
+
+               if (bodyFile == null)
+               {
+                  context.open();
+               }
+               else
+               {
+                  bodyFileReferences = referenceBodyFile(bodyFile);
+               }
 
                sentInitialPacket = true;
 
@@ -1050,18 +1178,32 @@ public class ServerConsumerImpl implements ServerConsumer, ReadyListener
 
                localChunkLen = (int)Math.min(sizePendingLargeMessage - positionPendingLargeMessage, minLargeMessageSize);
 
-               HornetQBuffer bodyBuffer = HornetQBuffers.fixedBuffer(localChunkLen);
+               boolean continues = positionPendingLargeMessage + localChunkLen < sizePendingLargeMessage;
 
-               context.encode(bodyBuffer, localChunkLen);
+               int packetSize;
 
-               byte[] body = bodyBuffer.toByteBuffer().array();
+               if (bodyFile != null)
+               {
+                  packetSize = callback.sendLargeMessageContinuation(id,
+                                                                     bodyFile,
+                                                                     bodyFileReferences,
+                                                                     positionPendingLargeMessage,
+                                                                     localChunkLen,
+                                                                     continues,
+                                                                     false);
+               }
+               else
+               {
+                  HornetQBuffer bodyBuffer = HornetQBuffers.fixedBuffer(localChunkLen);
 
-               int packetSize = callback.sendLargeMessageContinuation(id,
-                                                                      body,
-                                                                      positionPendingLargeMessage + localChunkLen < sizePendingLargeMessage,
-                                                                      false);
+                  context.encode(bodyBuffer, localChunkLen);
 
-               int chunkLen = body.length;
+                  byte[] body = bodyBuffer.toByteBuffer().array();
+
+                  packetSize = callback.sendLargeMessageContinuation(id, body, continues, false);
+               }
+
+               int chunkLen = localChunkLen;
 
                if (availableCredits != null)
                {
@@ -1117,6 +1259,14 @@ public class ServerConsumerImpl implements ServerConsumer, ReadyListener
                context.close();
             }
 
+            if (bodyFile != null)
+            {
+               // the connection may still be transferring the last regions
+               bodyFileReferences.decrement();
+               bodyFile = null;
+               bodyFileReferences = null;
+            }
+
             largeMessage.releaseResources();
 
             largeMessage.decrementDelayDeletionCount();
@@ -1132,6 +1282,46 @@ public class ServerConsumerImpl implements ServerConsumer, ReadyListener
             largeMessage = null;
          }
       }
+
+      /**
+       * @return the file of the body, or null if the body isn't stored in a file
+       */
+      private FileChannel openBodyFile() throws IOException, HornetQException
+      {
+         SequentialFile file = largeMessage.getFile();
+
+         if (file == null || !file.exists())
+         {
+            return null;
+         }
+
+         return new RandomAccessFile(file.getJavaFile(), "r").getChannel();
+      }
+
+      /**
+       * @return the references to the file, the first one being this deliverer's until it finishes
+       */
+      private ReferenceCounter referenceBodyFile(final FileChannel file)
+      {
+         ReferenceCounter references = new ReferenceCounterUtil(new Runnable()
+         {
+            public void run()
+            {
+               try
+               {
+                  file.close();
+               }
+               catch (IOException e)
+               {
+                  HornetQServerLogger.LOGGER.warn(e.getMessage(), e);
+               }
+            }
+         });
+
+         references.increment();
+
+         return references;
+      }
    }
 
    private class BrowserDeliverer implements Runnable
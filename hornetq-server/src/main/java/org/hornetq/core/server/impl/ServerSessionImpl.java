@@ -29,6 +29,7 @@ import javax.transaction.xa.XAException;
 import javax.transaction.xa.Xid;
 
 import org.hornetq.api.core.HornetQException;
+import org.hornetq.api.core.HornetQInternalErrorException;
 import org.hornetq.api.core.HornetQNonExistentQueueException;
 import org.hornetq.api.core.Message;
 import org.hornetq.api.core.Pair;
@@ -681,6 +682,33 @@ public class ServerSessionImpl implements ServerSession, FailureListener
 
    }
 
+   public void individualAcknowledge(final long consumerID, final long[] messageIDs) throws Exception
+   {
+      ServerConsumer consumer = consumers.get(consumerID);
+
+      if (consumer == null)
+      {
+         throw HornetQMessageBundle.BUNDLE.consumerDoesntExist(consumerID);
+      }
+
+      if (this.xa && tx == null)
+      {
+         throw new HornetQXAException(XAException.XAER_PROTO, "Invalid transaction state");
+      }
+
+      if (tx != null && tx.getState() == State.ROLLEDBACK)
+      {
+         // JBPAPP-8845 - the tx has already timed out, so we need to ack and rollback immediately
+         Transaction newTX = newTransaction();
+         consumer.individualAcknowledge(false, newTX, messageIDs);
+         newTX.rollback();
+      }
+      else
+      {
+         consumer.individualAcknowledge(autoCommitAcks, tx, messageIDs);
+      }
+   }
+
    public void individualCancel(final long consumerID, final long messageID, boolean failed) throws Exception
    {
       ServerConsumer consumer = consumers.get(consumerID);
@@ -1353,6 +1381,36 @@ public class ServerSessionImpl implements ServerSession, FailureListener
       }
    }
 
+   public boolean sendBatched(final ServerMessage message, final boolean direct)
+   {
+      try
+      {
+         send(message, direct);
+
+         return true;
+      }
+      catch (Exception e)
+      {
+         HornetQServerLogger.LOGGER.errorSendingBatchedMessage(message.getAddress(), e);
+
+         if (!autoCommitSends && tx != null)
+         {
+            HornetQException hqe;
+            if (e instanceof HornetQException)
+            {
+               hqe = (HornetQException)e;
+            }
+            else
+            {
+               hqe = new HornetQInternalErrorException(e.getMessage(), e);
+            }
+            tx.markAsRollbackOnly(hqe);
+         }
+
+         return false;
+      }
+   }
+
    public void sendContinuations(final int packetSize,
                                  final long messageBodySize,
                                  final byte[] body,
@@ -59,6 +59,10 @@ public class AddressSettings implements Mergeable<AddressSettings>, Serializable
 
    public static final boolean DEFAULT_SEND_TO_DLA_ON_NO_ROUTE = false;
 
+   public static final boolean DEFAULT_INDEX_MESSAGE_IDS = false;
+
+   public static final int DEFAULT_PAGE_PREFETCH_DEPTH = 0;
+
    private AddressFullMessagePolicy addressFullMessagePolicy = null;
 
    private Long maxSizeBytes = null;
@@ -91,6 +95,10 @@ public class AddressSettings implements Mergeable<AddressSettings>, Serializable
 
    private Boolean sendToDLAOnNoRoute = null;
 
+   private Boolean indexMessageIDs = null;
+
+   private Integer pagePrefetchDepth = null;
+
    public boolean isLastValueQueue()
    {
       return lastValueQueue != null ? lastValueQueue : AddressSettings.DEFAULT_LAST_VALUE_QUEUE;
@@ -101,6 +109,16 @@ public class AddressSettings implements Mergeable<AddressSettings>, Serializable
       this.lastValueQueue = lastValueQueue;
    }
 
+   public boolean isIndexMessageIDs()
+   {
+      return indexMessageIDs != null ? indexMessageIDs : AddressSettings.DEFAULT_INDEX_MESSAGE_IDS;
+   }
+
+   public void setIndexMessageIDs(final boolean indexMessageIDs)
+   {
+      this.indexMessageIDs = indexMessageIDs;
+   }
+
    public AddressFullMessagePolicy getAddressFullMessagePolicy()
    {
       return addressFullMessagePolicy != null ? addressFullMessagePolicy
@@ -132,6 +150,16 @@ public class AddressSettings implements Mergeable<AddressSettings>, Serializable
       this.pageMaxCache = pageMaxCache;
    }
 
+   public int getPagePrefetchDepth()
+   {
+      return pagePrefetchDepth != null ? pagePrefetchDepth : AddressSettings.DEFAULT_PAGE_PREFETCH_DEPTH;
+   }
+
+   public void setPagePrefetchDepth(final int pagePrefetchDepth)
+   {
+      this.pagePrefetchDepth = pagePrefetchDepth;
+   }
+
    public long getMaxSizeBytes()
    {
       return maxSizeBytes != null ? maxSizeBytes : AddressSettings.DEFAULT_MAX_SIZE_BYTES;
@@ -311,6 +339,14 @@ public class AddressSettings implements Mergeable<AddressSettings>, Serializable
       {
          addressFullMessagePolicy = merged.addressFullMessagePolicy;
       }
+      if (indexMessageIDs == null)
+      {
+         indexMessageIDs = merged.indexMessageIDs;
+      }
+      if (pagePrefetchDepth == null)
+      {
+         pagePrefetchDepth = merged.pagePrefetchDepth;
+      }
    }
 
    @Override
@@ -356,6 +392,17 @@ public class AddressSettings implements Mergeable<AddressSettings>, Serializable
       redistributionDelay = BufferHelper.readNullableLong(buffer);
 
       sendToDLAOnNoRoute = BufferHelper.readNullableBoolean(buffer);
+
+      // settings persisted by older versions end here
+      if (buffer.readable())
+      {
+         indexMessageIDs = BufferHelper.readNullableBoolean(buffer);
+      }
+
+      if (buffer.readable())
+      {
+         pagePrefetchDepth = BufferHelper.readNullableInteger(buffer);
+      }
    }
 
    @Override
@@ -377,7 +424,9 @@ public class AddressSettings implements Mergeable<AddressSettings>, Serializable
              BufferHelper.sizeOfNullableLong(expiryDelay) +
              BufferHelper.sizeOfNullableBoolean(lastValueQueue) +
              BufferHelper.sizeOfNullableLong(redistributionDelay) +
-             BufferHelper.sizeOfNullableBoolean(sendToDLAOnNoRoute);
+             BufferHelper.sizeOfNullableBoolean(sendToDLAOnNoRoute) +
+             BufferHelper.sizeOfNullableBoolean(indexMessageIDs) +
+             BufferHelper.sizeOfNullableInteger(pagePrefetchDepth);
    }
 
    @Override
@@ -415,6 +464,10 @@ public class AddressSettings implements Mergeable<AddressSettings>, Serializable
       BufferHelper.writeNullableLong(buffer, redistributionDelay);
 
       BufferHelper.writeNullableBoolean(buffer, sendToDLAOnNoRoute);
+
+      BufferHelper.writeNullableBoolean(buffer, indexMessageIDs);
+
+      BufferHelper.writeNullableInteger(buffer, pagePrefetchDepth);
    }
 
    /* (non-Javadoc)
@@ -442,6 +495,8 @@ public class AddressSettings implements Mergeable<AddressSettings>, Serializable
       result = prime * result + ((maxRedeliveryDelay == null) ? 0 : maxRedeliveryDelay.hashCode());
       result = prime * result + ((redistributionDelay == null) ? 0 : redistributionDelay.hashCode());
       result = prime * result + ((sendToDLAOnNoRoute == null) ? 0 : sendToDLAOnNoRoute.hashCode());
+      result = prime * result + ((indexMessageIDs == null) ? 0 : indexMessageIDs.hashCode());
+      result = prime * result + ((pagePrefetchDepth == null) ? 0 : pagePrefetchDepth.hashCode());
       return result;
    }
 
@@ -570,6 +625,20 @@ public class AddressSettings implements Mergeable<AddressSettings>, Serializable
       }
       else if (!sendToDLAOnNoRoute.equals(other.sendToDLAOnNoRoute))
          return false;
+      if (indexMessageIDs == null)
+      {
+         if (other.indexMessageIDs != null)
+            return false;
+      }
+      else if (!indexMessageIDs.equals(other.indexMessageIDs))
+         return false;
+      if (pagePrefetchDepth == null)
+      {
+         if (other.pagePrefetchDepth != null)
+            return false;
+      }
+      else if (!pagePrefetchDepth.equals(other.pagePrefetchDepth))
+         return false;
       return true;
    }
 
@@ -610,6 +679,10 @@ public class AddressSettings implements Mergeable<AddressSettings>, Serializable
              redistributionDelay +
              ", sendToDLAOnNoRoute=" +
              sendToDLAOnNoRoute +
+             ", indexMessageIDs=" +
+             indexMessageIDs +
+             ", pagePrefetchDepth=" +
+             pagePrefetchDepth +
              "]";
    }
 }
@@ -13,9 +13,12 @@
 
 package org.hornetq.spi.core.protocol;
 
+import java.nio.channels.FileChannel;
+
 import org.hornetq.api.core.SimpleString;
 import org.hornetq.core.server.ServerMessage;
 import org.hornetq.spi.core.remoting.ReadyListener;
+import org.hornetq.utils.ReferenceCounter;
 
 /**
  * A SessionCallback
@@ -36,6 +39,19 @@ public interface SessionCallback
 
    int sendLargeMessageContinuation(long consumerID, byte[] body, boolean continues, boolean requiresResponse);
 
+   /**
+    * Sends {@code count} bytes of the file from {@code position} as the body of the continuation.
+    * The file may still be read once this returns, it's referenced in {@code fileReferences}
+    * until it isn't needed anymore.
+    */
+   int sendLargeMessageContinuation(long consumerID,
+                                    FileChannel file,
+                                    ReferenceCounter fileReferences,
+                                    long position,
+                                    int count,
+                                    boolean continues,
+                                    boolean requiresResponse);
+
    void closed();
 
    void addReadyListener(ReadyListener listener);
@@ -76,11 +76,14 @@ public class FileConfigurationTest extends ConfigurationImplTest
       Assert.assertEquals(false, conf.isCreateBindingsDir());
 
       Assert.assertEquals("max concurrent io", 17, conf.getPageMaxConcurrentIO());
+      Assert.assertEquals(104857600L, conf.getPageCacheMaxSizeBytes());
+      Assert.assertEquals(true, conf.isPageCacheOffHeap());
       Assert.assertEquals("somedir2", conf.getJournalDirectory());
       Assert.assertEquals(false, conf.isCreateJournalDir());
       Assert.assertEquals(JournalType.NIO, conf.getJournalType());
       Assert.assertEquals(10000, conf.getJournalBufferSize_NIO());
       Assert.assertEquals(1000, conf.getJournalBufferTimeout_NIO());
+      Assert.assertEquals(true, conf.isJournalBufferLockFree());
       Assert.assertEquals(56546, conf.getJournalMaxIO_NIO());
 
       Assert.assertEquals(false, conf.isJournalSyncTransactional());
@@ -217,6 +220,9 @@ public class FileConfigurationTest extends ConfigurationImplTest
             assertEquals("max retry interval", 10002, bc.getMaxRetryInterval());
             Assert.assertEquals(2, bc.getReconnectAttempts());
             Assert.assertEquals(true, bc.isUseDuplicateDetection());
+            Assert.assertEquals(65536, bc.getProducerBatchSize());
+            Assert.assertEquals(20, bc.getProducerBatchLinger());
+            Assert.assertEquals(true, bc.isCompressBatches());
             Assert.assertEquals("connector1", bc.getStaticConnectors().get(0));
             Assert.assertEquals(null, bc.getDiscoveryGroupName());
          }
@@ -234,6 +240,8 @@ public class FileConfigurationTest extends ConfigurationImplTest
 
       Assert.assertEquals(2, conf.getClusterConfigurations().size());
       Assert.assertEquals("replication cluster name", "cluster-connection1", conf.getReplicationClustername());
+      Assert.assertEquals(65536, conf.getReplicationBatchSize());
+      Assert.assertEquals(4, conf.getReplicationSyncThreads());
 
       for (ClusterConnectionConfiguration ccc : conf.getClusterConfigurations())
       {
@@ -253,6 +261,9 @@ public class FileConfigurationTest extends ConfigurationImplTest
             assertEquals("multiplier", 0.25, ccc.getRetryIntervalMultiplier(), 0.00001);
             assertEquals("max retry interval", 10000, ccc.getMaxRetryInterval());
             assertEquals(72, ccc.getReconnectAttempts());
+            Assert.assertEquals(true, ccc.isLoadAwareRouting());
+            Assert.assertEquals(500, ccc.getLoadReportPeriod());
+            Assert.assertEquals(1000, ccc.getBacklogRedistributionThreshold());
             Assert.assertEquals("connector1", ccc.getStaticConnectors().get(0));
             Assert.assertEquals("connector2", ccc.getStaticConnectors().get(1));
             Assert.assertEquals(null, ccc.getDiscoveryGroupName());
@@ -243,6 +243,83 @@ public class FilterTest extends SilentTestCase
 
    }
 
+   @Test
+   public void testIndexPredicate() throws Exception
+   {
+      FilterImpl filterImpl = (FilterImpl)FilterImpl.createFilter("region = 'EU' AND type IN ('X', 'Y')");
+      Assert.assertEquals(new SimpleString("region"), filterImpl.getIndexProperty());
+      Assert.assertEquals(1, filterImpl.getIndexValues().size());
+      Assert.assertTrue(filterImpl.getIndexValues().contains(new SimpleString("EU")));
+
+      filterImpl = (FilterImpl)FilterImpl.createFilter("'EU' = region AND price > 10");
+      Assert.assertEquals(new SimpleString("region"), filterImpl.getIndexProperty());
+
+      filterImpl = (FilterImpl)FilterImpl.createFilter("type IN ('X', 'Y') AND (price > 10 OR region = 'EU')");
+      Assert.assertEquals(new SimpleString("type"), filterImpl.getIndexProperty());
+      Assert.assertEquals(2, filterImpl.getIndexValues().size());
+
+      // none of these predicates has to be true for the filter to match
+      Assert.assertNull(((FilterImpl)FilterImpl.createFilter("region = 'EU' OR type = 'X'")).getIndexProperty());
+      Assert.assertNull(((FilterImpl)FilterImpl.createFilter("NOT region = 'EU'")).getIndexProperty());
+      Assert.assertNull(((FilterImpl)FilterImpl.createFilter("region NOT IN ('EU')")).getIndexProperty());
+      Assert.assertNull(((FilterImpl)FilterImpl.createFilter("price = 10")).getIndexProperty());
+      Assert.assertNull(((FilterImpl)FilterImpl.createFilter("HQPriority = 'EU'")).getIndexProperty());
+   }
+
+   @Test
+   public void testCompiledMatchesInterpreted() throws Exception
+   {
+      String[] filters = {"region = 'EU' AND type IN ('X', 'Y')",
+                          "NOT (region = 'EU' OR price > 10)",
+                          "price BETWEEN 2 AND 5.5",
+                          "price NOT BETWEEN -1 AND 3",
+                          "price >= 2.5 AND price <> 4",
+                          "HQPriority > 3 AND HQDurable = 'DURABLE'",
+                          "region LIKE 'E_' OR type LIKE 'X!%%' ESCAPE '!'",
+                          "region IS NULL OR flag",
+                          "type NOT IN ('X') AND price < 3",
+                          "region = price"};
+
+      ServerMessage[] messages = new ServerMessage[6];
+      for (int i = 0; i < messages.length; i++)
+      {
+         messages[i] = new ServerMessageImpl(i, 1000);
+         messages[i].setPriority((byte)i);
+         messages[i].setDurable(i % 2 == 0);
+      }
+      messages[0].putStringProperty("region", "EU");
+      messages[0].putStringProperty("type", "X");
+      messages[0].putIntProperty("price", 4);
+      messages[1].putStringProperty("region", "US");
+      messages[1].putStringProperty("type", "X%");
+      messages[1].putDoubleProperty("price", 2.5);
+      messages[2].putBooleanProperty("flag", true);
+      messages[2].putLongProperty("price", -1);
+      messages[3].putStringProperty("type", "Y");
+      messages[3].putFloatProperty("price", 5.5f);
+      messages[4].putIntProperty("region", 3);
+      messages[4].putStringProperty("price", "3");
+      messages[5].putBooleanProperty("flag", false);
+      messages[5].putShortProperty("price", (short)3);
+
+      for (String filterString : filters)
+      {
+         FilterImpl compiled = (FilterImpl)FilterImpl.createFilter(new SimpleString(filterString), true);
+         FilterImpl interpreted = (FilterImpl)FilterImpl.createFilter(new SimpleString(filterString), false);
+
+         Assert.assertTrue(filterString, compiled.isCompiled());
+         Assert.assertFalse(filterString, interpreted.isCompiled());
+
+         for (ServerMessage msg : messages)
+         {
+            Assert.assertEquals(filterString + " on " + msg, interpreted.match(msg), compiled.match(msg));
+         }
+      }
+
+      // arithmetic is interpreted
+      Assert.assertFalse(((FilterImpl)FilterImpl.createFilter(new SimpleString("price * 2 > 3"), true)).isCompiled());
+   }
+
    @Test
    public void testNOT_INWithNullProperty() throws Exception
    {
@@ -77,6 +77,7 @@ import org.hornetq.core.journal.impl.NIOSequentialFileFactory;
 import org.hornetq.core.persistence.impl.journal.DescribeJournal;
 import org.hornetq.core.persistence.impl.journal.DescribeJournal.ReferenceDescribe;
 import org.hornetq.core.persistence.impl.journal.JournalRecordIds;
+import org.hornetq.core.persistence.impl.journal.JournalStorageManager.RefsEncoding;
 import org.hornetq.core.persistence.impl.journal.OperationContextImpl;
 import org.hornetq.core.postoffice.Binding;
 import org.hornetq.core.postoffice.Bindings;
@@ -1617,6 +1618,23 @@ public abstract class UnitTestCase extends CoreUnitTestCase
                count.incrementAndGet();
             }
          }
+         else if (info.getUserRecordType() == JournalRecordIds.ADD_REFS)
+         {
+            // a message routed to several queues keeps their references in one record
+            for (long queueID : ((RefsEncoding)o).queueIDs)
+            {
+               AtomicInteger count = messageRefCounts.get(queueID);
+               if (count == null)
+               {
+                  count = new AtomicInteger(1);
+                  messageRefCounts.put(queueID, count);
+               }
+               else
+               {
+                  count.incrementAndGet();
+               }
+            }
+         }
       }
 
       messagesJournal.stop();
@@ -14,12 +14,15 @@ package org.hornetq.tests.integration.client;
 
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 
 import org.junit.Assert;
 
 import org.hornetq.api.core.HornetQException;
+import org.hornetq.api.core.Interceptor;
 import org.hornetq.api.core.SimpleString;
 import org.hornetq.api.core.client.ClientConsumer;
 import org.hornetq.api.core.client.ClientMessage;
@@ -29,8 +32,12 @@ import org.hornetq.api.core.client.ClientSessionFactory;
 import org.hornetq.api.core.client.MessageHandler;
 import org.hornetq.api.core.client.ServerLocator;
 import org.hornetq.core.client.impl.ClientSessionInternal;
+import org.hornetq.core.protocol.core.Packet;
+import org.hornetq.core.protocol.core.impl.PacketImpl;
+import org.hornetq.core.protocol.core.impl.wireformat.SessionIndividualAcknowledgeBatchMessage;
 import org.hornetq.core.server.HornetQServer;
 import org.hornetq.core.server.Queue;
+import org.hornetq.spi.core.protocol.RemotingConnection;
 import org.hornetq.tests.integration.IntegrationTestLogger;
 import org.hornetq.tests.util.ServiceTestBase;
 
@@ -318,4 +325,122 @@ public class AcknowledgeTest extends ServiceTestBase
          session.close();
    }
 
+   @Test
+   public void testIndividualAckBatched() throws Exception
+   {
+      HornetQServer server = createServer(false);
+      server.start();
+
+      final List<SessionIndividualAcknowledgeBatchMessage> batches = new ArrayList<SessionIndividualAcknowledgeBatchMessage>();
+      server.getRemotingService().addIncomingInterceptor(new Interceptor()
+      {
+         public boolean intercept(final Packet packet, final RemotingConnection connection) throws HornetQException
+         {
+            if (packet.getType() == PacketImpl.SESS_INDIVIDUAL_ACKNOWLEDGE)
+            {
+               Assert.fail("the acks should be batched");
+            }
+            if (packet.getType() == PacketImpl.SESS_INDIVIDUAL_ACKNOWLEDGE_BATCH)
+            {
+               batches.add((SessionIndividualAcknowledgeBatchMessage)packet);
+            }
+            return true;
+         }
+      });
+
+      ServerLocator locator = createInVMNonHALocator();
+      locator.setBlockOnAcknowledge(true);
+      locator.setAckBatchSize(1024 * 1024);
+      ClientSessionFactory cf = createSessionFactory(locator);
+      ClientSession sendSession = cf.createSession(false, true, true);
+      ClientSession session = cf.createSession(false, true, true);
+      sendSession.createQueue(addressA, queueA, false);
+      ClientProducer cp = sendSession.createProducer(addressA);
+      ClientConsumer cc = session.createConsumer(queueA);
+      int numMessages = 100;
+      for (int i = 0; i < numMessages; i++)
+      {
+         cp.send(sendSession.createMessage(false));
+      }
+      session.start();
+      ClientMessage[] messages = new ClientMessage[numMessages];
+      for (int i = 0; i < numMessages; i++)
+      {
+         messages[i] = cc.receive(5000);
+         Assert.assertNotNull(messages[i]);
+      }
+
+      // the odd ones, out of order
+      for (int i = numMessages - 1; i >= 0; i -= 2)
+      {
+         messages[i].individualAcknowledge();
+      }
+
+      Queue q = (Queue)server.getPostOffice().getBinding(queueA).getBindable();
+      Assert.assertEquals(numMessages, q.getDeliveringCount());
+      Assert.assertEquals(0, batches.size());
+
+      // sent before the acks of the even ones, which would acknowledge the odd ones too
+      messages[numMessages - 2].acknowledge();
+      session.commit();
+
+      Assert.assertEquals(1, batches.size());
+      Assert.assertEquals(numMessages / 2, batches.get(0).getMessageIDs().length);
+      Assert.assertEquals(messages[numMessages - 1].getMessageID(), batches.get(0).getMessageIDs()[0]);
+      Assert.assertEquals(0, q.getDeliveringCount());
+      Assert.assertEquals(0, q.getMessageCount());
+
+      sendSession.close();
+      session.close();
+   }
+
+   @Test
+   public void testIndividualAckBatchedOnBatchSize() throws Exception
+   {
+      HornetQServer server = createServer(false);
+      server.start();
+      ServerLocator locator = createInVMNonHALocator();
+      locator.setBlockOnAcknowledge(true);
+      ClientSessionFactory cf = createSessionFactory(locator);
+      ClientSession sendSession = cf.createSession(false, true, true);
+      ClientSession session = cf.createSession(false, true, true);
+      sendSession.createQueue(addressA, queueA, false);
+      ClientProducer cp = sendSession.createProducer(addressA);
+      ClientConsumer cc = session.createConsumer(queueA);
+      int numMessages = 100;
+      for (int i = 0; i < numMessages; i++)
+      {
+         cp.send(sendSession.createMessage(false));
+      }
+      session.start();
+      ClientMessage[] messages = new ClientMessage[numMessages];
+      for (int i = 0; i < numMessages; i++)
+      {
+         messages[i] = cc.receive(5000);
+         Assert.assertNotNull(messages[i]);
+      }
+      session.close();
+
+      // the acks are sent once they reach the size of ten messages
+      session = cf.createSession(null, null, false, true, true, false, messages[0].getEncodeSize() * 10);
+      cc = session.createConsumer(queueA);
+      session.start();
+      for (int i = 0; i < numMessages; i++)
+      {
+         messages[i] = cc.receive(5000);
+         Assert.assertNotNull(messages[i]);
+      }
+
+      Queue q = (Queue)server.getPostOffice().getBinding(queueA).getBindable();
+      for (int i = 0; i < numMessages; i++)
+      {
+         messages[i].individualAcknowledge();
+         Assert.assertEquals(numMessages - (i + 1) / 10 * 10, q.getDeliveringCount());
+      }
+      Assert.assertEquals(0, q.getMessageCount());
+
+      sendSession.close();
+      session.close();
+   }
+
 }
@@ -18,6 +18,7 @@ import org.junit.After;
 import org.junit.Test;
 
 import java.lang.management.ManagementFactory;
+import java.nio.channels.FileChannel;
 import java.util.LinkedList;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executor;
@@ -70,6 +71,7 @@ import org.hornetq.spi.core.security.HornetQSecurityManager;
 import org.hornetq.spi.core.security.HornetQSecurityManagerImpl;
 import org.hornetq.tests.util.ServiceTestBase;
 import org.hornetq.utils.ExecutorFactory;
+import org.hornetq.utils.ReferenceCounter;
 import org.hornetq.utils.ReusableLatch;
 
 /**
@@ -585,6 +587,22 @@ public class HangConsumerTest extends ServiceTestBase
          return targetCallback.sendLargeMessageContinuation(consumerID, body, continues, requiresResponse);
       }
 
+      /* (non-Javadoc)
+       * @see org.hornetq.spi.core.protocol.SessionCallback#sendLargeMessageContinuation(long, java.nio.channels.FileChannel, org.hornetq.utils.ReferenceCounter, long, int, boolean, boolean)
+       */
+      @Override
+      public int sendLargeMessageContinuation(long consumerID,
+                                              FileChannel file,
+                                              ReferenceCounter fileReferences,
+                                              long position,
+                                              int count,
+                                              boolean continues,
+                                              boolean requiresResponse)
+      {
+         return targetCallback.sendLargeMessageContinuation(consumerID, file, fileReferences, position, count,
+                                                            continues, requiresResponse);
+      }
+
       /* (non-Javadoc)
        * @see org.hornetq.spi.core.protocol.SessionCallback#closed()
        */
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2009 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.hornetq.tests.integration.client;
+
+import org.hornetq.api.core.SimpleString;
+import org.hornetq.api.core.client.ClientConsumer;
+import org.hornetq.api.core.client.ClientMessage;
+import org.hornetq.api.core.client.ClientProducer;
+import org.hornetq.api.core.client.ClientSession;
+import org.hornetq.api.core.client.ClientSessionFactory;
+import org.hornetq.api.core.client.ServerLocator;
+import org.hornetq.core.server.HornetQServer;
+import org.hornetq.tests.util.ServiceTestBase;
+import org.hornetq.tests.util.UnitTestCase;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Delivers large messages over Netty, their bodies transferred from the files to the socket, while
+ * the session receiving them blocks on its acknowledgements.
+ */
+public class LargeMessageFileRegionTest extends ServiceTestBase
+{
+   private static final SimpleString ADDRESS = new SimpleString("address");
+
+   private static final SimpleString QUEUE_A = new SimpleString("queueA");
+
+   private static final SimpleString QUEUE_B = new SimpleString("queueB");
+
+   private static final int NUM_MESSAGES = 20;
+
+   private static final int MESSAGE_SIZE = 200 * 1024;
+
+   @Test
+   public void testBlockingAcknowledgementsWhileStreaming() throws Exception
+   {
+      HornetQServer server = createServer(true, true);
+      server.start();
+
+      ServerLocator locator = createNettyNonHALocator();
+      locator.setBlockOnAcknowledge(true);
+      locator.setMinLargeMessageSize(10 * 1024);
+      ClientSessionFactory sf = createSessionFactory(locator);
+      ClientSession session = addClientSession(sf.createSession(false, true, true));
+      session.createQueue(ADDRESS, QUEUE_A, true);
+      session.createQueue(ADDRESS, QUEUE_B, true);
+
+      ClientProducer producer = session.createProducer(ADDRESS);
+      for (int i = 0; i < NUM_MESSAGES; i++)
+      {
+         ClientMessage message = session.createMessage(true);
+         message.setBodyInputStream(UnitTestCase.createFakeLargeStream(MESSAGE_SIZE));
+         producer.send(message);
+      }
+
+      // both consumers are sent the chunks of their next messages on the channel of the session
+      // while it waits for the responses to the acknowledgements
+      ClientConsumer consumerA = session.createConsumer(QUEUE_A);
+      ClientConsumer consumerB = session.createConsumer(QUEUE_B);
+      session.start();
+
+      for (int i = 0; i < NUM_MESSAGES; i++)
+      {
+         receiveAndAcknowledge(consumerA);
+         receiveAndAcknowledge(consumerB);
+      }
+
+      Assert.assertNull(consumerA.receiveImmediate());
+      Assert.assertNull(consumerB.receiveImmediate());
+
+      session.close();
+   }
+
+   private void receiveAndAcknowledge(final ClientConsumer consumer) throws Exception
+   {
+      ClientMessage message = consumer.receive(10000);
+      Assert.assertNotNull(message);
+      Assert.assertEquals(MESSAGE_SIZE, message.getBodySize());
+
+      for (int i = 0; i < MESSAGE_SIZE; i++)
+      {
+         Assert.assertEquals(UnitTestCase.getSamplebyte(i), message.getBodyBuffer().readByte());
+      }
+
+      message.acknowledge();
+   }
+}
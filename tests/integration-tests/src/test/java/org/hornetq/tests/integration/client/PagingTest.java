@@ -17,6 +17,7 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
@@ -55,6 +56,7 @@ import org.hornetq.core.journal.impl.NIOSequentialFileFactory;
 import org.hornetq.core.paging.PagedMessage;
 import org.hornetq.core.paging.PagingManager;
 import org.hornetq.core.paging.PagingStore;
+import org.hornetq.core.paging.cursor.PageCacheManager;
 import org.hornetq.core.paging.cursor.PageCursorProvider;
 import org.hornetq.core.paging.cursor.impl.PagePositionImpl;
 import org.hornetq.core.paging.impl.Page;
@@ -63,6 +65,7 @@ import org.hornetq.core.persistence.impl.journal.DescribeJournal;
 import org.hornetq.core.persistence.impl.journal.DescribeJournal.ReferenceDescribe;
 import org.hornetq.core.persistence.impl.journal.JournalRecordIds;
 import org.hornetq.core.persistence.impl.journal.JournalStorageManager.AckDescribe;
+import org.hornetq.core.persistence.impl.journal.JournalStorageManager.RefsEncoding;
 import org.hornetq.core.persistence.impl.journal.OperationContextImpl;
 import org.hornetq.core.server.HornetQServer;
 import org.hornetq.core.server.Queue;
@@ -863,6 +866,16 @@ public class PagingTest extends ServiceTestBase
                deletedQueueReferences.add(new Long(info.id));
             }
          }
+         else if (info.getUserRecordType() == JournalRecordIds.ADD_REFS)
+         {
+            for (long queueID : ((RefsEncoding)DescribeJournal.newObjectEncoding(info)).queueIDs)
+            {
+               if (queueID == deletedQueueID)
+               {
+                  deletedQueueReferences.add(new Long(info.id));
+               }
+            }
+         }
          else if (info.getUserRecordType() == JournalRecordIds.ACKNOWLEDGE_REF)
          {
             AckDescribe ref = (AckDescribe)DescribeJournal.newObjectEncoding(info);
@@ -3224,6 +3237,110 @@ public class PagingTest extends ServiceTestBase
       assertEquals(0, errors.get());
    }
 
+   @Test
+   public void testPageCacheOffHeap() throws Exception
+   {
+      clearDataRecreateServerDirs();
+
+      Configuration config = createDefaultConfig();
+      config.setJournalSyncNonTransactional(false);
+      config.setPageCacheOffHeap(true);
+      // room for a couple of pages only, so the pages are read again after being evicted
+      config.setPageCacheMaxSizeBytes(PagingTest.PAGE_SIZE * 2);
+
+      server = createServer(true,
+         config,
+         PagingTest.PAGE_SIZE,
+         PagingTest.PAGE_MAX,
+         new HashMap<String, AddressSettings>());
+
+      server.start();
+
+      final int numberOfMessages = 1000;
+      final int largeMessageSize = 20 * 1024;
+
+      locator.setBlockOnNonDurableSend(true);
+      locator.setBlockOnDurableSend(true);
+      locator.setBlockOnAcknowledge(true);
+      locator.setMinLargeMessageSize(10 * 1024);
+
+      sf = createSessionFactory(locator);
+
+      ClientSession session = sf.createSession(false, false, false);
+
+      session.createQueue(PagingTest.ADDRESS, PagingTest.ADDRESS, null, true);
+
+      ClientProducer producer = session.createProducer(PagingTest.ADDRESS);
+
+      for (int i = 0; i < numberOfMessages; i++)
+      {
+         ClientMessage message = session.createMessage(true);
+         if (i % 100 == 0)
+         {
+            message.setBodyInputStream(createFakeLargeStream(largeMessageSize));
+         }
+         else
+         {
+            byte[] body = new byte[MESSAGE_SIZE];
+            Arrays.fill(body, (byte)i);
+            message.getBodyBuffer().writeBytes(body);
+         }
+         message.putIntProperty(new SimpleString("id"), i);
+         producer.send(message);
+         if (i % 100 == 0)
+         {
+            session.commit();
+         }
+      }
+
+      session.commit();
+
+      assertTrue(server.getPagingManager().getPageStore(ADDRESS).isPaging());
+
+      session.start();
+
+      ClientConsumer consumer = session.createConsumer(PagingTest.ADDRESS);
+
+      for (int i = 0; i < numberOfMessages; i++)
+      {
+         ClientMessage message = consumer.receive(5000);
+         assertNotNull(message);
+         assertEquals(i, message.getIntProperty("id").intValue());
+         if (i % 100 == 0)
+         {
+            assertEquals(largeMessageSize, message.getBodySize());
+            for (int j = 0; j < largeMessageSize; j++)
+            {
+               assertEquals(getSamplebyte(j), message.getBodyBuffer().readByte());
+            }
+         }
+         else
+         {
+            byte[] body = new byte[MESSAGE_SIZE];
+            message.getBodyBuffer().readBytes(body);
+            for (byte b : body)
+            {
+               assertEquals((byte)i, b);
+            }
+         }
+         message.acknowledge();
+         if (i % 100 == 0)
+         {
+            session.commit();
+         }
+      }
+
+      session.commit();
+
+      assertNull(consumer.receiveImmediate());
+
+      PageCacheManager pageCacheManager = server.getPagingManager().getPageCacheManager();
+      assertTrue(pageCacheManager.isOffHeap());
+      assertTrue(pageCacheManager.getEvictions() > 0);
+
+      session.close();
+   }
+
    @Test
    public void testPageOnSchedulingNoRestart() throws Exception
    {
@@ -3615,6 +3732,95 @@ public class PagingTest extends ServiceTestBase
       session.close();
    }
 
+   /**
+    * With large pages the ACK records of a page are replaced by a single record of all its ACKs
+    * while it is consumed, they need to be reloaded the same way.
+    */
+   @Test
+   public void testPartialConsumeLargePage() throws Exception
+   {
+      clearDataRecreateServerDirs();
+
+      Configuration config = createDefaultConfig();
+
+      final int pageSize = 512 * 1024;
+
+      final int maxSize = 1024 * 1024;
+
+      server = createServer(true, config, pageSize, maxSize, new HashMap<String, AddressSettings>());
+
+      server.start();
+
+      final int numberOfMessages = 2000;
+
+      final int consumed = 1533;
+
+      locator.setBlockOnNonDurableSend(true);
+      locator.setBlockOnDurableSend(true);
+      locator.setBlockOnAcknowledge(true);
+
+      sf = createSessionFactory(locator);
+      ClientSession session = sf.createSession(null, null, false, false, false, false, 0);
+
+      session.createQueue(PagingTest.ADDRESS, PagingTest.ADDRESS, null, true);
+
+      ClientProducer producer = session.createProducer(PagingTest.ADDRESS);
+
+      for (int i = 0; i < numberOfMessages; i++)
+      {
+         ClientMessage message = session.createMessage(true);
+         message.getBodyBuffer().writeBytes(new byte[1024]);
+         message.putIntProperty(new SimpleString("id"), i);
+         producer.send(message);
+      }
+
+      session.commit();
+
+      ClientConsumer consumer = session.createConsumer(PagingTest.ADDRESS);
+
+      session.start();
+      for (int i = 0; i < consumed; i++)
+      {
+         ClientMessage msg = consumer.receive(5000);
+         Assert.assertNotNull(msg);
+         assertEquals(i, msg.getIntProperty("id").intValue());
+         msg.acknowledge();
+         session.commit();
+      }
+
+      session.close();
+
+      locator.close();
+
+      server.stop();
+
+      server = createServer(true, config, pageSize, maxSize, new HashMap<String, AddressSettings>());
+
+      server.start();
+
+      locator = createInVMNonHALocator();
+
+      sf = createSessionFactory(locator);
+
+      session = sf.createSession(null, null, false, false, false, false, 0);
+
+      consumer = session.createConsumer(PagingTest.ADDRESS);
+
+      session.start();
+      for (int i = consumed; i < numberOfMessages; i++)
+      {
+         ClientMessage msg = consumer.receive(5000);
+         Assert.assertNotNull(msg);
+         assertEquals(i, msg.getIntProperty("id").intValue());
+         msg.acknowledge();
+         session.commit();
+      }
+
+      assertNull(consumer.receiveImmediate());
+
+      session.close();
+   }
+
    @Test
    public void testPageMultipleDestinations() throws Exception
    {
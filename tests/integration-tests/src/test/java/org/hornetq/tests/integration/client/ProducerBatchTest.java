@@ -0,0 +1,448 @@
+/*
+ * Copyright 2009 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.hornetq.tests.integration.client;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.hornetq.api.core.HornetQException;
+import org.hornetq.api.core.Interceptor;
+import org.hornetq.api.core.Message;
+import org.hornetq.api.core.SimpleString;
+import org.hornetq.api.core.client.ClientConsumer;
+import org.hornetq.api.core.client.ClientMessage;
+import org.hornetq.api.core.client.ClientProducer;
+import org.hornetq.api.core.client.ClientSession;
+import org.hornetq.api.core.client.ClientSessionFactory;
+import org.hornetq.api.core.client.SendAcknowledgementHandler;
+import org.hornetq.api.core.client.ServerLocator;
+import org.hornetq.core.protocol.core.Packet;
+import org.hornetq.core.protocol.core.impl.PacketImpl;
+import org.hornetq.core.security.Role;
+import org.hornetq.core.server.HornetQServer;
+import org.hornetq.spi.core.security.HornetQSecurityManager;
+import org.hornetq.spi.core.protocol.RemotingConnection;
+import org.hornetq.tests.util.ServiceTestBase;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the batching of the messages sent asynchronously by a producer.
+ */
+public class ProducerBatchTest extends ServiceTestBase
+{
+   private static final SimpleString addressA = new SimpleString("addressA");
+
+   private static final SimpleString addressB = new SimpleString("addressB");
+
+   private HornetQServer server;
+
+   private ServerLocator locator;
+
+   private final AtomicInteger batches = new AtomicInteger();
+
+   private final AtomicInteger sends = new AtomicInteger();
+
+   @Override
+   @Before
+   public void setUp() throws Exception
+   {
+      super.setUp();
+
+      server = createServer(false);
+      server.start();
+      server.getRemotingService().addIncomingInterceptor(new Interceptor()
+      {
+         public boolean intercept(final Packet packet, final RemotingConnection connection) throws HornetQException
+         {
+            if (packet.getType() == PacketImpl.SESS_SEND_BATCH)
+            {
+               batches.incrementAndGet();
+            }
+            else if (packet.getType() == PacketImpl.SESS_SEND)
+            {
+               sends.incrementAndGet();
+            }
+            return true;
+         }
+      });
+
+      locator = createInVMNonHALocator();
+   }
+
+   @Test
+   public void testBatchSize() throws Exception
+   {
+      int numMessages = 100;
+      locator.setProducerBatchSize(numMessages / 10 * getMessageEncodeSize());
+      locator.setProducerBatchLinger(-1);
+      ClientSessionFactory cf = createSessionFactory(locator);
+      ClientSession session = cf.createSession(false, true, true);
+      session.createQueue(addressA, addressA, false);
+      ClientProducer producer = session.createProducer(addressA);
+
+      for (int i = 0; i < numMessages; i++)
+      {
+         producer.send(createMessage(session, i));
+      }
+
+      receiveMessages(session, addressA, 0, numMessages);
+
+      Assert.assertEquals(0, sends.get());
+      Assert.assertEquals(numMessages / 10, batches.get());
+      session.close();
+   }
+
+   @Test
+   public void testBatchLinger() throws Exception
+   {
+      locator.setProducerBatchSize(1024 * 1024);
+      locator.setProducerBatchLinger(10);
+      ClientSessionFactory cf = createSessionFactory(locator);
+      ClientSession session = cf.createSession(false, true, true);
+      session.createQueue(addressA, addressA, false);
+      ClientProducer producer = session.createProducer(addressA);
+
+      for (int i = 0; i < 10; i++)
+      {
+         producer.send(createMessage(session, i));
+      }
+
+      // the producer is still open, the batch is sent once the linger time is over
+      receiveMessages(session, addressA, 0, 10);
+      Assert.assertEquals(1, batches.get());
+      Assert.assertEquals(0, sends.get());
+      session.close();
+   }
+
+   @Test
+   public void testBatchSentOnClose() throws Exception
+   {
+      locator.setProducerBatchSize(1024 * 1024);
+      locator.setProducerBatchLinger(-1);
+      ClientSessionFactory cf = createSessionFactory(locator);
+      ClientSession session = cf.createSession(false, true, true);
+      session.createQueue(addressA, addressA, false);
+      ClientProducer producer = session.createProducer(addressA);
+
+      for (int i = 0; i < 10; i++)
+      {
+         producer.send(createMessage(session, i));
+      }
+
+      Assert.assertEquals(0, getMessageCount(server.getPostOffice(), addressA.toString()));
+
+      producer.close();
+
+      receiveMessages(session, addressA, 0, 10);
+      Assert.assertEquals(1, batches.get());
+      session.close();
+   }
+
+   @Test
+   public void testBatchSentOnCommit() throws Exception
+   {
+      locator.setProducerBatchSize(1024 * 1024);
+      locator.setProducerBatchLinger(-1);
+      ClientSessionFactory cf = createSessionFactory(locator);
+      ClientSession session = cf.createSession(false, false, false);
+      session.createQueue(addressA, addressA, true);
+      ClientProducer producer = session.createProducer(addressA);
+
+      // durable messages are not sent blocking in a transaction, so they are batched too
+      for (int i = 0; i < 10; i++)
+      {
+         ClientMessage message = createMessage(session, i);
+         message.setDurable(true);
+         producer.send(message);
+      }
+      session.commit();
+
+      Assert.assertEquals(1, batches.get());
+      Assert.assertEquals(10, getMessageCount(server.getPostOffice(), addressA.toString()));
+
+      for (int i = 10; i < 20; i++)
+      {
+         producer.send(createMessage(session, i));
+      }
+      session.rollback();
+
+      Assert.assertEquals(2, batches.get());
+      Assert.assertEquals(10, getMessageCount(server.getPostOffice(), addressA.toString()));
+
+      receiveMessages(session, addressA, 0, 10);
+      session.commit();
+      session.close();
+   }
+
+   @Test
+   public void testBlockingSendKeepsOrder() throws Exception
+   {
+      locator.setProducerBatchSize(1024 * 1024);
+      locator.setProducerBatchLinger(-1);
+      locator.setBlockOnDurableSend(true);
+      ClientSessionFactory cf = createSessionFactory(locator);
+      ClientSession session = cf.createSession(false, true, true);
+      session.createQueue(addressA, addressA, false);
+      ClientProducer producer = session.createProducer(addressA);
+
+      for (int i = 0; i < 20; i++)
+      {
+         ClientMessage message = createMessage(session, i);
+         // every fifth message is sent blocking
+         message.setDurable(i % 5 == 4);
+         producer.send(message);
+      }
+
+      Assert.assertEquals(4, batches.get());
+      Assert.assertEquals(4, sends.get());
+
+      receiveMessages(session, addressA, 0, 20);
+      session.close();
+   }
+
+   @Test
+   public void testAnonymousProducer() throws Exception
+   {
+      locator.setProducerBatchSize(1024 * 1024);
+      locator.setProducerBatchLinger(-1);
+      ClientSessionFactory cf = createSessionFactory(locator);
+      ClientSession session = cf.createSession(false, true, true);
+      session.createQueue(addressA, addressA, false);
+      session.createQueue(addressB, addressB, false);
+      ClientProducer producer = session.createProducer();
+      // sent directly, the session doesn't send the address of the next messages to addressA
+      ClientMessage first = createMessage(session, -1);
+      first.setDurable(true);
+      session.createProducer(addressA).send(first);
+
+      for (int i = 0; i < 20; i++)
+      {
+         producer.send(i % 2 == 0 ? addressA : addressB, createMessage(session, i / 2));
+      }
+      producer.close();
+
+      receiveMessages(session, addressA, -1, 11);
+      receiveMessages(session, addressB, 0, 10);
+
+      Assert.assertEquals(1, batches.get());
+      Assert.assertEquals(1, sends.get());
+      session.close();
+   }
+
+   @Test
+   public void testRejectedMessageInBatch() throws Exception
+   {
+      ClientSession session = createSecuredSession(true);
+      ClientProducer producer = session.createProducer();
+
+      // the messages to addressB are rejected, the user can't send to it
+      for (int i = 0; i < 20; i++)
+      {
+         producer.send(i % 2 == 0 ? addressA : addressB, createMessage(session, i / 2));
+      }
+      producer.close();
+
+      Assert.assertEquals(1, batches.get());
+      receiveMessages(session, addressA, 0, 10);
+      Assert.assertEquals(0, getMessageCount(server.getPostOffice(), addressB.toString()));
+      session.close();
+   }
+
+   @Test
+   public void testRejectedMessageInTransactedBatch() throws Exception
+   {
+      ClientSession session = createSecuredSession(false);
+      ClientProducer producer = session.createProducer();
+
+      for (int i = 0; i < 20; i++)
+      {
+         producer.send(i % 2 == 0 ? addressA : addressB, createMessage(session, i / 2));
+      }
+
+      try
+      {
+         session.commit();
+         Assert.fail("the transaction should be rollback-only");
+      }
+      catch (HornetQException expected)
+      {
+         // expected
+      }
+
+      Assert.assertEquals(1, batches.get());
+      Assert.assertEquals(0, getMessageCount(server.getPostOffice(), addressA.toString()));
+      Assert.assertEquals(0, getMessageCount(server.getPostOffice(), addressB.toString()));
+      session.close();
+   }
+
+   @Test
+   public void testCompressedBatch() throws Exception
+   {
+      locator.setProducerBatchSize(1024 * 1024);
+      locator.setProducerBatchLinger(-1);
+      locator.setCompressProducerBatches(true);
+      ClientSessionFactory cf = createSessionFactory(locator);
+      ClientSession session = cf.createSession(false, true, true);
+      session.createQueue(addressA, addressA, false);
+      ClientProducer producer = session.createProducer(addressA);
+
+      byte[] body = new byte[1000];
+      for (int i = 0; i < 100; i++)
+      {
+         ClientMessage message = createMessage(session, i);
+         message.getBodyBuffer().writeBytes(body);
+         producer.send(message);
+      }
+      producer.close();
+
+      ClientConsumer consumer = session.createConsumer(addressA);
+      session.start();
+      for (int i = 0; i < 100; i++)
+      {
+         ClientMessage message = consumer.receive(5000);
+         Assert.assertNotNull(message);
+         Assert.assertEquals(i, message.getIntProperty("i").intValue());
+         Assert.assertEquals(body.length, message.getBodySize());
+         message.acknowledge();
+      }
+      Assert.assertNull(consumer.receiveImmediate());
+      Assert.assertEquals(1, batches.get());
+      session.close();
+   }
+
+   @Test
+   public void testSendAcknowledgementHandler() throws Exception
+   {
+      locator.setProducerBatchSize(1024 * 1024);
+      locator.setProducerBatchLinger(-1);
+      locator.setConfirmationWindowSize(1024 * 1024);
+      ClientSessionFactory cf = createSessionFactory(locator);
+      ClientSession session = cf.createSession(false, true, true);
+      session.createQueue(addressA, addressA, false);
+      final List<Integer> acknowledged = Collections.synchronizedList(new ArrayList<Integer>());
+      session.setSendAcknowledgementHandler(new SendAcknowledgementHandler()
+      {
+         public void sendAcknowledged(final Message message)
+         {
+            acknowledged.add(message.getIntProperty("i"));
+         }
+      });
+      ClientProducer producer = session.createProducer(addressA);
+
+      int numMessages = 50;
+      for (int i = 0; i < numMessages; i++)
+      {
+         producer.send(createMessage(session, i));
+      }
+      producer.close();
+
+      long timeout = System.currentTimeMillis() + 5000;
+      while (acknowledged.size() < numMessages && System.currentTimeMillis() < timeout)
+      {
+         Thread.sleep(10);
+      }
+
+      Assert.assertEquals(1, batches.get());
+      Assert.assertEquals(numMessages, acknowledged.size());
+      for (int i = 0; i < numMessages; i++)
+      {
+         Assert.assertEquals(i, acknowledged.get(i).intValue());
+      }
+      session.close();
+   }
+
+   /**
+    * Restarts the server with security enabled, with a user allowed to send to addressA only.
+    */
+   private ClientSession createSecuredSession(final boolean autoCommitSends) throws Exception
+   {
+      server.stop();
+      server.getConfiguration().setSecurityEnabled(true);
+      server.start();
+
+      HornetQSecurityManager securityManager = server.getSecurityManager();
+      securityManager.addUser("auser", "pass");
+      securityManager.addRole("auser", "sender");
+      securityManager.addRole("auser", "receiver");
+      Set<Role> rolesA = new HashSet<Role>();
+      rolesA.add(new Role("sender", true, true, false, false, true, true, false));
+      server.getSecurityRepository().addMatch(addressA.toString(), rolesA);
+      Set<Role> rolesB = new HashSet<Role>();
+      rolesB.add(new Role("receiver", false, true, false, false, true, true, false));
+      server.getSecurityRepository().addMatch(addressB.toString(), rolesB);
+
+      // the interceptor of the server was removed with its remoting service
+      locator.addOutgoingInterceptor(new Interceptor()
+      {
+         public boolean intercept(final Packet packet, final RemotingConnection connection) throws HornetQException
+         {
+            if (packet.getType() == PacketImpl.SESS_SEND_BATCH)
+            {
+               batches.incrementAndGet();
+            }
+            return true;
+         }
+      });
+      locator.setProducerBatchSize(1024 * 1024);
+      locator.setProducerBatchLinger(-1);
+      ClientSessionFactory cf = createSessionFactory(locator);
+      ClientSession session = cf.createSession("auser", "pass", false, autoCommitSends, true, false, -1);
+      session.createQueue(addressA, addressA, false);
+      session.createQueue(addressB, addressB, false);
+      return session;
+   }
+
+   private ClientMessage createMessage(final ClientSession session, final int i)
+   {
+      ClientMessage message = session.createMessage(false);
+      message.putIntProperty("i", i);
+      return message;
+   }
+
+   private int getMessageEncodeSize() throws Exception
+   {
+      ClientSessionFactory cf = createSessionFactory(createInVMNonHALocator());
+      ClientSession session = cf.createSession(false, true, true);
+      ClientMessage message = createMessage(session, 0);
+      // the address is written with every message of a batch
+      message.setAddress(addressA);
+      int encodeSize = message.getEncodeSize();
+      session.close();
+      cf.close();
+      return encodeSize;
+   }
+
+   private void receiveMessages(final ClientSession session,
+                                final SimpleString queue,
+                                final int first,
+                                final int numMessages) throws Exception
+   {
+      ClientConsumer consumer = session.createConsumer(queue);
+      session.start();
+      for (int i = first; i < first + numMessages; i++)
+      {
+         ClientMessage message = consumer.receive(5000);
+         Assert.assertNotNull(message);
+         Assert.assertEquals(i, message.getIntProperty("i").intValue());
+         message.acknowledge();
+      }
+      Assert.assertNull(consumer.receiveImmediate());
+      consumer.close();
+   }
+}
@@ -44,6 +44,7 @@ import org.hornetq.core.config.CoreQueueConfiguration;
 import org.hornetq.core.postoffice.DuplicateIDCache;
 import org.hornetq.core.postoffice.impl.PostOfficeImpl;
 import org.hornetq.core.protocol.core.Packet;
+import org.hornetq.core.protocol.core.impl.PacketImpl;
 import org.hornetq.core.protocol.core.impl.wireformat.SessionSendContinuationMessage;
 import org.hornetq.core.protocol.core.impl.wireformat.SessionSendMessage;
 import org.hornetq.core.remoting.impl.invm.TransportConstants;
@@ -1642,6 +1643,165 @@ public class BridgeTest extends ServiceTestBase
       assertEquals(0, loadQueues(server0).size());
    }
 
+   @Test
+   public void testBatchedBridge() throws Exception
+   {
+      internaltestBatchedBridge(false);
+   }
+
+   @Test
+   public void testCompressedBatchedBridge() throws Exception
+   {
+      internaltestBatchedBridge(true);
+   }
+
+   public void internaltestBatchedBridge(final boolean compress) throws Exception
+   {
+      Map<String, Object> server0Params = new HashMap<String, Object>();
+      server0 = createClusteredServerWithParams(isNetty(), 0, true, server0Params);
+
+      Map<String, Object> server1Params = new HashMap<String, Object>();
+      addTargetParameters(server1Params);
+      server1 = createClusteredServerWithParams(isNetty(), 1, true, server1Params);
+
+      final String testAddress = "testAddress";
+      final String queueName0 = "queue0";
+      final String forwardAddress = "forwardAddress";
+      final String queueName1 = "queue1";
+
+      TransportConfiguration server0tc = new TransportConfiguration(getConnector(), server0Params);
+      TransportConfiguration server1tc = new TransportConfiguration(getConnector(), server1Params);
+
+      HashMap<String, TransportConfiguration> connectors = new HashMap<String, TransportConfiguration>();
+      connectors.put(server1tc.getName(), server1tc);
+      server0.getConfiguration().setConnectorConfigurations(connectors);
+
+      final int messageSize = 1024;
+
+      final int numMessages = 200;
+
+      ArrayList<String> connectorConfig = new ArrayList<String>();
+      connectorConfig.add(server1tc.getName());
+      BridgeConfiguration bridgeConfiguration = new BridgeConfiguration("bridge1",
+         queueName0,
+         forwardAddress,
+         null,
+         null,
+         HornetQClient.DEFAULT_MIN_LARGE_MESSAGE_SIZE,
+         HornetQClient.DEFAULT_CLIENT_FAILURE_CHECK_PERIOD,
+         HornetQClient.DEFAULT_CONNECTION_TTL,
+         1000,
+         HornetQClient.DEFAULT_MAX_RETRY_INTERVAL,
+         1d,
+         -1,
+         -1,
+         true,
+         numMessages * messageSize / 4,
+         connectorConfig,
+         false,
+         HornetQDefaultConfiguration.getDefaultClusterUser(),
+         HornetQDefaultConfiguration.getDefaultClusterPassword());
+      bridgeConfiguration.setProducerBatchSize(16 * messageSize);
+      bridgeConfiguration.setCompressBatches(compress);
+
+      List<BridgeConfiguration> bridgeConfigs = new ArrayList<BridgeConfiguration>();
+      bridgeConfigs.add(bridgeConfiguration);
+      server0.getConfiguration().setBridgeConfigurations(bridgeConfigs);
+
+      CoreQueueConfiguration queueConfig0 = new CoreQueueConfiguration(testAddress, queueName0, null, true);
+      List<CoreQueueConfiguration> queueConfigs0 = new ArrayList<CoreQueueConfiguration>();
+      queueConfigs0.add(queueConfig0);
+      server0.getConfiguration().setQueueConfigurations(queueConfigs0);
+
+      CoreQueueConfiguration queueConfig1 = new CoreQueueConfiguration(forwardAddress, queueName1, null, true);
+      List<CoreQueueConfiguration> queueConfigs1 = new ArrayList<CoreQueueConfiguration>();
+      queueConfigs1.add(queueConfig1);
+      server1.getConfiguration().setQueueConfigurations(queueConfigs1);
+
+      final AtomicInteger batches = new AtomicInteger();
+      server1.start();
+      server1.getRemotingService().addIncomingInterceptor(new Interceptor()
+      {
+         public boolean intercept(final Packet packet, final RemotingConnection connection) throws HornetQException
+         {
+            if (packet.getType() == PacketImpl.SESS_SEND_BATCH)
+            {
+               batches.incrementAndGet();
+            }
+            return true;
+         }
+      });
+      server0.start();
+
+      locator = addServerLocator(HornetQClient.createServerLocatorWithoutHA(server0tc, server1tc));
+      ClientSessionFactory sf0 = addSessionFactory(locator.createSessionFactory(server0tc));
+
+      ClientSessionFactory sf1 = addSessionFactory(locator.createSessionFactory(server1tc));
+
+      ClientSession session0 = sf0.createSession(false, true, true);
+
+      ClientSession session1 = sf1.createSession(false, true, true);
+
+      ClientProducer producer0 = session0.createProducer(new SimpleString(testAddress));
+
+      ClientConsumer consumer1 = session1.createConsumer(queueName1);
+
+      session1.start();
+
+      final byte[] bytes = new byte[messageSize];
+
+      final SimpleString propKey = new SimpleString("testkey");
+
+      for (int i = 0; i < numMessages; i++)
+      {
+         ClientMessage message = session0.createMessage(true);
+
+         message.putIntProperty(propKey, i);
+
+         message.getBodyBuffer().writeBytes(bytes);
+
+         producer0.send(message);
+      }
+
+      for (int i = 0; i < numMessages; i++)
+      {
+         ClientMessage message = consumer1.receive(5000);
+
+         Assert.assertNotNull(message);
+
+         Assert.assertEquals(i, message.getObjectProperty(propKey));
+
+         Assert.assertEquals(messageSize, message.getBodySize());
+
+         message.acknowledge();
+      }
+
+      Assert.assertNull(consumer1.receiveImmediate());
+
+      Assert.assertTrue(batches.get() > 0);
+
+      // the forwarded messages are acknowledged in bulk once their batch is confirmed
+      Queue queue0 = (Queue)server0.getPostOffice().getBinding(new SimpleString(queueName0)).getBindable();
+      long timeout = System.currentTimeMillis() + 5000;
+      while (queue0.getMessageCount() > 0 && System.currentTimeMillis() < timeout)
+      {
+         Thread.sleep(10);
+      }
+      Assert.assertEquals(0, queue0.getMessageCount());
+
+      session0.close();
+
+      session1.close();
+
+      sf0.close();
+
+      sf1.close();
+
+      closeFields();
+
+      assertEquals(0, loadQueues(server0).size());
+   }
+
    @Test
    public void testNullForwardingAddress() throws Exception
    {
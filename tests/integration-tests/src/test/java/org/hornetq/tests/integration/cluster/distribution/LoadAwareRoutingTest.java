@@ -0,0 +1,172 @@
+/*
+ * Copyright 2009 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.hornetq.tests.integration.cluster.distribution;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import org.hornetq.api.core.SimpleString;
+import org.hornetq.api.core.client.ClientMessage;
+import org.hornetq.core.config.ClusterConnectionConfiguration;
+import org.hornetq.core.postoffice.Binding;
+import org.hornetq.core.server.cluster.RemoteQueueBinding;
+import org.hornetq.tests.util.ServiceTestBase;
+
+/**
+ * Load balances the messages by the load the nodes report, and redistributes the backlog of a
+ * queue which has consumers.
+ */
+public class LoadAwareRoutingTest extends ClusterTestBase
+{
+   private static final String ADDRESS = "queues.testaddress";
+
+   @Override
+   @Before
+   public void setUp() throws Exception
+   {
+      super.setUp();
+
+      setupServer(0, isFileStorage(), isNetty());
+      setupServer(1, isFileStorage(), isNetty());
+
+      setupClusterConnection("cluster0", 0, 1, "queues", false, 1, isNetty(), false);
+      setupClusterConnection("cluster1", 1, 0, "queues", false, 1, isNetty(), false);
+   }
+
+   protected boolean isNetty()
+   {
+      return false;
+   }
+
+   @Test
+   public void testRouteAwayFromBacklog() throws Exception
+   {
+      configureLoad(true, -1);
+
+      startServers(0, 1);
+
+      setupSessionFactory(0, isNetty());
+      setupSessionFactory(1, isNetty());
+
+      createQueue(0, ADDRESS, "queue0", null, false);
+      createQueue(1, ADDRESS, "queue0", null, false);
+
+      waitForBindings(0, ADDRESS, 1, 0, false);
+      waitForBindings(1, ADDRESS, 1, 0, false);
+
+      // the consumer of node 1 doesn't acknowledge, its messages pile up
+      addConsumer(1, 1, "queue0", null);
+      waitForBindings(0, ADDRESS, 1, 1, false);
+
+      send(1, ADDRESS, 500, false, null);
+      waitForMessages(1, ADDRESS, 500);
+
+      addConsumer(0, 0, "queue0", null);
+      waitForBindings(1, ADDRESS, 1, 1, false);
+      waitForRemoteLoad(0, 500);
+
+      send(0, ADDRESS, 100, false, null);
+
+      int received = 0;
+      ClientMessage message;
+      while ((message = getConsumer(0).receive(500)) != null)
+      {
+         message.acknowledge();
+         received++;
+      }
+
+      // round robin would have sent half of them to node 1
+      assertTrue("received " + received + " on node 0", received > 75);
+
+      stopServers(0, 1);
+   }
+
+   @Test
+   public void testRedistributeBacklog() throws Exception
+   {
+      configureLoad(false, 100);
+
+      startServers(0, 1);
+
+      setupSessionFactory(0, isNetty());
+      setupSessionFactory(1, isNetty());
+
+      createQueue(0, ADDRESS, "queue0", null, false);
+      createQueue(1, ADDRESS, "queue0", null, false);
+
+      waitForBindings(0, ADDRESS, 1, 0, false);
+      waitForBindings(1, ADDRESS, 1, 0, false);
+
+      // the consumer of node 1 doesn't match any of the messages
+      addConsumer(1, 1, "queue0", "nomatch");
+      waitForBindings(0, ADDRESS, 1, 1, false);
+
+      send(1, ADDRESS, 500, false, null);
+      waitForMessages(1, ADDRESS, 500);
+
+      addConsumer(0, 0, "queue0", null);
+
+      int received = 0;
+      ClientMessage message;
+      while ((message = getConsumer(0).receive(5000)) != null)
+      {
+         message.acknowledge();
+         received++;
+      }
+
+      // the backlog is redistributed until node 1 is back under the threshold
+      assertTrue("received " + received + " on node 0", received >= 400);
+
+      stopServers(0, 1);
+   }
+
+   private void configureLoad(final boolean loadAwareRouting, final long backlogRedistributionThreshold)
+   {
+      for (int node = 0; node < 2; node++)
+      {
+         for (ClusterConnectionConfiguration config : getServer(node).getConfiguration().getClusterConfigurations())
+         {
+            config.setLoadAwareRouting(loadAwareRouting);
+            config.setLoadReportPeriod(100);
+            config.setBacklogRedistributionThreshold(backlogRedistributionThreshold);
+         }
+      }
+   }
+
+   /**
+    * Waits for the node to know the number of messages of the queue of the other node.
+    */
+   private void waitForRemoteLoad(final int node, final long messageCount) throws Exception
+   {
+      long timeout = System.currentTimeMillis() + ServiceTestBase.WAIT_TIMEOUT;
+
+      do
+      {
+         for (Binding binding : getServer(node).getPostOffice()
+                                               .getBindingsForAddress(new SimpleString(ADDRESS))
+                                               .getBindings())
+         {
+            if (binding instanceof RemoteQueueBinding &&
+                ((RemoteQueueBinding)binding).getMessageCount() == messageCount)
+            {
+               return;
+            }
+         }
+
+         Thread.sleep(10);
+      }
+      while (System.currentTimeMillis() < timeout);
+
+      fail("Timed out waiting for the load of the remote queue on node " + node);
+   }
+}
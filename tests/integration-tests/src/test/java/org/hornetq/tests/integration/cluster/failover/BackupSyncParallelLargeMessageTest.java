@@ -0,0 +1,37 @@
+package org.hornetq.tests.integration.cluster.failover;
+
+import org.junit.Test;
+
+import org.hornetq.core.replication.ReplicationManager;
+
+/**
+ * Synchronizes the backup with several threads, sending the journal, page and large message files
+ * in ranges.
+ */
+public class BackupSyncParallelLargeMessageTest extends BackupSyncLargeMessageTest
+{
+
+   @Override
+   protected void createConfigs() throws Exception
+   {
+      super.createConfigs();
+      liveConfig.setReplicationSyncThreads(4);
+   }
+
+   @Test
+   public void testSyncProgress() throws Exception
+   {
+      createProducerSendSomeMessages();
+      backupServer.start();
+      waitForRemoteBackup(sessionFactory, BACKUP_WAIT_TIME, true, backupServer.getServer());
+
+      ReplicationManager replicationManager = liveServer.getServer().getReplicationManager();
+      assertTrue(replicationManager.getSyncTotalFiles() > 0);
+      assertEquals(replicationManager.getSyncTotalFiles(), replicationManager.getSyncSentFiles());
+      assertEquals(replicationManager.getSyncTotalBytes(), replicationManager.getSyncSentBytes());
+
+      finishSyncAndFailover();
+      receiveMsgsInRange(0, getNumberOfMessages());
+      assertNoMoreMessages();
+   }
+}
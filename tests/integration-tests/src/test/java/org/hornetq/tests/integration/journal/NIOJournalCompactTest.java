@@ -1266,6 +1266,53 @@ public class NIOJournalCompactTest extends JournalImplTestBase
 
    }
 
+   @Test
+   public void testCompactStatistics() throws Exception
+   {
+      setup(2, 60 * 1024, false);
+
+      createJournal();
+      startJournal();
+      load();
+
+      Assert.assertEquals(0, journal.getCompactCount());
+      Assert.assertEquals(0, journal.getCompactBytesReclaimed());
+
+      for (int i = 0; i < 1000; i++)
+      {
+         add(i);
+         if (i > 0 && i % 100 == 0)
+         {
+            journal.forceMoveNextFile();
+         }
+      }
+
+      for (int i = 0; i < 1000; i++)
+      {
+         if (i % 100 != 0)
+         {
+            delete(i);
+         }
+      }
+
+      journal.forceMoveNextFile();
+
+      int filesBefore = journal.getDataFilesCount();
+
+      journal.testCompact();
+
+      Assert.assertEquals(1, journal.getCompactCount());
+      Assert.assertTrue(journal.getDataFilesCount() < filesBefore);
+      Assert.assertTrue(journal.getCompactBytesReclaimed() > 0);
+      Assert.assertEquals(0, journal.getCompactBytesReclaimed() % journal.getFileSize());
+      Assert.assertTrue(journal.getMaxCompactPauseTime() >= journal.getLastCompactPauseTime());
+
+      stopJournal();
+      createJournal();
+      startJournal();
+      loadAndCheck();
+   }
+
    @Test
    public void testLiveSize() throws Exception
    {
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2009 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.hornetq.tests.integration.journal;
+
+import org.hornetq.core.config.Configuration;
+import org.hornetq.core.server.HornetQServer;
+import org.hornetq.tests.util.ServiceTestBase;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * A server with a striped journal refuses to start if it could replicate its journal.
+ */
+public class StripedJournalConfigurationTest extends ServiceTestBase
+{
+   @Test
+   public void testReplicatingBackupRejected() throws Exception
+   {
+      Configuration config = createDefaultConfig();
+      config.setJournalStripes(4);
+      config.setSharedStore(false);
+      config.setBackup(true);
+
+      assertStartFails(config);
+   }
+
+   @Test
+   public void testReplicatingLiveRejected() throws Exception
+   {
+      Configuration config = createDefaultConfig();
+      config.setJournalStripes(4);
+      config.setSharedStore(false);
+      basicClusterConnectionConfig(config, "netty");
+
+      assertStartFails(config);
+   }
+
+   @Test
+   public void testStandaloneServer() throws Exception
+   {
+      Configuration config = createDefaultConfig();
+      config.setJournalStripes(4);
+      config.setSharedStore(false);
+
+      HornetQServer server = createServer(true, config);
+      server.start();
+      Assert.assertTrue(server.isStarted());
+      server.stop();
+   }
+
+   private void assertStartFails(final Configuration config) throws Exception
+   {
+      HornetQServer server = createServer(true, config);
+
+      try
+      {
+         server.start();
+         Assert.fail("a striped journal can't be replicated");
+      }
+      catch (IllegalArgumentException expected)
+      {
+         // expected
+      }
+
+      Assert.assertFalse(server.isStarted());
+   }
+}
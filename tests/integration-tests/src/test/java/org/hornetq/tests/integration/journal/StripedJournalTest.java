@@ -0,0 +1,300 @@
+/*
+ * Copyright 2009 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.tests.integration.journal;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.hornetq.core.journal.PreparedTransactionInfo;
+import org.hornetq.core.journal.RecordInfo;
+import org.hornetq.core.journal.impl.JournalImpl;
+import org.hornetq.core.journal.impl.NIOSequentialFileFactory;
+import org.hornetq.core.journal.impl.StripedJournal;
+import org.hornetq.tests.util.UnitTestCase;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * A StripedJournalTest
+ */
+public class StripedJournalTest extends UnitTestCase
+{
+   private static final int STRIPES = 4;
+
+   private static final byte RECORD_TYPE = 1;
+
+   private ExecutorService executor;
+
+   private StripedJournal journal;
+
+   @Override
+   @Before
+   public void setUp() throws Exception
+   {
+      super.setUp();
+
+      executor = Executors.newSingleThreadExecutor();
+
+      File dir = new File(getTestDir());
+      deleteDirectory(dir);
+      dir.mkdirs();
+   }
+
+   @Override
+   @After
+   public void tearDown() throws Exception
+   {
+      stopComponent(journal);
+
+      executor.shutdown();
+      executor.awaitTermination(10, TimeUnit.SECONDS);
+
+      super.tearDown();
+   }
+
+   @Test
+   public void testCommitAcrossStripes() throws Exception
+   {
+      journal = createJournal(STRIPES);
+      load(journal);
+
+      for (long id = 1; id <= 20; id++)
+      {
+         journal.appendAddRecordTransactional(100, id, RECORD_TYPE, new byte[]{(byte)id});
+      }
+      journal.appendCommitRecord(100, true);
+
+      journal.appendAddRecord(21, RECORD_TYPE, new byte[]{21}, true);
+      journal.appendUpdateRecord(5, RECORD_TYPE, new byte[]{55}, true);
+      journal.appendDeleteRecord(6, true);
+
+      restart(STRIPES);
+
+      List<RecordInfo> records = new ArrayList<RecordInfo>();
+      List<PreparedTransactionInfo> prepared = new ArrayList<PreparedTransactionInfo>();
+      journal.load(records, prepared, null);
+
+      Assert.assertEquals(0, prepared.size());
+      assertIds(records, 1, 2, 3, 4, 5, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16, 17, 18, 19, 20, 21);
+
+      // the records must still be known by their stripes
+      journal.appendDeleteRecord(7, true);
+      journal.appendUpdateRecord(8, RECORD_TYPE, new byte[]{88}, true);
+   }
+
+   @Test
+   public void testSingleStripeTransaction() throws Exception
+   {
+      journal = createJournal(STRIPES);
+      load(journal);
+
+      journal.appendAddRecordTransactional(100, 4, RECORD_TYPE, new byte[]{4});
+      journal.appendAddRecordTransactional(100, 8, RECORD_TYPE, new byte[]{8});
+      journal.appendCommitRecord(100, true);
+
+      journal.appendAddRecordTransactional(101, 12, RECORD_TYPE, new byte[]{12});
+      journal.appendRollbackRecord(101, true);
+
+      restart(STRIPES);
+
+      List<RecordInfo> records = new ArrayList<RecordInfo>();
+      journal.load(records, new ArrayList<PreparedTransactionInfo>(), null);
+
+      assertIds(records, 4, 8);
+      Assert.assertEquals(2, journal.getStripe(0).getNumberOfRecords());
+   }
+
+   @Test
+   public void testPartialCommitIsRolledForward() throws Exception
+   {
+      journal = createJournal(STRIPES);
+      load(journal);
+
+      // a crash after the commit record made it to stripe 1 but not to stripe 2
+      JournalImpl stripe1 = journal.getStripe(1);
+      JournalImpl stripe2 = journal.getStripe(2);
+      stripe1.appendAddRecordTransactional(100, 1, RECORD_TYPE, new byte[]{1});
+      stripe1.appendAddRecordTransactional(100, 100, StripedJournal.STRIPE_MARKER_RECORD, new byte[]{0});
+      stripe2.appendAddRecordTransactional(100, 2, RECORD_TYPE, new byte[]{2});
+      stripe2.appendAddRecordTransactional(100, 100, StripedJournal.STRIPE_MARKER_RECORD, new byte[]{0});
+      stripe1.appendPrepareRecord(100, new byte[0], true);
+      stripe2.appendPrepareRecord(100, new byte[0], true);
+      stripe1.appendCommitRecord(100, true);
+
+      restart(STRIPES);
+
+      List<RecordInfo> records = new ArrayList<RecordInfo>();
+      List<PreparedTransactionInfo> prepared = new ArrayList<PreparedTransactionInfo>();
+      journal.load(records, prepared, null);
+
+      Assert.assertEquals(0, prepared.size());
+      assertIds(records, 1, 2);
+
+      restart(STRIPES);
+
+      records.clear();
+      journal.load(records, prepared, null);
+
+      Assert.assertEquals(0, prepared.size());
+      assertIds(records, 1, 2);
+      Assert.assertEquals(2, journal.getNumberOfRecords());
+   }
+
+   @Test
+   public void testIncompleteCommitIsRolledBack() throws Exception
+   {
+      journal = createJournal(STRIPES);
+      load(journal);
+
+      // a crash after both stripes were prepared but before any commit record
+      JournalImpl stripe1 = journal.getStripe(1);
+      JournalImpl stripe2 = journal.getStripe(2);
+      stripe1.appendAddRecordTransactional(100, 1, RECORD_TYPE, new byte[]{1});
+      stripe1.appendAddRecordTransactional(100, 100, StripedJournal.STRIPE_MARKER_RECORD, new byte[]{0});
+      stripe2.appendAddRecordTransactional(100, 2, RECORD_TYPE, new byte[]{2});
+      stripe2.appendAddRecordTransactional(100, 100, StripedJournal.STRIPE_MARKER_RECORD, new byte[]{0});
+      stripe1.appendPrepareRecord(100, new byte[0], true);
+      stripe2.appendPrepareRecord(100, new byte[0], true);
+
+      restart(STRIPES);
+
+      List<RecordInfo> records = new ArrayList<RecordInfo>();
+      List<PreparedTransactionInfo> prepared = new ArrayList<PreparedTransactionInfo>();
+      journal.load(records, prepared, null);
+
+      Assert.assertEquals(0, prepared.size());
+      assertIds(records);
+   }
+
+   @Test
+   public void testXAPrepareAcrossStripes() throws Exception
+   {
+      journal = createJournal(STRIPES);
+      load(journal);
+
+      byte[] xid = new byte[]{1, 2, 3};
+
+      for (long id = 1; id <= 8; id++)
+      {
+         journal.appendAddRecordTransactional(100, id, RECORD_TYPE, new byte[]{(byte)id});
+      }
+      journal.appendPrepareRecord(100, xid, true);
+
+      restart(STRIPES);
+
+      List<RecordInfo> records = new ArrayList<RecordInfo>();
+      List<PreparedTransactionInfo> prepared = new ArrayList<PreparedTransactionInfo>();
+      journal.load(records, prepared, null);
+
+      assertIds(records);
+      Assert.assertEquals(1, prepared.size());
+      Assert.assertEquals(100, prepared.get(0).id);
+      assertEqualsByteArrays(xid, prepared.get(0).extraData);
+      assertIds(prepared.get(0).records, 1, 2, 3, 4, 5, 6, 7, 8);
+
+      journal.appendCommitRecord(100, true);
+
+      restart(STRIPES);
+
+      records.clear();
+      prepared.clear();
+      journal.load(records, prepared, null);
+
+      Assert.assertEquals(0, prepared.size());
+      assertIds(records, 1, 2, 3, 4, 5, 6, 7, 8);
+   }
+
+   @Test
+   public void testStripesCannotChange() throws Exception
+   {
+      journal = createJournal(STRIPES);
+      load(journal);
+
+      for (long id = 1; id <= 8; id++)
+      {
+         journal.appendAddRecord(id, RECORD_TYPE, new byte[]{(byte)id}, true);
+      }
+
+      journal.stop();
+      journal = createJournal(STRIPES - 1);
+
+      try
+      {
+         load(journal);
+         Assert.fail("Exception expected");
+      }
+      catch (IllegalStateException expected)
+      {
+         // expected
+      }
+   }
+
+   private StripedJournal createJournal(final int stripes) throws Exception
+   {
+      JournalImpl[] journals = new JournalImpl[stripes];
+      for (int i = 0; i < stripes; i++)
+      {
+         File dir = new File(getTestDir(), "stripe-" + i);
+         dir.mkdirs();
+         journals[i] = new JournalImpl(10 * 1024,
+                                       2,
+                                       0,
+                                       0,
+                                       new NIOSequentialFileFactory(dir.getPath(), true),
+                                       "hq",
+                                       "hq",
+                                       1);
+      }
+      StripedJournal striped = new StripedJournal(journals, executor);
+      striped.start();
+      return striped;
+   }
+
+   private void restart(final int stripes) throws Exception
+   {
+      journal.stop();
+      journal = createJournal(stripes);
+   }
+
+   private static void load(final StripedJournal journal) throws Exception
+   {
+      journal.load(new ArrayList<RecordInfo>(), new ArrayList<PreparedTransactionInfo>(), null);
+   }
+
+   private static void assertIds(final List<RecordInfo> records, final long... ids)
+   {
+      Set<Long> expected = new HashSet<Long>();
+      for (long id : ids)
+      {
+         expected.add(id);
+      }
+
+      Set<Long> actual = new HashSet<Long>();
+      for (RecordInfo record : records)
+      {
+         Assert.assertFalse("marker leaked " + record, record.userRecordType == StripedJournal.STRIPE_MARKER_RECORD);
+         actual.add(record.id);
+      }
+
+      Assert.assertEquals(expected, actual);
+   }
+}
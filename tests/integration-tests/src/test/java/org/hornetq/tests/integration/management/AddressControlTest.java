@@ -26,6 +26,7 @@ import org.junit.Assert;
 import org.hornetq.api.config.HornetQDefaultConfiguration;
 import org.hornetq.api.core.SimpleString;
 import org.hornetq.api.core.TransportConfiguration;
+import org.hornetq.api.core.client.ClientConsumer;
 import org.hornetq.api.core.client.ClientMessage;
 import org.hornetq.api.core.client.ClientProducer;
 import org.hornetq.api.core.client.ClientSession;
@@ -296,6 +297,65 @@ public class AddressControlTest extends ManagementTestBase
          Assert.assertEquals(1024, addressControl.getNumberOfBytesPerPage());
    }
 
+   @Test
+   public void testPagePrefetch() throws Exception
+   {
+      session.close();
+      server.stop();
+      server.getConfiguration().setPersistenceEnabled(true);
+
+      SimpleString address = RandomUtil.randomSimpleString();
+
+      AddressSettings addressSettings = new AddressSettings();
+      addressSettings.setPageSizeBytes(2 * 1024);
+      addressSettings.setMaxSizeBytes(10 * 1024);
+      addressSettings.setPagePrefetchDepth(2);
+
+      server.getAddressSettingsRepository().addMatch(address.toString(), addressSettings);
+      server.start();
+      ServerLocator locator2 =
+               HornetQClient.createServerLocatorWithoutHA(new TransportConfiguration(
+                                                                                     UnitTestCase.INVM_CONNECTOR_FACTORY));
+      addServerLocator(locator2);
+      ClientSessionFactory sf2 = createSessionFactory(locator2);
+
+      session = sf2.createSession(false, true, false);
+      session.createQueue(address, address, true);
+
+      final int numberOfMessages = 200;
+
+      ClientProducer producer = session.createProducer(address);
+      for (int i = 0; i < numberOfMessages; i++)
+      {
+         ClientMessage msg = session.createMessage(true);
+         msg.getBodyBuffer().writeBytes(new byte[512]);
+         msg.putIntProperty("i", i);
+         producer.send(msg);
+      }
+      session.commit();
+
+      AddressControl addressControl = createManagementControl(address);
+      Assert.assertTrue(addressControl.getNumberOfPages() > 10);
+      Assert.assertEquals(0, addressControl.getPrefetchedPages());
+
+      ClientConsumer consumer = session.createConsumer(address);
+      session.start();
+      for (int i = 0; i < numberOfMessages; i++)
+      {
+         ClientMessage msg = consumer.receive(5000);
+         Assert.assertNotNull(msg);
+         Assert.assertEquals(i, msg.getIntProperty("i").intValue());
+         msg.acknowledge();
+      }
+      session.commit();
+      Assert.assertNull(consumer.receiveImmediate());
+
+      Assert.assertTrue(addressControl.getPrefetchedPages() > 0);
+      Assert.assertTrue(addressControl.getPageCacheHits() > 0);
+      Assert.assertTrue(addressControl.getPageCacheMisses() >= 0);
+      Assert.assertTrue(addressControl.getPageReadStallTime() >= 0);
+   }
+
    // Package protected ---------------------------------------------
 
    // Protected -----------------------------------------------------
@@ -279,6 +279,21 @@ public class HornetQServerControlUsingCoreTest extends HornetQServerControlTest
             return (String)proxy.retrieveAttributeValue("pagingDirectory");
          }
 
+         public long getPageCacheSize()
+         {
+            return (Long)proxy.retrieveAttributeValue("PageCacheSize", Long.class);
+         }
+
+         public double getPageCacheHitRatio()
+         {
+            return ((Number)proxy.retrieveAttributeValue("PageCacheHitRatio")).doubleValue();
+         }
+
+         public long getPageCacheEvictions()
+         {
+            return (Long)proxy.retrieveAttributeValue("PageCacheEvictions", Long.class);
+         }
+
          public int getScheduledThreadPoolMaxSize()
          {
             return (Integer)proxy.retrieveAttributeValue("scheduledThreadPoolMaxSize");
@@ -314,6 +329,26 @@ public class HornetQServerControlUsingCoreTest extends HornetQServerControlTest
             return (Boolean)proxy.retrieveAttributeValue("backup");
          }
 
+         public long getReplicationSyncTotalBytes()
+         {
+            return (Long)proxy.retrieveAttributeValue("ReplicationSyncTotalBytes", Long.class);
+         }
+
+         public long getReplicationSyncSentBytes()
+         {
+            return (Long)proxy.retrieveAttributeValue("ReplicationSyncSentBytes", Long.class);
+         }
+
+         public int getReplicationSyncTotalFiles()
+         {
+            return (Integer)proxy.retrieveAttributeValue("ReplicationSyncTotalFiles", Integer.class);
+         }
+
+         public int getReplicationSyncSentFiles()
+         {
+            return (Integer)proxy.retrieveAttributeValue("ReplicationSyncSentFiles", Integer.class);
+         }
+
          public boolean isClustered()
          {
             return (Boolean)proxy.retrieveAttributeValue("clustered");
@@ -479,6 +514,26 @@ public class HornetQServerControlUsingCoreTest extends HornetQServerControlTest
             return (Integer)proxy.retrieveAttributeValue("JournalCompactPercentage");
          }
 
+         public long getJournalCompactCount()
+         {
+            return (Long)proxy.retrieveAttributeValue("JournalCompactCount", Long.class);
+         }
+
+         public long getJournalLastCompactPauseTime()
+         {
+            return (Long)proxy.retrieveAttributeValue("JournalLastCompactPauseTime", Long.class);
+         }
+
+         public long getJournalMaxCompactPauseTime()
+         {
+            return (Long)proxy.retrieveAttributeValue("JournalMaxCompactPauseTime", Long.class);
+         }
+
+         public long getJournalCompactBytesReclaimed()
+         {
+            return (Long)proxy.retrieveAttributeValue("JournalCompactBytesReclaimed", Long.class);
+         }
+
          public boolean isPersistenceEnabled()
          {
             return (Boolean)proxy.retrieveAttributeValue("PersistenceEnabled");
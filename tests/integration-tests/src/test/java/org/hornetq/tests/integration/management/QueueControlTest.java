@@ -1003,6 +1003,40 @@ public class QueueControlTest extends ManagementTestBase
       session.deleteQueue(queue);
    }
 
+   @Test
+   public void testRemoveMessageWithIndex() throws Exception
+   {
+      SimpleString address = RandomUtil.randomSimpleString();
+      SimpleString queue = RandomUtil.randomSimpleString();
+
+      AddressSettings addressSettings = new AddressSettings();
+      addressSettings.setIndexMessageIDs(true);
+      server.getAddressSettingsRepository().addMatch(address.toString(), addressSettings);
+
+      session.createQueue(address, queue, null, false);
+      ClientProducer producer = session.createProducer(address);
+
+      for (int i = 0; i < 10; i++)
+      {
+         producer.send(session.createMessage(false));
+      }
+
+      QueueControl queueControl = createManagementControl(address, queue);
+      Assert.assertEquals(10, queueControl.getMessageCount());
+      Assert.assertTrue(queueControl.getMessageIDIndexMemorySize() > 0);
+
+      Map<String, Object>[] messages = queueControl.listMessages(null);
+      long messageID = (Long)messages[5].get("messageID");
+
+      Assert.assertTrue(queueControl.removeMessage(messageID));
+      Assert.assertFalse(queueControl.removeMessage(messageID));
+      Assert.assertEquals(9, queueControl.getMessageCount());
+
+      ManagementTestBase.consumeMessages(9, session, queue);
+
+      session.deleteQueue(queue);
+   }
+
    @Test
    public void testRemoveMessage2() throws Exception
    {
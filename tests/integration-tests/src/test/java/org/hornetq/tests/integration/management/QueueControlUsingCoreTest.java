@@ -129,6 +129,11 @@ public class QueueControlUsingCoreTest extends QueueControlTest
             return (Long)proxy.retrieveAttributeValue("scheduledCount", Long.class);
          }
 
+         public long getMessageIDIndexMemorySize()
+         {
+            return (Long)proxy.retrieveAttributeValue("messageIDIndexMemorySize", Long.class);
+         }
+
          public boolean isDurable()
          {
             return (Boolean)proxy.retrieveAttributeValue("durable");
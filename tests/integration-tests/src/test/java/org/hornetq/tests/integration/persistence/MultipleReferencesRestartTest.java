@@ -0,0 +1,204 @@
+/*
+ * Copyright 2009 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.hornetq.tests.integration.persistence;
+
+import java.util.HashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.transaction.xa.XAResource;
+import javax.transaction.xa.Xid;
+
+import org.hornetq.api.core.SimpleString;
+import org.hornetq.api.core.client.ClientConsumer;
+import org.hornetq.api.core.client.ClientMessage;
+import org.hornetq.api.core.client.ClientProducer;
+import org.hornetq.api.core.client.ClientSession;
+import org.hornetq.api.core.client.ClientSessionFactory;
+import org.hornetq.api.core.client.ServerLocator;
+import org.hornetq.core.persistence.impl.journal.JournalRecordIds;
+import org.hornetq.core.server.HornetQServer;
+import org.hornetq.core.server.Queue;
+import org.hornetq.tests.util.ServiceTestBase;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the references of durable messages routed to several durable queues, which are stored in
+ * a single journal record.
+ */
+public class MultipleReferencesRestartTest extends ServiceTestBase
+{
+   private static final SimpleString ADDRESS = new SimpleString("address");
+
+   private static final SimpleString[] QUEUES = new SimpleString[] { new SimpleString("queue0"),
+                                                                    new SimpleString("queue1"),
+                                                                    new SimpleString("queue2") };
+
+   private static final int NUM_MESSAGES = 10;
+
+   private HornetQServer server;
+
+   private ServerLocator locator;
+
+   private ClientSessionFactory sf;
+
+   @Override
+   @Before
+   public void setUp() throws Exception
+   {
+      super.setUp();
+
+      server = createServer(true);
+      server.start();
+
+      locator = createInVMNonHALocator();
+      locator.setBlockOnDurableSend(true);
+      locator.setBlockOnAcknowledge(true);
+      sf = createSessionFactory(locator);
+
+      ClientSession session = sf.createSession(false, true, true);
+      for (SimpleString queue : QUEUES)
+      {
+         session.createQueue(ADDRESS, queue, true);
+      }
+      session.close();
+   }
+
+   @Test
+   public void testSingleRecordPerMessage() throws Exception
+   {
+      ClientSession session = sf.createSession(false, true, true);
+      sendMessages(session);
+      session.close();
+      sf.close();
+      server.stop();
+
+      HashMap<Integer, AtomicInteger> records = countJournalLivingRecords(server.getConfiguration());
+      Assert.assertNull(records.get((int)JournalRecordIds.ADD_REF));
+      Assert.assertEquals(NUM_MESSAGES, records.get((int)JournalRecordIds.ADD_REFS).get());
+
+      server.start();
+      sf = createSessionFactory(locator);
+      assertMessageCounts(NUM_MESSAGES, NUM_MESSAGES, NUM_MESSAGES);
+   }
+
+   @Test
+   public void testAcknowledgeAndRestart() throws Exception
+   {
+      ClientSession session = sf.createSession(false, true, true);
+      sendMessages(session);
+      receiveMessages(session, QUEUES[0]);
+      session.close();
+
+      restart();
+      assertMessageCounts(0, NUM_MESSAGES, NUM_MESSAGES);
+
+      session = sf.createSession(false, true, true);
+      receiveMessages(session, QUEUES[1]);
+      session.close();
+
+      restart();
+      assertMessageCounts(0, 0, NUM_MESSAGES);
+
+      session = sf.createSession(false, true, true);
+      receiveMessages(session, QUEUES[2]);
+      session.close();
+
+      restart();
+      assertMessageCounts(0, 0, 0);
+   }
+
+   @Test
+   public void testTransactedSendAndRestart() throws Exception
+   {
+      ClientSession session = sf.createSession(false, false, false);
+      sendMessages(session);
+      session.commit();
+
+      sendMessages(session);
+      session.rollback();
+      session.close();
+
+      restart();
+      assertMessageCounts(NUM_MESSAGES, NUM_MESSAGES, NUM_MESSAGES);
+   }
+
+   @Test
+   public void testPreparedSendAndRestart() throws Exception
+   {
+      ClientSession session = sf.createSession(true, false, false);
+      Xid xid = newXID();
+      session.start(xid, XAResource.TMNOFLAGS);
+      sendMessages(session);
+      session.end(xid, XAResource.TMSUCCESS);
+      session.prepare(xid);
+      session.close();
+
+      restart();
+      assertMessageCounts(0, 0, 0);
+
+      session = sf.createSession(true, false, false);
+      session.commit(xid, false);
+      session.close();
+
+      assertMessageCounts(NUM_MESSAGES, NUM_MESSAGES, NUM_MESSAGES);
+
+      restart();
+      assertMessageCounts(NUM_MESSAGES, NUM_MESSAGES, NUM_MESSAGES);
+   }
+
+   private void sendMessages(final ClientSession session) throws Exception
+   {
+      ClientProducer producer = session.createProducer(ADDRESS);
+      for (int i = 0; i < NUM_MESSAGES; i++)
+      {
+         ClientMessage message = session.createMessage(true);
+         message.putIntProperty("i", i);
+         producer.send(message);
+      }
+      producer.close();
+   }
+
+   private void receiveMessages(final ClientSession session, final SimpleString queue) throws Exception
+   {
+      ClientConsumer consumer = session.createConsumer(queue);
+      session.start();
+      for (int i = 0; i < NUM_MESSAGES; i++)
+      {
+         ClientMessage message = consumer.receive(5000);
+         Assert.assertNotNull(message);
+         Assert.assertEquals(i, message.getIntProperty("i").intValue());
+         message.acknowledge();
+      }
+      Assert.assertNull(consumer.receiveImmediate());
+      consumer.close();
+   }
+
+   private void assertMessageCounts(final int... counts) throws Exception
+   {
+      for (int i = 0; i < QUEUES.length; i++)
+      {
+         Queue queue = (Queue)server.getPostOffice().getBinding(QUEUES[i]).getBindable();
+         Assert.assertEquals(QUEUES[i].toString(), counts[i], queue.getMessageCount());
+      }
+   }
+
+   private void restart() throws Exception
+   {
+      sf.close();
+      server.stop();
+      server.start();
+      sf = createSessionFactory(locator);
+   }
+}
@@ -105,6 +105,7 @@ public final class ReplicationTest extends ServiceTestBase
    private ServerLocator locator;
 
    private ReplicationManager manager;
+   private int replicationBatchSize = -1;
    private static final SimpleString ADDRESS = new SimpleString("foobar123");
 
 
@@ -134,6 +135,7 @@ public final class ReplicationTest extends ServiceTestBase
 
       ReplicatedBackupUtils.configureReplicationPair(backupConfig, backupConnector, backupAcceptor, liveConfig,
                                                      liveConnector);
+      liveConfig.setReplicationBatchSize(replicationBatchSize);
       if (backup)
       {
          liveServer = createServer(liveConfig);
@@ -183,7 +185,7 @@ public final class ReplicationTest extends ServiceTestBase
       try
       {
          ClientSessionFactory sf = createSessionFactory(locator);
-         manager = new ReplicationManager(sf.getConnection(), factory);
+         manager = new ReplicationManager(sf.getConnection(), factory, -1, 1);
          addHornetQComponent(manager);
          manager.start();
          Assert.fail("Exception was expected");
@@ -280,6 +282,13 @@ public final class ReplicationTest extends ServiceTestBase
       Assert.assertEquals(0, store.getNumberOfPages());
    }
 
+   @Test
+   public void testSendPacketsInBatches() throws Exception
+   {
+      replicationBatchSize = 1024;
+      testSendPackets();
+   }
+
    @Test
    public void testSendPacketsWithFailure() throws Exception
    {
@@ -895,6 +904,30 @@ public final class ReplicationTest extends ServiceTestBase
          return 0;
       }
 
+      @Override
+      public long getCompactCount()
+      {
+         return 0;
+      }
+
+      @Override
+      public long getLastCompactPauseTime()
+      {
+         return 0;
+      }
+
+      @Override
+      public long getMaxCompactPauseTime()
+      {
+         return 0;
+      }
+
+      @Override
+      public long getCompactBytesReclaimed()
+      {
+         return 0;
+      }
+
       @Override
       public void scheduleCompactAndBlock(int timeout) throws Exception
       {
@@ -0,0 +1,314 @@
+/*
+ * Copyright 2009 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.tests.performance.bridge;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.hornetq.api.config.HornetQDefaultConfiguration;
+import org.hornetq.api.core.SimpleString;
+import org.hornetq.api.core.TransportConfiguration;
+import org.hornetq.api.core.client.ClientMessage;
+import org.hornetq.api.core.client.ClientProducer;
+import org.hornetq.api.core.client.ClientSession;
+import org.hornetq.api.core.client.ClientSessionFactory;
+import org.hornetq.api.core.client.HornetQClient;
+import org.hornetq.api.core.client.ServerLocator;
+import org.hornetq.core.config.BridgeConfiguration;
+import org.hornetq.core.config.CoreQueueConfiguration;
+import org.hornetq.core.remoting.impl.netty.TransportConstants;
+import org.hornetq.core.server.HornetQServer;
+import org.hornetq.tests.unit.UnitTestLogger;
+import org.hornetq.tests.util.ServiceTestBase;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Measures the throughput of a core bridge forwarding small messages to a server on a high
+ * latency network, one message at a time and in batches, with and without compression.
+ * <p>
+ * The latency is simulated by a local proxy delaying the bytes sent each way, the bandwidth
+ * isn't limited.
+ */
+public class BridgeBatchSendTest extends ServiceTestBase
+{
+   private static final UnitTestLogger log = UnitTestLogger.LOGGER;
+
+   private static final int NUM_MESSAGES = 20000;
+
+   private static final long ONE_WAY_DELAY = 20;
+
+   private static final int PROXY_PORT = TransportConstants.DEFAULT_PORT + 2;
+
+   private static final String SOURCE_ADDRESS = "source";
+
+   private static final String FORWARDING_ADDRESS = "forward";
+
+   @Test
+   public void testForward() throws Exception
+   {
+      forward(-1, false);
+      forward(64 * 1024, false);
+      forward(64 * 1024, true);
+   }
+
+   private void forward(final int batchSize, final boolean compress) throws Exception
+   {
+      Map<String, Object> sourceParams = new HashMap<String, Object>();
+      HornetQServer source = createClusteredServerWithParams(true, 0, false, sourceParams);
+
+      Map<String, Object> targetParams = new HashMap<String, Object>();
+      targetParams.put(TransportConstants.PORT_PROP_NAME, TransportConstants.DEFAULT_PORT + 1);
+      HornetQServer target = createClusteredServerWithParams(true, 1, false, targetParams);
+
+      Map<String, Object> proxyParams = new HashMap<String, Object>();
+      proxyParams.put(TransportConstants.PORT_PROP_NAME, PROXY_PORT);
+      TransportConfiguration proxyConnector = new TransportConfiguration(NETTY_CONNECTOR_FACTORY, proxyParams);
+      HashMap<String, TransportConfiguration> connectors = new HashMap<String, TransportConfiguration>();
+      connectors.put(proxyConnector.getName(), proxyConnector);
+      source.getConfiguration().setConnectorConfigurations(connectors);
+
+      List<String> staticConnectors = new ArrayList<String>();
+      staticConnectors.add(proxyConnector.getName());
+      BridgeConfiguration bridgeConfiguration = new BridgeConfiguration("bridge",
+                                                                        SOURCE_ADDRESS,
+                                                                        FORWARDING_ADDRESS,
+                                                                        null,
+                                                                        null,
+                                                                        HornetQClient.DEFAULT_MIN_LARGE_MESSAGE_SIZE,
+                                                                        HornetQClient.DEFAULT_CLIENT_FAILURE_CHECK_PERIOD,
+                                                                        HornetQClient.DEFAULT_CONNECTION_TTL,
+                                                                        1000,
+                                                                        HornetQClient.DEFAULT_MAX_RETRY_INTERVAL,
+                                                                        1d,
+                                                                        -1,
+                                                                        -1,
+                                                                        true,
+                                                                        HornetQClient.DEFAULT_CONFIRMATION_WINDOW_SIZE,
+                                                                        staticConnectors,
+                                                                        false,
+                                                                        HornetQDefaultConfiguration.getDefaultClusterUser(),
+                                                                        HornetQDefaultConfiguration.getDefaultClusterPassword());
+      bridgeConfiguration.setProducerBatchSize(batchSize);
+      bridgeConfiguration.setCompressBatches(compress);
+      List<BridgeConfiguration> bridgeConfigs = new ArrayList<BridgeConfiguration>();
+      bridgeConfigs.add(bridgeConfiguration);
+      source.getConfiguration().setBridgeConfigurations(bridgeConfigs);
+
+      List<CoreQueueConfiguration> sourceQueues = new ArrayList<CoreQueueConfiguration>();
+      sourceQueues.add(new CoreQueueConfiguration(SOURCE_ADDRESS, SOURCE_ADDRESS, null, false));
+      source.getConfiguration().setQueueConfigurations(sourceQueues);
+
+      List<CoreQueueConfiguration> targetQueues = new ArrayList<CoreQueueConfiguration>();
+      targetQueues.add(new CoreQueueConfiguration(FORWARDING_ADDRESS, FORWARDING_ADDRESS, null, false));
+      target.getConfiguration().setQueueConfigurations(targetQueues);
+
+      LatencyProxy proxy = new LatencyProxy(PROXY_PORT, TransportConstants.DEFAULT_PORT + 1, ONE_WAY_DELAY);
+      proxy.start();
+      target.start();
+      source.start();
+
+      ServerLocator locator = createNettyNonHALocator();
+      ClientSessionFactory factory = createSessionFactory(locator);
+      ClientSession session = factory.createSession();
+      ClientProducer producer = session.createProducer(SOURCE_ADDRESS);
+
+      byte[] body = new byte[100];
+
+      long start = System.nanoTime();
+      for (int i = 0; i < NUM_MESSAGES; i++)
+      {
+         ClientMessage message = session.createMessage(false);
+         message.getBodyBuffer().writeBytes(body);
+         message.putIntProperty("i", i);
+         producer.send(message);
+      }
+
+      long timeout = System.currentTimeMillis() + 10 * 60 * 1000;
+      while (getMessageCount(target.getPostOffice(), FORWARDING_ADDRESS) < NUM_MESSAGES &&
+             System.currentTimeMillis() < timeout)
+      {
+         Thread.sleep(1);
+      }
+      long time = System.nanoTime() - start;
+
+      Assert.assertEquals(NUM_MESSAGES, getMessageCount(target.getPostOffice(), FORWARDING_ADDRESS));
+
+      log.info("forwarded with a round trip of " + 2 * ONE_WAY_DELAY + " ms, " +
+               (batchSize > 0 ? "batch size " + batchSize + (compress ? " compressed" : "") : "not batched") +
+               ": " + TimeUnit.NANOSECONDS.toMillis(time) + " ms, " + NUM_MESSAGES * 1000000000L /
+               Math.max(1, time) + " msgs/s, " + proxy.getForwardedBytes() + " bytes forwarded");
+
+      session.close();
+      locator.close();
+      source.stop();
+      target.stop();
+      proxy.stop();
+   }
+
+   /**
+    * Forwards the connections it accepts to a local port, each chunk of bytes after a delay.
+    */
+   private static final class LatencyProxy implements Runnable
+   {
+      private final int port;
+
+      private final int targetPort;
+
+      private final long delay;
+
+      private final List<Socket> sockets = new ArrayList<Socket>();
+
+      private volatile long forwardedBytes;
+
+      private ServerSocket serverSocket;
+
+      private Thread acceptor;
+
+      LatencyProxy(final int port, final int targetPort, final long delay)
+      {
+         this.port = port;
+         this.targetPort = targetPort;
+         this.delay = delay;
+      }
+
+      void start() throws IOException
+      {
+         serverSocket = new ServerSocket(port);
+         acceptor = new Thread(this, "latency-proxy-acceptor");
+         acceptor.setDaemon(true);
+         acceptor.start();
+      }
+
+      void stop() throws Exception
+      {
+         serverSocket.close();
+         acceptor.join();
+         synchronized (sockets)
+         {
+            for (Socket socket : sockets)
+            {
+               socket.close();
+            }
+         }
+      }
+
+      long getForwardedBytes()
+      {
+         return forwardedBytes;
+      }
+
+      public void run()
+      {
+         try
+         {
+            while (true)
+            {
+               Socket client = serverSocket.accept();
+               Socket server = new Socket("localhost", targetPort);
+               client.setTcpNoDelay(true);
+               server.setTcpNoDelay(true);
+               synchronized (sockets)
+               {
+                  sockets.add(client);
+                  sockets.add(server);
+               }
+               pump(client, server, true);
+               pump(server, client, false);
+            }
+         }
+         catch (IOException e)
+         {
+            // closed
+         }
+      }
+
+      private void pump(final Socket from, final Socket to, final boolean count) throws IOException
+      {
+         final InputStream in = from.getInputStream();
+         final OutputStream out = to.getOutputStream();
+         // the chunks read, each one with the time it's due
+         final BlockingQueue<Object[]> chunks = new LinkedBlockingQueue<Object[]>();
+
+         Thread reader = new Thread("latency-proxy-reader")
+         {
+            @Override
+            public void run()
+            {
+               byte[] buffer = new byte[64 * 1024];
+               try
+               {
+                  int read;
+                  while ((read = in.read(buffer)) != -1)
+                  {
+                     chunks.put(new Object[] { System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delay),
+                                              Arrays.copyOf(buffer, read) });
+                  }
+               }
+               catch (Exception e)
+               {
+                  // closed
+               }
+            }
+         };
+
+         Thread writer = new Thread("latency-proxy-writer")
+         {
+            @Override
+            public void run()
+            {
+               try
+               {
+                  while (true)
+                  {
+                     Object[] chunk = chunks.take();
+                     long wait = (Long)chunk[0] - System.nanoTime();
+                     if (wait > 0)
+                     {
+                        TimeUnit.NANOSECONDS.sleep(wait);
+                     }
+                     byte[] bytes = (byte[])chunk[1];
+                     out.write(bytes);
+                     out.flush();
+                     if (count)
+                     {
+                        forwardedBytes += bytes.length;
+                     }
+                  }
+               }
+               catch (Exception e)
+               {
+                  // closed
+               }
+            }
+         };
+
+         reader.setDaemon(true);
+         writer.setDaemon(true);
+         reader.start();
+         writer.start();
+      }
+   }
+}
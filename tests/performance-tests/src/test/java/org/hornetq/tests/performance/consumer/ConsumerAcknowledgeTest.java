@@ -0,0 +1,125 @@
+/*
+ * Copyright 2010 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.tests.performance.consumer;
+
+import java.util.concurrent.TimeUnit;
+
+import org.hornetq.api.core.SimpleString;
+import org.hornetq.api.core.client.ClientConsumer;
+import org.hornetq.api.core.client.ClientMessage;
+import org.hornetq.api.core.client.ClientProducer;
+import org.hornetq.api.core.client.ClientSession;
+import org.hornetq.api.core.client.ClientSessionFactory;
+import org.hornetq.api.core.client.ServerLocator;
+import org.hornetq.core.server.HornetQServer;
+import org.hornetq.tests.unit.UnitTestLogger;
+import org.hornetq.tests.util.ServiceTestBase;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Measures the acknowledgement throughput of a consumer against the number of messages delivered to
+ * it and not acknowledged yet, its window.
+ * <p>
+ * The window is acknowledged message by message, newest first, which is the worst case when the
+ * server looks up the messages of the consumer in delivery order. Cumulative acks are measured too.
+ */
+public class ConsumerAcknowledgeTest extends ServiceTestBase
+{
+   private static final UnitTestLogger log = UnitTestLogger.LOGGER;
+
+   private static final int[] WINDOWS = new int[] { 1000, 10000, 50000 };
+
+   private static final SimpleString ADDRESS = new SimpleString("queue");
+
+   @Test
+   public void testIndividualAcknowledge() throws Exception
+   {
+      for (int window : WINDOWS)
+      {
+         acknowledge(window, true);
+      }
+   }
+
+   @Test
+   public void testAcknowledge() throws Exception
+   {
+      for (int window : WINDOWS)
+      {
+         acknowledge(window, false);
+      }
+   }
+
+   private void acknowledge(final int window, final boolean individual) throws Exception
+   {
+      HornetQServer server = createServer(false);
+      server.start();
+
+      ServerLocator locator = createInVMNonHALocator();
+      // the whole window is delivered before anything is acknowledged
+      locator.setConsumerWindowSize(-1);
+      // so the time taken by the server is measured
+      locator.setBlockOnAcknowledge(true);
+      locator.setAckBatchSize(0);
+      ClientSessionFactory factory = createSessionFactory(locator);
+      ClientSession session = factory.createSession(false, true, true);
+      session.createQueue(ADDRESS, ADDRESS, false);
+
+      ClientProducer producer = session.createProducer(ADDRESS);
+      for (int i = 0; i < window; i++)
+      {
+         ClientMessage message = session.createMessage(false);
+         message.getBodyBuffer().writeInt(i);
+         producer.send(message);
+      }
+
+      ClientConsumer consumer = session.createConsumer(ADDRESS);
+      session.start();
+
+      ClientMessage[] messages = new ClientMessage[window];
+      for (int i = 0; i < window; i++)
+      {
+         messages[i] = consumer.receive(5000);
+         Assert.assertNotNull(messages[i]);
+      }
+
+      long start = System.nanoTime();
+      if (individual)
+      {
+         for (int i = window - 1; i >= 0; i--)
+         {
+            messages[i].individualAcknowledge();
+         }
+      }
+      else
+      {
+         for (int i = 0; i < window; i++)
+         {
+            messages[i].acknowledge();
+         }
+      }
+      long time = System.nanoTime() - start;
+
+      Assert.assertEquals(0, getMessageCount(server.getPostOffice(), ADDRESS.toString()));
+
+      log.info((individual ? "individual" : "cumulative") + " acks, window of " + window + " messages: " +
+               TimeUnit.NANOSECONDS.toMillis(time) + " ms, " + window * 1000000000L / Math.max(1, time) +
+               " acks/s");
+
+      consumer.close();
+      session.close();
+      locator.close();
+      server.stop();
+   }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright 2009 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.tests.performance.consumer;
+
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.TimeUnit;
+
+import org.hornetq.api.core.SimpleString;
+import org.hornetq.api.core.TransportConfiguration;
+import org.hornetq.api.core.client.ClientConsumer;
+import org.hornetq.api.core.client.ClientMessage;
+import org.hornetq.api.core.client.ClientProducer;
+import org.hornetq.api.core.client.ClientSession;
+import org.hornetq.api.core.client.ClientSessionFactory;
+import org.hornetq.api.core.client.ServerLocator;
+import org.hornetq.core.config.Configuration;
+import org.hornetq.core.remoting.impl.netty.TransportConstants;
+import org.hornetq.core.server.HornetQServer;
+import org.hornetq.tests.unit.UnitTestLogger;
+import org.hornetq.tests.util.ServiceTestBase;
+import org.hornetq.tests.util.UnitTestCase;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Measures the throughput of a consumer receiving 100 MB messages over Netty, and the bytes
+ * allocated meanwhile, with the bodies transferred from the files to the socket and read into
+ * buffers.
+ * <p>
+ * The allocations are those of the threads of the client and of the server, the client reading
+ * the body in the same way each time.
+ */
+public class LargeMessageDeliveryTest extends ServiceTestBase
+{
+   private static final UnitTestLogger log = UnitTestLogger.LOGGER;
+
+   private static final int NUM_MESSAGES = 5;
+
+   private static final long MESSAGE_SIZE = 100L * 1024 * 1024;
+
+   private static final SimpleString ADDRESS = new SimpleString("queue");
+
+   @Test
+   public void testDeliver() throws Exception
+   {
+      deliver(false);
+      deliver(true);
+   }
+
+   private void deliver(final boolean fileRegion) throws Exception
+   {
+      // the messages of the previous run must not be loaded
+      clearDataRecreateServerDirs();
+
+      Configuration config = createDefaultConfig(true);
+      for (TransportConfiguration acceptor : config.getAcceptorConfigurations())
+      {
+         if (acceptor.getFactoryClassName().equals(NETTY_ACCEPTOR_FACTORY))
+         {
+            acceptor.getParams().put(TransportConstants.FILE_REGION_ENABLED, fileRegion);
+         }
+      }
+      HornetQServer server = createServer(true, config);
+      server.start();
+
+      ServerLocator locator = createNettyNonHALocator();
+      ClientSessionFactory factory = createSessionFactory(locator);
+      ClientSession session = factory.createSession(false, true, true);
+      session.createQueue(ADDRESS, ADDRESS, true);
+
+      ClientProducer producer = session.createProducer(ADDRESS);
+      for (int i = 0; i < NUM_MESSAGES; i++)
+      {
+         ClientMessage message = session.createMessage(true);
+         message.setBodyInputStream(UnitTestCase.createFakeLargeStream(MESSAGE_SIZE));
+         producer.send(message);
+      }
+
+      ClientConsumer consumer = session.createConsumer(ADDRESS);
+      session.start();
+
+      CountingOutputStream out = new CountingOutputStream();
+      long allocatedBefore = getAllocatedBytes();
+      long start = System.nanoTime();
+      for (int i = 0; i < NUM_MESSAGES; i++)
+      {
+         ClientMessage message = consumer.receive(60000);
+         Assert.assertNotNull(message);
+         message.saveToOutputStream(out);
+         message.acknowledge();
+      }
+      long time = System.nanoTime() - start;
+      long allocated = allocatedBefore < 0 ? -1 : getAllocatedBytes() - allocatedBefore;
+
+      Assert.assertEquals(NUM_MESSAGES * MESSAGE_SIZE, out.count);
+
+      log.info((fileRegion ? "file regions" : "buffers") + ", " + NUM_MESSAGES + " messages of " +
+               MESSAGE_SIZE / (1024 * 1024) + " MB: " + TimeUnit.NANOSECONDS.toMillis(time) + " ms, " +
+               NUM_MESSAGES * MESSAGE_SIZE * 1000000000L / (1024 * 1024) / Math.max(1, time) + " MB/s, " +
+               (allocated < 0 ? "allocations not measured" : allocated / (1024 * 1024) + " MB allocated"));
+
+      consumer.close();
+      session.close();
+      locator.close();
+      server.stop();
+   }
+
+   /**
+    * @return the bytes allocated so far by the live threads, or -1 if the JVM doesn't tell
+    */
+   private static long getAllocatedBytes()
+   {
+      ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+      if (!(threads instanceof com.sun.management.ThreadMXBean))
+      {
+         return -1;
+      }
+
+      long total = 0;
+      for (long allocated : ((com.sun.management.ThreadMXBean)threads).getThreadAllocatedBytes(threads.getAllThreadIds()))
+      {
+         if (allocated > 0)
+         {
+            total += allocated;
+         }
+      }
+      return total;
+   }
+
+   private static final class CountingOutputStream extends OutputStream
+   {
+      private long count;
+
+      @Override
+      public void write(final int b)
+      {
+         count++;
+      }
+
+      @Override
+      public void write(final byte[] b, final int off, final int len)
+      {
+         count += len;
+      }
+   }
+}
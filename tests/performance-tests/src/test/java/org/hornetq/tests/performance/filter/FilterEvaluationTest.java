@@ -0,0 +1,171 @@
+/*
+ * Copyright 2009 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.tests.performance.filter;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.CountDownLatch;
+
+import org.hornetq.api.core.SimpleString;
+import org.hornetq.core.filter.Filter;
+import org.hornetq.core.filter.impl.FilterImpl;
+import org.hornetq.core.server.ServerMessage;
+import org.hornetq.core.server.impl.ServerMessageImpl;
+import org.hornetq.tests.unit.UnitTestLogger;
+import org.hornetq.tests.util.UnitTestCase;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Compares the compiled and the interpreted evaluation of some typical selectors: the time and the
+ * bytes allocated per match on one thread, and the throughput of four threads sharing the filter,
+ * as the consumers of a queue do.
+ */
+public class FilterEvaluationTest extends UnitTestCase
+{
+   private static final UnitTestLogger log = UnitTestLogger.LOGGER;
+
+   private static final int MESSAGES = 1000;
+
+   private static final int ITERATIONS = 2000;
+
+   private static final int THREADS = 4;
+
+   private static final String[] FILTERS = {"region = 'EU' AND type = 'X'",
+                                            "price BETWEEN 10 AND 20.5 AND HQPriority > 4",
+                                            "type IN ('X', 'Y', 'Z') OR NOT (region LIKE 'U%')",
+                                            "HQTimestamp > 1000 AND HQDurable = 'DURABLE' AND quantity <> 3"};
+
+   @Test
+   public void testCompiledVersusInterpreted() throws Exception
+   {
+      ServerMessage[] messages = new ServerMessage[MESSAGES];
+      for (int i = 0; i < MESSAGES; i++)
+      {
+         messages[i] = new ServerMessageImpl(i, 100);
+         messages[i].setPriority((byte)(i % 10));
+         messages[i].setDurable(i % 2 == 0);
+         messages[i].setTimestamp(i * 10);
+         messages[i].putStringProperty(new SimpleString("region"), new SimpleString(i % 3 == 0 ? "EU" : "US"));
+         messages[i].putStringProperty(new SimpleString("type"), new SimpleString(i % 4 == 0 ? "X" : "W"));
+         messages[i].putDoubleProperty(new SimpleString("price"), i % 30);
+         messages[i].putIntProperty(new SimpleString("quantity"), i % 5);
+      }
+
+      for (String filterString : FILTERS)
+      {
+         Filter compiled = FilterImpl.createFilter(new SimpleString(filterString), true);
+         Filter interpreted = FilterImpl.createFilter(new SimpleString(filterString), false);
+
+         Assert.assertTrue(((FilterImpl)compiled).isCompiled());
+         Assert.assertEquals(evaluate(interpreted, messages), evaluate(compiled, messages));
+
+         long[] compiledSingle = measure(compiled, messages);
+         long[] interpretedSingle = measure(interpreted, messages);
+
+         long compiledConcurrent = measureConcurrent(compiled, messages);
+         long interpretedConcurrent = measureConcurrent(interpreted, messages);
+
+         log.info(filterString + ": compiled " + compiledSingle[0] + " ns " + compiledSingle[1] +
+                  " bytes per match, " + compiledConcurrent + " matches/ms with " + THREADS +
+                  " threads; interpreted " + interpretedSingle[0] + " ns " + interpretedSingle[1] +
+                  " bytes per match, " + interpretedConcurrent + " matches/ms with " + THREADS + " threads");
+      }
+   }
+
+   private static int evaluate(final Filter filter, final ServerMessage[] messages)
+   {
+      int matches = 0;
+      for (ServerMessage message : messages)
+      {
+         if (filter.match(message))
+         {
+            matches++;
+         }
+      }
+      return matches;
+   }
+
+   /**
+    * @return the best time per match in ns and the bytes allocated per match, or -1 if the JVM
+    *         doesn't count them
+    */
+   private static long[] measure(final Filter filter, final ServerMessage[] messages)
+   {
+      ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+      com.sun.management.ThreadMXBean allocations = threads instanceof com.sun.management.ThreadMXBean ? (com.sun.management.ThreadMXBean)threads
+                                                                                                  : null;
+
+      long best = Long.MAX_VALUE;
+      long allocated = -1;
+      for (int run = 0; run < 5; run++)
+      {
+         long bytes = allocations == null ? 0 : allocations.getThreadAllocatedBytes(Thread.currentThread().getId());
+         long start = System.nanoTime();
+         for (int i = 0; i < ITERATIONS; i++)
+         {
+            evaluate(filter, messages);
+         }
+         best = Math.min(best, System.nanoTime() - start);
+         if (allocations != null)
+         {
+            allocated = (allocations.getThreadAllocatedBytes(Thread.currentThread().getId()) - bytes) /
+                        ((long)ITERATIONS * MESSAGES);
+         }
+      }
+      return new long[]{best / ((long)ITERATIONS * MESSAGES), allocated};
+   }
+
+   /**
+    * @return the matches per ms of all the threads evaluating the same filter
+    */
+   private static long measureConcurrent(final Filter filter, final ServerMessage[] messages) throws Exception
+   {
+      final CountDownLatch start = new CountDownLatch(1);
+      Thread[] threads = new Thread[THREADS];
+      for (int t = 0; t < THREADS; t++)
+      {
+         threads[t] = new Thread()
+         {
+            @Override
+            public void run()
+            {
+               try
+               {
+                  start.await();
+               }
+               catch (InterruptedException e)
+               {
+                  return;
+               }
+               for (int i = 0; i < ITERATIONS; i++)
+               {
+                  evaluate(filter, messages);
+               }
+            }
+         };
+         threads[t].start();
+      }
+
+      long begin = System.nanoTime();
+      start.countDown();
+      for (Thread thread : threads)
+      {
+         thread.join();
+      }
+      long time = System.nanoTime() - begin;
+
+      return (long)THREADS * ITERATIONS * MESSAGES * 1000000L / Math.max(1, time);
+   }
+}
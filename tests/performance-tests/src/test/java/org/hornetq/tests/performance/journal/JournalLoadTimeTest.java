@@ -0,0 +1,175 @@
+/*
+ * Copyright 2009 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.tests.performance.journal;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.hornetq.api.core.SimpleString;
+import org.hornetq.api.core.client.ClientMessage;
+import org.hornetq.api.core.client.ClientProducer;
+import org.hornetq.api.core.client.ClientSession;
+import org.hornetq.api.core.client.ClientSessionFactory;
+import org.hornetq.api.core.client.ServerLocator;
+import org.hornetq.core.config.Configuration;
+import org.hornetq.core.journal.PreparedTransactionInfo;
+import org.hornetq.core.journal.RecordInfo;
+import org.hornetq.core.journal.impl.JournalImpl;
+import org.hornetq.core.journal.impl.NIOSequentialFileFactory;
+import org.hornetq.core.server.HornetQServer;
+import org.hornetq.core.server.Queue;
+import org.hornetq.tests.unit.UnitTestLogger;
+import org.hornetq.tests.util.ServiceTestBase;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Measures the time to load a generated journal and to restart a server with 1 to 8 load threads.
+ */
+public class JournalLoadTimeTest extends ServiceTestBase
+{
+   private static final UnitTestLogger log = UnitTestLogger.LOGGER;
+
+   private static final int[] LOAD_THREADS = new int[]{1, 2, 4, 8};
+
+   private static final int NUMBER_OF_RECORDS = 200000;
+
+   private static final int RECORD_SIZE = 1024;
+
+   private static final int FILE_SIZE = 10 * 1024 * 1024;
+
+   private static final int NUMBER_OF_QUEUES = 20;
+
+   private static final int MESSAGES_PER_QUEUE = 10000;
+
+   @Test
+   public void testJournalLoad() throws Exception
+   {
+      NIOSequentialFileFactory factory = new NIOSequentialFileFactory(getTestDir());
+
+      JournalImpl journal = new JournalImpl(FILE_SIZE, 2, 0, 0, factory, "hq", "hq", 1);
+      journal.start();
+      journal.loadInternalOnly();
+
+      byte[] body = new byte[RECORD_SIZE];
+
+      for (long id = 0; id < NUMBER_OF_RECORDS; id++)
+      {
+         journal.appendAddRecord(id, (byte)1, body, false);
+         if (id % 2 == 0)
+         {
+            journal.appendUpdateRecord(id, (byte)1, new byte[16], false);
+         }
+         if (id % 3 == 0)
+         {
+            journal.appendDeleteRecord(id, false);
+         }
+      }
+
+      journal.stop();
+
+      int expected = NUMBER_OF_RECORDS - (NUMBER_OF_RECORDS + 2) / 3;
+
+      // the first load warms up the page cache and the code
+      load(factory, 1, expected);
+
+      for (int threads : LOAD_THREADS)
+      {
+         long best = Long.MAX_VALUE;
+         for (int i = 0; i < 3; i++)
+         {
+            best = Math.min(best, load(factory, threads, expected));
+         }
+         log.info("journal load with " + threads + " threads: " + best + " ms");
+      }
+   }
+
+   @Test
+   public void testServerStartup() throws Exception
+   {
+      Configuration config = createDefaultConfig();
+      config.setJournalFileSize(FILE_SIZE);
+
+      HornetQServer server = createServer(true, config);
+      server.start();
+
+      ServerLocator locator = createInVMNonHALocator();
+      locator.setBlockOnDurableSend(false);
+      ClientSessionFactory factory = createSessionFactory(locator);
+      ClientSession session = factory.createSession(false, false);
+
+      for (int q = 0; q < NUMBER_OF_QUEUES; q++)
+      {
+         SimpleString address = new SimpleString("address" + q);
+         session.createQueue(address, address, true);
+
+         ClientProducer producer = session.createProducer(address);
+         for (int i = 0; i < MESSAGES_PER_QUEUE; i++)
+         {
+            ClientMessage message = session.createMessage(true);
+            message.getBodyBuffer().writeBytes(new byte[RECORD_SIZE]);
+            producer.send(message);
+            if (i % 1000 == 0)
+            {
+               session.commit();
+            }
+         }
+         session.commit();
+      }
+
+      session.close();
+      locator.close();
+      server.stop();
+
+      for (int threads : LOAD_THREADS)
+      {
+         long best = Long.MAX_VALUE;
+         for (int i = 0; i < 3; i++)
+         {
+            config.setJournalLoadThreads(threads);
+
+            long start = System.currentTimeMillis();
+            server.start();
+            long time = System.currentTimeMillis() - start;
+
+            Queue queue = (Queue)server.getPostOffice().getBinding(new SimpleString("address0")).getBindable();
+            Assert.assertEquals(MESSAGES_PER_QUEUE, queue.getMessageCount());
+
+            server.stop();
+
+            best = Math.min(best, time);
+         }
+         log.info("server start with " + threads + " load threads: " + best + " ms");
+      }
+   }
+
+   private long load(final NIOSequentialFileFactory factory, final int threads, final int expected) throws Exception
+   {
+      JournalImpl journal = new JournalImpl(FILE_SIZE, 2, 0, 0, factory, "hq", "hq", 1);
+      journal.setLoadThreads(threads);
+      journal.start();
+
+      List<RecordInfo> records = new ArrayList<RecordInfo>(expected);
+
+      long start = System.currentTimeMillis();
+      journal.load(records, new ArrayList<PreparedTransactionInfo>(), null);
+      long time = System.currentTimeMillis() - start;
+
+      Assert.assertEquals(expected, journal.getNumberOfRecords());
+
+      journal.stop();
+
+      return time;
+   }
+}
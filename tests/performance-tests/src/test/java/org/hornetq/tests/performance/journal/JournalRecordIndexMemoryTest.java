@@ -0,0 +1,122 @@
+/*
+ * Copyright 2009 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.tests.performance.journal;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.hornetq.core.journal.impl.JournalFile;
+import org.hornetq.core.journal.impl.JournalFileImpl;
+import org.hornetq.core.journal.impl.JournalImpl;
+import org.hornetq.core.journal.impl.JournalRecord;
+import org.hornetq.core.journal.impl.NIOSequentialFileFactory;
+import org.hornetq.tests.unit.UnitTestLogger;
+import org.hornetq.tests.util.UnitTestCase;
+import org.hornetq.utils.ConcurrentLongHashMap;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Measures the heap used to index 10M journal records, with the boxed {@link ConcurrentHashMap} the
+ * journal used before and with the {@link ConcurrentLongHashMap} it uses now.
+ * <p>
+ * The number of records is reduced when the heap is too small, run with -Xmx3g for the full size.
+ */
+public class JournalRecordIndexMemoryTest extends UnitTestCase
+{
+   private static final UnitTestLogger log = UnitTestLogger.LOGGER;
+
+   private static final int NUMBER_OF_RECORDS = 10000000;
+
+   // rough upper bound of the bytes per record of the boxed map, used to size the test to the heap
+   private static final int MAX_BYTES_PER_RECORD = 200;
+
+   private JournalFile file;
+
+   @Test
+   public void testMemoryFootprint() throws Exception
+   {
+      file = new JournalFileImpl(new NIOSequentialFileFactory(getTestDir()).createSequentialFile("hq-1.hq", 1),
+                                 1,
+                                 JournalImpl.FORMAT_VERSION);
+
+      int records = (int)Math.min(NUMBER_OF_RECORDS, Runtime.getRuntime().maxMemory() / MAX_BYTES_PER_RECORD);
+
+      if (records < NUMBER_OF_RECORDS)
+      {
+         log.info("Heap too small for " + NUMBER_OF_RECORDS + " records, using " + records);
+      }
+
+      long boxed = measureBoxed(records);
+      long primitive = measurePrimitive(records);
+
+      log.info(records + " records: ConcurrentHashMap=" + boxed / records +
+               " bytes/record, ConcurrentLongHashMap=" + primitive / records + " bytes/record");
+
+      Assert.assertTrue(primitive < boxed);
+   }
+
+   private long measureBoxed(final int records) throws Exception
+   {
+      long before = usedMemory();
+      long start = System.currentTimeMillis();
+
+      ConcurrentMap<Long, JournalRecord> map = new ConcurrentHashMap<Long, JournalRecord>();
+      for (long id = 0; id < records; id++)
+      {
+         map.put(id, new JournalRecord(file, 100));
+      }
+
+      long time = System.currentTimeMillis() - start;
+      long used = usedMemory() - before;
+
+      log.info("ConcurrentHashMap: " + used + " bytes, filled in " + time + " ms");
+
+      Assert.assertEquals(records, map.size());
+
+      return used;
+   }
+
+   private long measurePrimitive(final int records) throws Exception
+   {
+      long before = usedMemory();
+      long start = System.currentTimeMillis();
+
+      ConcurrentLongHashMap<JournalRecord> map = new ConcurrentLongHashMap<JournalRecord>();
+      for (long id = 0; id < records; id++)
+      {
+         map.put(id, new JournalRecord(file, 100));
+      }
+
+      long time = System.currentTimeMillis() - start;
+      long used = usedMemory() - before;
+
+      log.info("ConcurrentLongHashMap: " + used + " bytes, filled in " + time + " ms");
+
+      Assert.assertEquals(records, map.size());
+
+      return used;
+   }
+
+   private static long usedMemory() throws Exception
+   {
+      Runtime runtime = Runtime.getRuntime();
+      for (int i = 0; i < 5; i++)
+      {
+         System.gc();
+         Thread.sleep(100);
+      }
+      return runtime.totalMemory() - runtime.freeMemory();
+   }
+}
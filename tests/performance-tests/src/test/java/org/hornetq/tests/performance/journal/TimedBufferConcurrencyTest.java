@@ -0,0 +1,188 @@
+/*
+ * Copyright 2009 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.tests.performance.journal;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.hornetq.core.journal.EncodingSupport;
+import org.hornetq.core.journal.IOAsyncTask;
+import org.hornetq.core.journal.impl.TimedBuffer;
+import org.hornetq.core.journal.impl.TimedBufferObserver;
+import org.hornetq.core.journal.impl.dataformat.ByteArrayEncoding;
+import org.hornetq.tests.unit.UnitTestLogger;
+import org.hornetq.tests.util.UnitTestCase;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Compares the append rate of the synchronized and the lock-free {@link TimedBuffer} with 1 to 64
+ * appending threads.
+ * <p>
+ * On the synchronized mode checkSize and addBytes need to be atomic, so the appenders take a common
+ * lock as the journal does. The lock-free mode doesn't need it.
+ */
+public class TimedBufferConcurrencyTest extends UnitTestCase
+{
+   private static final UnitTestLogger log = UnitTestLogger.LOGGER;
+
+   private static final int BUFFER_SIZE = 490 * 1024;
+
+   private static final int RECORD_SIZE = 64;
+
+   private static final int TOTAL_RECORDS = 2000000;
+
+   private static final int[] THREADS = new int[]{1, 2, 4, 8, 16, 32, 64};
+
+   private static final IOAsyncTask DUMMY_CALLBACK = new IOAsyncTask()
+   {
+      public void done()
+      {
+      }
+
+      public void onError(final int errorCode, final String errorMessage)
+      {
+      }
+   };
+
+   @Test
+   public void testAppendRates() throws Exception
+   {
+      // warm up both paths
+      measure(false, 4, TOTAL_RECORDS / 4);
+      measure(true, 4, TOTAL_RECORDS / 4);
+
+      for (int threads : THREADS)
+      {
+         double synced = measure(false, threads, TOTAL_RECORDS);
+         double lockFree = measure(true, threads, TOTAL_RECORDS);
+
+         log.info("threads=" + threads +
+                  ", synchronized=" + (long)synced +
+                  " records/sec, lock-free=" + (long)lockFree +
+                  " records/sec, ratio=" + lockFree / synced);
+      }
+   }
+
+   private double measure(final boolean lockFree, final int numberOfThreads, final int totalRecords) throws Exception
+   {
+      final int recordsPerThread = totalRecords / numberOfThreads;
+
+      final AtomicLong bytesFlushed = new AtomicLong(0);
+
+      final ByteBuffer flushBuffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+      final TimedBuffer timedBuffer = new TimedBuffer(BUFFER_SIZE, 500000, false, lockFree);
+
+      timedBuffer.start();
+
+      timedBuffer.setObserver(new TimedBufferObserver()
+      {
+         public void flushBuffer(final ByteBuffer buffer, final boolean syncRequested, final List<IOAsyncTask> callbacks)
+         {
+            bytesFlushed.addAndGet(buffer.position());
+         }
+
+         public ByteBuffer newBuffer(final int size, final int limit)
+         {
+            flushBuffer.clear();
+            flushBuffer.limit(limit);
+            return flushBuffer;
+         }
+
+         public int getRemainingBytes()
+         {
+            return Integer.MAX_VALUE;
+         }
+      });
+
+      final Object appendLock = new Object();
+
+      final EncodingSupport record = new ByteArrayEncoding(new byte[RECORD_SIZE]);
+
+      final CountDownLatch ready = new CountDownLatch(numberOfThreads);
+
+      final CountDownLatch start = new CountDownLatch(1);
+
+      final AtomicInteger errors = new AtomicInteger(0);
+
+      Thread[] appenders = new Thread[numberOfThreads];
+
+      for (int i = 0; i < numberOfThreads; i++)
+      {
+         appenders[i] = new Thread()
+         {
+            @Override
+            public void run()
+            {
+               try
+               {
+                  ready.countDown();
+                  start.await();
+
+                  for (int r = 0; r < recordsPerThread; r++)
+                  {
+                     boolean sync = r % 1000 == 0;
+
+                     if (lockFree)
+                     {
+                        timedBuffer.checkSize(RECORD_SIZE);
+                        timedBuffer.addBytes(record, sync, DUMMY_CALLBACK);
+                     }
+                     else
+                     {
+                        synchronized (appendLock)
+                        {
+                           timedBuffer.checkSize(RECORD_SIZE);
+                           timedBuffer.addBytes(record, sync, DUMMY_CALLBACK);
+                        }
+                     }
+                  }
+               }
+               catch (Throwable e)
+               {
+                  e.printStackTrace();
+                  errors.incrementAndGet();
+               }
+            }
+         };
+         appenders[i].start();
+      }
+
+      ready.await();
+
+      long begin = System.nanoTime();
+
+      start.countDown();
+
+      for (Thread appender : appenders)
+      {
+         appender.join();
+      }
+
+      timedBuffer.flush();
+
+      long end = System.nanoTime();
+
+      timedBuffer.stop();
+
+      Assert.assertEquals(0, errors.get());
+      Assert.assertEquals((long)recordsPerThread * numberOfThreads * RECORD_SIZE, bytesFlushed.get());
+
+      return (double)recordsPerThread * numberOfThreads * 1000000000L / (end - begin);
+   }
+}
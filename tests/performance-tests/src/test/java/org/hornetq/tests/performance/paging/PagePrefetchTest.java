@@ -0,0 +1,128 @@
+/*
+ * Copyright 2010 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.tests.performance.paging;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.hornetq.api.core.SimpleString;
+import org.hornetq.api.core.client.ClientConsumer;
+import org.hornetq.api.core.client.ClientMessage;
+import org.hornetq.api.core.client.ClientProducer;
+import org.hornetq.api.core.client.ClientSession;
+import org.hornetq.api.core.client.ClientSessionFactory;
+import org.hornetq.api.core.client.ServerLocator;
+import org.hornetq.core.config.Configuration;
+import org.hornetq.core.paging.cursor.PageCursorProvider;
+import org.hornetq.core.server.HornetQServer;
+import org.hornetq.core.settings.impl.AddressSettings;
+import org.hornetq.tests.unit.UnitTestLogger;
+import org.hornetq.tests.util.ServiceTestBase;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Measures consuming a queue that is entirely paged after a restart, so every page has to be read
+ * from disk, with and without reading pages ahead of the queue.
+ * <p>
+ * The messages are sent in transactions as a blocking send of each message would dominate the run.
+ */
+public class PagePrefetchTest extends ServiceTestBase
+{
+   private static final UnitTestLogger log = UnitTestLogger.LOGGER;
+
+   private static final int NUMBER_OF_MESSAGES = 100000;
+
+   private static final int MESSAGE_SIZE = 1024;
+
+   private static final int PAGE_SIZE = 1024 * 1024;
+
+   private static final SimpleString ADDRESS = new SimpleString("queue");
+
+   @Test
+   public void testPrefetch() throws Exception
+   {
+      consume(0);
+      consume(4);
+   }
+
+   private void consume(final int prefetchDepth) throws Exception
+   {
+      clearDataRecreateServerDirs();
+
+      Configuration config = createDefaultConfig();
+      config.setJournalSyncNonTransactional(false);
+
+      AddressSettings settings = new AddressSettings();
+      settings.setPagePrefetchDepth(prefetchDepth);
+      // the cached pages beyond the ones read ahead: read, acknowledged and written
+      settings.setPageCacheMaxSize(prefetchDepth + 3);
+      Map<String, AddressSettings> settingsMap = new HashMap<String, AddressSettings>();
+      settingsMap.put(ADDRESS.toString(), settings);
+
+      HornetQServer server = createServer(true, config, PAGE_SIZE, 2 * PAGE_SIZE, settingsMap);
+      server.start();
+
+      ServerLocator locator = createInVMNonHALocator();
+      ClientSessionFactory factory = createSessionFactory(locator);
+      ClientSession session = factory.createSession(false, false);
+      session.createQueue(ADDRESS, ADDRESS, true);
+
+      ClientProducer producer = session.createProducer(ADDRESS);
+      for (int i = 0; i < NUMBER_OF_MESSAGES; i++)
+      {
+         ClientMessage message = session.createMessage(true);
+         message.getBodyBuffer().writeBytes(new byte[MESSAGE_SIZE]);
+         producer.send(message);
+         if (i % 1000 == 999)
+         {
+            session.commit();
+         }
+      }
+      session.commit();
+      session.close();
+      locator.close();
+      server.stop();
+
+      // nothing is cached after the restart
+      server.start();
+
+      locator = createInVMNonHALocator();
+      factory = createSessionFactory(locator);
+      session = factory.createSession(true, true);
+      ClientConsumer consumer = session.createConsumer(ADDRESS);
+      session.start();
+
+      long start = System.nanoTime();
+      for (int i = 0; i < NUMBER_OF_MESSAGES; i++)
+      {
+         ClientMessage message = consumer.receive(5000);
+         Assert.assertNotNull(message);
+         message.acknowledge();
+      }
+      long time = System.nanoTime() - start;
+
+      PageCursorProvider provider = server.getPagingManager().getPageStore(ADDRESS).getCursorProvider();
+
+      log.info("prefetch depth " + prefetchDepth + ": consumed " + NUMBER_OF_MESSAGES + " messages in " +
+               TimeUnit.NANOSECONDS.toMillis(time) + " ms, page cache hits " + provider.getCacheHits() +
+               ", misses " + provider.getCacheMisses() + ", prefetched pages " + provider.getPrefetchedPages() +
+               ", waited " + provider.getStallTime() + " ms on reads");
+
+      session.close();
+      locator.close();
+      server.stop();
+   }
+}
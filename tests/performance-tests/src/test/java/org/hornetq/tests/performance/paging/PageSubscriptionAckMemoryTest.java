@@ -0,0 +1,137 @@
+/*
+ * Copyright 2010 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.tests.performance.paging;
+
+import java.util.HashMap;
+
+import org.hornetq.api.core.SimpleString;
+import org.hornetq.api.core.client.ClientMessage;
+import org.hornetq.api.core.client.ClientProducer;
+import org.hornetq.api.core.client.ClientSession;
+import org.hornetq.api.core.client.ClientSessionFactory;
+import org.hornetq.api.core.client.ServerLocator;
+import org.hornetq.core.config.Configuration;
+import org.hornetq.core.paging.PagingStore;
+import org.hornetq.core.paging.cursor.PageCursorProvider;
+import org.hornetq.core.paging.cursor.PageSubscription;
+import org.hornetq.core.paging.cursor.impl.PagePositionImpl;
+import org.hornetq.core.server.HornetQServer;
+import org.hornetq.core.settings.impl.AddressSettings;
+import org.hornetq.tests.unit.UnitTestLogger;
+import org.hornetq.tests.util.ServiceTestBase;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Measures the heap taken by the acks page subscriptions keep for the pages they are still
+ * consuming, with many durable subscriptions on one paged address.
+ * <p>
+ * Every subscription acks all the messages of every page but the last one, so no page is complete
+ * and no ack is cleaned up.
+ */
+public class PageSubscriptionAckMemoryTest extends ServiceTestBase
+{
+   private static final UnitTestLogger log = UnitTestLogger.LOGGER;
+
+   private static final int SUBSCRIPTIONS = 200;
+
+   private static final int NUMBER_OF_MESSAGES = 20000;
+
+   private static final int MESSAGE_SIZE = 1024;
+
+   private static final SimpleString ADDRESS = new SimpleString("topic");
+
+   @Test
+   public void testAckMemory() throws Exception
+   {
+      Configuration config = createDefaultConfig();
+      config.setJournalSyncNonTransactional(false);
+
+      HornetQServer server = createServer(true, config, 1024 * 1024, 2 * 1024 * 1024, new HashMap<String, AddressSettings>());
+      server.start();
+
+      ServerLocator locator = createInVMNonHALocator();
+      ClientSessionFactory factory = createSessionFactory(locator);
+      ClientSession session = factory.createSession(true, true);
+
+      for (int i = 0; i < SUBSCRIPTIONS; i++)
+      {
+         session.createQueue(ADDRESS, ADDRESS.concat("." + i), true);
+      }
+
+      ClientProducer producer = session.createProducer(ADDRESS);
+      for (int i = 0; i < NUMBER_OF_MESSAGES; i++)
+      {
+         ClientMessage message = session.createMessage(true);
+         message.getBodyBuffer().writeBytes(new byte[MESSAGE_SIZE]);
+         producer.send(message);
+      }
+      session.close();
+
+      PagingStore store = server.getPagingManager().getPageStore(ADDRESS);
+      Assert.assertTrue(store.isPaging());
+
+      PageCursorProvider provider = store.getCursorProvider();
+
+      // the page caches are read before the baseline so only the acks are measured
+      long firstPage = store.getFirstPage();
+      long lastPage = store.getCurrentWritingPage() - 1;
+      int[] messagesPerPage = new int[(int)(lastPage - firstPage + 1)];
+      for (long page = firstPage; page <= lastPage; page++)
+      {
+         messagesPerPage[(int)(page - firstPage)] = provider.getPageCache(page).getNumberOfMessages();
+      }
+
+      long baseline = usedMemory();
+
+      long acks = 0;
+      for (int i = 0; i < SUBSCRIPTIONS; i++)
+      {
+         PageSubscription subscription = server.locateQueue(ADDRESS.concat("." + i)).getPageSubscription();
+         for (long page = firstPage; page <= lastPage; page++)
+         {
+            for (int nr = 0; nr < messagesPerPage[(int)(page - firstPage)] - 1; nr++)
+            {
+               subscription.confirmPosition(new PagePositionImpl(page, nr));
+               acks++;
+            }
+         }
+      }
+
+      server.getStorageManager().waitOnOperations();
+      for (int i = 0; i < SUBSCRIPTIONS; i++)
+      {
+         server.locateQueue(ADDRESS.concat("." + i)).getPageSubscription().flushExecutors();
+      }
+
+      long used = usedMemory() - baseline;
+
+      log.info(SUBSCRIPTIONS + " subscriptions, " + (lastPage - firstPage + 1) + " pages, " + acks +
+               " acks pending: " + used / (1024 * 1024) + " MiB, " + used / acks + " bytes per ack");
+
+      locator.close();
+      server.stop();
+   }
+
+   private static long usedMemory() throws InterruptedException
+   {
+      Runtime runtime = Runtime.getRuntime();
+      for (int i = 0; i < 5; i++)
+      {
+         System.gc();
+         Thread.sleep(100);
+      }
+      return runtime.totalMemory() - runtime.freeMemory();
+   }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2009 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.tests.performance.postoffice;
+
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.hornetq.api.core.SimpleString;
+import org.hornetq.api.core.client.ClientMessage;
+import org.hornetq.api.core.client.ClientProducer;
+import org.hornetq.api.core.client.ClientSession;
+import org.hornetq.api.core.client.ClientSessionFactory;
+import org.hornetq.api.core.client.ServerLocator;
+import org.hornetq.core.persistence.impl.journal.JournalRecordIds;
+import org.hornetq.core.server.HornetQServer;
+import org.hornetq.core.server.Queue;
+import org.hornetq.tests.unit.UnitTestLogger;
+import org.hornetq.tests.util.ServiceTestBase;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Measures the routing of durable messages to an address with many durable subscriptions: the
+ * send throughput, the journal records written per message and the time to load them on restart.
+ */
+public class FanOutRoutingTest extends ServiceTestBase
+{
+   private static final UnitTestLogger log = UnitTestLogger.LOGGER;
+
+   private static final SimpleString ADDRESS = new SimpleString("topic");
+
+   @Test
+   public void testFanOut1000() throws Exception
+   {
+      fanOut(1000, 1000);
+   }
+
+   @Test
+   public void testFanOut10000() throws Exception
+   {
+      fanOut(10000, 100);
+   }
+
+   private void fanOut(final int subscriptions, final int numMessages) throws Exception
+   {
+      HornetQServer server = createServer(true);
+      server.start();
+
+      Queue[] queues = new Queue[subscriptions];
+      for (int i = 0; i < subscriptions; i++)
+      {
+         queues[i] = server.createQueue(ADDRESS, new SimpleString("sub" + i), null, true, false);
+      }
+
+      ServerLocator locator = createInVMNonHALocator();
+      ClientSessionFactory factory = createSessionFactory(locator);
+      ClientSession session = factory.createSession(false, true, true);
+      ClientProducer producer = session.createProducer(ADDRESS);
+
+      byte[] body = new byte[100];
+
+      // warm up the routing
+      for (int i = 0; i < 10; i++)
+      {
+         ClientMessage message = session.createMessage(false);
+         message.getBodyBuffer().writeBytes(body);
+         producer.send(message);
+      }
+
+      long start = System.nanoTime();
+      for (int i = 0; i < numMessages; i++)
+      {
+         ClientMessage message = session.createMessage(true);
+         message.getBodyBuffer().writeBytes(body);
+         producer.send(message);
+      }
+      // a round trip, the server handles the packets of the session in order
+      session.queueQuery(ADDRESS);
+      long time = System.nanoTime() - start;
+
+      Assert.assertEquals(numMessages + 10, queues[subscriptions - 1].getMessageCount());
+
+      session.close();
+      locator.close();
+      server.stop();
+
+      HashMap<Integer, AtomicInteger> records = countJournalLivingRecords(server.getConfiguration());
+      int refRecords = count(records, JournalRecordIds.ADD_REF) + count(records, JournalRecordIds.ADD_REFS);
+
+      start = System.nanoTime();
+      server.start();
+      long loadTime = System.nanoTime() - start;
+
+      Assert.assertEquals(numMessages,
+                          ((Queue)server.getPostOffice()
+                                        .getBinding(new SimpleString("sub" + (subscriptions - 1)))
+                                        .getBindable()).getMessageCount());
+
+      log.info(subscriptions + " subscriptions: routing " + numMessages * 1000000000L / Math.max(1, time) +
+               " msgs/s, " + (long)numMessages * subscriptions * 1000000000L / Math.max(1, time) +
+               " refs/s, " + refRecords / numMessages + " reference records per message, loading " +
+               TimeUnit.NANOSECONDS.toMillis(loadTime) + " ms");
+
+      server.stop();
+   }
+
+   private static int count(final HashMap<Integer, AtomicInteger> records, final byte recordType)
+   {
+      AtomicInteger count = records.get((int)recordType);
+      return count == null ? 0 : count.get();
+   }
+}
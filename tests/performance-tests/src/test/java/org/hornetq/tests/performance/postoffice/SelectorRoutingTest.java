@@ -0,0 +1,217 @@
+/*
+ * Copyright 2009 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.tests.performance.postoffice;
+
+import org.hornetq.api.core.SimpleString;
+import org.hornetq.core.filter.Filter;
+import org.hornetq.core.filter.impl.FilterImpl;
+import org.hornetq.core.postoffice.Binding;
+import org.hornetq.core.postoffice.BindingType;
+import org.hornetq.core.postoffice.impl.BindingsImpl;
+import org.hornetq.core.server.Bindable;
+import org.hornetq.core.server.RoutingContext;
+import org.hornetq.core.server.ServerMessage;
+import org.hornetq.core.server.impl.RoutingContextImpl;
+import org.hornetq.core.server.impl.ServerMessageImpl;
+import org.hornetq.tests.unit.UnitTestLogger;
+import org.hornetq.tests.util.UnitTestCase;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Measures the routing of messages by {@link BindingsImpl} to an address with 10k subscriptions
+ * whose selectors are like "region = 'r1' AND type = 't2'", with the filters looked up by the
+ * value of their property and with every filter evaluated.
+ */
+public class SelectorRoutingTest extends UnitTestCase
+{
+   private static final UnitTestLogger log = UnitTestLogger.LOGGER;
+
+   private static final int SUBSCRIPTIONS = 10000;
+
+   private static final int REGIONS = 100;
+
+   private static final int TYPES = 10;
+
+   private static final int MESSAGES = 10000;
+
+   private static final SimpleString REGION = new SimpleString("region");
+
+   private static final SimpleString TYPE = new SimpleString("type");
+
+   @Test
+   public void testEqualitySelectors() throws Exception
+   {
+      long indexed = route(true);
+      long evaluated = route(false);
+
+      log.info(SUBSCRIPTIONS + " selectors: routing " + indexed / MESSAGES + " ns with the index, " + evaluated /
+               MESSAGES + " ns evaluating every filter");
+   }
+
+   /**
+    * @return the best time to route the messages
+    */
+   private long route(final boolean index) throws Exception
+   {
+      BindingsImpl bindings = new BindingsImpl(new SimpleString("topic"), null, null);
+
+      CountingBinding[] subscriptions = new CountingBinding[SUBSCRIPTIONS];
+      for (int i = 0; i < SUBSCRIPTIONS; i++)
+      {
+         Filter filter = FilterImpl.createFilter("region = 'r" + i % REGIONS + "' AND type = 't" + i / REGIONS % TYPES +
+                                                 "'");
+         subscriptions[i] = new CountingBinding(new SimpleString("sub" + i), index ? filter : new OpaqueFilter(filter));
+         bindings.addBinding(subscriptions[i]);
+      }
+
+      ServerMessage[] messages = new ServerMessage[MESSAGES];
+      for (int i = 0; i < MESSAGES; i++)
+      {
+         messages[i] = new ServerMessageImpl(i, 100);
+         messages[i].putStringProperty(REGION, new SimpleString("r" + i % REGIONS));
+         messages[i].putStringProperty(TYPE, new SimpleString("t" + i / REGIONS % TYPES));
+      }
+
+      RoutingContext context = new RoutingContextImpl(null);
+
+      long best = Long.MAX_VALUE;
+      for (int i = 0; i < 5; i++)
+      {
+         long start = System.nanoTime();
+         for (ServerMessage message : messages)
+         {
+            bindings.route(message, context);
+         }
+         best = Math.min(best, System.nanoTime() - start);
+      }
+
+      // each message matches the subscriptions on its region and type
+      long copies = 0;
+      for (CountingBinding subscription : subscriptions)
+      {
+         copies += subscription.routed;
+      }
+      Assert.assertEquals(5L * MESSAGES * SUBSCRIPTIONS / REGIONS / TYPES, copies);
+
+      return best;
+   }
+
+   /**
+    * Hides the {@link FilterImpl} from the bindings so that it is evaluated for every message.
+    */
+   private static final class OpaqueFilter implements Filter
+   {
+      private final Filter filter;
+
+      OpaqueFilter(final Filter filter)
+      {
+         this.filter = filter;
+      }
+
+      public boolean match(final ServerMessage message)
+      {
+         return filter.match(message);
+      }
+
+      public SimpleString getFilterString()
+      {
+         return filter.getFilterString();
+      }
+   }
+
+   private static final class CountingBinding implements Binding
+   {
+      private final SimpleString name;
+
+      private final Filter filter;
+
+      private int routed;
+
+      CountingBinding(final SimpleString name, final Filter filter)
+      {
+         this.name = name;
+         this.filter = filter;
+      }
+
+      public SimpleString getAddress()
+      {
+         return null;
+      }
+
+      public Bindable getBindable()
+      {
+         return null;
+      }
+
+      public BindingType getType()
+      {
+         return BindingType.LOCAL_QUEUE;
+      }
+
+      public SimpleString getUniqueName()
+      {
+         return name;
+      }
+
+      public SimpleString getRoutingName()
+      {
+         return name;
+      }
+
+      public SimpleString getClusterName()
+      {
+         return name;
+      }
+
+      public Filter getFilter()
+      {
+         return filter;
+      }
+
+      public boolean isHighAcceptPriority(final ServerMessage message)
+      {
+         return true;
+      }
+
+      public boolean isExclusive()
+      {
+         return false;
+      }
+
+      public long getID()
+      {
+         return 0;
+      }
+
+      public int getDistance()
+      {
+         return 0;
+      }
+
+      public void route(final ServerMessage message, final RoutingContext context) throws Exception
+      {
+         routed++;
+      }
+
+      public void close() throws Exception
+      {
+      }
+
+      public String toManagementString()
+      {
+         return "CountingBinding name=" + name;
+      }
+   }
+}
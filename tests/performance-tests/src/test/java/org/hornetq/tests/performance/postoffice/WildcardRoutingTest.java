@@ -0,0 +1,274 @@
+/*
+ * Copyright 2009 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.tests.performance.postoffice;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.hornetq.api.core.SimpleString;
+import org.hornetq.core.filter.Filter;
+import org.hornetq.core.postoffice.Binding;
+import org.hornetq.core.postoffice.BindingType;
+import org.hornetq.core.postoffice.Bindings;
+import org.hornetq.core.postoffice.BindingsFactory;
+import org.hornetq.core.postoffice.impl.WildcardAddressManager;
+import org.hornetq.core.server.Bindable;
+import org.hornetq.core.server.Queue;
+import org.hornetq.core.server.RoutingContext;
+import org.hornetq.core.server.ServerMessage;
+import org.hornetq.tests.unit.UnitTestLogger;
+import org.hornetq.tests.util.UnitTestCase;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Measures the {@link WildcardAddressManager} with a large topic tree: adding wildcard
+ * subscriptions, resolving the bindings of every topic the first time a message is routed to it
+ * and afterwards, and removing the subscriptions.
+ * <p>
+ * The topics are stock.region.sector.symbol. Most subscriptions are on one symbol of any region and
+ * sector, the others on every symbol of a sector or on a whole region.
+ */
+public class WildcardRoutingTest extends UnitTestCase
+{
+   private static final UnitTestLogger log = UnitTestLogger.LOGGER;
+
+   private static final int TOPICS = 50000;
+
+   private static final int SUBSCRIPTIONS = 100000;
+
+   private static final int REGIONS = 10;
+
+   private static final int SECTORS = 100;
+
+   @Test
+   public void testLargeTopicTree() throws Exception
+   {
+      WildcardAddressManager manager = new WildcardAddressManager(new ListBindingsFactory());
+
+      SimpleString[] topics = new SimpleString[TOPICS];
+      for (int i = 0; i < TOPICS; i++)
+      {
+         topics[i] = new SimpleString("stock.r" + i % REGIONS + ".s" + i / REGIONS % SECTORS + ".t" + i);
+      }
+
+      Random random = new Random(1234);
+      List<SimpleBinding> subscriptions = new ArrayList<SimpleBinding>(SUBSCRIPTIONS);
+      long expectedCopies = 0;
+      for (int i = 0; i < SUBSCRIPTIONS; i++)
+      {
+         int topic = random.nextInt(TOPICS);
+         String address;
+         if (i % 1000 == 0)
+         {
+            address = "stock.r" + topic % REGIONS + ".#";
+            expectedCopies += TOPICS / REGIONS;
+         }
+         else if (i % 10 == 0)
+         {
+            address = "stock.r" + topic % REGIONS + ".s" + topic / REGIONS % SECTORS + ".*";
+            expectedCopies += TOPICS / REGIONS / SECTORS;
+         }
+         else
+         {
+            address = "stock.*.*.t" + topic;
+            expectedCopies++;
+         }
+         subscriptions.add(new SimpleBinding(new SimpleString(address), new SimpleString("sub" + i)));
+      }
+
+      long start = System.nanoTime();
+      for (SimpleBinding subscription : subscriptions)
+      {
+         manager.addBinding(subscription);
+      }
+      long subscribed = System.nanoTime() - start;
+
+      start = System.nanoTime();
+      long copies = route(manager, topics);
+      long firstRoute = System.nanoTime() - start;
+
+      Assert.assertEquals(expectedCopies, copies);
+
+      long route = Long.MAX_VALUE;
+      for (int i = 0; i < 5; i++)
+      {
+         start = System.nanoTime();
+         Assert.assertEquals(expectedCopies, route(manager, topics));
+         route = Math.min(route, System.nanoTime() - start);
+      }
+
+      start = System.nanoTime();
+      for (SimpleBinding subscription : subscriptions)
+      {
+         manager.removeBinding(subscription.getUniqueName(), null);
+      }
+      long unsubscribed = System.nanoTime() - start;
+
+      Assert.assertEquals(0, route(manager, topics));
+
+      log.info(TOPICS + " topics, " + SUBSCRIPTIONS + " subscriptions: subscribing took " +
+               TimeUnit.NANOSECONDS.toMillis(subscribed) + " ms, first routing to each topic " +
+               firstRoute / TOPICS + " ns, routing " + route / TOPICS + " ns, unsubscribing " +
+               TimeUnit.NANOSECONDS.toMillis(unsubscribed) + " ms");
+   }
+
+   /**
+    * @return the number of bindings found for all the topics
+    */
+   private long route(final WildcardAddressManager manager, final SimpleString[] topics) throws Exception
+   {
+      long count = 0;
+      for (SimpleString topic : topics)
+      {
+         Bindings bindings = manager.getBindingsForRoutingAddress(topic);
+         if (bindings != null)
+         {
+            count += bindings.getBindings().size();
+         }
+      }
+      return count;
+   }
+
+   private static final class ListBindingsFactory implements BindingsFactory
+   {
+      public Bindings createBindings(final SimpleString address) throws Exception
+      {
+         return new ListBindings();
+      }
+   }
+
+   private static final class ListBindings implements Bindings
+   {
+      private final List<Binding> bindings = new ArrayList<Binding>(1);
+
+      public Collection<Binding> getBindings()
+      {
+         return bindings;
+      }
+
+      public void addBinding(final Binding binding)
+      {
+         bindings.add(binding);
+      }
+
+      public void removeBinding(final Binding binding)
+      {
+         bindings.remove(binding);
+      }
+
+      public void setRouteWhenNoConsumers(final boolean takePriorityIntoAccount)
+      {
+      }
+
+      public void setLoadAwareRouting(final boolean loadAwareRouting)
+      {
+      }
+
+      public boolean redistribute(final ServerMessage message,
+                                  final Queue originatingQueue,
+                                  final RoutingContext context) throws Exception
+      {
+         return false;
+      }
+
+      public void route(final ServerMessage message, final RoutingContext context) throws Exception
+      {
+      }
+   }
+
+   private static final class SimpleBinding implements Binding
+   {
+      private final SimpleString address;
+
+      private final SimpleString name;
+
+      SimpleBinding(final SimpleString address, final SimpleString name)
+      {
+         this.address = address;
+         this.name = name;
+      }
+
+      public SimpleString getAddress()
+      {
+         return address;
+      }
+
+      public Bindable getBindable()
+      {
+         return null;
+      }
+
+      public BindingType getType()
+      {
+         return BindingType.LOCAL_QUEUE;
+      }
+
+      public SimpleString getUniqueName()
+      {
+         return name;
+      }
+
+      public SimpleString getRoutingName()
+      {
+         return name;
+      }
+
+      public SimpleString getClusterName()
+      {
+         return name;
+      }
+
+      public Filter getFilter()
+      {
+         return null;
+      }
+
+      public boolean isHighAcceptPriority(final ServerMessage message)
+      {
+         return false;
+      }
+
+      public boolean isExclusive()
+      {
+         return false;
+      }
+
+      public long getID()
+      {
+         return 0;
+      }
+
+      public int getDistance()
+      {
+         return 0;
+      }
+
+      public void route(final ServerMessage message, final RoutingContext context) throws Exception
+      {
+      }
+
+      public void close() throws Exception
+      {
+      }
+
+      public String toManagementString()
+      {
+         return "SimpleBinding address=" + address;
+      }
+   }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2010 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.tests.performance.producer;
+
+import java.util.concurrent.TimeUnit;
+
+import org.hornetq.api.core.SimpleString;
+import org.hornetq.api.core.client.ClientMessage;
+import org.hornetq.api.core.client.ClientProducer;
+import org.hornetq.api.core.client.ClientSession;
+import org.hornetq.api.core.client.ClientSessionFactory;
+import org.hornetq.api.core.client.ServerLocator;
+import org.hornetq.core.server.HornetQServer;
+import org.hornetq.tests.unit.UnitTestLogger;
+import org.hornetq.tests.util.ServiceTestBase;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Measures the throughput of a producer sending small messages asynchronously over Netty, one
+ * packet per message and in batches of several sizes.
+ * <p>
+ * The time is measured until the server has routed every message.
+ */
+public class ProducerBatchSendTest extends ServiceTestBase
+{
+   private static final UnitTestLogger log = UnitTestLogger.LOGGER;
+
+   private static final int NUM_MESSAGES = 100000;
+
+   private static final int[] BATCH_SIZES = new int[] { -1, 4 * 1024, 64 * 1024 };
+
+   private static final SimpleString ADDRESS = new SimpleString("queue");
+
+   @Test
+   public void testSend() throws Exception
+   {
+      for (int batchSize : BATCH_SIZES)
+      {
+         send(batchSize, false);
+      }
+   }
+
+   @Test
+   public void testTransactedSend() throws Exception
+   {
+      for (int batchSize : BATCH_SIZES)
+      {
+         send(batchSize, true);
+      }
+   }
+
+   private void send(final int batchSize, final boolean transacted) throws Exception
+   {
+      HornetQServer server = createServer(false, true);
+      server.start();
+
+      ServerLocator locator = createNettyNonHALocator();
+      locator.setProducerBatchSize(batchSize);
+      ClientSessionFactory factory = createSessionFactory(locator);
+      ClientSession session = factory.createSession(false, !transacted, !transacted);
+      session.createQueue(ADDRESS, ADDRESS, false);
+      ClientProducer producer = session.createProducer(ADDRESS);
+
+      byte[] body = new byte[100];
+
+      long start = System.nanoTime();
+      for (int i = 0; i < NUM_MESSAGES; i++)
+      {
+         ClientMessage message = session.createMessage(false);
+         message.getBodyBuffer().writeBytes(body);
+         producer.send(message);
+         if (transacted && i % 1000 == 999)
+         {
+            session.commit();
+         }
+      }
+      producer.close();
+      // a round trip, the server handles the packets of the session in order
+      session.queueQuery(ADDRESS);
+      long time = System.nanoTime() - start;
+
+      Assert.assertEquals(NUM_MESSAGES, getMessageCount(server.getPostOffice(), ADDRESS.toString()));
+
+      log.info((transacted ? "transacted" : "non transacted") + " send, batch size " + batchSize + ": " +
+               TimeUnit.NANOSECONDS.toMillis(time) + " ms, " + NUM_MESSAGES * 1000000000L / Math.max(1, time) +
+               " msgs/s");
+
+      session.close();
+      locator.close();
+      server.stop();
+   }
+}
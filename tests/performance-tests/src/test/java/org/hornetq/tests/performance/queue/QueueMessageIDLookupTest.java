@@ -0,0 +1,120 @@
+/*
+ * Copyright 2009 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.tests.performance.queue;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import org.hornetq.api.core.SimpleString;
+import org.hornetq.core.server.impl.QueueImpl;
+import org.hornetq.tests.unit.UnitTestLogger;
+import org.hornetq.tests.util.UnitTestCase;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Measures the time taken by management operations on single messages of a large queue, with and
+ * without the message-id index, and the memory taken by the index.
+ */
+public class QueueMessageIDLookupTest extends UnitTestCase
+{
+   private static final UnitTestLogger log = UnitTestLogger.LOGGER;
+
+   private static final int NUMBER_OF_MESSAGES = 1000000;
+
+   private static final int LOOKUPS = 50;
+
+   private ScheduledExecutorService scheduledExecutor;
+
+   private ExecutorService executor;
+
+   @Override
+   @Before
+   public void setUp() throws Exception
+   {
+      super.setUp();
+      scheduledExecutor = Executors.newSingleThreadScheduledExecutor();
+      executor = Executors.newSingleThreadExecutor();
+   }
+
+   @Override
+   @After
+   public void tearDown() throws Exception
+   {
+      scheduledExecutor.shutdownNow();
+      executor.shutdownNow();
+      super.tearDown();
+   }
+
+   @Test
+   public void testLookup() throws Exception
+   {
+      QueueImpl queue = new QueueImpl(1,
+                                      new SimpleString("address"),
+                                      new SimpleString("queue"),
+                                      null,
+                                      false,
+                                      false,
+                                      scheduledExecutor,
+                                      null,
+                                      null,
+                                      null,
+                                      executor);
+
+      for (long id = 0; id < NUMBER_OF_MESSAGES; id++)
+      {
+         queue.addTail(generateReference(queue, id));
+      }
+      queue.flushExecutor();
+
+      Assert.assertEquals(NUMBER_OF_MESSAGES, queue.getMessageCount());
+
+      long scan = lookup(queue, 0);
+
+      queue.setIndexMessageIDs(true);
+
+      long indexed = lookup(queue, LOOKUPS);
+
+      log.info(NUMBER_OF_MESSAGES + " messages: getReference + changeReferencePriority took " + scan / LOOKUPS +
+               " us scanning, " + indexed / LOOKUPS + " us indexed, the index takes " +
+               queue.getMessageIDIndexMemorySize() / NUMBER_OF_MESSAGES + " bytes/message");
+
+      Assert.assertTrue(indexed < scan);
+   }
+
+   /**
+    * Looks up and re-prioritises messages from the end of the queue, the worst case for a scan.
+    * @return the time in microseconds
+    */
+   private long lookup(final QueueImpl queue, final int offset) throws Exception
+   {
+      long start = System.nanoTime();
+
+      for (int i = 0; i < LOOKUPS; i++)
+      {
+         long id = NUMBER_OF_MESSAGES - 1 - offset - i;
+         Assert.assertNotNull(queue.getReference(id));
+         Assert.assertTrue(queue.changeReferencePriority(id, (byte)4));
+      }
+
+      long time = (System.nanoTime() - start) / 1000;
+
+      queue.flushExecutor();
+
+      return time;
+   }
+}
@@ -0,0 +1,216 @@
+/*
+ * Copyright 2009 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.tests.performance.queue;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.hornetq.api.core.SimpleString;
+import org.hornetq.core.filter.Filter;
+import org.hornetq.core.server.Consumer;
+import org.hornetq.core.server.HandleStatus;
+import org.hornetq.core.server.MessageReference;
+import org.hornetq.core.server.impl.QueueImpl;
+import org.hornetq.tests.unit.UnitTestLogger;
+import org.hornetq.tests.util.UnitTestCase;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Measures how the throughput of a single {@link QueueImpl} scales with the number of producers
+ * adding to it while one consumer takes everything that is delivered.
+ * <p>
+ * The enqueue rate is taken when every producer is done, the delivery rate when the consumer got
+ * every message. Deliveries are made by one thread, so only the enqueue rate grows with producers.
+ */
+public class QueueProducerScalingTest extends UnitTestCase
+{
+   private static final UnitTestLogger log = UnitTestLogger.LOGGER;
+
+   private static final int[] PRODUCERS = new int[]{1, 2, 4, 8};
+
+   private static final int NUMBER_OF_MESSAGES = 2000000;
+
+   private static final SimpleString ADDRESS = new SimpleString("address");
+
+   private ScheduledExecutorService scheduledExecutor;
+
+   private ExecutorService executor;
+
+   @Override
+   @Before
+   public void setUp() throws Exception
+   {
+      super.setUp();
+      scheduledExecutor = Executors.newSingleThreadScheduledExecutor();
+      executor = Executors.newSingleThreadExecutor();
+   }
+
+   @Override
+   @After
+   public void tearDown() throws Exception
+   {
+      scheduledExecutor.shutdownNow();
+      executor.shutdownNow();
+      super.tearDown();
+   }
+
+   @Test
+   public void testProducerScaling() throws Exception
+   {
+      // warm up
+      run(2);
+
+      for (int producers : PRODUCERS)
+      {
+         long bestEnqueue = Long.MAX_VALUE;
+         long bestDelivery = Long.MAX_VALUE;
+         for (int i = 0; i < 5; i++)
+         {
+            long[] times = run(producers);
+            bestEnqueue = Math.min(bestEnqueue, times[0]);
+            bestDelivery = Math.min(bestDelivery, times[1]);
+         }
+         log.info(producers + " producers: enqueued " + NUMBER_OF_MESSAGES * 1000L / bestEnqueue +
+                  " messages/s, delivered " + NUMBER_OF_MESSAGES * 1000L / bestDelivery + " messages/s");
+      }
+   }
+
+   /**
+    * @return the time in ms for the producers to finish and for the consumer to get every message
+    */
+   private long[] run(final int producers) throws Exception
+   {
+      final QueueImpl queue = new QueueImpl(1,
+                                            ADDRESS,
+                                            new SimpleString("queue"),
+                                            null,
+                                            false,
+                                            false,
+                                            scheduledExecutor,
+                                            null,
+                                            null,
+                                            null,
+                                            executor);
+
+      CountingConsumer consumer = new CountingConsumer(NUMBER_OF_MESSAGES);
+      queue.addConsumer(consumer);
+
+      final int perProducer = NUMBER_OF_MESSAGES / producers;
+
+      // the references are created up front so only the queue is measured
+      final MessageReference[][] refs = new MessageReference[producers][perProducer];
+      for (int p = 0; p < producers; p++)
+      {
+         for (int i = 0; i < perProducer; i++)
+         {
+            refs[p][i] = generateReference(queue, p * perProducer + i);
+         }
+      }
+
+      final CyclicBarrier barrier = new CyclicBarrier(producers + 1);
+
+      Thread[] threads = new Thread[producers];
+      for (int p = 0; p < producers; p++)
+      {
+         final MessageReference[] producerRefs = refs[p];
+         threads[p] = new Thread("producer-" + p)
+         {
+            @Override
+            public void run()
+            {
+               try
+               {
+                  barrier.await();
+                  for (MessageReference ref : producerRefs)
+                  {
+                     queue.addTail(ref);
+                  }
+               }
+               catch (Exception e)
+               {
+                  log.warn(e.getMessage(), e);
+               }
+            }
+         };
+         threads[p].start();
+      }
+
+      barrier.await();
+      long start = System.nanoTime();
+
+      for (Thread thread : threads)
+      {
+         thread.join();
+      }
+
+      long enqueued = System.nanoTime() - start;
+
+      Assert.assertTrue(consumer.latch.await(60, TimeUnit.SECONDS));
+
+      long delivered = System.nanoTime() - start;
+
+      Assert.assertEquals(perProducer * producers, queue.getMessagesAdded());
+
+      return new long[]{Math.max(1, TimeUnit.NANOSECONDS.toMillis(enqueued)),
+                        Math.max(1, TimeUnit.NANOSECONDS.toMillis(delivered))};
+   }
+
+   private static final class CountingConsumer implements Consumer
+   {
+      final CountDownLatch latch;
+
+      CountingConsumer(final int expected)
+      {
+         latch = new CountDownLatch(expected);
+      }
+
+      public HandleStatus handle(final MessageReference reference)
+      {
+         reference.getQueue().referenceHandled();
+         return HandleStatus.HANDLED;
+      }
+
+      public void proceedDeliver(final MessageReference reference)
+      {
+         latch.countDown();
+      }
+
+      public Filter getFilter()
+      {
+         return null;
+      }
+
+      public void getDeliveringMessages(final List<MessageReference> refList)
+      {
+      }
+
+      public String debug()
+      {
+         return toString();
+      }
+
+      public String toManagementString()
+      {
+         return toString();
+      }
+   }
+}
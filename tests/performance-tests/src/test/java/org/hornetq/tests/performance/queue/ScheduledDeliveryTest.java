@@ -0,0 +1,128 @@
+/*
+ * Copyright 2009 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.tests.performance.queue;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.hornetq.api.core.SimpleString;
+import org.hornetq.core.server.MessageReference;
+import org.hornetq.core.server.impl.QueueImpl;
+import org.hornetq.tests.unit.UnitTestLogger;
+import org.hornetq.tests.util.UnitTestCase;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Measures the cost of scheduling a large number of messages on a {@link QueueImpl}, of removing
+ * some of them by id, and the time taken to deliver the rest to the queue once they are due.
+ */
+public class ScheduledDeliveryTest extends UnitTestCase
+{
+   private static final UnitTestLogger log = UnitTestLogger.LOGGER;
+
+   private static final int NUMBER_OF_MESSAGES = 1000000;
+
+   private static final int REMOVALS = 1000;
+
+   // the delivery times are spread over this many ms
+   private static final int SPREAD = 2000;
+
+   private ScheduledExecutorService scheduledExecutor;
+
+   private ExecutorService executor;
+
+   @Override
+   @Before
+   public void setUp() throws Exception
+   {
+      super.setUp();
+      scheduledExecutor = Executors.newSingleThreadScheduledExecutor();
+      executor = Executors.newSingleThreadExecutor();
+   }
+
+   @Override
+   @After
+   public void tearDown() throws Exception
+   {
+      scheduledExecutor.shutdownNow();
+      executor.shutdownNow();
+      super.tearDown();
+   }
+
+   @Test
+   public void testScheduleMillionMessages() throws Exception
+   {
+      QueueImpl queue = new QueueImpl(1,
+                                      new SimpleString("address"),
+                                      new SimpleString("queue"),
+                                      null,
+                                      false,
+                                      false,
+                                      scheduledExecutor,
+                                      null,
+                                      null,
+                                      null,
+                                      executor);
+
+      // the references are created up front so only the scheduling is measured
+      MessageReference[] refs = new MessageReference[NUMBER_OF_MESSAGES];
+      for (int i = 0; i < NUMBER_OF_MESSAGES; i++)
+      {
+         refs[i] = generateReference(queue, i);
+      }
+
+      long first = System.currentTimeMillis() + 1000;
+      for (int i = 0; i < NUMBER_OF_MESSAGES; i++)
+      {
+         refs[i].setScheduledDeliveryTime(first + (i * 7919L) % SPREAD);
+      }
+
+      long start = System.nanoTime();
+      for (MessageReference ref : refs)
+      {
+         queue.addTail(ref);
+      }
+      long scheduled = System.nanoTime() - start;
+
+      Assert.assertEquals(NUMBER_OF_MESSAGES, queue.getScheduledCount());
+
+      start = System.nanoTime();
+      for (int i = 0; i < REMOVALS; i++)
+      {
+         Assert.assertNotNull(queue.removeReferenceWithID(NUMBER_OF_MESSAGES - 1 - i));
+      }
+      long removed = System.nanoTime() - start;
+
+      long timeout = first + SPREAD + 60000;
+      while (queue.getScheduledCount() > 0 && System.currentTimeMillis() < timeout)
+      {
+         Thread.sleep(10);
+      }
+
+      long late = System.currentTimeMillis() - (first + SPREAD);
+
+      Assert.assertEquals(0, queue.getScheduledCount());
+      Assert.assertEquals(NUMBER_OF_MESSAGES - REMOVALS, queue.getMessageCount());
+
+      log.info(NUMBER_OF_MESSAGES + " scheduled messages: scheduling took " +
+               TimeUnit.NANOSECONDS.toMillis(scheduled) + " ms, " + REMOVALS + " removals by id took " +
+               TimeUnit.NANOSECONDS.toMicros(removed) / REMOVALS + " us each, the last ones were delivered " +
+               late + " ms after their time");
+   }
+}
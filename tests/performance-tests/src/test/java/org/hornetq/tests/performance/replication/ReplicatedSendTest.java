@@ -0,0 +1,177 @@
+/*
+ * Copyright 2009 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.tests.performance.replication;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.hornetq.api.core.SimpleString;
+import org.hornetq.api.core.TransportConfiguration;
+import org.hornetq.api.core.client.ClientMessage;
+import org.hornetq.api.core.client.ClientProducer;
+import org.hornetq.api.core.client.ClientSession;
+import org.hornetq.api.core.client.ClientSessionFactory;
+import org.hornetq.api.core.client.ServerLocator;
+import org.hornetq.core.config.Configuration;
+import org.hornetq.core.server.HornetQServer;
+import org.hornetq.tests.unit.UnitTestLogger;
+import org.hornetq.tests.util.ReplicatedBackupUtils;
+import org.hornetq.tests.util.ServiceTestBase;
+import org.hornetq.tests.util.TransportConfigurationUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Measures the throughput of producers sending durable messages over Netty to a server without a
+ * backup, and to a server replicating its journal to a backup, one packet per write and in
+ * batches of several sizes.
+ * <p>
+ * Several producers send at the same time, as the writes of a single producer waiting for each
+ * send to be replicated could not be batched.
+ */
+public class ReplicatedSendTest extends ServiceTestBase
+{
+   private static final UnitTestLogger log = UnitTestLogger.LOGGER;
+
+   private static final int PRODUCERS = 8;
+
+   private static final int MESSAGES_PER_PRODUCER = 5000;
+
+   private static final int[] BATCH_SIZES = new int[] { -1, 16 * 1024, 128 * 1024 };
+
+   private static final SimpleString ADDRESS = new SimpleString("queue");
+
+   @Test
+   public void testSend() throws Exception
+   {
+      send(false, -1, false);
+      for (int batchSize : BATCH_SIZES)
+      {
+         send(true, batchSize, false);
+      }
+   }
+
+   @Test
+   public void testTransactedSend() throws Exception
+   {
+      send(false, -1, true);
+      for (int batchSize : BATCH_SIZES)
+      {
+         send(true, batchSize, true);
+      }
+   }
+
+   private void send(final boolean replicated, final int batchSize, final boolean transacted) throws Exception
+   {
+      // the messages of the previous run must not be loaded
+      clearDataRecreateServerDirs();
+
+      Configuration liveConfig = createDefaultConfig(true);
+      liveConfig.setReplicationBatchSize(batchSize);
+
+      HornetQServer backup = null;
+      if (replicated)
+      {
+         TransportConfiguration liveConnector = TransportConfigurationUtils.getNettyConnector(true, 0);
+         TransportConfiguration backupConnector = TransportConfigurationUtils.getNettyConnector(false, 0);
+         TransportConfiguration backupAcceptor = TransportConfigurationUtils.getNettyAcceptor(false, 0);
+
+         Configuration backupConfig = createDefaultConfig();
+         backupConfig.setBindingsDirectory(backupConfig.getBindingsDirectory() + "_backup");
+         backupConfig.setJournalDirectory(backupConfig.getJournalDirectory() + "_backup");
+         backupConfig.setPagingDirectory(backupConfig.getPagingDirectory() + "_backup");
+         backupConfig.setLargeMessagesDirectory(backupConfig.getLargeMessagesDirectory() + "_backup");
+
+         ReplicatedBackupUtils.configureReplicationPair(backupConfig, backupConnector, backupAcceptor, liveConfig,
+                                                        liveConnector);
+         backup = createServer(backupConfig);
+      }
+
+      HornetQServer live = createServer(liveConfig);
+      live.start();
+      if (backup != null)
+      {
+         backup.start();
+         waitForRemoteBackupSynchronization(backup);
+      }
+
+      ServerLocator locator = createNettyNonHALocator();
+      ClientSessionFactory factory = createSessionFactory(locator);
+      ClientSession session = factory.createSession();
+      session.createQueue(ADDRESS, ADDRESS, true);
+
+      final CountDownLatch start = new CountDownLatch(1);
+      final AtomicReference<Exception> failure = new AtomicReference<Exception>();
+      Thread[] producers = new Thread[PRODUCERS];
+      for (int p = 0; p < PRODUCERS; p++)
+      {
+         final ClientSession producerSession = factory.createSession(false, !transacted, !transacted);
+         producers[p] = new Thread()
+         {
+            @Override
+            public void run()
+            {
+               try
+               {
+                  ClientProducer producer = producerSession.createProducer(ADDRESS);
+                  byte[] body = new byte[100];
+                  start.await();
+                  for (int i = 0; i < MESSAGES_PER_PRODUCER; i++)
+                  {
+                     ClientMessage message = producerSession.createMessage(true);
+                     message.getBodyBuffer().writeBytes(body);
+                     producer.send(message);
+                     if (transacted && i % 100 == 99)
+                     {
+                        producerSession.commit();
+                     }
+                  }
+                  producerSession.close();
+               }
+               catch (Exception e)
+               {
+                  failure.set(e);
+               }
+            }
+         };
+         producers[p].start();
+      }
+
+      long begin = System.nanoTime();
+      start.countDown();
+      for (Thread producer : producers)
+      {
+         producer.join();
+      }
+      long time = System.nanoTime() - begin;
+
+      Assert.assertNull(failure.get());
+      Assert.assertEquals(PRODUCERS * MESSAGES_PER_PRODUCER, getMessageCount(live.getPostOffice(),
+                                                                             ADDRESS.toString()));
+
+      log.info((transacted ? "transacted" : "non transacted") + " send, " +
+               (replicated ? "replicated with batch size " + batchSize : "not replicated") + ": " +
+               TimeUnit.NANOSECONDS.toMillis(time) + " ms, " + PRODUCERS * MESSAGES_PER_PRODUCER * 1000000000L /
+               Math.max(1, time) + " msgs/s");
+
+      session.close();
+      locator.close();
+      live.stop();
+      if (backup != null)
+      {
+         backup.stop();
+      }
+   }
+}
@@ -48,6 +48,8 @@ public class AddressSettingsDeployerTest extends UnitTestCase
                                + "      <redelivery-delay-multiplier>2</redelivery-delay-multiplier>\n"
                                + "      <max-redelivery-delay>12000</max-redelivery-delay>\n"
                                + "      <send-to-dla-on-no-route>true</send-to-dla-on-no-route>\n"
+                               + "      <index-message-ids>true</index-message-ids>\n"
+                               + "      <page-prefetch-depth>3</page-prefetch-depth>\n"
                                + "   </address-setting>";
 
    private AddressSettingsDeployer addressSettingsDeployer;
@@ -84,6 +86,8 @@ public class AddressSettingsDeployerTest extends UnitTestCase
       Assert.assertEquals(2.0, as.getRedeliveryMultiplier(), 0.000001);
       Assert.assertEquals(12000, as.getMaxRedeliveryDelay());
       Assert.assertTrue(as.isSendToDLAOnNoRoute());
+      Assert.assertTrue(as.isIndexMessageIDs());
+      Assert.assertEquals(3, as.getPagePrefetchDepth());
 
    }
 
@@ -3095,6 +3095,62 @@ public abstract class JournalImplTestUnit extends JournalImplTestBase
       loadAndCheck();
    }
 
+   @Test
+   public void testLoadReadingAhead() throws Exception
+   {
+      setup(2, 10 * 1024, true);
+
+      createJournal();
+      startJournal();
+      load();
+
+      // records, updates, deletes and transactions spread over many files, referring to earlier ones
+      for (int i = 0; i < 60; i++)
+      {
+         add(i);
+         if (i % 3 == 0)
+         {
+            update(i);
+         }
+         if (i > 10 && i % 4 == 0)
+         {
+            delete(i - 10);
+         }
+         if (i % 5 == 0)
+         {
+            addTx(1000 + i, 1000 + i);
+            updateTx(1000 + i, i);
+            if (i % 2 == 0)
+            {
+               commit(1000 + i);
+            }
+            else
+            {
+               rollback(1000 + i);
+            }
+         }
+      }
+
+      addTx(2000, 2000, 2001);
+      prepare(2000, new SimpleEncoding(10, (byte)0));
+
+      Assert.assertTrue(journal.getDataFilesCount() > 4);
+
+      stopJournal();
+      createJournal();
+      ((JournalImpl)journal).setLoadThreads(3);
+      startJournal();
+      loadAndCheck();
+
+      commit(2000);
+
+      stopJournal();
+      createJournal();
+      ((JournalImpl)journal).setLoadThreads(3);
+      startJournal();
+      loadAndCheck();
+   }
+
    @Test
    public void testReclaimAfterUpdate() throws Exception
    {
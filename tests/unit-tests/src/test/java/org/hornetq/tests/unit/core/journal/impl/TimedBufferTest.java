@@ -68,6 +68,17 @@ public class TimedBufferTest extends UnitTestCase
 
    @Test
    public void testFillBuffer()
+   {
+      testFillBuffer(false);
+   }
+
+   @Test
+   public void testFillBufferLockFree()
+   {
+      testFillBuffer(true);
+   }
+
+   private void testFillBuffer(final boolean lockFree)
    {
       final ArrayList<ByteBuffer> buffers = new ArrayList<ByteBuffer>();
       final AtomicInteger flushTimes = new AtomicInteger(0);
@@ -93,7 +104,7 @@ public class TimedBufferTest extends UnitTestCase
          }
       }
 
-      TimedBuffer timedBuffer = new TimedBuffer(100, TimedBufferTest.ONE_SECOND_IN_NANOS, false);
+      TimedBuffer timedBuffer = new TimedBuffer(100, TimedBufferTest.ONE_SECOND_IN_NANOS, false, lockFree);
 
       timedBuffer.start();
 
@@ -143,6 +154,17 @@ public class TimedBufferTest extends UnitTestCase
 
    @Test
    public void testTimingAndFlush() throws Exception
+   {
+      testTimingAndFlush(false);
+   }
+
+   @Test
+   public void testTimingAndFlushLockFree() throws Exception
+   {
+      testTimingAndFlush(true);
+   }
+
+   private void testTimingAndFlush(final boolean lockFree) throws Exception
    {
       final ArrayList<ByteBuffer> buffers = new ArrayList<ByteBuffer>();
       final AtomicInteger flushTimes = new AtomicInteger(0);
@@ -168,7 +190,7 @@ public class TimedBufferTest extends UnitTestCase
          }
       }
 
-      TimedBuffer timedBuffer = new TimedBuffer(100, TimedBufferTest.ONE_SECOND_IN_NANOS / 10, false);
+      TimedBuffer timedBuffer = new TimedBuffer(100, TimedBufferTest.ONE_SECOND_IN_NANOS / 10, false, lockFree);
 
       timedBuffer.start();
 
@@ -229,6 +251,115 @@ public class TimedBufferTest extends UnitTestCase
 
    }
 
+   @Test
+   public void testConcurrentAppendsLockFree() throws Exception
+   {
+      final int THREADS = 8;
+      final int RECORDS = 2000;
+      final int RECORD_SIZE = 10;
+
+      final ByteBuffer flushed = ByteBuffer.allocate(THREADS * RECORDS * RECORD_SIZE);
+      final AtomicInteger callbacks = new AtomicInteger(0);
+
+      class TestObserver implements TimedBufferObserver
+      {
+         public void flushBuffer(final ByteBuffer buffer, final boolean sync, final List<IOAsyncTask> tasks)
+         {
+            buffer.flip();
+            flushed.put(buffer);
+            callbacks.addAndGet(tasks.size());
+         }
+
+         public ByteBuffer newBuffer(final int minSize, final int maxSize)
+         {
+            return ByteBuffer.allocate(maxSize);
+         }
+
+         public int getRemainingBytes()
+         {
+            return Integer.MAX_VALUE;
+         }
+      }
+
+      final TimedBuffer timedBuffer = new TimedBuffer(1000, TimedBufferTest.ONE_SECOND_IN_NANOS / 1000, false, true);
+
+      timedBuffer.start();
+
+      try
+      {
+         timedBuffer.setObserver(new TestObserver());
+
+         final CountDownLatch start = new CountDownLatch(1);
+         final AtomicInteger errors = new AtomicInteger(0);
+
+         Thread[] threads = new Thread[THREADS];
+         for (int t = 0; t < THREADS; t++)
+         {
+            final byte threadID = (byte)t;
+            threads[t] = new Thread()
+            {
+               @Override
+               public void run()
+               {
+                  try
+                  {
+                     start.await();
+                     for (int i = 0; i < RECORDS; i++)
+                     {
+                        HornetQBuffer record = HornetQBuffers.fixedBuffer(RECORD_SIZE);
+                        record.writeByte(threadID);
+                        record.writeInt(i);
+                        record.writeBytes(new byte[RECORD_SIZE - 5]);
+
+                        timedBuffer.checkSize(RECORD_SIZE);
+                        timedBuffer.addBytes(record, i % 100 == 0, dummyCallback);
+                     }
+                  }
+                  catch (Throwable e)
+                  {
+                     e.printStackTrace();
+                     errors.incrementAndGet();
+                  }
+               }
+            };
+            threads[t].start();
+         }
+
+         start.countDown();
+
+         for (Thread thread : threads)
+         {
+            thread.join();
+         }
+
+         timedBuffer.flush();
+
+         Assert.assertEquals(0, errors.get());
+         Assert.assertEquals(THREADS * RECORDS, callbacks.get());
+         Assert.assertFalse(flushed.hasRemaining());
+
+         // every record is there once, and each thread's records are in order
+         int[] nextRecord = new int[THREADS];
+         flushed.flip();
+         while (flushed.hasRemaining())
+         {
+            byte threadID = flushed.get();
+            int recordID = flushed.getInt();
+            flushed.position(flushed.position() + RECORD_SIZE - 5);
+            Assert.assertEquals(nextRecord[threadID]++, recordID);
+         }
+
+         for (int t = 0; t < THREADS; t++)
+         {
+            Assert.assertEquals(RECORDS, nextRecord[t]);
+         }
+      }
+      finally
+      {
+         timedBuffer.stop();
+      }
+   }
+
    /**
     * This test will verify if the system will switch to spin case the system can't perform sleeps timely
     * due to proper kernel installations
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2010 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.tests.unit.core.paging.cursor;
+
+import java.util.BitSet;
+import java.util.Random;
+
+import org.hornetq.api.core.HornetQBuffer;
+import org.hornetq.api.core.HornetQBuffers;
+import org.hornetq.core.paging.cursor.PageAckBitSet;
+import org.hornetq.tests.util.UnitTestCase;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PageAckBitSetTest extends UnitTestCase
+{
+   @Test
+   public void testSetInOrder()
+   {
+      PageAckBitSet acks = new PageAckBitSet();
+      for (int i = 0; i < 1000; i++)
+      {
+         Assert.assertFalse(acks.get(i));
+         Assert.assertTrue(acks.set(i));
+         Assert.assertFalse(acks.set(i));
+         Assert.assertTrue(acks.get(i));
+      }
+      Assert.assertFalse(acks.get(1000));
+      Assert.assertEquals(999, acks.nextSetBit(999));
+      Assert.assertEquals(-1, acks.nextSetBit(1000));
+
+      // only the word with the last 40 bits is left after the full ones
+      Assert.assertEquals(4 + 4 + 8, acks.getEncodeSize());
+   }
+
+   @Test
+   public void testRandomAgainstBitSet()
+   {
+      Random random = new Random(4321);
+      PageAckBitSet acks = new PageAckBitSet();
+      BitSet expected = new BitSet();
+
+      for (int i = 0; i < 5000; i++)
+      {
+         // mostly in order, with some out of order
+         int nr = random.nextInt(10) == 0 ? random.nextInt(3000) : i / 2;
+         Assert.assertEquals(!expected.get(nr), acks.set(nr));
+         expected.set(nr);
+      }
+
+      assertSame(expected, acks);
+      assertSame(expected, acks.copy());
+   }
+
+   @Test
+   public void testEncoding()
+   {
+      PageAckBitSet acks = new PageAckBitSet();
+      BitSet expected = new BitSet();
+      for (int nr = 0; nr < 500; nr += nr < 200 ? 1 : 3)
+      {
+         acks.set(nr);
+         expected.set(nr);
+      }
+
+      HornetQBuffer buffer = HornetQBuffers.fixedBuffer(acks.getEncodeSize());
+      acks.encode(buffer);
+      Assert.assertEquals(acks.getEncodeSize(), buffer.writerIndex());
+
+      PageAckBitSet decoded = new PageAckBitSet();
+      decoded.decode(buffer);
+      Assert.assertFalse(buffer.readable());
+
+      assertSame(expected, decoded);
+   }
+
+   @Test
+   public void testClear()
+   {
+      PageAckBitSet acks = new PageAckBitSet();
+      for (int i = 0; i < 200; i++)
+      {
+         acks.set(i);
+      }
+      acks.clear();
+      Assert.assertFalse(acks.get(0));
+      Assert.assertEquals(-1, acks.nextSetBit(0));
+      Assert.assertTrue(acks.set(0));
+   }
+
+   private static void assertSame(final BitSet expected, final PageAckBitSet acks)
+   {
+      for (int nr = 0; nr < expected.length() + 100; nr++)
+      {
+         Assert.assertEquals("nr=" + nr, expected.get(nr), acks.get(nr));
+         Assert.assertEquals("nr=" + nr, expected.nextSetBit(nr), acks.nextSetBit(nr));
+      }
+   }
+}
@@ -0,0 +1,265 @@
+/*
+ * Copyright 2010 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.tests.unit.core.paging.cursor;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.hornetq.core.paging.PagedMessage;
+import org.hornetq.core.paging.cursor.PageCache;
+import org.hornetq.core.paging.cursor.PageCursorProvider;
+import org.hornetq.core.paging.cursor.impl.PageCacheManagerImpl;
+import org.hornetq.tests.util.UnitTestCase;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PageCacheManagerTest extends UnitTestCase
+{
+   @Test
+   public void testEvictLeastRecentlyUsed()
+   {
+      PageCacheManagerImpl manager = new PageCacheManagerImpl(300, false);
+      FakeProvider provider = new FakeProvider(0);
+
+      FakeCache page1 = new FakeCache(1, 100);
+      FakeCache page2 = new FakeCache(2, 100);
+      FakeCache page3 = new FakeCache(3, 100);
+      manager.add(provider.proxy, page1, false);
+      manager.add(provider.proxy, page2, false);
+      manager.add(provider.proxy, page3, false);
+      Assert.assertEquals(300, manager.getSize());
+      Assert.assertEquals(0, manager.getEvictions());
+
+      manager.accessed(page1);
+      manager.add(provider.proxy, new FakeCache(4, 100), false);
+
+      Assert.assertEquals(1, provider.evicted.size());
+      Assert.assertSame(page2, provider.evicted.get(0));
+      Assert.assertEquals(300, manager.getSize());
+      Assert.assertEquals(3, manager.getPageCount());
+      Assert.assertEquals(1, manager.getEvictions());
+      Assert.assertEquals(1, manager.getHits());
+      Assert.assertEquals(4, manager.getMisses());
+
+      // a larger page takes the room of several others
+      manager.add(provider.proxy, new FakeCache(5, 250), false);
+      Assert.assertEquals(4, provider.evicted.size());
+      Assert.assertSame(page3, provider.evicted.get(1));
+      Assert.assertSame(page1, provider.evicted.get(2));
+      Assert.assertEquals(250, manager.getSize());
+   }
+
+   @Test
+   public void testBudgetSharedByProviders()
+   {
+      PageCacheManagerImpl manager = new PageCacheManagerImpl(200, false);
+      FakeProvider provider1 = new FakeProvider(0);
+      FakeProvider provider2 = new FakeProvider(0);
+
+      FakeCache page1 = new FakeCache(1, 100);
+      manager.add(provider1.proxy, page1, false);
+      manager.add(provider2.proxy, new FakeCache(1, 100), false);
+      manager.add(provider2.proxy, new FakeCache(2, 100), false);
+
+      Assert.assertEquals(0, provider2.evicted.size());
+      Assert.assertEquals(1, provider1.evicted.size());
+      Assert.assertSame(page1, provider1.evicted.get(0));
+   }
+
+   @Test
+   public void testPageLimitOnlyEvictsSameProvider()
+   {
+      PageCacheManagerImpl manager = new PageCacheManagerImpl(Long.MAX_VALUE, false);
+      FakeProvider provider1 = new FakeProvider(2);
+      FakeProvider provider2 = new FakeProvider(2);
+
+      manager.add(provider2.proxy, new FakeCache(1, 10), false);
+      FakeCache page1 = new FakeCache(1, 10);
+      manager.add(provider1.proxy, page1, false);
+      manager.add(provider1.proxy, new FakeCache(2, 10), false);
+      manager.add(provider1.proxy, new FakeCache(3, 10), false);
+
+      Assert.assertEquals(0, provider2.evicted.size());
+      Assert.assertEquals(1, provider1.evicted.size());
+      Assert.assertSame(page1, provider1.evicted.get(0));
+   }
+
+   @Test
+   public void testReadAheadKeptUntilAccessed()
+   {
+      PageCacheManagerImpl manager = new PageCacheManagerImpl(200, false);
+      FakeProvider provider = new FakeProvider(0);
+
+      FakeCache readAhead = new FakeCache(1, 100);
+      manager.add(provider.proxy, readAhead, true);
+      FakeCache page2 = new FakeCache(2, 100);
+      manager.add(provider.proxy, page2, false);
+      manager.add(provider.proxy, new FakeCache(3, 100), false);
+
+      Assert.assertEquals(1, provider.evicted.size());
+      Assert.assertSame(page2, provider.evicted.get(0));
+      Assert.assertEquals(2, manager.getMisses());
+
+      // once accessed, it ages like the others
+      manager.accessed(readAhead);
+      manager.add(provider.proxy, new FakeCache(4, 100), false);
+      manager.add(provider.proxy, new FakeCache(5, 100), false);
+
+      Assert.assertEquals(3, provider.evicted.size());
+      Assert.assertSame(readAhead, provider.evicted.get(2));
+   }
+
+   @Test
+   public void testLivePageCountedOnceClosed()
+   {
+      PageCacheManagerImpl manager = new PageCacheManagerImpl(200, false);
+      FakeProvider provider = new FakeProvider(0);
+
+      FakeCache live = new FakeCache(1, 500);
+      live.live = true;
+      manager.add(provider.proxy, live, false);
+      manager.add(provider.proxy, new FakeCache(2, 100), false);
+
+      Assert.assertEquals(100, manager.getSize());
+      Assert.assertEquals(0, provider.evicted.size());
+      Assert.assertEquals(1, manager.getMisses());
+
+      live.live = false;
+      Assert.assertEquals(600, manager.getSize());
+
+      manager.add(provider.proxy, new FakeCache(3, 100), false);
+      Assert.assertEquals(1, provider.evicted.size());
+      Assert.assertSame(live, provider.evicted.get(0));
+      Assert.assertEquals(200, manager.getSize());
+   }
+
+   @Test
+   public void testRemove()
+   {
+      PageCacheManagerImpl manager = new PageCacheManagerImpl(1000, false);
+      FakeProvider provider = new FakeProvider(0);
+
+      FakeCache page = new FakeCache(1, 100);
+      manager.add(provider.proxy, page, false);
+      manager.remove(page);
+      manager.remove(page);
+
+      Assert.assertEquals(0, manager.getSize());
+      Assert.assertEquals(0, manager.getPageCount());
+      Assert.assertEquals(0, manager.getEvictions());
+   }
+
+   private static final class FakeProvider implements InvocationHandler
+   {
+      final List<PageCache> evicted = new ArrayList<PageCache>();
+
+      final int maxPages;
+
+      final PageCursorProvider proxy;
+
+      FakeProvider(final int maxPages)
+      {
+         this.maxPages = maxPages;
+         this.proxy = (PageCursorProvider)Proxy.newProxyInstance(PageCursorProvider.class.getClassLoader(),
+                                                                 new Class<?>[] { PageCursorProvider.class },
+                                                                 this);
+      }
+
+      public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable
+      {
+         if (method.getName().equals("getCacheMaxSize"))
+         {
+            return maxPages;
+         }
+         else if (method.getName().equals("evictPageCache"))
+         {
+            evicted.add((PageCache)args[0]);
+            return null;
+         }
+         else if (method.getName().equals("hashCode"))
+         {
+            return System.identityHashCode(proxy);
+         }
+         else if (method.getName().equals("equals"))
+         {
+            return proxy == args[0];
+         }
+         throw new UnsupportedOperationException(method.getName());
+      }
+   }
+
+   private static final class FakeCache implements PageCache
+   {
+      final long pageId;
+
+      final int memoryEstimate;
+
+      volatile boolean live;
+
+      FakeCache(final long pageId, final int memoryEstimate)
+      {
+         this.pageId = pageId;
+         this.memoryEstimate = memoryEstimate;
+      }
+
+      public long getPageId()
+      {
+         return pageId;
+      }
+
+      public int getNumberOfMessages()
+      {
+         return 0;
+      }
+
+      public void setMessages(final PagedMessage[] messages)
+      {
+      }
+
+      public PagedMessage[] getMessages()
+      {
+         return new PagedMessage[0];
+      }
+
+      public boolean isLive()
+      {
+         return live;
+      }
+
+      public PagedMessage getMessage(final int messageNumber)
+      {
+         return null;
+      }
+
+      public void lock()
+      {
+      }
+
+      public void unlock()
+      {
+      }
+
+      public void close()
+      {
+      }
+
+      public int getMemoryEstimate()
+      {
+         return memoryEstimate;
+      }
+   }
+}
@@ -25,9 +25,11 @@ import org.hornetq.api.core.HornetQBuffer;
 import org.hornetq.api.core.SimpleString;
 import org.hornetq.core.journal.SequentialFile;
 import org.hornetq.core.journal.SequentialFileFactory;
+import org.hornetq.core.journal.impl.MappedSequentialFileFactory;
 import org.hornetq.core.journal.impl.NIOSequentialFileFactory;
 import org.hornetq.core.paging.PagedMessage;
 import org.hornetq.core.paging.impl.Page;
+import org.hornetq.core.paging.impl.PageReader;
 import org.hornetq.core.paging.impl.PagedMessageImpl;
 import org.hornetq.core.persistence.impl.nullpm.NullStorageManager;
 import org.hornetq.core.server.ServerMessage;
@@ -66,12 +68,172 @@ public class PageTest extends UnitTestCase
       testDamagedPage(new NIOSequentialFileFactory(getTestDir()), 1000);
    }
 
+   @Test
+   public void testPageWithMapped() throws Exception
+   {
+      recreateDirectory(getTestDir());
+      testAdd(new MappedSequentialFileFactory(getTestDir()), 1000);
+   }
+
+   @Test
+   public void testDamagedDataWithMapped() throws Exception
+   {
+      recreateDirectory(getTestDir());
+      testDamagedPage(new MappedSequentialFileFactory(getTestDir()), 1000);
+   }
+
    @Test
    public void testPageFakeWithoutCallbacks() throws Exception
    {
       testAdd(new FakeSequentialFileFactory(1, false), 10);
    }
 
+   @Test
+   public void testReaderSeekWithIndex() throws Exception
+   {
+      recreateDirectory(getTestDir());
+      SequentialFileFactory factory = new NIOSequentialFileFactory(getTestDir());
+
+      SequentialFile file = factory.createSequentialFile("00010.page", 1);
+      Page impl = new Page(new SimpleString("something"), new NullStorageManager(), factory, file, 10);
+      impl.open();
+      addPageElements(new SimpleString("Test"), impl, 1000);
+      impl.close();
+
+      Assert.assertEquals(1, factory.listFiles("index").size());
+
+      file = factory.createSequentialFile("00010.page", 1);
+      file.open();
+      impl = new Page(new SimpleString("something"), new NullStorageManager(), factory, file, 10);
+
+      PageReader reader = impl.newReader(new NullStorageManager());
+      try
+      {
+         Assert.assertEquals(1000, reader.getIndexedNumberOfMessages());
+         Assert.assertEquals(1000, impl.getNumberOfMessages());
+
+         for (int messageNumber : new int[] { 0, 1, 500, 531, 37, 32, 64, 999 })
+         {
+            Assert.assertTrue(reader.seek(messageNumber));
+            PagedMessage msg = reader.readMessage();
+            Assert.assertEquals(messageNumber, msg.getMessage().getMessageID());
+            Assert.assertEquals(messageNumber + 1, reader.getMessageNumber());
+         }
+
+         Assert.assertNull(reader.readMessage());
+         Assert.assertFalse(reader.seek(1001));
+      }
+      finally
+      {
+         reader.close();
+      }
+
+      impl.delete(null);
+
+      Assert.assertEquals(0, factory.listFiles("page").size());
+      Assert.assertEquals(0, factory.listFiles("index").size());
+   }
+
+   @Test
+   public void testReaderIgnoresOutdatedIndex() throws Exception
+   {
+      recreateDirectory(getTestDir());
+      SequentialFileFactory factory = new NIOSequentialFileFactory(getTestDir());
+
+      SequentialFile file = factory.createSequentialFile("00010.page", 1);
+      Page impl = new Page(new SimpleString("something"), new NullStorageManager(), factory, file, 10);
+      impl.open();
+      addPageElements(new SimpleString("Test"), impl, 100);
+      impl.close();
+
+      // appending without reading the page first leaves the index behind
+      file = factory.createSequentialFile("00010.page", 1);
+      impl = new Page(new SimpleString("something"), new NullStorageManager(), factory, file, 10);
+      impl.open();
+      file.position(file.size());
+      addPageElements(new SimpleString("Test"), impl, 10);
+      impl.close();
+
+      file.open();
+      PageReader reader = impl.newReader(new NullStorageManager());
+      try
+      {
+         Assert.assertEquals(-1, reader.getIndexedNumberOfMessages());
+
+         Assert.assertTrue(reader.seek(105));
+         Assert.assertEquals(5, reader.readMessage().getMessage().getMessageID());
+         Assert.assertTrue(reader.seek(50));
+         Assert.assertEquals(50, reader.readMessage().getMessage().getMessageID());
+      }
+      finally
+      {
+         reader.close();
+      }
+
+      // reading the page fully indexes the messages written after it
+      List<PagedMessage> msgs = impl.read(new NullStorageManager());
+      Assert.assertEquals(110, msgs.size());
+      addPageElements(new SimpleString("Test"), impl, 10);
+      impl.close();
+
+      file.open();
+      reader = impl.newReader(new NullStorageManager());
+      try
+      {
+         Assert.assertEquals(120, reader.getIndexedNumberOfMessages());
+         Assert.assertTrue(reader.seek(115));
+         Assert.assertEquals(5, reader.readMessage().getMessage().getMessageID());
+      }
+      finally
+      {
+         reader.close();
+      }
+      file.close();
+   }
+
+   @Test
+   public void testReadMessagesLargerThanWindow() throws Exception
+   {
+      recreateDirectory(getTestDir());
+      SequentialFileFactory factory = new NIOSequentialFileFactory(getTestDir());
+
+      SequentialFile file = factory.createSequentialFile("00010.page", 1);
+      Page impl = new Page(new SimpleString("something"), new NullStorageManager(), factory, file, 10);
+      impl.open();
+
+      // every third message doesn't fit in the buffer the page is read through
+      final int largeSize = PageReader.DEFAULT_WINDOW_SIZE * 2 + 17;
+      for (int i = 0; i < 20; i++)
+      {
+         int bodySize = i % 3 == 0 ? largeSize : 10;
+         ServerMessage msg = new ServerMessageImpl(i, bodySize + 100);
+         for (int j = 0; j < bodySize; j++)
+         {
+            msg.getBodyBuffer().writeByte(getSamplebyte(j));
+         }
+         msg.setAddress(new SimpleString("Test"));
+         impl.write(new PagedMessageImpl(msg, new long[0]));
+      }
+      impl.close();
+
+      file.open();
+      List<PagedMessage> msgs = impl.read(new NullStorageManager());
+      file.close();
+
+      Assert.assertEquals(20, msgs.size());
+      for (int i = 0; i < msgs.size(); i++)
+      {
+         Assert.assertEquals(i, msgs.get(i).getMessage().getMessageID());
+         HornetQBuffer body = msgs.get(i).getMessage().getBodyBuffer();
+         int bodySize = i % 3 == 0 ? largeSize : 10;
+         Assert.assertTrue(body.readableBytes() >= bodySize);
+         for (int j = 0; j < bodySize; j++)
+         {
+            Assert.assertEquals(getSamplebyte(j), body.readByte());
+         }
+      }
+   }
+
    /** Validate if everything we add is recovered */
    @Test
    public void testDamagedPage() throws Exception
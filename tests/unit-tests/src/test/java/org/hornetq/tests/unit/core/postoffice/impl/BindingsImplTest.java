@@ -27,6 +27,7 @@ import org.hornetq.core.filter.Filter;
 import org.hornetq.core.postoffice.Binding;
 import org.hornetq.core.postoffice.BindingType;
 import org.hornetq.core.postoffice.Bindings;
+import org.hornetq.core.postoffice.QueueBinding;
 import org.hornetq.core.postoffice.impl.BindingsImpl;
 import org.hornetq.core.server.Bindable;
 import org.hornetq.core.server.Queue;
@@ -79,6 +80,57 @@ public class BindingsImplTest extends UnitTestCase
       }
    }
 
+   @Test
+   public void testLoadAwareRouting() throws Exception
+   {
+      Bindings bind = new BindingsImpl(null, null, null);
+      bind.setLoadAwareRouting(true);
+
+      // drained in no time
+      FakeQueueBinding idle = new FakeQueueBinding(1, new SimpleString("a"), null, 1, 0, 100);
+      // drained in 10 seconds
+      FakeQueueBinding loaded = new FakeQueueBinding(2, new SimpleString("a"), null, 1, 1000, 100);
+      FakeQueueBinding noConsumers = new FakeQueueBinding(3, new SimpleString("a"), null, 0, 0, 0);
+      bind.addBinding(idle);
+      bind.addBinding(loaded);
+      bind.addBinding(noConsumers);
+
+      for (int i = 0; i < 1200; i++)
+      {
+         bind.route(new ServerMessageImpl(i, 100), new RoutingContextImpl(new FakeTransaction()));
+      }
+
+      assertEquals(0, noConsumers.routed);
+      assertEquals(1200, idle.routed + loaded.routed);
+      // weighted 1 and 1/11
+      assertTrue("routed " + loaded.routed + " to the loaded queue", loaded.routed >= 99 && loaded.routed <= 101);
+   }
+
+   @Test
+   public void testLoadAwareRedistribution() throws Exception
+   {
+      Queue queue = new FakeQueue(new SimpleString("a"));
+
+      Bindings bind = new BindingsImpl(null, null, null);
+      bind.setLoadAwareRouting(true);
+
+      FakeQueueBinding originating = new FakeQueueBinding(1, new SimpleString("a"), queue, 1, 0, 100);
+      FakeQueueBinding loaded = new FakeQueueBinding(2, new SimpleString("a"), null, 1, 1000, 100);
+      FakeQueueBinding lessLoaded = new FakeQueueBinding(3, new SimpleString("a"), null, 1, 100, 100);
+      bind.addBinding(originating);
+      bind.addBinding(loaded);
+      bind.addBinding(lessLoaded);
+
+      for (int i = 0; i < 10; i++)
+      {
+         assertTrue(bind.redistribute(new ServerMessageImpl(i, 100), queue, new RoutingContextImpl(new FakeTransaction())));
+      }
+
+      assertEquals(0, originating.routed);
+      assertEquals(0, loaded.routed);
+      assertEquals(10, lessLoaded.routed);
+   }
+
    private void internalTest(final boolean route) throws Exception
    {
       final FakeBinding fake = new FakeBinding(new SimpleString("a"));
@@ -277,7 +329,7 @@ public class BindingsImplTest extends UnitTestCase
 
    }
 
-   private final class FakeBinding implements Binding
+   private class FakeBinding implements Binding
    {
 
       public void close() throws Exception
@@ -389,6 +441,86 @@ public class BindingsImplTest extends UnitTestCase
 
    }
 
+   private final class FakeQueueBinding extends FakeBinding implements QueueBinding
+   {
+      private final long id;
+
+      private final Queue queue;
+
+      private final int consumerCount;
+
+      private final long messageCount;
+
+      private final double consumerRate;
+
+      int routed;
+
+      FakeQueueBinding(final long id,
+                       final SimpleString name,
+                       final Queue queue,
+                       final int consumerCount,
+                       final long messageCount,
+                       final double consumerRate)
+      {
+         super(name);
+         this.id = id;
+         this.queue = queue;
+         this.consumerCount = consumerCount;
+         this.messageCount = messageCount;
+         this.consumerRate = consumerRate;
+      }
+
+      @Override
+      public long getID()
+      {
+         return id;
+      }
+
+      @Override
+      public Bindable getBindable()
+      {
+         return queue;
+      }
+
+      @Override
+      public Filter getFilter()
+      {
+         return null;
+      }
+
+      @Override
+      public boolean isHighAcceptPriority(final ServerMessage message)
+      {
+         return consumerCount > 0;
+      }
+
+      @Override
+      public void route(final ServerMessage message, final RoutingContext context) throws Exception
+      {
+         routed++;
+      }
+
+      public int consumerCount()
+      {
+         return consumerCount;
+      }
+
+      public Queue getQueue()
+      {
+         return queue;
+      }
+
+      public long getMessageCount()
+      {
+         return messageCount;
+      }
+
+      public double getConsumerRate()
+      {
+         return consumerRate;
+      }
+   }
+
    // Package protected ---------------------------------------------
 
    // Protected -----------------------------------------------------
@@ -192,6 +192,12 @@ public class FakeQueue implements Queue
 
    }
 
+   @Override
+   public void setRedistributeBacklog(final boolean redistribute) throws Exception
+   {
+      // no-op
+   }
+
    @Override
    public boolean changeReferencePriority(final long messageID, final byte newPriority) throws Exception
    {
@@ -368,6 +374,12 @@ public class FakeQueue implements Queue
       return 0;
    }
 
+   public long getMessageIDIndexMemorySize()
+   {
+      // no-op
+      return 0;
+   }
+
    @Override
    public List<MessageReference> getScheduledMessages()
    {
@@ -566,6 +578,13 @@ public class FakeQueue implements Queue
       return 0;
    }
 
+   @Override
+   public long getMessagesAcknowledged()
+   {
+      // no-op
+      return 0;
+   }
+
    /* (non-Javadoc)
    * @see org.hornetq.core.server.Queue#destroyPaging()
    */
@@ -17,6 +17,10 @@ import org.junit.Test;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
 
 import org.hornetq.api.core.SimpleString;
 import org.hornetq.core.filter.Filter;
@@ -24,6 +28,7 @@ import org.hornetq.core.postoffice.Binding;
 import org.hornetq.core.postoffice.BindingType;
 import org.hornetq.core.postoffice.Bindings;
 import org.hornetq.core.postoffice.BindingsFactory;
+import org.hornetq.core.postoffice.impl.AddressImpl;
 import org.hornetq.core.postoffice.impl.WildcardAddressManager;
 import org.hornetq.core.server.Bindable;
 import org.hornetq.core.server.Queue;
@@ -76,6 +81,91 @@ public class WildcardAddressManagerUnitTest extends UnitTestCase
       assertEquals("Exception happened during the process", 0, errors);
    }
 
+   @Test
+   public void testMappingsMatchAddressImpl() throws Exception
+   {
+      WildcardAddressManager ad = new WildcardAddressManager(new BindingFactoryFake());
+      Random random = new Random(1234);
+      String[] words = new String[]{"a", "b", "c", "*", "#"};
+
+      List<BindingFake> bindings = new ArrayList<BindingFake>();
+      for (int i = 0; i < 400; i++)
+      {
+         StringBuilder address = new StringBuilder();
+         int depth = 1 + random.nextInt(4);
+         for (int j = 0; j < depth; j++)
+         {
+            if (j > 0)
+            {
+               address.append('.');
+            }
+            // a quarter of the bindings are on wildcard addresses
+            address.append(words[random.nextInt(i % 4 == 0 ? 5 : 3)]);
+         }
+         BindingFake binding = new BindingFake(address.toString(), "binding" + i);
+         bindings.add(binding);
+         ad.addBinding(binding);
+      }
+
+      assertMappings(ad, bindings);
+
+      for (int i = 0; i < 400; i += 2)
+      {
+         ad.removeBinding(bindings.get(i).getUniqueName(), null);
+         bindings.set(i, null);
+      }
+
+      assertMappings(ad, bindings);
+
+      for (int i = 0; i < 400; i++)
+      {
+         if (bindings.get(i) != null)
+         {
+            ad.removeBinding(bindings.get(i).getUniqueName(), null);
+            bindings.set(i, null);
+         }
+      }
+
+      assertNull(ad.getBindingsForRoutingAddress(SimpleString.toSimpleString("a.b")));
+   }
+
+   /**
+    * Routing to any address gives its own bindings and the bindings of the wildcards AddressImpl matches
+    */
+   private void assertMappings(final WildcardAddressManager ad, final List<BindingFake> bindings) throws Exception
+   {
+      String[] words = new String[]{"a", "b", "c"};
+      for (int i = 0; i < 3 * 3 * 3 * 3 + 3 * 3 * 3 + 3 * 3 + 3; i++)
+      {
+         StringBuilder builder = new StringBuilder();
+         for (int n = i; ; n = n / 3 - 1)
+         {
+            builder.insert(0, words[n % 3]);
+            if (n < 3)
+            {
+               break;
+            }
+            builder.insert(0, '.');
+         }
+         SimpleString address = SimpleString.toSimpleString(builder.toString());
+         AddressImpl add = new AddressImpl(address);
+
+         Set<Binding> expected = new HashSet<Binding>();
+         for (BindingFake binding : bindings)
+         {
+            if (binding != null && add.matches(new AddressImpl(binding.getAddress())))
+            {
+               expected.add(binding);
+            }
+         }
+
+         Bindings routed = ad.getBindingsForRoutingAddress(address);
+         Collection<Binding> actual = routed == null ? new ArrayList<Binding>() : routed.getBindings();
+         assertEquals(address.toString(), expected.size(), actual.size());
+         assertEquals(address.toString(), expected, new HashSet<Binding>(actual));
+      }
+   }
+
    class BindingFactoryFake implements BindingsFactory
    {
       public Bindings createBindings(SimpleString address) throws Exception
@@ -215,6 +305,12 @@ public class WildcardAddressManagerUnitTest extends UnitTestCase
 
       }
 
+      @Override
+      public void setLoadAwareRouting(boolean loadAwareRouting)
+      {
+
+      }
+
       @Override
       public boolean redistribute(ServerMessage message, Queue originatingQueue, RoutingContext context) throws Exception
       {
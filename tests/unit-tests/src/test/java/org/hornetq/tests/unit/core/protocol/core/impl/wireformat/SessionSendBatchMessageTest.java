@@ -0,0 +1,114 @@
+/*
+ * Copyright 2009 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package org.hornetq.tests.unit.core.protocol.core.impl.wireformat;
+
+import org.hornetq.api.core.HornetQBuffer;
+import org.hornetq.api.core.HornetQBuffers;
+import org.hornetq.core.protocol.core.impl.wireformat.SessionSendBatchMessage;
+import org.hornetq.tests.util.UnitTestCase;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Decodes compressed batches.
+ */
+public class SessionSendBatchMessageTest extends UnitTestCase
+{
+   private static final int MESSAGE_COUNT = 10;
+
+   private static final int LENGTH = 1000;
+
+   @Test
+   public void testCompressed() throws Exception
+   {
+      HornetQBuffer buffer = encode();
+
+      SessionSendBatchMessage decoded = new SessionSendBatchMessage();
+      decoded.decodeRest(buffer);
+
+      Assert.assertTrue(decoded.isCompressed());
+      Assert.assertEquals(MESSAGE_COUNT, decoded.getMessageCount());
+      Assert.assertEquals(LENGTH, decoded.getMessages().writerIndex());
+      for (int i = 0; i < LENGTH; i++)
+      {
+         Assert.assertEquals(getSamplebyte(i), decoded.getMessages().getByte(i));
+      }
+   }
+
+   @Test
+   public void testTruncated() throws Exception
+   {
+      byte[] deflated = readDeflated(encode());
+
+      HornetQBuffer truncated = HornetQBuffers.dynamicBuffer(deflated.length);
+      truncated.writeInt(MESSAGE_COUNT);
+      truncated.writeBoolean(true);
+      truncated.writeInt(LENGTH);
+      truncated.writeInt(deflated.length / 2);
+      truncated.writeBytes(deflated, 0, deflated.length / 2);
+
+      assertDecodeFails(truncated);
+   }
+
+   @Test
+   public void testShorterThanLength() throws Exception
+   {
+      byte[] deflated = readDeflated(encode());
+
+      HornetQBuffer longer = HornetQBuffers.dynamicBuffer(deflated.length);
+      longer.writeInt(MESSAGE_COUNT);
+      longer.writeBoolean(true);
+      longer.writeInt(LENGTH + 10);
+      longer.writeInt(deflated.length);
+      longer.writeBytes(deflated);
+
+      assertDecodeFails(longer);
+   }
+
+   private static HornetQBuffer encode()
+   {
+      HornetQBuffer messages = HornetQBuffers.fixedBuffer(LENGTH);
+      for (int i = 0; i < LENGTH; i++)
+      {
+         messages.writeByte(getSamplebyte(i));
+      }
+
+      HornetQBuffer buffer = HornetQBuffers.dynamicBuffer(LENGTH);
+      new SessionSendBatchMessage(MESSAGE_COUNT, messages, true, null, null).encodeRest(buffer);
+      return buffer;
+   }
+
+   private static byte[] readDeflated(final HornetQBuffer buffer)
+   {
+      buffer.readInt();
+      buffer.readBoolean();
+      buffer.readInt();
+
+      byte[] deflated = new byte[buffer.readInt()];
+      buffer.readBytes(deflated);
+      return deflated;
+   }
+
+   private static void assertDecodeFails(final HornetQBuffer buffer)
+   {
+      try
+      {
+         new SessionSendBatchMessage().decodeRest(buffer);
+         Assert.fail("the batch can't be inflated");
+      }
+      catch (IllegalStateException expected)
+      {
+         // expected
+      }
+   }
+}
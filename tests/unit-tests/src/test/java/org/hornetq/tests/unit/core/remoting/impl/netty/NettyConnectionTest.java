@@ -14,8 +14,12 @@ package org.hornetq.tests.unit.core.remoting.impl.netty;
 
 import org.junit.Test;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
 import java.net.SocketAddress;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
@@ -32,11 +36,16 @@ import org.hornetq.spi.core.remoting.Connection;
 import org.hornetq.spi.core.remoting.ConnectionLifeCycleListener;
 import org.hornetq.tests.util.RandomUtil;
 import org.hornetq.tests.util.UnitTestCase;
+import org.hornetq.utils.ReferenceCounter;
+import org.hornetq.utils.ReferenceCounterUtil;
 import org.jboss.netty.channel.Channel;
 import org.jboss.netty.channel.ChannelConfig;
 import org.jboss.netty.channel.ChannelFactory;
 import org.jboss.netty.channel.ChannelFuture;
 import org.jboss.netty.channel.ChannelPipeline;
+import org.jboss.netty.channel.Channels;
+import org.jboss.netty.channel.DefaultChannelFuture;
+import org.jboss.netty.channel.FileRegion;
 
 /**
  *
@@ -72,6 +81,69 @@ public class NettyConnectionTest extends UnitTestCase
       Assert.assertEquals(1, channel.getWritten().size());
    }
 
+   @Test
+   public void testWriteFileRegion() throws Exception
+   {
+      File file = new File(getTestDir(), "region.bin");
+      file.getParentFile().mkdirs();
+      RandomAccessFile randomFile = new RandomAccessFile(file, "rw");
+      randomFile.write(new byte[1024]);
+      final FileChannel fileChannel = randomFile.getChannel();
+
+      try
+      {
+         HornetQBuffer header = HornetQBuffers.wrappedBuffer(ByteBuffer.allocate(16));
+         HornetQBuffer trailer = HornetQBuffers.wrappedBuffer(ByteBuffer.allocate(8));
+
+         ReferenceCounter references = new ReferenceCounterUtil(new Runnable()
+         {
+            public void run()
+            {
+               try
+               {
+                  fileChannel.close();
+               }
+               catch (IOException e)
+               {
+                  throw new IllegalStateException(e);
+               }
+            }
+         });
+
+         // the reference of the deliverer
+         references.increment();
+
+         SimpleChannel channel = new SimpleChannel(RandomUtil.randomInt());
+         NettyConnection conn = new NettyConnection(emptyMap, channel, new MyListener(), false, false);
+
+         // only the buffers can be written
+         Assert.assertFalse(conn.writeFileRegion(header, fileChannel, references, 100, 500, trailer));
+         Assert.assertEquals(0, channel.getWritten().size());
+
+         conn = new NettyConnection(emptyMap, channel, new MyListener(), false, false, true);
+
+         // the region isn't transferred yet, the write doesn't wait for it
+         Assert.assertTrue(conn.writeFileRegion(header, fileChannel, references, 100, 500, trailer));
+         Assert.assertEquals(3, channel.getWritten().size());
+
+         FileRegion region = (FileRegion)channel.getWritten().get(1);
+         Assert.assertEquals(100, region.getPosition());
+         Assert.assertEquals(500, region.getCount());
+
+         // the deliverer is done, the connection still refers to the file
+         references.decrement();
+         Assert.assertTrue(fileChannel.isOpen());
+
+         channel.getRegionFuture().setSuccess();
+         Assert.assertFalse(fileChannel.isOpen());
+      }
+      finally
+      {
+         randomFile.close();
+         file.delete();
+      }
+   }
+
    @Test
    public void testCreateBuffer() throws Exception
    {
@@ -92,6 +164,8 @@ public class NettyConnectionTest extends UnitTestCase
 
       private final List<Object> written = new LinkedList<Object>();
 
+      private ChannelFuture regionFuture;
+
       private SimpleChannel(final int id)
       {
          this.id = id;
@@ -102,6 +176,11 @@ public class NettyConnectionTest extends UnitTestCase
          return written;
       }
 
+      public ChannelFuture getRegionFuture()
+      {
+         return regionFuture;
+      }
+
       public int compareTo(final Channel arg0)
       {
          return 0;
@@ -110,13 +189,19 @@ public class NettyConnectionTest extends UnitTestCase
       public ChannelFuture write(final Object arg0, final SocketAddress arg1)
       {
          written.add(arg0);
-         return null;
+         return Channels.succeededFuture(this);
       }
 
       public ChannelFuture write(final Object arg0)
       {
          written.add(arg0);
-         return null;
+         if (arg0 instanceof FileRegion)
+         {
+            // transferred once the test completes it
+            regionFuture = new DefaultChannelFuture(this, false);
+            return regionFuture;
+         }
+         return Channels.succeededFuture(this);
       }
 
       public ChannelFuture unbind()
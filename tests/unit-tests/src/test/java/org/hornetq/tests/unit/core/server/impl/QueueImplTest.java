@@ -1378,6 +1378,52 @@ public class QueueImplTest extends UnitTestCase
 
    }
 
+   @Test
+   public void testIndexedReferences() throws Exception
+   {
+      QueueImpl queue = new QueueImpl(1,
+                                      QueueImplTest.address1,
+                                      QueueImplTest.queue1,
+                                      null,
+                                      false,
+                                      true,
+                                      scheduledExecutor,
+                                      null,
+                                      null,
+                                      null,
+                                      executor);
+      MessageReference messageReference = generateReference(queue, 1);
+      MessageReference messageReference2 = generateReference(queue, 2);
+      MessageReference messageReference3 = generateReference(queue, 3);
+      queue.addHead(messageReference);
+      queue.addHead(messageReference2);
+
+      Assert.assertEquals(0, queue.getMessageIDIndexMemorySize());
+
+      // the references already in the queue are indexed when the index is turned on
+      queue.setIndexMessageIDs(true);
+      queue.addHead(messageReference3);
+
+      Assert.assertTrue(queue.getMessageIDIndexMemorySize() > 0);
+      Assert.assertEquals(messageReference2, queue.getReference(2));
+      Assert.assertEquals(messageReference3, queue.getReference(3));
+      Assert.assertNull(queue.getReference(5));
+
+      Assert.assertEquals(messageReference2, queue.removeReferenceWithID(2));
+      Assert.assertNull(queue.getReference(2));
+      Assert.assertNull(queue.removeReferenceWithID(2));
+
+      Assert.assertTrue(queue.changeReferencePriority(1, (byte)9));
+      queue.flushExecutor();
+      Assert.assertEquals(messageReference, queue.getReference(1));
+      Assert.assertEquals(2, queue.getMessageCount());
+
+      queue.setIndexMessageIDs(false);
+
+      Assert.assertEquals(0, queue.getMessageIDIndexMemorySize());
+      Assert.assertEquals(messageReference, queue.getReference(1));
+   }
+
    /**
     * Test the paused and resumed states with async deliveries.
     * @throws Exception
@@ -0,0 +1,368 @@
+/*
+ * Copyright 2009 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.tests.unit.core.server.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.hornetq.api.core.SimpleString;
+import org.hornetq.core.filter.impl.FilterImpl;
+import org.hornetq.core.server.MessageReference;
+import org.hornetq.core.server.impl.QueueImpl;
+import org.hornetq.core.server.impl.ScheduledDeliveryHandlerImpl;
+import org.hornetq.tests.util.UnitTestCase;
+import org.hornetq.utils.LinkedListIterator;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the timing wheel of {@link ScheduledDeliveryHandlerImpl}.
+ */
+public class ScheduledDeliveryHandlerTest extends UnitTestCase
+{
+   private ScheduledExecutorService scheduledExecutor;
+
+   private ExecutorService executor;
+
+   private QueueImpl queue;
+
+   @Override
+   @Before
+   public void setUp() throws Exception
+   {
+      super.setUp();
+      scheduledExecutor = Executors.newSingleThreadScheduledExecutor();
+      executor = Executors.newSingleThreadExecutor();
+      queue = new QueueImpl(1,
+                            new SimpleString("address"),
+                            new SimpleString("queue"),
+                            null,
+                            false,
+                            false,
+                            scheduledExecutor,
+                            null,
+                            null,
+                            null,
+                            executor);
+   }
+
+   @Override
+   @After
+   public void tearDown() throws Exception
+   {
+      scheduledExecutor.shutdownNow();
+      executor.shutdownNow();
+      super.tearDown();
+   }
+
+   @Test
+   public void testNotScheduled() throws Exception
+   {
+      ScheduledDeliveryHandlerImpl handler = new ScheduledDeliveryHandlerImpl(scheduledExecutor);
+
+      Assert.assertFalse(handler.checkAndSchedule(generateReference(queue, 1), true));
+      Assert.assertFalse(new ScheduledDeliveryHandlerImpl(null).checkAndSchedule(scheduled(1, 1), true));
+      Assert.assertEquals(0, handler.getScheduledCount());
+   }
+
+   @Test
+   public void testDeliveryOrder() throws Exception
+   {
+      ManualScheduler scheduler = new ManualScheduler();
+      ScheduledDeliveryHandlerImpl handler = createHandler(scheduler);
+
+      long time = scheduler.now + 200;
+
+      // the same order the handler always had: the references scheduled with tail=true come first
+      handler.checkAndSchedule(scheduled(1, time), false);
+      handler.checkAndSchedule(scheduled(2, time), true);
+      handler.checkAndSchedule(scheduled(3, time - 50), false);
+      handler.checkAndSchedule(scheduled(4, time - 50), true);
+
+      assertIDs(handler.getScheduledReferences(), 4, 2, 1, 3);
+
+      // not delivered before their time
+      scheduler.advance(100);
+      Assert.assertEquals(0, queue.getMessageCount());
+
+      scheduler.advance(50);
+      Assert.assertEquals(2, queue.getMessageCount());
+
+      scheduler.advance(50);
+      Assert.assertEquals(4, queue.getMessageCount());
+      Assert.assertEquals(0, handler.getScheduledCount());
+
+      // each tick adds what is due to the head of the queue one reference at a time
+      assertIDs(queueReferences(), 1, 2, 3, 4);
+      Assert.assertEquals(0, queueReferences().get(0).getScheduledDeliveryTime());
+      Assert.assertEquals(2, scheduler.runs);
+   }
+
+   @Test
+   public void testArmedForEarliestTick() throws Exception
+   {
+      ManualScheduler scheduler = new ManualScheduler();
+      ScheduledDeliveryHandlerImpl handler = createHandler(scheduler);
+
+      long hour = TimeUnit.HOURS.toMillis(1);
+
+      handler.checkAndSchedule(scheduled(1, scheduler.now + hour), false);
+      Assert.assertEquals(scheduler.now + hour, scheduler.nextDueTime());
+
+      // re-armed for the earlier reference
+      handler.checkAndSchedule(scheduled(2, scheduler.now + 100), false);
+      Assert.assertEquals(scheduler.now + 100, scheduler.nextDueTime());
+
+      scheduler.advance(100);
+      assertIDs(queueReferences(), 2);
+      Assert.assertEquals(1, scheduler.runs);
+
+      // nothing runs until the reference an hour later is due
+      Assert.assertEquals(scheduler.now - 100 + hour, scheduler.nextDueTime());
+
+      Assert.assertEquals(1, handler.removeReferenceWithID(1).getMessage().getMessageID());
+      Assert.assertEquals(-1, scheduler.nextDueTime());
+   }
+
+   @Test
+   public void testSpreadOverRevolutions() throws Exception
+   {
+      // 4 buckets of 5 ms, the references are 1 to 6 revolutions away
+      ScheduledDeliveryHandlerImpl handler = new ScheduledDeliveryHandlerImpl(scheduledExecutor, 5, 4);
+
+      long now = System.currentTimeMillis();
+
+      for (int i = 0; i < 100; i++)
+      {
+         handler.checkAndSchedule(scheduled(i, now + 20 + (i * 7919) % 100), false);
+      }
+
+      waitForDeliveries(handler, 100);
+
+      for (MessageReference ref : queueReferences())
+      {
+         Assert.assertEquals(0, ref.getScheduledDeliveryTime());
+      }
+   }
+
+   @Test
+   public void testRemoveAndCancel() throws Exception
+   {
+      ScheduledDeliveryHandlerImpl handler = new ScheduledDeliveryHandlerImpl(scheduledExecutor);
+
+      long time = System.currentTimeMillis() + 60000;
+
+      for (int i = 0; i < 10; i++)
+      {
+         MessageReference ref = scheduled(i, time + i * 1000);
+         ref.getMessage().putStringProperty(new SimpleString("fruit"),
+                                            new SimpleString(i % 2 == 0 ? "banana" : "orange"));
+         handler.checkAndSchedule(ref, false);
+      }
+
+      // the same message twice
+      handler.checkAndSchedule(scheduled(3, time), false);
+
+      Assert.assertEquals(11, handler.getScheduledCount());
+
+      Assert.assertEquals(3, handler.removeReferenceWithID(3).getMessage().getMessageID());
+      Assert.assertEquals(3, handler.removeReferenceWithID(3).getMessage().getMessageID());
+      Assert.assertNull(handler.removeReferenceWithID(3));
+      Assert.assertNull(handler.removeReferenceWithID(100));
+
+      assertIDs(handler.cancel(FilterImpl.createFilter("fruit = 'orange'")), 1, 5, 7, 9);
+      assertIDs(handler.getScheduledReferences(), 0, 2, 4, 6, 8);
+      assertIDs(handler.cancel(null), 0, 2, 4, 6, 8);
+
+      Assert.assertEquals(0, handler.getScheduledCount());
+      Assert.assertTrue(handler.getScheduledReferences().isEmpty());
+   }
+
+   private static ScheduledDeliveryHandlerImpl createHandler(final ManualScheduler scheduler)
+   {
+      return new ScheduledDeliveryHandlerImpl(scheduler)
+      {
+         @Override
+         protected long currentTimeMillis()
+         {
+            return scheduler.now;
+         }
+      };
+   }
+
+   private MessageReference scheduled(final long id, final long time)
+   {
+      MessageReference ref = generateReference(queue, id);
+      ref.setScheduledDeliveryTime(time);
+      return ref;
+   }
+
+   private void waitForDeliveries(final ScheduledDeliveryHandlerImpl handler, final int count) throws Exception
+   {
+      long timeout = System.currentTimeMillis() + 5000;
+      while ((handler.getScheduledCount() > 0 || queue.getMessageCount() < count) &&
+             System.currentTimeMillis() < timeout)
+      {
+         Thread.sleep(10);
+      }
+      Assert.assertEquals(0, handler.getScheduledCount());
+      Assert.assertEquals(count, queue.getMessageCount());
+   }
+
+   private List<MessageReference> queueReferences()
+   {
+      List<MessageReference> refs = new ArrayList<MessageReference>();
+      LinkedListIterator<MessageReference> iter = queue.iterator();
+      while (iter.hasNext())
+      {
+         refs.add(iter.next());
+      }
+      iter.close();
+      return refs;
+   }
+
+   private static void assertIDs(final List<MessageReference> refs, final long... ids)
+   {
+      Assert.assertEquals(ids.length, refs.size());
+      for (int i = 0; i < ids.length; i++)
+      {
+         Assert.assertEquals(ids[i], refs.get(i).getMessage().getMessageID());
+      }
+   }
+
+   /**
+    * Runs the tasks scheduled on it when the test advances its clock.
+    */
+   private static final class ManualScheduler extends ScheduledThreadPoolExecutor
+   {
+      long now = 1000000;
+
+      int runs;
+
+      private final List<ManualTask> tasks = new ArrayList<ManualTask>();
+
+      ManualScheduler()
+      {
+         super(1);
+      }
+
+      @Override
+      public ScheduledFuture<?> schedule(final Runnable command, final long delay, final TimeUnit unit)
+      {
+         ManualTask task = new ManualTask(command, now + unit.toMillis(delay));
+         tasks.add(task);
+         return task;
+      }
+
+      void advance(final long millis)
+      {
+         now += millis;
+
+         ManualTask task;
+         while ((task = nextTask()) != null && task.dueTime <= now)
+         {
+            tasks.remove(task);
+            runs++;
+            task.command.run();
+         }
+      }
+
+      /**
+       * @return the due time of the next task, or -1 if there is none
+       */
+      long nextDueTime()
+      {
+         ManualTask task = nextTask();
+         return task == null ? -1 : task.dueTime;
+      }
+
+      private ManualTask nextTask()
+      {
+         ManualTask next = null;
+         for (ManualTask task : new ArrayList<ManualTask>(tasks))
+         {
+            if (task.cancelled)
+            {
+               tasks.remove(task);
+            }
+            else if (next == null || task.dueTime < next.dueTime)
+            {
+               next = task;
+            }
+         }
+         return next;
+      }
+
+      private final class ManualTask implements ScheduledFuture<Object>
+      {
+         final Runnable command;
+
+         final long dueTime;
+
+         boolean cancelled;
+
+         ManualTask(final Runnable command, final long dueTime)
+         {
+            this.command = command;
+            this.dueTime = dueTime;
+         }
+
+         public long getDelay(final TimeUnit unit)
+         {
+            return unit.convert(dueTime - now, TimeUnit.MILLISECONDS);
+         }
+
+         public int compareTo(final Delayed o)
+         {
+            long diff = getDelay(TimeUnit.MILLISECONDS) - o.getDelay(TimeUnit.MILLISECONDS);
+            return diff < 0 ? -1 : diff == 0 ? 0 : 1;
+         }
+
+         public boolean cancel(final boolean mayInterruptIfRunning)
+         {
+            cancelled = true;
+            return true;
+         }
+
+         public boolean isCancelled()
+         {
+            return cancelled;
+         }
+
+         public boolean isDone()
+         {
+            return cancelled || !tasks.contains(this);
+         }
+
+         public Object get()
+         {
+            return null;
+         }
+
+         public Object get(final long timeout, final TimeUnit unit)
+         {
+            return null;
+         }
+      }
+   }
+}
@@ -13,6 +13,8 @@
 
 package org.hornetq.tests.unit.core.server.impl.fakes;
 
+import java.util.Map;
+
 import org.hornetq.api.core.Pair;
 import org.hornetq.api.core.SimpleString;
 import org.hornetq.core.persistence.impl.nullpm.NullStorageManager;
@@ -66,6 +68,12 @@ public class FakePostOffice implements PostOffice
       return null;
    }
 
+   @Override
+   public Map<SimpleString, Binding> getAllBindings()
+   {
+      return null;
+   }
+
    @Override
    public Bindings getBindingsForAddress(final SimpleString address) throws Exception
    {
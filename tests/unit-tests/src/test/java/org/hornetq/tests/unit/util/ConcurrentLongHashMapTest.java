@@ -0,0 +1,194 @@
+/*
+ * Copyright 2009 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.tests.unit.util;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.hornetq.tests.util.UnitTestCase;
+import org.hornetq.utils.ConcurrentLongHashMap;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * A ConcurrentLongHashMapTest
+ */
+public class ConcurrentLongHashMapTest extends UnitTestCase
+{
+   @Test
+   public void testPutGetRemove() throws Exception
+   {
+      ConcurrentLongHashMap<String> map = new ConcurrentLongHashMap<String>();
+
+      Assert.assertTrue(map.isEmpty());
+      Assert.assertNull(map.put(1, "one"));
+      Assert.assertNull(map.put(-1, "minus one"));
+      Assert.assertNull(map.put(0, "zero"));
+      Assert.assertNull(map.put(Long.MAX_VALUE, "max"));
+
+      Assert.assertEquals(4, map.size());
+      Assert.assertEquals("one", map.get(1));
+      Assert.assertEquals("minus one", map.get(-1));
+      Assert.assertEquals("zero", map.get(0));
+      Assert.assertEquals("max", map.get(Long.MAX_VALUE));
+      Assert.assertNull(map.get(2));
+
+      Assert.assertEquals("one", map.put(1, "uno"));
+      Assert.assertEquals("uno", map.putIfAbsent(1, "eins"));
+      Assert.assertEquals("uno", map.get(1));
+      Assert.assertNull(map.putIfAbsent(2, "two"));
+
+      Assert.assertEquals("uno", map.remove(1));
+      Assert.assertNull(map.remove(1));
+      Assert.assertFalse(map.containsKey(1));
+      Assert.assertTrue(map.containsKey(2));
+      Assert.assertEquals(4, map.size());
+
+      map.clear();
+      Assert.assertTrue(map.isEmpty());
+      Assert.assertNull(map.get(2));
+   }
+
+   @Test
+   public void testNullValue() throws Exception
+   {
+      ConcurrentLongHashMap<String> map = new ConcurrentLongHashMap<String>();
+
+      try
+      {
+         map.put(1, null);
+         Assert.fail("Exception expected");
+      }
+      catch (NullPointerException expected)
+      {
+         // expected
+      }
+   }
+
+   @Test
+   public void testRandomOperations() throws Exception
+   {
+      ConcurrentLongHashMap<Long> map = new ConcurrentLongHashMap<Long>(4, 2);
+      Map<Long, Long> expected = new HashMap<Long, Long>();
+
+      Random random = new Random(1);
+
+      for (int i = 0; i < 200000; i++)
+      {
+         // a small key range forces collisions, removals in the middle of probe chains and resizes
+         long key = random.nextInt(5000);
+         if (random.nextBoolean())
+         {
+            Assert.assertEquals(expected.put(key, (long)i), map.put(key, (long)i));
+         }
+         else
+         {
+            Assert.assertEquals(expected.remove(key), map.remove(key));
+         }
+      }
+
+      Assert.assertEquals(expected.size(), map.size());
+
+      for (long key = 0; key < 5000; key++)
+      {
+         Assert.assertEquals(expected.get(key), map.get(key));
+      }
+
+      Set<Long> keys = new HashSet<Long>();
+      for (long key : map.keys())
+      {
+         keys.add(key);
+      }
+      Assert.assertEquals(expected.keySet(), keys);
+      Assert.assertEquals(new HashSet<Long>(expected.values()), new HashSet<Long>(map.values()));
+
+      ConcurrentLongHashMap<Long> copy = new ConcurrentLongHashMap<Long>();
+      copy.putAll(map);
+      Assert.assertEquals(map.size(), copy.size());
+      for (long key : map.keys())
+      {
+         Assert.assertEquals(map.get(key), copy.get(key));
+      }
+   }
+
+   @Test
+   public void testConcurrentUpdates() throws Exception
+   {
+      final ConcurrentLongHashMap<Long> map = new ConcurrentLongHashMap<Long>();
+
+      final int numberOfThreads = 8;
+
+      final int recordsPerThread = 50000;
+
+      final CountDownLatch start = new CountDownLatch(1);
+
+      final AtomicInteger errors = new AtomicInteger(0);
+
+      Thread[] threads = new Thread[numberOfThreads];
+
+      for (int t = 0; t < numberOfThreads; t++)
+      {
+         final long base = (long)t * recordsPerThread;
+         threads[t] = new Thread()
+         {
+            @Override
+            public void run()
+            {
+               try
+               {
+                  start.await();
+                  for (long id = base; id < base + recordsPerThread; id++)
+                  {
+                     map.put(id, id);
+                  }
+                  // remove every odd id again
+                  for (long id = base + 1; id < base + recordsPerThread; id += 2)
+                  {
+                     if (map.remove(id) == null)
+                     {
+                        errors.incrementAndGet();
+                     }
+                  }
+               }
+               catch (Throwable e)
+               {
+                  e.printStackTrace();
+                  errors.incrementAndGet();
+               }
+            }
+         };
+         threads[t].start();
+      }
+
+      start.countDown();
+
+      for (Thread thread : threads)
+      {
+         thread.join();
+      }
+
+      Assert.assertEquals(0, errors.get());
+      Assert.assertEquals(numberOfThreads * recordsPerThread / 2, map.size());
+
+      for (long id = 0; id < (long)numberOfThreads * recordsPerThread; id++)
+      {
+         Assert.assertEquals(id % 2 == 0 ? Long.valueOf(id) : null, map.get(id));
+      }
+   }
+}
@@ -7,12 +7,16 @@ import org.hornetq.api.core.SimpleString;
 import org.hornetq.core.paging.PageTransactionInfo;
 import org.hornetq.core.paging.PagingManager;
 import org.hornetq.core.paging.PagingStore;
+import org.hornetq.core.paging.cursor.PageCacheManager;
+import org.hornetq.core.paging.cursor.impl.PageCacheManagerImpl;
 import org.hornetq.core.postoffice.PostOffice;
 import org.hornetq.core.server.ServerMessage;
 
 public final class FakePagingManager implements PagingManager
 {
 
+   private final PageCacheManager pageCacheManager = new PageCacheManagerImpl();
+
    public void activate()
    {
    }
@@ -180,4 +184,9 @@ public final class FakePagingManager implements PagingManager
       // no-op
    }
 
+   public PageCacheManager getPageCacheManager()
+   {
+      return pageCacheManager;
+   }
+
 }
@@ -23,6 +23,7 @@ import java.util.NoSuchElementException;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.hornetq.tests.util.UnitTestCase;
+import org.hornetq.utils.IDSupplier;
 import org.hornetq.utils.LinkedListImpl;
 import org.hornetq.utils.LinkedListIterator;
 
@@ -1307,4 +1308,86 @@ public class LinkedListTest extends UnitTestCase
       assertEquals(0, list.numIters());
 
    }
+
+   @Test
+   public void testRemoveWithID()
+   {
+      list.setIDSupplier(new IntegerIDSupplier());
+
+      for (int i = 0; i < 1000; i++)
+      {
+         list.addTail(i);
+      }
+
+      LinkedListIterator<Integer> iter = list.iterator();
+      assertEquals(0, iter.next().intValue());
+
+      // out of order, as individual acks do
+      for (int i = 999; i >= 0; i -= 2)
+      {
+         assertEquals(i, list.removeWithID(i).intValue());
+      }
+      assertNull(list.removeWithID(999));
+      assertNull(list.removeWithID(5000));
+      assertEquals(500, list.size());
+
+      // the list keeps its order and the iterator isn't broken by the removals
+      for (int i = 2; i < 1000; i += 2)
+      {
+         assertTrue(iter.hasNext());
+         assertEquals(i, iter.next().intValue());
+      }
+      assertFalse(iter.hasNext());
+      iter.close();
+
+      for (int i = 0; i < 1000; i += 2)
+      {
+         assertEquals(i, list.poll().intValue());
+      }
+      assertNull(list.removeWithID(0));
+      assertEquals(0, list.size());
+   }
+
+   @Test
+   public void testRemoveWithDuplicatedID()
+   {
+      list.setIDSupplier(new IntegerIDSupplier());
+
+      list.addTail(1);
+      list.addTail(2);
+      list.addTail(1);
+
+      assertEquals(1, list.removeWithID(1).intValue());
+      // not in the index, found walking the list
+      assertEquals(1, list.removeWithID(1).intValue());
+      assertNull(list.removeWithID(1));
+      assertEquals(1, list.size());
+      assertEquals(2, list.poll().intValue());
+   }
+
+   @Test
+   public void testRemoveWithIDAfterClear()
+   {
+      list.setIDSupplier(new IntegerIDSupplier());
+
+      for (int i = 0; i < 100; i++)
+      {
+         list.addTail(i);
+      }
+      list.clear();
+
+      assertNull(list.removeWithID(10));
+
+      list.addTail(10);
+      assertEquals(10, list.removeWithID(10).intValue());
+      assertEquals(0, list.size());
+   }
+
+   private static final class IntegerIDSupplier implements IDSupplier<Integer>
+   {
+      public long getID(final Integer element)
+      {
+         return element;
+      }
+   }
 }
@@ -0,0 +1,183 @@
+/*
+ * Copyright 2010 Red Hat, Inc.
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+
+package org.hornetq.tests.unit.util;
+
+import org.hornetq.tests.util.UnitTestCase;
+import org.hornetq.utils.IDSupplier;
+import org.hornetq.utils.LinkedListIterator;
+import org.hornetq.utils.PriorityLinkedListImpl;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the id index of {@link PriorityLinkedListImpl}.
+ */
+public class PriorityLinkedListIndexTest extends UnitTestCase
+{
+   private static final IDSupplier<Long> ID_SUPPLIER = new IDSupplier<Long>()
+   {
+      public long getID(final Long element)
+      {
+         return element;
+      }
+   };
+
+   private PriorityLinkedListImpl<Long> list;
+
+   @Override
+   @Before
+   public void setUp() throws Exception
+   {
+      super.setUp();
+
+      list = new PriorityLinkedListImpl<Long>(10);
+   }
+
+   @Test
+   public void testLookupAcrossPriorities()
+   {
+      list.setIDSupplier(ID_SUPPLIER);
+
+      for (long i = 0; i < 1000; i++)
+      {
+         list.addTail(i, (int)(i % 10));
+      }
+
+      Assert.assertTrue(list.isIndexedByID());
+
+      for (long i = 0; i < 1000; i++)
+      {
+         Assert.assertEquals(Long.valueOf(i), list.getWithID(i));
+      }
+      Assert.assertNull(list.getWithID(1000));
+
+      for (long i = 0; i < 1000; i += 2)
+      {
+         Assert.assertEquals(Long.valueOf(i), list.removeWithID(i));
+      }
+      Assert.assertNull(list.removeWithID(0));
+      Assert.assertEquals(500, list.size());
+
+      // what is left is still polled by priority, and polling keeps the index up to date
+      long previousPriority = Long.MAX_VALUE;
+      for (int i = 0; i < 500; i++)
+      {
+         Long polled = list.poll();
+         Assert.assertEquals(1, polled % 2);
+         Assert.assertTrue(polled % 10 <= previousPriority);
+         previousPriority = polled % 10;
+         Assert.assertNull(list.getWithID(polled));
+      }
+      Assert.assertNull(list.poll());
+   }
+
+   @Test
+   public void testIndexExistingElements()
+   {
+      for (long i = 0; i < 100; i++)
+      {
+         list.addTail(i, 4);
+      }
+
+      Assert.assertFalse(list.isIndexedByID());
+      Assert.assertEquals(0, list.getIndexMemorySize());
+
+      list.setIDSupplier(ID_SUPPLIER);
+
+      Assert.assertTrue(list.isIndexedByID());
+      Assert.assertTrue(list.getIndexMemorySize() > 0);
+      Assert.assertEquals(Long.valueOf(42), list.getWithID(42));
+
+      list.setIDSupplier(null);
+
+      Assert.assertFalse(list.isIndexedByID());
+      Assert.assertNull(list.getWithID(42));
+      Assert.assertEquals(100, list.size());
+   }
+
+   @Test
+   public void testRemoveWithIteratorsOpen()
+   {
+      list.setIDSupplier(ID_SUPPLIER);
+
+      for (long i = 0; i < 10; i++)
+      {
+         list.addTail(i, 4);
+      }
+
+      LinkedListIterator<Long> iter = list.iterator();
+
+      Assert.assertTrue(iter.hasNext());
+      Assert.assertEquals(Long.valueOf(0), iter.next());
+      Assert.assertTrue(iter.hasNext());
+      Assert.assertEquals(Long.valueOf(1), iter.next());
+
+      // the iterator is on 1, removing 1 and 2 by id moves it along
+      list.removeWithID(1);
+      list.removeWithID(2);
+
+      Assert.assertTrue(iter.hasNext());
+      Assert.assertEquals(Long.valueOf(3), iter.next());
+
+      // an element removed by the iterator leaves the index
+      iter.remove();
+      Assert.assertNull(list.getWithID(3));
+
+      iter.close();
+
+      Assert.assertEquals(7, list.size());
+   }
+
+   @Test
+   public void testDuplicateIDs()
+   {
+      list.setIDSupplier(ID_SUPPLIER);
+
+      list.addTail(1L, 4);
+      list.addTail(1L, 5);
+
+      // the second one can't be found by id, so the index can't be trusted for misses
+      Assert.assertFalse(list.isIndexedByID());
+
+      list.clear();
+
+      Assert.assertTrue(list.isIndexedByID());
+      Assert.assertNull(list.getWithID(1));
+   }
+
+   @Test
+   public void testGrowAndShrink()
+   {
+      list.setIDSupplier(ID_SUPPLIER);
+
+      long initialSize = list.getIndexMemorySize();
+
+      for (long i = 0; i < 100000; i++)
+      {
+         list.addTail(i * 7919, 4);
+      }
+
+      long fullSize = list.getIndexMemorySize();
+      Assert.assertTrue(fullSize > initialSize);
+
+      for (long i = 0; i < 100000; i++)
+      {
+         Assert.assertEquals(Long.valueOf(i * 7919), list.removeWithID(i * 7919));
+      }
+
+      Assert.assertEquals(0, list.size());
+      Assert.assertTrue(list.getIndexMemorySize() < fullSize);
+   }
+}